@@ -111,9 +111,10 @@ class P2pService : public BusObject {
         }
 
         //
-        // Now setup the JNI side of things
+        // Now setup the JNI side of things.  We return early on errors, so do
+        // not push a local frame that would not be popped.
         //
-        JNIEnv* env = attachEnv(&jret);
+        JNIEnv* env = attachEnv(&jret, false);
 
         //
         // Create a reference to the provided P2pHelperService Java object that remains
@@ -214,7 +215,14 @@ class P2pService : public BusObject {
     // about arranging to get the current thread associated with the environment so
     // we provide a convenience function that does what we need.
     //
-    JNIEnv* attachEnv(jint* jret)
+    // A native thread may have been left attached to the JVM by the AllJoyn Java
+    // binding, in which case it never returns to Java to have its local
+    // references freed.  Unless frame is false, a local frame is pushed on an
+    // already attached thread and popped by detachEnv.  jret is then JNI_OK if a
+    // frame was pushed, JNI_EDETACHED if the thread was attached here and
+    // JNI_ERR otherwise.
+    //
+    JNIEnv* attachEnv(jint* jret, bool frame = true)
     {
         LOGI("attachEnv()");
         JNIEnv* env;
@@ -222,6 +230,9 @@ class P2pService : public BusObject {
         if (*jret == JNI_EDETACHED) {
             LOGI("attaching");
             int ret = vm->AttachCurrentThread(&env, NULL);
+        } else if (!frame || env->PushLocalFrame(16) != 0) {
+            env->ExceptionClear();
+            *jret = JNI_ERR;
         }
         return env;
     }
@@ -231,6 +242,10 @@ class P2pService : public BusObject {
         if (jret == JNI_EDETACHED) {
             LOGI("detaching");
             vm->DetachCurrentThread();
+        } else if (jret == JNI_OK) {
+            JNIEnv* env;
+            vm->GetEnv((void**)&env, JNI_VERSION_1_2);
+            env->PopLocalFrame(NULL);
         }
     }
 
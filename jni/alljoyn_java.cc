@@ -17,7 +17,23 @@
 
 #include <jni.h>
 #include <stdio.h>
+#include <string.h>
 #include <assert.h>
+#if defined(QCC_OS_GROUP_WINDOWS)
+#include <windows.h>
+#else
+#include <pthread.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <limits.h>
+#include <poll.h>
+#include <unistd.h>
+#include <sys/socket.h>
+#include <sys/uio.h>
+#endif
+#if defined(QCC_OS_LINUX) || defined(QCC_OS_ANDROID)
+#include <sys/sendfile.h>
+#endif
 #include <map>
 #include <list>
 #include <algorithm>
@@ -526,7 +542,8 @@ using namespace ajn;
  * (5) Signal Emitters have a reference to the Java Bus Object with which they
  *     are associated.  In order to actually emit signals, the C++ object
  *     associated with the Java Bus Object must be looked up.  This is done
- *     by looking up the Java Object reference in a global gBusObjectMap.
+ *     by looking up the Java Object reference in a global gBusObjectMap,
+ *     which is sharded by the identity hash code of the Java Object.
  *
  * (6) In the normal (not Bus Object) case, we use the Java garbage collector to
  *     reference count our Java objects, and override the finalize() method of
@@ -741,6 +758,7 @@ static JavaVM* jvm = NULL;
 static jclass CLS_Integer = NULL;
 static jclass CLS_Object = NULL;
 static jclass CLS_String = NULL;
+static jclass CLS_Method = NULL;
 
 /** org/alljoyn/bus */
 static jclass CLS_BusException = NULL;
@@ -748,20 +766,44 @@ static jclass CLS_ErrorReplyBusException = NULL;
 static jclass CLS_IntrospectionListener = NULL;
 static jclass CLS_BusObjectListener = NULL;
 static jclass CLS_MessageContext = NULL;
+static jmethodID MID_MessageContext_init = NULL;
+static jmethodID MID_MessageContext_setMessage = NULL;
+static jmethodID MID_MessageContext_initPopulated = NULL;
+static jclass CLS_SignalHandlerQueue = NULL;
+static jmethodID MID_SignalHandlerQueue_enqueue = NULL;
 static jclass CLS_MsgArg = NULL;
 static jclass CLS_Signature = NULL;
 static jclass CLS_Status = NULL;
 static jclass CLS_Variant = NULL;
 static jclass CLS_BusAttachment = NULL;
 static jclass CLS_SessionOpts = NULL;
+static jclass CLS_MethodCall = NULL;
+static jclass CLS_DeferredReply = NULL;
+static jclass CLS_InterfaceDescription = NULL;
 
 static jmethodID MID_Integer_intValue = NULL;
 static jmethodID MID_Object_equals = NULL;
+static jmethodID MID_Object_hashCode = NULL;
+static jclass CLS_System = NULL;
+static jmethodID MID_System_identityHashCode = NULL;
+static jmethodID MID_Method_invoke = NULL;
 static jmethodID MID_BusException_log = NULL;
+static jmethodID MID_Status_create = NULL;
 static jmethodID MID_MsgArg_marshal = NULL;
 static jmethodID MID_MsgArg_marshal_array = NULL;
 static jmethodID MID_MsgArg_unmarshal = NULL;
 static jmethodID MID_MsgArg_unmarshal_array = NULL;
+static jmethodID MID_MethodCall_init = NULL;
+static jmethodID MID_MethodCall_abort = NULL;
+static jmethodID MID_MethodDispatcher_dispatch = NULL;
+static jmethodID MID_DeferredReply_setMethodCall = NULL;
+static jmethodID MID_InterfaceDescription_getAllProperties = NULL;
+
+static jfieldID FID_Signal_ifaceName = NULL;
+static jfieldID FID_Signal_signalName = NULL;
+static jfieldID FID_Signal_inputSig = NULL;
+static jfieldID FID_Signal_member = NULL;
+static jfieldID FID_Signal_owner = NULL;
 
 
 // predeclare some methods as necessary
@@ -780,6 +822,23 @@ extern jclass CLS_ScanResultMessage;
 #endif
 
 
+#if defined(QCC_OS_GROUP_POSIX)
+/**
+ * A thread-specific key whose value is set on every native thread we attach to
+ * the JVM.  Its destructor runs when the thread exits and detaches the thread.
+ */
+static pthread_key_t gDetachKey;
+static bool gDetachKeyCreated = false;
+
+/**
+ * Thread exit hook for native threads attached by GetEnv.
+ */
+static void DetachThread(void* value)
+{
+    jvm->DetachCurrentThread();
+}
+#endif
+
 /**
  * Get a valid JNIEnv pointer.
  *
@@ -787,6 +846,21 @@ extern jclass CLS_ScanResultMessage;
  * function (from C++), there is no associated JVM thread, so we need to obtain
  * a valid JNIEnv.  This is a helper function to make that happen.
  *
+ * Attaching a thread is expensive (the JVM creates a java.lang.Thread and its
+ * allocation buffers), and AllJoyn calls into Java from a small set of long
+ * lived threads.  So where we can arrange to be told when a thread exits, we
+ * attach it once, under a stable name derived from the AllJoyn thread name,
+ * and leave it attached until it exits.  In that case we report the thread as
+ * already attached (JNI_OK) so that DeleteEnv leaves it alone.  Elsewhere the
+ * thread is detached again by DeleteEnv as before.
+ *
+ * Such a thread never returns to Java, so the local references it creates are
+ * only freed by the local frame JScopedEnv pushes.  Every entry point called on
+ * an AllJoyn thread (listener callbacks, method, property and signal handlers)
+ * must therefore hold a JScopedEnv while it uses JNI; the plain GetEnv() here
+ * is for code called from Java, or below such an entry point, and for
+ * destructors that only delete global references.
+ *
  * @return The JNIEnv pointer valid in the calling context.
  */
 static JNIEnv* GetEnv(jint* result = 0)
@@ -797,10 +871,23 @@ static JNIEnv* GetEnv(jint* result = 0)
         *result = ret;
     }
     if (JNI_EDETACHED == ret) {
+        String name = String("AllJoyn ") + Thread::GetThread()->GetName();
+        JavaVMAttachArgs args;
+        args.version = JNI_VERSION_1_2;
+        args.name = const_cast<char*>(name.c_str());
+        args.group = NULL;
 #if defined(QCC_OS_ANDROID)
-        ret = jvm->AttachCurrentThread(&env, NULL);
+        ret = jvm->AttachCurrentThread(&env, &args);
 #else
-        ret = jvm->AttachCurrentThread((void**)&env, NULL);
+        ret = jvm->AttachCurrentThread((void**)&env, &args);
+#endif
+#if defined(QCC_OS_GROUP_POSIX)
+        if (JNI_OK == ret && gDetachKeyCreated && pthread_setspecific(gDetachKey, jvm) == 0) {
+            QCC_DbgPrintf(("GetEnv(): Attached thread %s until it exits", name.c_str()));
+            if (result) {
+                *result = JNI_OK;
+            }
+        }
 #endif
     }
     assert(JNI_OK == ret);
@@ -836,6 +923,19 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm,
     if (jvm->GetEnv((void**)&env, JNI_VERSION_1_2)) {
         return JNI_ERR;
     } else {
+#if defined(QCC_OS_GROUP_POSIX)
+        gDetachKeyCreated = (pthread_key_create(&gDetachKey, DetachThread) == 0);
+#endif
+#if defined(QCC_OS_GROUP_WINDOWS)
+        gMessageContextKey = TlsAlloc();
+        if (TLS_OUT_OF_INDEXES == gMessageContextKey) {
+            return JNI_ERR;
+        }
+#else
+        if (pthread_key_create(&gMessageContextKey, NULL)) {
+            return JNI_ERR;
+        }
+#endif
 #if defined(QCC_OS_ANDROID) && defined(AJ_ENABLE_PROXIMITY_SCANNER)
         proxJVM = jvm;
         psenv = env;
@@ -863,12 +963,38 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm,
             return JNI_ERR;
         }
 
+        MID_Object_hashCode = env->GetMethodID(CLS_Object, "hashCode", "()I");
+        if (!MID_Object_hashCode) {
+            return JNI_ERR;
+        }
+
+        clazz = env->FindClass("java/lang/System");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        CLS_System = (jclass)env->NewGlobalRef(clazz);
+
+        MID_System_identityHashCode = env->GetStaticMethodID(CLS_System, "identityHashCode", "(Ljava/lang/Object;)I");
+        if (!MID_System_identityHashCode) {
+            return JNI_ERR;
+        }
+
         clazz = env->FindClass("java/lang/String");
         if (!clazz) {
             return JNI_ERR;
         }
         CLS_String = (jclass)env->NewGlobalRef(clazz);
 
+        clazz = env->FindClass("java/lang/reflect/Method");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        CLS_Method = (jclass)env->NewGlobalRef(clazz);
+        MID_Method_invoke = env->GetMethodID(clazz, "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
+        if (!MID_Method_invoke) {
+            return JNI_ERR;
+        }
+
         clazz = env->FindClass("org/alljoyn/bus/BusException");
         if (!clazz) {
             return JNI_ERR;
@@ -919,11 +1045,46 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm,
             return JNI_ERR;
         }
 
+        clazz = env->FindClass("org/alljoyn/bus/InterfaceDescription");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        CLS_InterfaceDescription = (jclass)env->NewGlobalRef(clazz);
+        MID_InterfaceDescription_getAllProperties = env->GetStaticMethodID(CLS_InterfaceDescription, "getAllProperties",
+                                                                           "(JLjava/lang/Object;Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/reflect/Method;Ljava/lang/String;)V");
+        if (!MID_InterfaceDescription_getAllProperties) {
+            return JNI_ERR;
+        }
+
         clazz = env->FindClass("org/alljoyn/bus/MessageContext");
         if (!clazz) {
             return JNI_ERR;
         }
         CLS_MessageContext = (jclass)env->NewGlobalRef(clazz);
+        MID_MessageContext_init = env->GetMethodID(CLS_MessageContext, "<init>", "(JZII)V");
+        if (!MID_MessageContext_init) {
+            return JNI_ERR;
+        }
+        MID_MessageContext_setMessage = env->GetMethodID(CLS_MessageContext, "setMessage", "(JZII)V");
+        if (!MID_MessageContext_setMessage) {
+            return JNI_ERR;
+        }
+        MID_MessageContext_initPopulated = env->GetMethodID(CLS_MessageContext, "<init>",
+                                                            "(ZLjava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;I)V");
+        if (!MID_MessageContext_initPopulated) {
+            return JNI_ERR;
+        }
+
+        clazz = env->FindClass("org/alljoyn/bus/SignalHandlerQueue");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        CLS_SignalHandlerQueue = (jclass)env->NewGlobalRef(clazz);
+        MID_SignalHandlerQueue_enqueue = env->GetMethodID(CLS_SignalHandlerQueue, "enqueue",
+                                                          "(Ljava/lang/Object;Ljava/lang/reflect/Method;[Ljava/lang/Object;Lorg/alljoyn/bus/MessageContext;)V");
+        if (!MID_SignalHandlerQueue_enqueue) {
+            return JNI_ERR;
+        }
 
         clazz = env->FindClass("org/alljoyn/bus/Signature");
         if (!clazz) {
@@ -936,6 +1097,10 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm,
             return JNI_ERR;
         }
         CLS_Status = (jclass)env->NewGlobalRef(clazz);
+        MID_Status_create = env->GetStaticMethodID(CLS_Status, "create", "(I)Lorg/alljoyn/bus/Status;");
+        if (!MID_Status_create) {
+            return JNI_ERR;
+        }
 
         clazz = env->FindClass("org/alljoyn/bus/Variant");
         if (!clazz) {
@@ -955,6 +1120,53 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm,
         }
         CLS_SessionOpts = (jclass)env->NewGlobalRef(clazz);
 
+        clazz = env->FindClass("org/alljoyn/bus/MethodCall");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        CLS_MethodCall = (jclass)env->NewGlobalRef(clazz);
+        MID_MethodCall_init = env->GetMethodID(CLS_MethodCall, "<init>", "(J)V");
+        if (!MID_MethodCall_init) {
+            return JNI_ERR;
+        }
+        MID_MethodCall_abort = env->GetMethodID(CLS_MethodCall, "abort", "(Ljava/lang/Throwable;)V");
+        if (!MID_MethodCall_abort) {
+            return JNI_ERR;
+        }
+
+        clazz = env->FindClass("org/alljoyn/bus/MethodDispatcher");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        MID_MethodDispatcher_dispatch = env->GetMethodID(clazz, "dispatch",
+                                                         "(Lorg/alljoyn/bus/BusObject;Ljava/lang/String;ILjava/lang/Runnable;)V");
+        if (!MID_MethodDispatcher_dispatch) {
+            return JNI_ERR;
+        }
+
+        clazz = env->FindClass("org/alljoyn/bus/DeferredReply");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        CLS_DeferredReply = (jclass)env->NewGlobalRef(clazz);
+        MID_DeferredReply_setMethodCall = env->GetMethodID(CLS_DeferredReply, "setMethodCall", "(Lorg/alljoyn/bus/MethodCall;)V");
+        if (!MID_DeferredReply_setMethodCall) {
+            return JNI_ERR;
+        }
+
+        clazz = env->FindClass("org/alljoyn/bus/SignalEmitter$Signal");
+        if (!clazz) {
+            return JNI_ERR;
+        }
+        FID_Signal_ifaceName = env->GetFieldID(clazz, "ifaceName", "Ljava/lang/String;");
+        FID_Signal_signalName = env->GetFieldID(clazz, "signalName", "Ljava/lang/String;");
+        FID_Signal_inputSig = env->GetFieldID(clazz, "inputSig", "Ljava/lang/String;");
+        FID_Signal_member = env->GetFieldID(clazz, "member", "J");
+        FID_Signal_owner = env->GetFieldID(clazz, "owner", "I");
+        if (!FID_Signal_ifaceName || !FID_Signal_signalName || !FID_Signal_inputSig || !FID_Signal_member || !FID_Signal_owner) {
+            return JNI_ERR;
+        }
+
 #if defined (QCC_OS_ANDROID) && defined(AJ_ENABLE_PROXIMITY_SCANNER)
 
         clazz = env->FindClass("org/alljoyn/bus/ScanResultMessage");
@@ -1023,14 +1235,24 @@ class JScopedEnv {
 
     JNIEnv* env;
     jint detached;
+    bool framed;
 };
 
 /**
  * Construct a scoped JNIEnv pointer.
+ *
+ * A native thread that stays attached to the JVM never returns to Java, so
+ * the JVM never frees the local references it creates.  On such a thread we
+ * push a local frame here and pop it on destruction.
  */
 JScopedEnv::JScopedEnv()
-    : env(GetEnv(&detached))
+    : env(GetEnv(&detached)), framed(false)
 {
+#if defined(QCC_OS_GROUP_POSIX)
+    if (gDetachKeyCreated && pthread_getspecific(gDetachKey)) {
+        framed = (env->PushLocalFrame(16) == 0);
+    }
+#endif
 }
 
 /**
@@ -1046,6 +1268,9 @@ JScopedEnv::~JScopedEnv()
             env->CallStaticVoidMethod(CLS_BusException, MID_BusException_log, (jthrowable)ex);
         }
     }
+    if (framed) {
+        env->PopLocalFrame(NULL);
+    }
     DeleteEnv(detached);
 }
 
@@ -1208,11 +1433,7 @@ T GetNativeListener(JNIEnv* env, jobject jlistener)
 static jobject JStatus(QStatus status)
 {
     JNIEnv* env = GetEnv();
-    jmethodID mid = env->GetStaticMethodID(CLS_Status, "create", "(I)Lorg/alljoyn/bus/Status;");
-    if (!mid) {
-        return NULL;
-    }
-    return env->CallStaticObjectMethod(CLS_Status, mid, status);
+    return env->CallStaticObjectMethod(CLS_Status, MID_Status_create, status);
 }
 
 class JBusObject;
@@ -1232,10 +1453,12 @@ class JBusAttachment : public BusAttachment {
                     jobject jauthListener, const char* keyStoreFileName, jboolean isShared);
     void Disconnect(const char* connectArgs);
     QStatus EnablePeerSecurity(const char* authMechanisms, jobject jauthListener, const char* keyStoreFileName, jboolean isShared);
-    QStatus RegisterBusObject(const char* objPath, jobject jbusObject, jobjectArray jbusInterfaces, jboolean jsecure);
+    QStatus RegisterBusObject(const char* objPath, jobject jbusObject, jobjectArray jbusInterfaces, jboolean jsecure,
+                              jobject jdispatcher);
     void UnregisterBusObject(jobject jbusObject);
     QStatus RegisterSignalHandler(const char* ifaceName, const char* signalName,
-                                  jobject jsignalHandler, jobject jmethod, const char* srcPath);
+                                  jobject jsignalHandler, jobject jmethod, const char* srcPath,
+                                  const char* rule, bool addMatch, jobject jqueue);
     void UnregisterSignalHandler(jobject jsignalHandler, jobject jmethod);
 
     bool IsLocalBusObject(jobject jbusObject);
@@ -1258,11 +1481,13 @@ class JBusAttachment : public BusAttachment {
     Mutex baProxyLock;
 
     /**
-     * A vector of all of the C++ "halves" of the signal handler objects
-     * associated with this bus attachment.  Note that this member is public
-     * since we trust that the native binding we wrote will usse it correctly.
+     * All of the C++ "halves" of the signal handler objects associated with
+     * this bus attachment, indexed by a hash of the Java handler object and
+     * method (see SignalHandlerKey) so that unregistering one of many signal
+     * handlers does not scan them all.  Note that this member is public since
+     * we trust that the native binding we wrote will usse it correctly.
      */
-    vector<pair<jobject, JSignalHandler*> > signalHandlers;
+    multimap<jint, pair<jobject, JSignalHandler*> > signalHandlers;
 
     /*
      * The single (optionsl) KeyStoreListener associated with this bus
@@ -1802,43 +2027,166 @@ class JOnJoinSessionListener : public BusAttachment::JoinSessionAsyncCB {
  */
 class JBusObject : public BusObject {
   public:
-    JBusObject(JBusAttachment* jbap, const char* path, jobject jobj);
-    ~JBusObject();
+    JBusObject(JBusAttachment* jbap, const char* path, jobject jobj, jobject jdispatcher);
     QStatus AddInterfaces(jobjectArray jbusInterfaces);
     void MethodHandler(const InterfaceDescription::Member* member, Message& msg);
+    void InvokeMethod(const InterfaceDescription::Member* member, Message& msg, jobject jmethod, jobjectArray jargs);
+    void ErrorReply(const InterfaceDescription::Member* member, Message& msg, jthrowable ex);
     QStatus MethodReply(const InterfaceDescription::Member* member, Message& msg, QStatus status);
     QStatus MethodReply(const InterfaceDescription::Member* member, const Message& msg, const char* error, const char* errorMessage = NULL);
     QStatus MethodReply(const InterfaceDescription::Member* member, Message& msg, jobject jreply);
-    QStatus Signal(const char* destination, SessionId sessionId, const char* ifaceName, const char* signalName,
+    QStatus FindSignal(const char* ifaceName, const char* signalName, const InterfaceDescription::Member*& signal);
+    QStatus Signal(const char* destination, SessionId sessionId, const InterfaceDescription::Member& signal,
                    const MsgArg* args, size_t numArgs, uint32_t timeToLive, uint8_t flags, Message& msg);
     QStatus Get(const char* ifcName, const char* propName, MsgArg& val);
     QStatus Set(const char* ifcName, const char* propName, MsgArg& val);
+    void GetAllProps(const InterfaceDescription::Member* member, Message& msg);
+    void CacheProperty(const InterfaceDescription::Property* prop, const MsgArg* val);
+    void InvalidateCachedProperties(const InterfaceDescription* intf, const char* propName);
     String GenerateIntrospection(bool deep = false, size_t indent = 0) const;
     void ObjectRegistered();
     void ObjectUnregistered();
+
+    /*
+     * Get the number that identifies this bus object among all the bus
+     * objects ever registered by the process.  Unlike the address of the
+     * object it is never reused, so it may be remembered by the Java code.
+     */
+    int32_t GetId() const { return id; }
+
+    int32_t IncRef(void)
+    {
+        return IncrementAndFetch(&refCount);
+    }
+
+    int32_t DecRef(void)
+    {
+        uint32_t refs = DecrementAndFetch(&refCount);
+        if (refs == 0) {
+            delete this;
+        }
+        return refs;
+    }
+
   private:
     JBusObject(const JBusObject& other);
     JBusObject& operator =(const JBusObject& other);
 
+    /*
+     * Destructor is marked private since it should only be called from DecRef.
+     */
+    virtual ~JBusObject();
+
+    /*
+     * An intrusive reference count.  The owning bus attachment holds one
+     * reference, each method call handed to a Java MethodDispatcher holds
+     * another and so does each signal being sent, so a bus object
+     * unregistered while calls are still queued lives until those calls have
+     * replied.
+     */
+    int32_t refCount;
+
+    const int32_t id;
+
     struct Property {
         String signature;
         jobject jget;
         jobject jset;
+        bool cached;
+    };
+    typedef map<const InterfaceDescription::Member*, jobject> JMethod;
+    typedef map<const InterfaceDescription::Property*, Property> JProperty;
+
+    /*
+     * The readable properties of an interface in the order GetAllProps reads
+     * them, with their names and getters in the Java arrays handed to
+     * InterfaceDescription.getAllProperties and the concatenated signature
+     * of their values.
+     */
+    struct AllProperties {
+        vector<const InterfaceDescription::Property*> props;
+        String signature;
+        jobject jnames;
+        jobject jgetters;
+    };
+    typedef map<const InterfaceDescription*, AllProperties> JAllProperties;
+
+    /*
+     * The Java methods backing the bus methods and properties of this object,
+     * keyed by the native member and property descriptions AllJoyn hands to
+     * the handlers.  A new set of tables is built by AddInterfaces and
+     * published before the object is registered with AllJoyn; once published
+     * a set of tables is never changed, so the method handlers and property
+     * accessors read them without taking a lock.
+     */
+    struct Tables {
+        JMethod methods;
+        JProperty properties;
+        JAllProperties allProperties;
     };
-    typedef map<String, jobject> JMethod;
-    typedef map<String, Property> JProperty;
+
+    QStatus AddInterfaces(jobjectArray jbusInterfaces, Tables& t);
+    QStatus AddAllProperties(const InterfaceDescription* intf, Tables& t);
+    JProperty::const_iterator FindProperty(const char* ifcName, const char* propName);
+
+    /*
+     * The last values of the properties declared cached, which Get answers
+     * from without calling into Java.  The generation is advanced whenever
+     * a value is replaced or discarded, so that a value read from a getter
+     * is not cached if the property changed while the getter ran.
+     */
+    Mutex cacheLock;
+    map<const InterfaceDescription::Property*, MsgArg> cache;
+    uint32_t cacheGeneration;
     jobject jbusObj;
     jmethodID MID_generateIntrospection;
     jmethodID MID_registered;
     jmethodID MID_unregistered;
 
-    JMethod methods;
-    JProperty properties;
-    Mutex mapLock;
+    /*
+     * A strong global reference to the MethodDispatcher of the bus
+     * attachment, or NULL if method calls are handled on the AllJoyn
+     * dispatcher thread.
+     */
+    jobject jdispatcher;
+
+    const Tables* tables;
 
     JBusAttachment* busPtr;
 };
 
+/**
+ * The C++ backing class corresponding to a Java MethodCall.
+ *
+ * When a bus object has been registered with a MethodDispatcher, the method
+ * handler running on the AllJoyn dispatcher thread only unmarshals the
+ * arguments and hands one of these to the dispatcher.  It holds on to
+ * everything needed to call the Java method and reply to the message later,
+ * on whatever thread the dispatcher chooses.
+ *
+ * When a bus method returns a DeferredReply, one of these (without a method
+ * or arguments) is handed to the DeferredReply to keep the message around
+ * until the reply is known.
+ */
+class JMethodCall {
+  public:
+    JMethodCall(JBusObject* busObject, const InterfaceDescription::Member* member, Message& msg,
+                jobject jmethod, jobjectArray jargs);
+    ~JMethodCall();
+    void Invoke();
+    void Reply(jobject jreply);
+    void ErrorReply(jthrowable ex);
+  private:
+    JMethodCall(const JMethodCall& other);
+    JMethodCall& operator =(const JMethodCall& other);
+
+    JBusObject* busObject;
+    const InterfaceDescription::Member* member;
+    Message msg;
+    jobject jmethod;
+    jobjectArray jargs;
+};
+
 /**
  * A map of Java Objects to JBusObjects.
  *
@@ -1858,10 +2206,73 @@ class JBusObject : public BusObject {
  * This is a different use case than a smart pointer, so once again, instead of
  * (mis) using the ManagedObj in another strange way, we just provide a
  * non-intrusive reference count here.
+ *
+ * Signals are sent far more often than bus objects are registered, so the map
+ * is split into shards, each with its own lock, by the identity hash code of
+ * the Java Bus Object, and each shard is keyed by that hash code.  Looking up
+ * a bus object only compares it with the bus objects that have the same hash
+ * code, and signals sent from bus objects in different shards do not contend
+ * for a lock at all.
+ *
+ * The global bus object map lock gBusObjectMapLock is still taken by the code
+ * that registers and unregisters bus objects, since that needs atomicity
+ * across several calls that access the map and the bus attachment (see
+ * JBusAttachment::RegisterBusObject).  The functions below take the lock of
+ * the shard they access themselves, always after gBusObjectMapLock and the
+ * bus attachment lock if those are held.  The signal paths take only the
+ * shard lock, and only long enough to find the backing object and take a
+ * reference to it with JBusObject::IncRef, so a bus object unregistered while
+ * one of its signals is being sent lives until the send is complete.
  */
-map<jobject, pair<uint32_t, JBusObject*> > gBusObjectMap;
+struct BusObjectMapEntry {
+    jobject jbusObject;
+    uint32_t refCount;
+    JBusObject* cppObject;
+};
+
+typedef multimap<jint, BusObjectMapEntry> BusObjectShardMap;
+
+struct BusObjectMapShard {
+    Mutex lock;
+    BusObjectShardMap entries;
+};
+
+static const size_t BUS_OBJECT_MAP_SHARDS = 16;
+
+BusObjectMapShard gBusObjectMap[BUS_OBJECT_MAP_SHARDS];
 Mutex gBusObjectMapLock;
 
+/**
+ * Get the shard of the global bus object map that holds a Java Bus Object.
+ *
+ * @param env The environment pointer.
+ * @param jbusObject The Java Bus Object.
+ * @param hash Returns the identity hash code of the Java Bus Object, which is
+ *             its key in the shard.
+ */
+static BusObjectMapShard& GetBusObjectMapShard(JNIEnv* env, jobject jbusObject, jint& hash)
+{
+    hash = env->CallStaticIntMethod(CLS_System, MID_System_identityHashCode, jbusObject);
+    return gBusObjectMap[(uint32_t)hash % BUS_OBJECT_MAP_SHARDS];
+}
+
+/**
+ * Find the entry of a Java Bus Object in a shard of the global bus object
+ * map.  Must be called with the lock of the shard held.
+ *
+ * @return The entry, or shard.entries.end() if there is none.
+ */
+static BusObjectShardMap::iterator FindBusObjectMapEntry(JNIEnv* env, BusObjectMapShard& shard, jint hash, jobject jbusObject)
+{
+    pair<BusObjectShardMap::iterator, BusObjectShardMap::iterator> range = shard.entries.equal_range(hash);
+    for (BusObjectShardMap::iterator i = range.first; i != range.second; ++i) {
+        if (env->IsSameObject(jbusObject, i->second.jbusObject)) {
+            return i;
+        }
+    }
+    return shard.entries.end();
+}
+
 /**
  * This function takes a Java Bus Object and a newly created C++ backing
  * object and creates an entry in a global structure to establish the
@@ -1888,24 +2299,34 @@ Mutex gBusObjectMapLock;
  * backing object exists, and if not create a backing object and call this
  * function to establish the relationship.
  *
- * Note that the lock on the underlying map is not taken in this and other
- * associated functions.  This is because, in most cases, atomicity must be
- * ensured across several calls that access the underlying map.  Therefore it is
- * the responsibility of the calling code to acquire the lock (i.e. call
- * gBusObjectMapLock.Lock) before calling any of the functions which access the
+ * Note that the global lock on the underlying map is not taken in this and
+ * other associated functions.  This is because, in most cases, atomicity must
+ * be ensured across several calls that access the underlying map.  Therefore
+ * it is the responsibility of the calling code to acquire the lock (i.e. call
+ * gBusObjectMapLock.Lock) before calling any of the functions which change the
  * gBusObjectMap.
  */
 void NewRefBackingObject(jobject javaObject, JBusObject* cppObject)
 {
     QCC_DbgPrintf(("NewRefBackingObject(%p, %p)", javaObject, cppObject));
 
-    map<jobject, pair<uint32_t, JBusObject*> >::iterator i = gBusObjectMap.find(javaObject);
-    if (i != gBusObjectMap.end()) {
+    JNIEnv* env = GetEnv();
+    jint hash;
+    BusObjectMapShard& shard = GetBusObjectMapShard(env, javaObject, hash);
+
+    shard.lock.Lock();
+    if (FindBusObjectMapEntry(env, shard, hash, javaObject) != shard.entries.end()) {
+        shard.lock.Unlock();
         QCC_LogError(ER_FAIL, ("NewRefBackingObject(): Mapping already established for Bus Object %p", javaObject));
         return;
     }
 
-    gBusObjectMap[javaObject] = make_pair((uint32_t)1, (JBusObject*)cppObject);
+    BusObjectMapEntry entry;
+    entry.jbusObject = javaObject;
+    entry.refCount = 1;
+    entry.cppObject = cppObject;
+    shard.entries.insert(make_pair(hash, entry));
+    shard.lock.Unlock();
 }
 
 /**
@@ -1932,11 +2353,11 @@ void NewRefBackingObject(jobject javaObject, JBusObject* cppObject)
  * backing object exists, and if so call this function to increment the reference
  * count on the C++ object.
  *
- * Note that the lock on the underlying map is not taken in this and other
- * associated functions.  This is because, in most cases, atomicity must be
- * ensured across several calls that access the underlying map.  Therefore it is
- * the responsibility of the calling code to acquire the lock (i.e. call
- * gBusObjectMapLock.Lock) before calling any of the functions which access the
+ * Note that the global lock on the underlying map is not taken in this and
+ * other associated functions.  This is because, in most cases, atomicity must
+ * be ensured across several calls that access the underlying map.  Therefore
+ * it is the responsibility of the calling code to acquire the lock (i.e. call
+ * gBusObjectMapLock.Lock) before calling any of the functions which change the
  * gBusObjectMap.
  */
 void IncRefBackingObject(jobject javaObject)
@@ -1944,16 +2365,18 @@ void IncRefBackingObject(jobject javaObject)
     QCC_DbgPrintf(("IncRefBackingObject()"));
 
     JNIEnv* env = GetEnv();
+    jint hash;
+    BusObjectMapShard& shard = GetBusObjectMapShard(env, javaObject, hash);
 
-    for (map<jobject, pair<uint32_t, JBusObject*> >::iterator i = gBusObjectMap.begin(); i != gBusObjectMap.end(); ++i) {
-        if (env->IsSameObject(javaObject, i->first)) {
-            QCC_DbgPrintf(("IncRefBackingObject(): Found mapping for Java Bus Object %p.", javaObject));
-            uint32_t refCount = i->second.first + 1;
-            JBusObject* cppObject = i->second.second;
-            gBusObjectMap[javaObject] = make_pair((uint32_t)refCount, (JBusObject*) cppObject);
-            return;
-        }
+    shard.lock.Lock();
+    BusObjectShardMap::iterator i = FindBusObjectMapEntry(env, shard, hash, javaObject);
+    if (i != shard.entries.end()) {
+        QCC_DbgPrintf(("IncRefBackingObject(): Found mapping for Java Bus Object %p.", javaObject));
+        ++i->second.refCount;
+        shard.lock.Unlock();
+        return;
     }
+    shard.lock.Unlock();
 
     QCC_LogError(ER_FAIL, ("IncRefBackingObject(): No mapping exists for Java Bus Object %p", javaObject));
 }
@@ -1983,13 +2406,13 @@ void IncRefBackingObject(jobject javaObject)
  * Whenever an unregisterBusObject call is made, we expect the caller to release
  * the Java global reference to the Java Bus Object and decrement the reference
  * count to the corresponding C++ object by calling this function.  If we return
- * a non-zero pointer, the caller must delete the JBusObject returned.
+ * a non-zero pointer, the caller must release the JBusObject returned.
  *
- * Note that the lock on the underlying map is not taken in this and other
- * associated functions.  This is because, in most cases, atomicity must be
- * ensured across several calls that access the underlying map.  Therefore it is
- * the responsibility of the calling code to acquire the lock (i.e. call
- * gBusObjectMapLock.Lock) before calling any of the functions which access the
+ * Note that the global lock on the underlying map is not taken in this and
+ * other associated functions.  This is because, in most cases, atomicity must
+ * be ensured across several calls that access the underlying map.  Therefore
+ * it is the responsibility of the calling code to acquire the lock (i.e. call
+ * gBusObjectMapLock.Lock) before calling any of the functions which change the
  * gBusObjectMap.
  */
 JBusObject* DecRefBackingObject(jobject javaObject)
@@ -1997,24 +2420,25 @@ JBusObject* DecRefBackingObject(jobject javaObject)
     QCC_DbgPrintf(("DecRefBackingObject(%p)", javaObject));
 
     JNIEnv* env = GetEnv();
-
-    for (map<jobject, pair<uint32_t, JBusObject*> >::iterator i = gBusObjectMap.begin(); i != gBusObjectMap.end(); ++i) {
-        QCC_DbgPrintf(("DecRefBackingObject(%p): trying %p", javaObject, i->first));
-        if (env->IsSameObject(javaObject, i->first)) {
-            QCC_DbgPrintf(("IncRefBackingObject(): Found mapping for Java Bus Object %p.", javaObject));
-            JBusObject* cppObject = i->second.second;
-            uint32_t refCount = i->second.first - 1;
-            if (refCount) {
-                QCC_DbgPrintf(("DecRefBackingObject(): More references to %p.", javaObject));
-                gBusObjectMap[javaObject] = make_pair((uint32_t)refCount, (JBusObject*)cppObject);
-                cppObject = NULL;
-            } else {
-                QCC_DbgPrintf(("DecRefBackingObject(): Last reference to %p.", javaObject));
-                gBusObjectMap.erase(i);
-            }
-            return cppObject;
+    jint hash;
+    BusObjectMapShard& shard = GetBusObjectMapShard(env, javaObject, hash);
+
+    shard.lock.Lock();
+    BusObjectShardMap::iterator i = FindBusObjectMapEntry(env, shard, hash, javaObject);
+    if (i != shard.entries.end()) {
+        QCC_DbgPrintf(("DecRefBackingObject(): Found mapping for Java Bus Object %p.", javaObject));
+        JBusObject* cppObject = i->second.cppObject;
+        if (--i->second.refCount) {
+            QCC_DbgPrintf(("DecRefBackingObject(): More references to %p.", javaObject));
+            cppObject = NULL;
+        } else {
+            QCC_DbgPrintf(("DecRefBackingObject(): Last reference to %p.", javaObject));
+            shard.entries.erase(i);
         }
+        shard.lock.Unlock();
+        return cppObject;
     }
+    shard.lock.Unlock();
 
     QCC_LogError(ER_FAIL, ("DecRefBackingObject(): No mapping exists for Java Bus Object %p", javaObject));
     return NULL;
@@ -2025,28 +2449,67 @@ JBusObject* DecRefBackingObject(jobject javaObject)
  * object with a bus attachment; return the corresponding C++ object that
  * hooks it to the AllJoyn system.
  *
- * Note that the lock on the underlying map is not taken in this and other
- * associated functions.  This is because, in most cases, atomicity must be
- * ensured across several calls that access the underlying map.  Therefore it is
- * the responsibility of the calling code to acquire the lock (i.e. call
- * gBusObjectMapLock.Lock) before calling any of the functions which access the
- * gBusObjectMap.
+ * The object returned is only valid while the caller holds the global lock on
+ * the underlying map (i.e. has called gBusObjectMapLock.Lock), which keeps it
+ * from being unregistered.  Code that does not hold that lock must use
+ * AcquireBackingObject instead.
  */
 JBusObject* GetBackingObject(jobject jbusObject)
 {
     QCC_DbgPrintf(("GetBackingObject(%p)", jbusObject));
 
     JNIEnv* env = GetEnv();
+    jint hash;
+    BusObjectMapShard& shard = GetBusObjectMapShard(env, jbusObject, hash);
 
-    for (map<jobject, pair<uint32_t, JBusObject*> >::iterator i = gBusObjectMap.begin(); i != gBusObjectMap.end(); ++i) {
-        if (env->IsSameObject(jbusObject, i->first)) {
-            QCC_DbgPrintf(("GetBackingObject(): Found mapping for Java Bus Object %p.", jbusObject));
-            return i->second.second;
-        }
+    shard.lock.Lock();
+    BusObjectShardMap::iterator i = FindBusObjectMapEntry(env, shard, hash, jbusObject);
+    JBusObject* cppObject = (i != shard.entries.end()) ? i->second.cppObject : NULL;
+    shard.lock.Unlock();
+
+    if (cppObject) {
+        QCC_DbgPrintf(("GetBackingObject(): Found mapping for Java Bus Object %p.", jbusObject));
+    } else {
+        QCC_DbgPrintf(("GetBackingObject(): No mapping exists for Java Bus Object %p.", jbusObject));
     }
+    return cppObject;
+}
 
-    QCC_DbgPrintf(("GetBackingObject(): No mapping exists for Java Bus Object %p.", jbusObject));
-    return NULL;
+/**
+ * Given a Java object that someone is claiming has been registered as a bus
+ * object with a bus attachment; return the corresponding C++ object with a
+ * new reference taken on it, without the global lock on the underlying map.
+ *
+ * The lock of the shard holding the bus object is held on return whether or
+ * not the object was found, so that the caller can do whatever else needs to
+ * be consistent with the map (see GetSignalMember) before releasing it with
+ * shard.lock.Unlock().  The caller must release the reference with DecRef()
+ * when it is done with the object, which may be after the object has been
+ * unregistered.
+ *
+ * @param env The environment pointer.
+ * @param jbusObject The Java Bus Object.
+ * @param shard Returns the shard of the map holding the bus object, locked.
+ *
+ * @return The backing object, or NULL if the Java object is not registered.
+ */
+static JBusObject* AcquireBackingObject(JNIEnv* env, jobject jbusObject, BusObjectMapShard*& shard)
+{
+    QCC_DbgPrintf(("AcquireBackingObject(%p)", jbusObject));
+
+    jint hash;
+    shard = &GetBusObjectMapShard(env, jbusObject, hash);
+
+    shard->lock.Lock();
+    BusObjectShardMap::iterator i = FindBusObjectMapEntry(env, *shard, hash, jbusObject);
+    if (i == shard->entries.end()) {
+        QCC_DbgPrintf(("AcquireBackingObject(): No mapping exists for Java Bus Object %p.", jbusObject));
+        return NULL;
+    }
+
+    JBusObject* cppObject = i->second.cppObject;
+    cppObject->IncRef();
+    return cppObject;
 }
 
 /**
@@ -2059,16 +2522,20 @@ jobject GetGlobalRefForObject(jobject jbusObject)
     QCC_DbgPrintf(("GetGlobalRefForObject(%p)", jbusObject));
 
     JNIEnv* env = GetEnv();
+    jint hash;
+    BusObjectMapShard& shard = GetBusObjectMapShard(env, jbusObject, hash);
 
-    for (map<jobject, pair<uint32_t, JBusObject*> >::iterator i = gBusObjectMap.begin(); i != gBusObjectMap.end(); ++i) {
-        if (env->IsSameObject(jbusObject, i->first)) {
-            QCC_DbgPrintf(("GetBackingObject(): Found global reference for Java Bus Object %p.", jbusObject));
-            return i->first;
-        }
-    }
+    shard.lock.Lock();
+    BusObjectShardMap::iterator i = FindBusObjectMapEntry(env, shard, hash, jbusObject);
+    jobject jglobalref = (i != shard.entries.end()) ? i->second.jbusObject : NULL;
+    shard.lock.Unlock();
 
-    QCC_DbgPrintf(("GetBackingObject(): No mapping exists for Java Bus Object %p.", jbusObject));
-    return NULL;
+    if (jglobalref) {
+        QCC_DbgPrintf(("GetGlobalRefForObject(): Found global reference for Java Bus Object %p.", jbusObject));
+    } else {
+        QCC_DbgPrintf(("GetGlobalRefForObject(): No mapping exists for Java Bus Object %p.", jbusObject));
+    }
+    return jglobalref;
 }
 
 /**
@@ -2084,22 +2551,46 @@ class JProxyBusObject : public ProxyBusObject {
     JProxyBusObject& operator =(const JProxyBusObject& other);
 };
 
+/**
+ * One argument condition of a signal handler rule: either argN='value', which
+ * matches a string argument equal to the value, or argNpath='value', which
+ * matches a string or object path argument in the namespace of the value as
+ * described by the D-Bus specification.
+ */
+struct ArgMatch {
+    size_t index;
+    bool path;
+    String value;
+};
+
 class JSignalHandler : public MessageReceiver {
   public:
-    JSignalHandler(jobject jobj, jobject jmethod);
+    JSignalHandler(jobject jobj, jobject jmethod, jobject jqueue);
     ~JSignalHandler();
     bool IsSameObject(jobject jobj, jobject jmethod);
+    QStatus SetRule(const char* rule);
     QStatus Register(BusAttachment& bus, const char* ifaceName, const char* signalName, const char* srcPath);
     void Unregister(BusAttachment& bus);
     void SignalHandler(const InterfaceDescription::Member* member, const char* sourcePath, Message& msg);
+
+    /**
+     * The match rule added to the daemon on behalf of this signal handler,
+     * empty if there is none.
+     */
+    String matchRule;
+
   private:
     JSignalHandler(const JSignalHandler& other);
     JSignalHandler& operator =(const JSignalHandler& other);
 
+    bool Matches(Message& msg);
+
     jweak jsignalHandler;
     jobject jmethod;
+    jobject jqueue;
     const InterfaceDescription::Member* member;
     String source;
+    vector<ArgMatch> argMatches;
 };
 
 /**
@@ -2110,48 +2601,73 @@ class JSignalHandler : public MessageReceiver {
  * some gyrations here to keep the Message info straight, and we do have some
  * additional API with respect to the C++ version.
  *
- * TODO:
- * Message map is a global.  Why?
+ * The context of the message being handled is kept in thread-local storage so
+ * that callback threads do not contend with each other to set it up.  A
+ * context saves the one it replaces and restores it on destruction, so
+ * contexts may nest on a thread.
  */
 class MessageContext {
   public:
-    static Message GetMessage();
+    static const Message* GetMessage();
     MessageContext(const Message& msg);
     ~MessageContext();
   private:
     MessageContext(const MessageContext& other);
     MessageContext& operator =(const MessageContext& other);
+
+    const Message& msg;
+    MessageContext* prev;
 };
 
-map<Thread*, Message> gMessageMap;
-Mutex gMessageMapLock;
+#if defined(QCC_OS_GROUP_WINDOWS)
+static DWORD gMessageContextKey = TLS_OUT_OF_INDEXES;
+
+static MessageContext* GetCurrentMessageContext()
+{
+    return static_cast<MessageContext*>(TlsGetValue(gMessageContextKey));
+}
+
+static void SetCurrentMessageContext(MessageContext* context)
+{
+    TlsSetValue(gMessageContextKey, context);
+}
+#else
+static pthread_key_t gMessageContextKey;
+
+static MessageContext* GetCurrentMessageContext()
+{
+    return static_cast<MessageContext*>(pthread_getspecific(gMessageContextKey));
+}
+
+static void SetCurrentMessageContext(MessageContext* context)
+{
+    pthread_setspecific(gMessageContextKey, context);
+}
+#endif
 
-Message MessageContext::GetMessage()
+/**
+ * Get the message being handled by the calling thread.
+ *
+ * @return the message, or NULL if the thread is not handling a message.
+ */
+const Message* MessageContext::GetMessage()
 {
     QCC_DbgPrintf(("MessageContext::GetMessage()"));
-    gMessageMapLock.Lock();
-    map<Thread*, Message>::iterator it = gMessageMap.find(Thread::GetThread());
-    assert(gMessageMap.end() != it);
-    Message m = it->second;
-    gMessageMapLock.Unlock();
-    return m;
+    MessageContext* context = GetCurrentMessageContext();
+    return context ? &context->msg : NULL;
 }
 
 MessageContext::MessageContext(const Message& msg)
+    : msg(msg), prev(GetCurrentMessageContext())
 {
     QCC_DbgPrintf(("MessageContext::MessageContext()"));
-    gMessageMapLock.Lock();
-    gMessageMap.insert(pair<Thread*, Message>(Thread::GetThread(), msg));
-    gMessageMapLock.Unlock();
+    SetCurrentMessageContext(this);
 }
 
 MessageContext::~MessageContext()
 {
     QCC_DbgPrintf(("MessageContext::~MessageContext()"));
-    gMessageMapLock.Lock();
-    map<Thread*, Message>::iterator it = gMessageMap.find(Thread::GetThread());
-    gMessageMap.erase(it);
-    gMessageMapLock.Unlock();
+    SetCurrentMessageContext(prev);
 }
 
 /**
@@ -4355,7 +4871,7 @@ void JBusAttachment::ForgetLocalBusObject(jobject jbusObject)
 }
 
 QStatus JBusAttachment::RegisterBusObject(const char* objPath, jobject jbusObject,
-                                          jobjectArray jbusInterfaces, jboolean jsecure)
+                                          jobjectArray jbusInterfaces, jboolean jsecure, jobject jdispatcher)
 {
     QCC_DbgPrintf(("JBusAttachment::RegisterBusObject(%p)", jbusObject));
 
@@ -4436,10 +4952,10 @@ QStatus JBusAttachment::RegisterBusObject(const char* objPath, jobject jbusObjec
         gBusObjectMapLock.Unlock();
         return ER_BUS_OBJ_ALREADY_EXISTS;
     } else {
-        busObject = new JBusObject(this, objPath, jglobalref);
+        busObject = new JBusObject(this, objPath, jglobalref, jdispatcher);
         busObject->AddInterfaces(jbusInterfaces);
         if (env->ExceptionCheck()) {
-            delete busObject;
+            busObject->DecRef();
             QCC_DbgPrintf(("JBusAttachment::RegisterBusObject(): Releasing Bus Attachment common lock"));
             baCommonLock.Unlock();
 
@@ -4468,7 +4984,7 @@ QStatus JBusAttachment::RegisterBusObject(const char* objPath, jobject jbusObjec
         QCC_DbgPrintf(("JBusAttachment::RegisterBusObject(): RegisterBusObject fails.  DecRefBackingObject on %p", jbusObject));
         JBusObject* cppObject = DecRefBackingObject(jglobalref);
         if (cppObject) {
-            delete cppObject;
+            cppObject->DecRef();
             cppObject = NULL;
         }
 
@@ -4571,7 +5087,7 @@ void JBusAttachment::UnregisterBusObject(jobject jbusObject)
          * about.
          */
         assert(cppObjectToDelete == cppObject);
-        delete cppObject;
+        cppObject->DecRef();
         cppObject = NULL;
     }
 
@@ -4603,69 +5119,130 @@ void JBusAttachment::UnregisterBusObject(jobject jbusObject)
     return;
 }
 
-QStatus JBusAttachment::RegisterSignalHandler(const char* ifaceName, const char* signalName,
-                                              jobject jsignalHandler, jobject jmethod, const char* srcPath)
+/**
+ * Compute the key of a signal handler in JBusAttachment::signalHandlers from
+ * the identity of the Java handler object and the hash code of its method,
+ * which is consistent with Method.equals.
+ */
+static jint SignalHandlerKey(JNIEnv* env, jobject jsignalHandler, jobject jmethod)
 {
-    QCC_DbgPrintf(("JBusAttachment::RegisterSignalHandler(): Taking Bus Attachment common lock"));
-    baCommonLock.Lock();
+    jint objectHash = env->CallStaticIntMethod(CLS_System, MID_System_identityHashCode, jsignalHandler);
+    jint methodHash = env->CallIntMethod(jmethod, MID_Object_hashCode);
+    /* Signed overflow is undefined, so combine the hashes as unsigned values. */
+    return (jint)((uint32_t)objectHash * 31u + (uint32_t)methodHash);
+}
 
-    /*
-     * Whenever we get an object from the outside world that we are going to
-     * wire together with a C++ object, we take a strong global reference to it.
-     * We also get a method here but we assume that since the method refers to
-     * an annotation of a method in the provided object it will stay around if
-     * we put a hold on the object.
-     */
+QStatus JBusAttachment::RegisterSignalHandler(const char* ifaceName, const char* signalName,
+                                              jobject jsignalHandler, jobject jmethod, const char* srcPath,
+                                              const char* rule, bool addMatch, jobject jqueue)
+{
     JNIEnv* env = GetEnv();
-    jobject jglobalref = env->NewGlobalRef(jsignalHandler);
-    if (!jglobalref) {
-        QCC_DbgPrintf(("JBusAttachment::RegisterSignalHandler(): Releasing Bus Attachment common lock"));
-        baCommonLock.Unlock();
+    jint key = SignalHandlerKey(env, jsignalHandler, jmethod);
+    if (env->ExceptionCheck()) {
         return ER_FAIL;
     }
 
     /*
      * Create the C++ object that backs the Java signal handler object.
      */
-    JSignalHandler* signalHandler = new JSignalHandler(jsignalHandler, jmethod);
+    JSignalHandler* signalHandler = new JSignalHandler(jsignalHandler, jmethod, jqueue);
     if (signalHandler == NULL) {
         Throw("java/lang/OutOfMemoryError", NULL);
         return ER_FAIL;
     }
 
-    /*
-     * Wire the C++ signal handler to the Java signal handler and if the
-     * operation was successful, remember both the Java object and the C++
-     * object.  If it didn't work then we might as well forget them both.
-     */
-    QStatus status = signalHandler->Register(*this, ifaceName, signalName, srcPath);
-    if (ER_OK == status) {
-        signalHandlers.push_back(make_pair(jglobalref, signalHandler));
-    } else {
+    QStatus status = signalHandler->SetRule(rule);
+    if (ER_OK != status) {
+        QCC_LogError(status, ("JBusAttachment::RegisterSignalHandler(): Bad rule \"%s\"", rule));
         delete signalHandler;
-        QCC_DbgPrintf(("JBusAttachment::RegisterBusObject(): Forgetting jglobalref"));
-        env->DeleteGlobalRef(jglobalref);
+        return status;
     }
 
-    QCC_DbgPrintf(("JBusAttachment::RegisterSignalHandler(): Releasing Bus Attachment common lock"));
-    baCommonLock.Unlock();
+    /*
+     * Ask the daemon to drop the signals that do not match the rule before
+     * they are routed to us.  AddMatch is a method call to the daemon so it
+     * is made without holding the common lock.
+     */
+    if (addMatch && rule && rule[0]) {
+        String matchRule = String("type='signal',interface='") + ifaceName + "',member='" + signalName + "'";
+        if (srcPath) {
+            matchRule += String(",path='") + srcPath + "'";
+        }
+        matchRule += String(",") + rule;
+        status = AddMatch(matchRule.c_str());
+        if (ER_OK != status) {
+            QCC_LogError(status, ("JBusAttachment::RegisterSignalHandler(): AddMatch(%s) fails", matchRule.c_str()));
+            delete signalHandler;
+            return status;
+        }
+        signalHandler->matchRule = matchRule;
+    }
+
+    QCC_DbgPrintf(("JBusAttachment::RegisterSignalHandler(): Taking Bus Attachment common lock"));
+    baCommonLock.Lock();
+
+    /*
+     * Whenever we get an object from the outside world that we are going to
+     * wire together with a C++ object, we take a strong global reference to it.
+     * We also get a method here but we assume that since the method refers to
+     * an annotation of a method in the provided object it will stay around if
+     * we put a hold on the object.
+     */
+    jobject jglobalref = env->NewGlobalRef(jsignalHandler);
+    if (!jglobalref) {
+        QCC_DbgPrintf(("JBusAttachment::RegisterSignalHandler(): Releasing Bus Attachment common lock"));
+        baCommonLock.Unlock();
+        status = ER_FAIL;
+    } else {
+        /*
+         * Wire the C++ signal handler to the Java signal handler and if the
+         * operation was successful, remember both the Java object and the C++
+         * object.  If it didn't work then we might as well forget them both.
+         */
+        status = signalHandler->Register(*this, ifaceName, signalName, srcPath);
+        if (ER_OK == status) {
+            signalHandlers.insert(make_pair(key, make_pair(jglobalref, signalHandler)));
+        } else {
+            QCC_DbgPrintf(("JBusAttachment::RegisterBusObject(): Forgetting jglobalref"));
+            env->DeleteGlobalRef(jglobalref);
+        }
+
+        QCC_DbgPrintf(("JBusAttachment::RegisterSignalHandler(): Releasing Bus Attachment common lock"));
+        baCommonLock.Unlock();
+    }
+
+    if (ER_OK != status) {
+        if (!signalHandler->matchRule.empty()) {
+            RemoveMatch(signalHandler->matchRule.c_str());
+        }
+        delete signalHandler;
+    }
 
     return status;
 }
 
 void JBusAttachment::UnregisterSignalHandler(jobject jsignalHandler, jobject jmethod)
 {
+    JNIEnv* env = GetEnv();
+    jint key = SignalHandlerKey(env, jsignalHandler, jmethod);
+    if (env->ExceptionCheck()) {
+        return;
+    }
+
     QCC_DbgPrintf(("JBusAttachment::UnregisterSignalHandler(): Taking Bus Attachment common lock"));
     baCommonLock.Lock();
 
-    JNIEnv* env = GetEnv();
-
-    for (vector<pair<jobject, JSignalHandler*> >::iterator i = signalHandlers.begin(); i != signalHandlers.end(); ++i) {
-        if (i->second->IsSameObject(jsignalHandler, jmethod)) {
-            i->second->Unregister(*this);
-            delete (i->second);
-            QCC_DbgPrintf(("JBusAttachment::UnregisterSignalHandler(): Forgetting %p", i->first));
-            env->DeleteGlobalRef(i->first);
+    String matchRule;
+
+    typedef multimap<jint, pair<jobject, JSignalHandler*> >::iterator Iterator;
+    pair<Iterator, Iterator> range = signalHandlers.equal_range(key);
+    for (Iterator i = range.first; i != range.second; ++i) {
+        if (i->second.second->IsSameObject(jsignalHandler, jmethod)) {
+            i->second.second->Unregister(*this);
+            matchRule = i->second.second->matchRule;
+            delete (i->second.second);
+            QCC_DbgPrintf(("JBusAttachment::UnregisterSignalHandler(): Forgetting %p", i->second.first));
+            env->DeleteGlobalRef(i->second.first);
             signalHandlers.erase(i);
             break;
         }
@@ -4673,6 +5250,13 @@ void JBusAttachment::UnregisterSignalHandler(jobject jsignalHandler, jobject jme
 
     QCC_DbgPrintf(("JBusAttachment::UnregisterSignalHandler(): Releasing Bus Attachment common lock"));
     baCommonLock.Unlock();
+
+    if (!matchRule.empty()) {
+        QStatus status = RemoveMatch(matchRule.c_str());
+        if (ER_OK != status) {
+            QCC_LogError(status, ("JBusAttachment::UnregisterSignalHandler(): RemoveMatch(%s) fails", matchRule.c_str()));
+        }
+    }
 }
 
 /**
@@ -4761,13 +5345,15 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_emitChangedSignal(
         return;
     }
 
-    //ScopedMutexLock guard(gBusObjectMapLock);
-    gBusObjectMapLock.Lock();
-    JBusObject* busObject = GetBackingObject(jbusObject);
+    /*
+     * See SignalEmitter_signal for why a reference to the backing object is
+     * held while the value is marshalled and the signal is sent.
+     */
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    shard->lock.Unlock();
 
     if (!busObject) {
-        QCC_DbgPrintf(("BusAttachment_emitChangedSignal(): Releasing global Bus Object map lock"));
-        gBusObjectMapLock.Unlock();
         QCC_LogError(ER_FAIL, ("BusAttachment_emitChangedSignal(): Exception"));
         env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
         return;
@@ -4776,21 +5362,170 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_emitChangedSignal(
     MsgArg* arg = NULL;
     MsgArg value;
 
+    const BusAttachment& bus = busObject->GetBusAttachment();
+    const InterfaceDescription* iface = bus.GetInterface(ifaceName.c_str());
+    const InterfaceDescription::Property* prop = iface ? iface->GetProperty(propName.c_str()) : NULL;
     if (jpropValue) {
-        const BusAttachment& bus = busObject->GetBusAttachment();
-        const InterfaceDescription* iface = bus.GetInterface(ifaceName.c_str());
-        assert(iface);
-        const InterfaceDescription::Property* prop = iface->GetProperty(propName.c_str());
         assert(prop);
         arg = Marshal(prop->signature.c_str(), jpropValue, &value);
     }
 
-    if (busObject) {
-        busObject->EmitPropChanged(ifaceName.c_str(), propName.c_str(), (arg ? *arg : value), sessionId);
+    /*
+     * The announced value becomes the cached value of a cached property, and
+     * announcing no value discards the cached one.
+     */
+    if (prop) {
+        busObject->CacheProperty(prop, arg);
     }
 
-    gBusObjectMapLock.Unlock();
-    QCC_DbgPrintf(("BusAttachment_emitChangedSignal(): Releasing global Bus Object map lock"));
+    busObject->EmitPropChanged(ifaceName.c_str(), propName.c_str(), (arg ? *arg : value), sessionId);
+    busObject->DecRef();
+}
+
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_invalidateCachedProperty(
+    JNIEnv* env, jobject thiz, jobject jbusObject, jstring jifaceName, jstring jpropName)
+{
+    QCC_DbgPrintf(("BusAttachment_invalidateCachedProperty()"));
+
+    JString ifaceName(jifaceName);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("BusAttachment_invalidateCachedProperty(): Exception"));
+        return NULL;
+    }
+
+    JString propName(jpropName);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("BusAttachment_invalidateCachedProperty(): Exception"));
+        return NULL;
+    }
+
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    shard->lock.Unlock();
+
+    if (!busObject) {
+        return JStatus(ER_BUS_NO_SUCH_OBJECT);
+    }
+
+    QStatus status = ER_OK;
+    const InterfaceDescription* iface = busObject->GetBusAttachment().GetInterface(ifaceName.c_str());
+    if (iface) {
+        busObject->InvalidateCachedProperties(iface, propName.c_str());
+    } else {
+        status = ER_BUS_NO_SUCH_INTERFACE;
+    }
+
+    busObject->DecRef();
+    return JStatus(status);
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_emitChangedSignals(
+    JNIEnv* env, jobject thiz, jobject jbusObject, jstring jifaceName, jobjectArray jpropNames, jobjectArray jpropValues,
+    jint sessionId)
+{
+    QCC_DbgPrintf(("BusAttachment_emitChangedSignals()"));
+
+    JString ifaceName(jifaceName);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("BusAttachment_emitChangedSignals(): Exception"));
+        return;
+    }
+
+    /*
+     * See SignalEmitter_signal for why a reference to the backing object is
+     * held while the values are marshalled and the signal is sent.
+     */
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    shard->lock.Unlock();
+
+    if (!busObject) {
+        QCC_LogError(ER_FAIL, ("BusAttachment_emitChangedSignals(): Exception"));
+        env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
+        return;
+    }
+
+    const BusAttachment& bus = busObject->GetBusAttachment();
+    const InterfaceDescription* iface = bus.GetInterface(ifaceName.c_str());
+    const InterfaceDescription* propsIface = bus.GetInterface(org::freedesktop::DBus::Properties::InterfaceName);
+    const InterfaceDescription::Member* propsChanged = propsIface ? propsIface->GetMember("PropertiesChanged") : NULL;
+    if (!iface || !propsChanged) {
+        busObject->DecRef();
+        QCC_LogError(ER_BUS_NO_SUCH_INTERFACE, ("BusAttachment_emitChangedSignals(): No interface %s", ifaceName.c_str()));
+        env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_INTERFACE));
+        return;
+    }
+
+    /*
+     * Sort the properties into the changed and invalidated lists the way
+     * BusObject::EmitPropChanged does for a single property: by the
+     * EmitsChangedSignal annotation of each property, with a null value
+     * only ever invalidating it.
+     */
+    jsize count = env->GetArrayLength(jpropNames);
+    vector<String> names(count);
+    MsgArg* values = new MsgArg[count];
+    MsgArg* changed = new MsgArg[count];
+    const char** invalidated = new const char*[count];
+    size_t numChanged = 0;
+    size_t numInvalidated = 0;
+    QStatus status = ER_OK;
+
+    for (jsize i = 0; i < count && ER_OK == status; ++i) {
+        JLocalRef<jstring> jpropName = (jstring)env->GetObjectArrayElement(jpropNames, i);
+        JString propName(jpropName);
+        if (env->ExceptionCheck()) {
+            status = ER_FAIL;
+            break;
+        }
+        names[i] = propName.c_str();
+
+        const InterfaceDescription::Property* prop = iface->GetProperty(names[i].c_str());
+        if (!prop) {
+            status = ER_BUS_NO_SUCH_PROPERTY;
+            break;
+        }
+
+        String emits;
+        prop->GetAnnotation(org::freedesktop::DBus::AnnotateEmitsChanged, emits);
+        JLocalRef<jobject> jpropValue = env->GetObjectArrayElement(jpropValues, i);
+        MsgArg* arg = NULL;
+        if (jpropValue) {
+            arg = Marshal(prop->signature.c_str(), jpropValue, &values[i]);
+            if (!arg) {
+                status = ER_BUS_BAD_VALUE;
+                break;
+            }
+        }
+        busObject->CacheProperty(prop, arg);
+
+        if (emits == "true" && arg) {
+            changed[numChanged++].Set("{sv}", names[i].c_str(), arg);
+        } else if (emits == "true" || emits == "invalidates") {
+            invalidated[numInvalidated++] = names[i].c_str();
+        }
+    }
+
+    if (ER_OK == status && (numChanged || numInvalidated)) {
+        MsgArg args[3];
+        args[0].Set("s", ifaceName.c_str());
+        args[1].Set("a{sv}", numChanged, changed);
+        args[2].Set("as", numInvalidated, invalidated);
+        Message msg(const_cast<BusAttachment&>(bus));
+        status = busObject->Signal(NULL, sessionId, *propsChanged, args, 3, 0, 0, msg);
+    }
+
+    busObject->DecRef();
+    delete [] values;
+    delete [] changed;
+    delete [] invalidated;
+
+    if (ER_OK != status) {
+        QCC_LogError(status, ("BusAttachment_emitChangedSignals(): Failed"));
+        if (!env->ExceptionCheck()) {
+            env->ThrowNew(CLS_BusException, QCC_StatusText(status));
+        }
+    }
 }
 
 
@@ -4872,7 +5607,7 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_destroy(JNIEnv* env,
         JBusObject* cppObject = DecRefBackingObject(*i);
         if (cppObject) {
             QCC_DbgPrintf(("BusAttachment_destroy(): deleting cppObject %p", cppObject));
-            delete cppObject;
+            cppObject->DecRef();
             cppObject = NULL;
         }
 
@@ -4922,7 +5657,7 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_destroy(JNIEnv* env,
  *             "this" pointer in C++.
  * @param listener  Object instance that will receive bus event notifications.
  */
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusListener(JNIEnv* env, jobject thiz, jobject jlistener)
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusListenerNative(JNIEnv* env, jobject thiz, jobject jlistener)
 {
     QCC_DbgPrintf(("BusAttachment_registerBusListener()"));
 
@@ -4979,7 +5714,7 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusListener(JN
  *             "this" pointer in C++.
  * @param listener  Object instance that will receive bus event notifications.
  */
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusListener(JNIEnv* env, jobject thiz, jobject jlistener)
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusListenerNative(JNIEnv* env, jobject thiz, jobject jlistener)
 {
     QCC_DbgPrintf(("BusAttachment_unregisterBusListener()"));
 
@@ -5592,7 +6327,7 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_cancelFindAdvertise
  *                     successfully join the session.
  * @param jsessionPortListener  Called by the bus when session related events occur.
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_bindSessionPort(JNIEnv* env, jobject thiz,
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_bindSessionPortNative(JNIEnv* env, jobject thiz,
                                                                              jobject jsessionPort, jobject jsessionOpts,
                                                                              jobject jlistener)
 {
@@ -5908,7 +6643,7 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_SessionPortListener_destroy(JNIEnv*
  *                     successfully join the session.
  * @param jlistener Java listener object called when session related events occur.
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_joinSession(JNIEnv* env, jobject thiz,
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_joinSessionNative(JNIEnv* env, jobject thiz,
                                                                          jstring jsessionHost,
                                                                          jshort jsessionPort,
                                                                          jobject jsessionId,
@@ -6260,7 +6995,7 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_removeSessionMember
  *                     successfully join the session.
  * @param jlistener Called by the bus when session related events occur.
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_setSessionListener(JNIEnv* env, jobject thiz,
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_setSessionListenerNative(JNIEnv* env, jobject thiz,
                                                                                 jint jsessionId, jobject jlistener)
 {
     QCC_DbgPrintf(("BusAttachment_setSessionListener()"));
@@ -6992,6 +7727,327 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_getSessionFd(JNIEnv
     return JStatus(status);
 }
 
+/*
+ * RawSessionChannel.  The socket of a raw session is read and written with
+ * the POSIX calls directly, so that NIO buffers can be used without going
+ * through java.io streams.
+ */
+
+/**
+ * Throw an IOException describing an errno value.
+ */
+static void ThrowIOException(JNIEnv* env, int err)
+{
+    JLocalRef<jclass> clazz = env->FindClass("java/io/IOException");
+    if (clazz) {
+#if defined(QCC_OS_GROUP_WINDOWS)
+        env->ThrowNew(clazz, "raw session sockets are not supported on this platform");
+#else
+        env->ThrowNew(clazz, strerror(err));
+#endif
+    }
+}
+
+#if defined(QCC_OS_GROUP_POSIX)
+#ifndef MSG_NOSIGNAL
+#define MSG_NOSIGNAL 0
+#endif
+
+/**
+ * The largest transfer made through a native copy of a Java array.  Reads
+ * and writes may transfer less than asked, so larger ones are cut short.
+ */
+static const jint MAX_ARRAY_TRANSFER = 65536;
+
+/**
+ * Map the result of a read or write to what RawSessionChannel expects: the
+ * number of bytes, 0 if a non-blocking socket is not ready, or -1 at end of
+ * stream (reads only).  Errors are thrown.
+ */
+static jlong IOResult(JNIEnv* env, ssize_t ret, bool reading)
+{
+    if (ret > 0) {
+        return ret;
+    }
+    if (ret == 0) {
+        return reading ? -1 : 0;
+    }
+    if (errno == EAGAIN || errno == EWOULDBLOCK) {
+        return 0;
+    }
+    ThrowIOException(env, errno);
+    return 0;
+}
+
+/**
+ * Fill an iovec array from direct ByteBuffers and their positions and lengths.
+ */
+static int GetIOVecs(JNIEnv* env, jobjectArray jbufs, jint offset, jintArray jpositions, jintArray jlengths,
+                     struct iovec* iov, int max)
+{
+    int count = env->GetArrayLength(jpositions);
+    if (count > max) {
+        count = max;
+    }
+    jint positions[IOV_MAX];
+    jint lengths[IOV_MAX];
+    env->GetIntArrayRegion(jpositions, 0, count, positions);
+    env->GetIntArrayRegion(jlengths, 0, count, lengths);
+    for (int i = 0; i < count; ++i) {
+        JLocalRef<jobject> jbuf = env->GetObjectArrayElement(jbufs, offset + i);
+        char* base = static_cast<char*>(env->GetDirectBufferAddress(jbuf));
+        if (!base) {
+            ThrowIOException(env, EINVAL);
+            return -1;
+        }
+        iov[i].iov_base = base + positions[i];
+        iov[i].iov_len = lengths[i];
+    }
+    return count;
+}
+#endif
+
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_readDirect(JNIEnv* env, jclass clazz, jint fd,
+                                                                         jobject jdst, jint pos, jint len)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    char* base = static_cast<char*>(env->GetDirectBufferAddress(jdst));
+    if (!base) {
+        ThrowIOException(env, EINVAL);
+        return 0;
+    }
+    ssize_t ret;
+    do {
+        ret = read(fd, base + pos, len);
+    } while (ret < 0 && errno == EINTR);
+    return (jint)IOResult(env, ret, true);
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_readArray(JNIEnv* env, jclass clazz, jint fd,
+                                                                        jbyteArray jdst, jint off, jint len)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    /*
+     * The array cannot be pinned across a blocking read, so read into a
+     * native buffer and copy.
+     */
+    if (len > MAX_ARRAY_TRANSFER) {
+        len = MAX_ARRAY_TRANSFER;
+    }
+    char stackBuf[8192];
+    char* buf = (len <= (jint)sizeof(stackBuf)) ? stackBuf : new char[len];
+    ssize_t ret;
+    do {
+        ret = read(fd, buf, len);
+    } while (ret < 0 && errno == EINTR);
+    jint n = (jint)IOResult(env, ret, true);
+    if (n > 0) {
+        env->SetByteArrayRegion(jdst, off, n, reinterpret_cast<jbyte*>(buf));
+    }
+    if (buf != stackBuf) {
+        delete [] buf;
+    }
+    return n;
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_org_alljoyn_bus_RawSessionChannel_readv(JNIEnv* env, jclass clazz, jint fd,
+                                                                     jobjectArray jdsts, jint offset,
+                                                                     jintArray jpositions, jintArray jlengths)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    struct iovec iov[IOV_MAX];
+    int count = GetIOVecs(env, jdsts, offset, jpositions, jlengths, iov, IOV_MAX);
+    if (count < 0) {
+        return 0;
+    }
+    ssize_t ret;
+    do {
+        ret = readv(fd, iov, count);
+    } while (ret < 0 && errno == EINTR);
+    return IOResult(env, ret, true);
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_writeDirect(JNIEnv* env, jclass clazz, jint fd,
+                                                                          jobject jsrc, jint pos, jint len)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    char* base = static_cast<char*>(env->GetDirectBufferAddress(jsrc));
+    if (!base) {
+        ThrowIOException(env, EINVAL);
+        return 0;
+    }
+    ssize_t ret;
+    do {
+        ret = send(fd, base + pos, len, MSG_NOSIGNAL);
+    } while (ret < 0 && errno == EINTR);
+    return (jint)IOResult(env, ret, false);
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_writeArray(JNIEnv* env, jclass clazz, jint fd,
+                                                                         jbyteArray jsrc, jint off, jint len)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    if (len > MAX_ARRAY_TRANSFER) {
+        len = MAX_ARRAY_TRANSFER;
+    }
+    char stackBuf[8192];
+    char* buf = (len <= (jint)sizeof(stackBuf)) ? stackBuf : new char[len];
+    env->GetByteArrayRegion(jsrc, off, len, reinterpret_cast<jbyte*>(buf));
+    ssize_t ret;
+    do {
+        ret = send(fd, buf, len, MSG_NOSIGNAL);
+    } while (ret < 0 && errno == EINTR);
+    if (buf != stackBuf) {
+        delete [] buf;
+    }
+    return (jint)IOResult(env, ret, false);
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_org_alljoyn_bus_RawSessionChannel_writev(JNIEnv* env, jclass clazz, jint fd,
+                                                                      jobjectArray jsrcs, jint offset,
+                                                                      jintArray jpositions, jintArray jlengths)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    struct iovec iov[IOV_MAX];
+    int count = GetIOVecs(env, jsrcs, offset, jpositions, jlengths, iov, IOV_MAX);
+    if (count < 0) {
+        return 0;
+    }
+    /* sendmsg rather than writev so that a closed peer does not raise SIGPIPE. */
+    struct msghdr msg;
+    memset(&msg, 0, sizeof(msg));
+    msg.msg_iov = iov;
+    msg.msg_iovlen = count;
+    ssize_t ret;
+    do {
+        ret = sendmsg(fd, &msg, MSG_NOSIGNAL);
+    } while (ret < 0 && errno == EINTR);
+    return IOResult(env, ret, false);
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_org_alljoyn_bus_RawSessionChannel_sendFile(JNIEnv* env, jclass clazz, jint fd,
+                                                                        jobject jin, jlong position, jlong count)
+{
+#if defined(QCC_OS_LINUX) || defined(QCC_OS_ANDROID)
+    /*
+     * The descriptor of a java.io.FileDescriptor is in its private fd field,
+     * which Dalvik calls descriptor instead.
+     */
+    JLocalRef<jclass> fdClass = env->GetObjectClass(jin);
+    jfieldID fid = env->GetFieldID(fdClass, "fd", "I");
+    if (!fid) {
+        env->ExceptionClear();
+        fid = env->GetFieldID(fdClass, "descriptor", "I");
+        if (!fid) {
+            env->ExceptionClear();
+            return -2;
+        }
+    }
+    int in = env->GetIntField(jin, fid);
+    off_t offset = (off_t)position;
+    size_t len = (count > INT_MAX) ? INT_MAX : (size_t)count;
+    ssize_t ret;
+    do {
+        ret = sendfile(fd, in, &offset, len);
+    } while (ret < 0 && errno == EINTR);
+    if (ret < 0 && (errno == EINVAL || errno == ENOSYS)) {
+        /* The file or the socket cannot be used with sendfile; copy in Java. */
+        return -2;
+    }
+    return IOResult(env, ret, false);
+#else
+    return -2;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_RawSessionChannel_setBlocking(JNIEnv* env, jclass clazz, jint fd,
+                                                                          jboolean jblocking)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    int flags = fcntl(fd, F_GETFL, 0);
+    if (flags < 0) {
+        ThrowIOException(env, errno);
+        return;
+    }
+    flags = jblocking ? (flags & ~O_NONBLOCK) : (flags | O_NONBLOCK);
+    if (fcntl(fd, F_SETFL, flags) < 0) {
+        ThrowIOException(env, errno);
+    }
+#else
+    ThrowIOException(env, 0);
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_poll(JNIEnv* env, jclass clazz, jint fd, jint ops,
+                                                                   jint timeout)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    /* The ops are java.nio.channels.SelectionKey.OP_READ (1) and OP_WRITE (4). */
+    struct pollfd pfd;
+    pfd.fd = fd;
+    pfd.events = ((ops & 1) ? POLLIN : 0) | ((ops & 4) ? POLLOUT : 0);
+    pfd.revents = 0;
+    int ret = poll(&pfd, 1, timeout);
+    if (ret < 0) {
+        if (errno != EINTR) {
+            ThrowIOException(env, errno);
+        }
+        return 0;
+    }
+    jint ready = 0;
+    if (pfd.revents & (POLLIN | POLLHUP | POLLERR)) {
+        ready |= (ops & 1);
+    }
+    if (pfd.revents & (POLLOUT | POLLHUP | POLLERR)) {
+        ready |= (ops & 4);
+    }
+    return ready;
+#else
+    ThrowIOException(env, 0);
+    return 0;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_RawSessionChannel_shutdownSocket(JNIEnv* env, jclass clazz, jint fd)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    shutdown(fd, SHUT_RDWR);
+#endif
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_RawSessionChannel_closeSocket(JNIEnv* env, jclass clazz, jint fd)
+{
+#if defined(QCC_OS_GROUP_POSIX)
+    if (close(fd) < 0 && errno != EINTR) {
+        ThrowIOException(env, errno);
+    }
+#endif
+}
+
 JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_setLinkTimeout(JNIEnv* env, jobject thiz,
                                                                             jint jsessionId,
                                                                             jobject jLinkTimeout)
@@ -7366,8 +8422,14 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_enablePeerSecurity(
  * Create a new JBusObject to serve as the C++ half of a Java BusObject and C++
  * JBusObject pair.
  */
-JBusObject::JBusObject(JBusAttachment* jbap, const char* path, jobject jobj)
-    : BusObject(path), jbusObj(NULL), MID_generateIntrospection(NULL), MID_registered(NULL), MID_unregistered(NULL)
+/**
+ * The identifier last given to a JBusObject.
+ */
+static volatile int32_t gBusObjectIds = 0;
+
+JBusObject::JBusObject(JBusAttachment* jbap, const char* path, jobject jobj, jobject jdispatcher)
+    : BusObject(path), refCount(1), id(IncrementAndFetch(&gBusObjectIds)), cacheGeneration(0), jbusObj(NULL), MID_generateIntrospection(NULL), MID_registered(NULL),
+    MID_unregistered(NULL), jdispatcher(NULL), tables(NULL)
 {
     QCC_DbgPrintf(("JBusObject::JBusObject()"));
 
@@ -7400,6 +8462,14 @@ JBusObject::JBusObject(JBusAttachment* jbap, const char* path, jobject jobj)
     }
     QCC_DbgPrintf(("JBusObject::JBusObject():  Remembering weak global reference %p", jbusObj));
 
+    if (jdispatcher) {
+        QCC_DbgPrintf(("JBusObject::JBusObject():  Taking strong global reference to MethodDispatcher %p", jdispatcher));
+        this->jdispatcher = env->NewGlobalRef(jdispatcher);
+        if (!this->jdispatcher) {
+            return;
+        }
+    }
+
     if (env->IsInstanceOf(jobj, CLS_IntrospectionListener)) {
         JLocalRef<jclass> clazz = env->GetObjectClass(jobj);
 
@@ -7430,31 +8500,44 @@ JBusObject::~JBusObject()
 
     JNIEnv* env = GetEnv();
 
-    mapLock.Lock();
+    if (tables) {
+        QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting methods"));
+        for (JMethod::const_iterator method = tables->methods.begin(); method != tables->methods.end(); ++method) {
+            QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting method %p", method->second));
+            env->DeleteGlobalRef(method->second);
+        }
+
+        QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting properties"));
+        for (JProperty::const_iterator property = tables->properties.begin(); property != tables->properties.end(); ++property) {
+            QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting property getter %p", property->second.jget));
+            env->DeleteGlobalRef(property->second.jget);
 
-    QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting methods"));
-    for (JMethod::const_iterator method = methods.begin(); method != methods.end(); ++method) {
-        QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting method %p", method->second));
-        env->DeleteGlobalRef(method->second);
-    }
+            QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting property setter %p", property->second.jset));
+            env->DeleteGlobalRef(property->second.jset);
+        }
 
-    QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting properties"));
-    for (JProperty::const_iterator property = properties.begin(); property != properties.end(); ++property) {
-        QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting property getter %p", property->second.jget));
-        env->DeleteGlobalRef(property->second.jget);
+        for (JAllProperties::const_iterator all = tables->allProperties.begin(); all != tables->allProperties.end(); ++all) {
+            QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting property names %p and getters %p", all->second.jnames, all->second.jgetters));
+            env->DeleteGlobalRef(all->second.jnames);
+            env->DeleteGlobalRef(all->second.jgetters);
+        }
 
-        QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting property setter %p", property->second.jset));
-        env->DeleteGlobalRef(property->second.jset);
+        delete tables;
+        tables = NULL;
     }
 
-    mapLock.Unlock();
-
     if (jbusObj) {
         QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting weak global reference to BusObject %p", jbusObj));
         env->DeleteWeakGlobalRef(jbusObj);
         jbusObj = NULL;
     }
 
+    if (jdispatcher) {
+        QCC_DbgPrintf(("JBusObject::~JBusObject(): Deleting global reference to MethodDispatcher %p", jdispatcher));
+        env->DeleteGlobalRef(jdispatcher);
+        jdispatcher = NULL;
+    }
+
     QCC_DbgPrintf(("JBusObject::~JBusObject(): Refcount on busPtr before decrement is %d", busPtr->GetRef()));
     busPtr->DecRef();
     busPtr = NULL;
@@ -7464,6 +8547,25 @@ QStatus JBusObject::AddInterfaces(jobjectArray jbusInterfaces)
 {
     QCC_DbgPrintf(("JBusObject::AddInterfaces()"));
 
+    /*
+     * Build the new tables on the side (copying any we already have) and
+     * publish them when done.  Even a failed attempt is published since the
+     * tables then own the global references taken so far and the destructor
+     * releases them.  AllJoyn does not know about the object yet, so nothing
+     * can be reading the old tables while we replace them.
+     */
+    Tables* t = tables ? new Tables(*tables) : new Tables();
+    QStatus status = AddInterfaces(jbusInterfaces, *t);
+
+    const Tables* old = tables;
+    tables = t;
+    delete old;
+
+    return status;
+}
+
+QStatus JBusObject::AddInterfaces(jobjectArray jbusInterfaces, Tables& t)
+{
     QStatus status;
 
     JNIEnv* env = GetEnv();
@@ -7532,8 +8634,7 @@ QStatus JBusObject::AddInterfaces(jobjectArray jbusInterfaces)
                     break;
                 }
 
-                String key = intf->GetName() + membs[m]->name;
-                methods.insert(pair<String, jobject>(key, jref));
+                t.methods.insert(pair<const InterfaceDescription::Member*, jobject>(membs[m], jref));
             }
         }
 
@@ -7610,16 +8711,101 @@ QStatus JBusObject::AddInterfaces(jobjectArray jbusInterfaces)
                 property.jset = NULL;
             }
 
-            String key = intf->GetName() + props[p]->name;
-            properties.insert(pair<String, Property>(key, property));
+            mid = env->GetMethodID(clazz, "isCachedProperty", "(Ljava/lang/String;)Z");
+            if (!mid) {
+                status = ER_FAIL;
+                break;
+            }
+
+            property.cached = env->CallBooleanMethod(jbusInterface, mid, (jstring)jname);
+            if (env->ExceptionCheck()) {
+                status = ER_FAIL;
+                break;
+            }
+
+            t.properties.insert(pair<const InterfaceDescription::Property*, Property>(props[p], property));
         }
         delete [] props;
         props = NULL;
         if (ER_OK != status) {
             return status;
         }
+
+        status = AddAllProperties(intf, t);
+        if (ER_OK != status) {
+            return status;
+        }
+    }
+
+    return ER_OK;
+}
+
+/**
+ * Gather the readable properties of an interface, whose accessors have
+ * already been added to the tables, into the arrays GetAllProps hands to
+ * Java.
+ */
+QStatus JBusObject::AddAllProperties(const InterfaceDescription* intf, Tables& t)
+{
+    JNIEnv* env = GetEnv();
+
+    AllProperties all;
+    size_t numProps = intf->GetProperties(NULL);
+    const InterfaceDescription::Property** props = new const InterfaceDescription::Property *[numProps];
+    if (!props) {
+        return ER_OUT_OF_MEMORY;
+    }
+
+    intf->GetProperties(props, numProps);
+    for (size_t p = 0; p < numProps; ++p) {
+        JProperty::const_iterator property = t.properties.find(props[p]);
+        if (t.properties.end() != property && property->second.jget) {
+            all.props.push_back(props[p]);
+            all.signature += property->second.signature;
+        }
+    }
+    delete [] props;
+    props = NULL;
+
+    JLocalRef<jobjectArray> jnames = env->NewObjectArray(all.props.size(), CLS_String, NULL);
+    if (!jnames) {
+        return ER_FAIL;
+    }
+
+    JLocalRef<jobjectArray> jgetters = env->NewObjectArray(all.props.size(), CLS_Method, NULL);
+    if (!jgetters) {
+        return ER_FAIL;
+    }
+
+    for (size_t i = 0; i < all.props.size(); ++i) {
+        JLocalRef<jstring> jname = env->NewStringUTF(all.props[i]->name.c_str());
+        if (!jname) {
+            return ER_FAIL;
+        }
+
+        env->SetObjectArrayElement(jnames, i, jname);
+        if (env->ExceptionCheck()) {
+            return ER_FAIL;
+        }
+
+        env->SetObjectArrayElement(jgetters, i, t.properties.find(all.props[i])->second.jget);
+        if (env->ExceptionCheck()) {
+            return ER_FAIL;
+        }
     }
 
+    all.jnames = env->NewGlobalRef(jnames);
+    if (!all.jnames) {
+        return ER_FAIL;
+    }
+
+    all.jgetters = env->NewGlobalRef(jgetters);
+    if (!all.jgetters) {
+        env->DeleteGlobalRef(all.jnames);
+        return ER_FAIL;
+    }
+
+    t.allProperties.insert(pair<const InterfaceDescription*, AllProperties>(intf, all));
     return ER_OK;
 }
 
@@ -7736,60 +8922,105 @@ void JBusObject::MethodHandler(const InterfaceDescription::Member* member, Messa
      */
     JScopedEnv env;
 
-    MessageContext context(msg);
     /*
      * The Java method is called via invoke() on the
      * java.lang.reflect.Method object.  This allows us to package up
      * all the message args into an Object[], saving us from having to
      * figure out the signature of each method to lookup.
+     *
+     * The tables are never changed once published, so there is no lock to
+     * take here and concurrent calls on the same object do not serialize.
      */
-    String key = member->iface->GetName() + member->name;
-
-    /*
-     * We're going to wander into a list of methods and pick one.  Lock the
-     * mutex that protects this list for the entire time we'll be using the
-     * list and the found method.
-     */
-    mapLock.Lock();
-
-    JMethod::const_iterator method = methods.find(key);
-    if (methods.end() == method) {
-        mapLock.Unlock();
+    JMethod::const_iterator method = tables->methods.find(member);
+    if (tables->methods.end() == method) {
         MethodReply(member, msg, ER_BUS_OBJECT_NO_SUCH_MEMBER);
         return;
     }
+    jobject jmethod = method->second;
 
     JLocalRef<jobjectArray> jargs;
-    QStatus status = Unmarshal(msg, method->second, jargs);
+    QStatus status = Unmarshal(msg, jmethod, jargs);
     if (ER_OK != status) {
-        mapLock.Unlock();
         MethodReply(member, msg, status);
         return;
     }
 
-    JLocalRef<jclass> clazz = env->GetObjectClass(method->second);
-    jmethodID mid = env->GetMethodID(clazz, "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
-    if (!mid) {
-        mapLock.Unlock();
+    if (!jdispatcher) {
+        InvokeMethod(member, msg, jmethod, jargs);
+        return;
+    }
+
+    /*
+     * The bus object asked for its methods to be dispatched, so instead of
+     * calling the method here we package up the call and hand it to the
+     * MethodDispatcher.  The JMethodCall takes a reference to us so we stay
+     * around until it has replied, even if we are unregistered meanwhile.
+     */
+    JLocalRef<jobject> jo = env->NewLocalRef(jbusObj);
+    if (!jo) {
+        QCC_LogError(ER_FAIL, ("JBusObject::MethodHandler(): Can't get new local reference to BusObject"));
+        return;
+    }
+
+    JLocalRef<jstring> jifaceName = env->NewStringUTF(member->iface->GetName());
+    if (!jifaceName) {
         MethodReply(member, msg, ER_FAIL);
         return;
     }
 
+    JMethodCall* call = new JMethodCall(this, member, msg, jmethod, jargs);
+    JLocalRef<jobject> jcall = env->NewObject(CLS_MethodCall, MID_MethodCall_init, (jlong)call);
+    if (!jcall) {
+        delete call;
+        MethodReply(member, msg, ER_FAIL);
+        return;
+    }
+
+    env->CallVoidMethod(jdispatcher, MID_MethodDispatcher_dispatch, (jobject)jo, (jstring)jifaceName,
+                        (jint)msg->GetSessionId(), (jobject)jcall);
+
+    /*
+     * If the dispatcher failed, the call may never run, so reply with the
+     * error now instead of leaving the caller to time out.  Nothing is sent
+     * if the call was run or replied to before the dispatcher threw.
+     */
+    JLocalRef<jthrowable> ex = env->ExceptionOccurred();
+    if (ex) {
+        QCC_LogError(ER_FAIL, ("JBusObject::MethodHandler(): Exception"));
+        env->ExceptionClear();
+        env->CallStaticVoidMethod(CLS_BusException, MID_BusException_log, (jthrowable)ex);
+        env->CallVoidMethod(jcall, MID_MethodCall_abort, (jthrowable)ex);
+        if (env->ExceptionCheck()) {
+            env->ExceptionClear();
+        }
+    }
+}
+
+/**
+ * Call the Java method implementing a bus method and send the reply.  This is
+ * called directly from the method handler, or later from the thread a Java
+ * MethodDispatcher chose to run the method call on.
+ */
+void JBusObject::InvokeMethod(const InterfaceDescription::Member* member, Message& msg, jobject jmethod, jobjectArray jargs)
+{
+    QCC_DbgPrintf(("JBusObject::InvokeMethod()"));
+
+    JNIEnv* env = GetEnv();
+
+    MessageContext context(msg);
+
     /*
      * The weak global reference jbusObj cannot be directly used.  We have to
      * get a "hard" reference to it and then use that.  If you try to use a weak
      * reference directly you will crash and burn.
      */
-    jobject jo = env->NewLocalRef(jbusObj);
+    JLocalRef<jobject> jo = env->NewLocalRef(jbusObj);
     if (!jo) {
-        mapLock.Unlock();
-        QCC_LogError(ER_FAIL, ("JBusObject::MethodHandler(): Can't get new local reference to BusObject"));
+        QCC_LogError(ER_FAIL, ("JBusObject::InvokeMethod(): Can't get new local reference to BusObject"));
         return;
     }
 
-    mapLock.Unlock();
-
-    JLocalRef<jobject> jreply = env->CallObjectMethod(method->second, mid, jo, (jobjectArray)jargs);
+    JLocalRef<jobject> jreply = env->CallObjectMethod(jmethod, MID_Method_invoke, (jobject)jo, jargs);
     JLocalRef<jthrowable> ex = env->ExceptionOccurred();
     if (ex) {
         env->ExceptionClear();
@@ -7805,76 +9036,114 @@ void JBusObject::MethodHandler(const InterfaceDescription::Member* member, Messa
             return;
         }
 
-        clazz = env->GetObjectClass(ex);
-        if (env->IsInstanceOf(ex, CLS_ErrorReplyBusException)) {
-            mid = env->GetMethodID(clazz, "getErrorStatus", "()Lorg/alljoyn/bus/Status;");
-            if (!mid) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            JLocalRef<jobject> jstatus = env->CallObjectMethod(ex, mid);
-            if (env->ExceptionCheck()) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            JLocalRef<jclass> statusClazz = env->GetObjectClass(jstatus);
-            mid = env->GetMethodID(statusClazz, "getErrorCode", "()I");
-            if (!mid) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            QStatus errorCode = (QStatus)env->CallIntMethod(jstatus, mid);
-            if (env->ExceptionCheck()) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-
-            mid = env->GetMethodID(clazz, "getErrorName", "()Ljava/lang/String;");
-            if (!mid) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            JLocalRef<jstring> jerrorName = (jstring)env->CallObjectMethod(ex, mid);
-            if (env->ExceptionCheck()) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            JString errorName(jerrorName);
-            if (env->ExceptionCheck()) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-
-            mid = env->GetMethodID(clazz, "getErrorMessage", "()Ljava/lang/String;");
-            if (!mid) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            JLocalRef<jstring> jerrorMessage = (jstring)env->CallObjectMethod(ex, mid);
-            if (env->ExceptionCheck()) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
-            JString errorMessage(jerrorMessage);
-            if (env->ExceptionCheck()) {
-                MethodReply(member, msg, ER_FAIL);
-                return;
-            }
+        ErrorReply(member, msg, ex);
+        return;
+    }
 
-            if (errorName.c_str()) {
-                MethodReply(member, msg, errorName.c_str(), errorMessage.c_str());
-            } else {
-                MethodReply(member, msg, errorCode);
-            }
-        } else {
+    /*
+     * A bus method returning a DeferredReply has not computed its reply yet.
+     * Give the DeferredReply a MethodCall holding on to the message so it can
+     * send the reply when it completes.
+     */
+    if (jreply && env->IsInstanceOf(jreply, CLS_DeferredReply)) {
+        JMethodCall* call = new JMethodCall(this, member, msg, NULL, NULL);
+        JLocalRef<jobject> jcall = env->NewObject(CLS_MethodCall, MID_MethodCall_init, (jlong)call);
+        if (!jcall) {
+            delete call;
             MethodReply(member, msg, ER_FAIL);
+            return;
         }
+        env->CallVoidMethod(jreply, MID_DeferredReply_setMethodCall, (jobject)jcall);
         return;
     }
 
     MethodReply(member, msg, jreply);
 }
 
+/**
+ * Send the error reply corresponding to an exception thrown by, or given to
+ * the DeferredReply of, a bus method.  An ErrorReplyBusException carries the
+ * error name and message or status to reply with; anything else is a generic
+ * failure.
+ */
+void JBusObject::ErrorReply(const InterfaceDescription::Member* member, Message& msg, jthrowable ex)
+{
+    QCC_DbgPrintf(("JBusObject::ErrorReply()"));
+
+    JNIEnv* env = GetEnv();
+
+    if (!ex) {
+        MethodReply(member, msg, ER_FAIL);
+        return;
+    }
+
+    JLocalRef<jclass> clazz = env->GetObjectClass(ex);
+    jmethodID mid;
+    if (env->IsInstanceOf(ex, CLS_ErrorReplyBusException)) {
+        mid = env->GetMethodID(clazz, "getErrorStatus", "()Lorg/alljoyn/bus/Status;");
+        if (!mid) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        JLocalRef<jobject> jstatus = env->CallObjectMethod(ex, mid);
+        if (env->ExceptionCheck()) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        JLocalRef<jclass> statusClazz = env->GetObjectClass(jstatus);
+        mid = env->GetMethodID(statusClazz, "getErrorCode", "()I");
+        if (!mid) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        QStatus errorCode = (QStatus)env->CallIntMethod(jstatus, mid);
+        if (env->ExceptionCheck()) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+
+        mid = env->GetMethodID(clazz, "getErrorName", "()Ljava/lang/String;");
+        if (!mid) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        JLocalRef<jstring> jerrorName = (jstring)env->CallObjectMethod(ex, mid);
+        if (env->ExceptionCheck()) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        JString errorName(jerrorName);
+        if (env->ExceptionCheck()) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+
+        mid = env->GetMethodID(clazz, "getErrorMessage", "()Ljava/lang/String;");
+        if (!mid) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        JLocalRef<jstring> jerrorMessage = (jstring)env->CallObjectMethod(ex, mid);
+        if (env->ExceptionCheck()) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+        JString errorMessage(jerrorMessage);
+        if (env->ExceptionCheck()) {
+            MethodReply(member, msg, ER_FAIL);
+            return;
+        }
+
+        if (errorName.c_str()) {
+            MethodReply(member, msg, errorName.c_str(), errorMessage.c_str());
+        } else {
+            MethodReply(member, msg, errorCode);
+        }
+    } else {
+        MethodReply(member, msg, ER_FAIL);
+    }
+}
+
 QStatus JBusObject::MethodReply(const InterfaceDescription::Member* member, Message& msg, QStatus status)
 {
     QCC_DbgPrintf(("JBusObject::MethodReply()"));
@@ -7961,20 +9230,87 @@ QStatus JBusObject::MethodReply(const InterfaceDescription::Member* member, Mess
     return status;
 }
 
-QStatus JBusObject::Signal(const char* destination, SessionId sessionId, const char* ifaceName, const char* signalName,
-                           const MsgArg* args, size_t numArgs, uint32_t timeToLive, uint8_t flags, Message& msg)
+JMethodCall::JMethodCall(JBusObject* busObject, const InterfaceDescription::Member* member, Message& msg,
+                         jobject jmethod, jobjectArray jargs)
+    : busObject(busObject), member(member), msg(msg), jmethod(NULL), jargs(NULL)
 {
-    QCC_DbgPrintf(("JBusObject::Signal()"));
+    QCC_DbgPrintf(("JMethodCall::JMethodCall()"));
+
+    JNIEnv* env = GetEnv();
+
+    busObject->IncRef();
+    if (jmethod) {
+        this->jmethod = env->NewGlobalRef(jmethod);
+    }
+    if (jargs) {
+        this->jargs = (jobjectArray)env->NewGlobalRef(jargs);
+    }
+}
+
+JMethodCall::~JMethodCall()
+{
+    QCC_DbgPrintf(("JMethodCall::~JMethodCall()"));
+
+    JNIEnv* env = GetEnv();
+
+    if (jargs) {
+        env->DeleteGlobalRef(jargs);
+        jargs = NULL;
+    }
+    if (jmethod) {
+        env->DeleteGlobalRef(jmethod);
+        jmethod = NULL;
+    }
+    busObject->DecRef();
+    busObject = NULL;
+}
+
+void JMethodCall::Invoke()
+{
+    QCC_DbgPrintf(("JMethodCall::Invoke()"));
+
+    if (!jmethod) {
+        busObject->MethodReply(member, msg, ER_FAIL);
+        return;
+    }
+    busObject->InvokeMethod(member, msg, jmethod, jargs);
+}
+
+void JMethodCall::Reply(jobject jreply)
+{
+    QCC_DbgPrintf(("JMethodCall::Reply()"));
+
+    busObject->MethodReply(member, msg, jreply);
+}
+
+void JMethodCall::ErrorReply(jthrowable ex)
+{
+    QCC_DbgPrintf(("JMethodCall::ErrorReply()"));
+
+    busObject->ErrorReply(member, msg, ex);
+}
+
+QStatus JBusObject::FindSignal(const char* ifaceName, const char* signalName, const InterfaceDescription::Member*& signal)
+{
+    QCC_DbgPrintf(("JBusObject::FindSignal()"));
 
     const InterfaceDescription* intf = bus->GetInterface(ifaceName);
     if (!intf) {
         return ER_BUS_OBJECT_NO_SUCH_INTERFACE;
     }
-    const InterfaceDescription::Member* signal = intf->GetMember(signalName);
+    signal = intf->GetMember(signalName);
     if (!signal) {
         return ER_BUS_OBJECT_NO_SUCH_MEMBER;
     }
-    return BusObject::Signal(destination, sessionId, *signal, args, numArgs, timeToLive, flags, &msg);
+    return ER_OK;
+}
+
+QStatus JBusObject::Signal(const char* destination, SessionId sessionId, const InterfaceDescription::Member& signal,
+                           const MsgArg* args, size_t numArgs, uint32_t timeToLive, uint8_t flags, Message& msg)
+{
+    QCC_DbgPrintf(("JBusObject::Signal()"));
+
+    return BusObject::Signal(destination, sessionId, signal, args, numArgs, timeToLive, flags, &msg);
 }
 
 QStatus JBusObject::Get(const char* ifcName, const char* propName, MsgArg& val)
@@ -7982,61 +9318,67 @@ QStatus JBusObject::Get(const char* ifcName, const char* propName, MsgArg& val)
     QCC_DbgPrintf(("JBusObject::Get()"));
 
     /*
-     * JScopedEnv will automagically attach the JVM to the current native
-     * thread.
+     * The tables are never changed once published, so there is no lock to
+     * hold while we call the getter and marshal the value.
      */
-    JScopedEnv env;
-
-    String key = String(ifcName) + propName;
-
-    /*
-     * We're going to wander into a list of properties and pick one.  Lock the
-     * mutex that protects this list for the entire time we'll be using the list
-     * and the found method.
-     */
-    mapLock.Lock();
-
-    JProperty::const_iterator property = properties.find(key);
-    if (properties.end() == property) {
-        mapLock.Unlock();
+    JProperty::const_iterator property = FindProperty(ifcName, propName);
+    if (tables->properties.end() == property) {
         return ER_BUS_NO_SUCH_PROPERTY;
     }
     if (!property->second.jget) {
-        mapLock.Unlock();
         return ER_BUS_PROPERTY_ACCESS_DENIED;
     }
 
-    JLocalRef<jclass> clazz = env->GetObjectClass(property->second.jget);
-    jmethodID mid = env->GetMethodID(clazz, "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
-    if (!mid) {
-        mapLock.Unlock();
-        return ER_FAIL;
+    /*
+     * A cached value is answered without going near the JVM.
+     */
+    uint32_t generation = 0;
+    if (property->second.cached) {
+        cacheLock.Lock();
+        map<const InterfaceDescription::Property*, MsgArg>::const_iterator cached = cache.find(property->first);
+        if (cache.end() != cached) {
+            val = cached->second;
+            cacheLock.Unlock();
+            return ER_OK;
+        }
+        generation = cacheGeneration;
+        cacheLock.Unlock();
     }
 
+    /*
+     * JScopedEnv will automagically attach the JVM to the current native
+     * thread.
+     */
+    JScopedEnv env;
+
     /*
      * The weak global reference jbusObj cannot be directly used.  We have to
      * get a "hard" reference to it and then use that.  If you try to use a weak
      * reference directly you will crash and burn.
      */
-    jobject jo = env->NewLocalRef(jbusObj);
+    JLocalRef<jobject> jo = env->NewLocalRef(jbusObj);
     if (!jo) {
-        mapLock.Unlock();
         QCC_LogError(ER_FAIL, ("JBusObject::Get(): Can't get new local reference to BusObject"));
         return ER_FAIL;
     }
 
-    JLocalRef<jobject> jvalue = env->CallObjectMethod(property->second.jget, mid, jo, NULL);
+    JLocalRef<jobject> jvalue = env->CallObjectMethod(property->second.jget, MID_Method_invoke, (jobject)jo, NULL);
     if (env->ExceptionCheck()) {
-        mapLock.Unlock();
         return ER_FAIL;
     }
 
     if (!Marshal(property->second.signature.c_str(), (jobject)jvalue, &val)) {
-        mapLock.Unlock();
         return ER_FAIL;
     }
 
-    mapLock.Unlock();
+    if (property->second.cached) {
+        cacheLock.Lock();
+        if (generation == cacheGeneration) {
+            cache[property->first] = val;
+        }
+        cacheLock.Unlock();
+    }
+
     return ER_OK;
 }
 
@@ -8050,61 +9392,215 @@ QStatus JBusObject::Set(const char* ifcName, const char* propName, MsgArg& val)
      */
     JScopedEnv env;
 
-    String key = String(ifcName) + propName;
-
     /*
-     * We're going to wander into a list of properties and pick one.  Lock the
-     * mutex that protects this list for the entire time we'll be using the list
-     * and the found method.
+     * The tables are never changed once published, so there is no lock to
+     * hold while we unmarshal the value and call the setter.
      */
-    mapLock.Lock();
-
-    JProperty::const_iterator property = properties.find(key);
-    if (properties.end() == property) {
-        mapLock.Unlock();
+    JProperty::const_iterator property = FindProperty(ifcName, propName);
+    if (tables->properties.end() == property) {
         return ER_BUS_NO_SUCH_PROPERTY;
     }
     if (!property->second.jset) {
-        mapLock.Unlock();
         return ER_BUS_PROPERTY_ACCESS_DENIED;
     }
 
     JLocalRef<jobjectArray> jvalue;
     QStatus status = Unmarshal(&val, 1, property->second.jset, jvalue);
     if (ER_OK != status) {
-        mapLock.Unlock();
         return status;
     }
 
-    JLocalRef<jclass> clazz = env->GetObjectClass(property->second.jset);
-    jmethodID mid = env->GetMethodID(clazz, "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
-    if (!mid) {
-        mapLock.Unlock();
-        return ER_FAIL;
-    }
-
     /*
      * The weak global reference jbusObj cannot be directly used.  We have to
      * get a "hard" reference to it and then use that.  If you try to use a weak
      * reference directly you will crash and burn.
      */
-    jobject jo = env->NewLocalRef(jbusObj);
+    JLocalRef<jobject> jo = env->NewLocalRef(jbusObj);
     if (!jo) {
-        mapLock.Unlock();
         QCC_LogError(ER_FAIL, ("JBusObject::Set(): Can't get new local reference to BusObject"));
         return ER_FAIL;
     }
 
-    env->CallObjectMethod(property->second.jset, mid, jo, (jobjectArray)jvalue);
+    JLocalRef<jobject> jresult = env->CallObjectMethod(property->second.jset, MID_Method_invoke, (jobject)jo, (jobjectArray)jvalue);
     if (env->ExceptionCheck()) {
-        mapLock.Unlock();
         return ER_FAIL;
     }
 
-    mapLock.Unlock();
+    /*
+     * The setter may not store the value exactly as it was sent, so the
+     * next Get reads it back from the getter rather than caching val.
+     */
+    CacheProperty(property->first, NULL);
+
     return ER_OK;
 }
 
+/**
+ * Handle org.freedesktop.DBus.Properties.GetAll.  AllJoyn would call Get for
+ * each property, attaching to the JVM, calling a getter and marshalling a
+ * value every time.  Instead all of the properties are read by one call into
+ * Java, which asks a PropertySnapshotListener for a snapshot or calls the
+ * getters, and are marshalled in one pass.  When every property is cached
+ * the JVM is not entered at all.  Secure interfaces and objects, and requests
+ * we don't recognize, are left to AllJoyn, which also makes the error reply.
+ */
+void JBusObject::GetAllProps(const InterfaceDescription::Member* member, Message& msg)
+{
+    QCC_DbgPrintf(("JBusObject::GetAllProps()"));
+
+    const char* ifcName = NULL;
+    const InterfaceDescription* intf = NULL;
+    const MsgArg* arg = msg->GetArg(0);
+    if (arg && ER_OK == arg->Get("s", &ifcName)) {
+        intf = bus->GetInterface(ifcName);
+    }
+
+    JAllProperties::const_iterator all = intf ? tables->allProperties.find(intf) : tables->allProperties.end();
+    if (tables->allProperties.end() == all || intf->IsSecure() || IsSecure()) {
+        BusObject::GetAllProps(member, msg);
+        return;
+    }
+
+    const vector<const InterfaceDescription::Property*>& props = all->second.props;
+    size_t numProps = props.size();
+    MsgArg* cached = new MsgArg[numProps];
+    bool complete = true;
+
+    cacheLock.Lock();
+    for (size_t i = 0; i < numProps; ++i) {
+        map<const InterfaceDescription::Property*, MsgArg>::const_iterator value = cache.find(props[i]);
+        if (cache.end() == value) {
+            complete = false;
+            break;
+        }
+        cached[i] = value->second;
+    }
+    uint32_t generation = cacheGeneration;
+    cacheLock.Unlock();
+
+    QStatus status = ER_OK;
+    MsgArg read;
+    const MsgArg* values = cached;
+    if (!complete) {
+        /*
+         * JScopedEnv will automagically attach the JVM to the current native
+         * thread.
+         */
+        JScopedEnv env;
+
+        /*
+         * The weak global reference jbusObj cannot be directly used.  We have
+         * to get a "hard" reference to it and then use that.
+         */
+        JLocalRef<jobject> jo = env->NewLocalRef(jbusObj);
+        JLocalRef<jstring> jifcName = env->NewStringUTF(ifcName);
+        JLocalRef<jstring> jsignature = env->NewStringUTF(all->second.signature.c_str());
+        if (!jo) {
+            QCC_LogError(ER_FAIL, ("JBusObject::GetAllProps(): Can't get new local reference to BusObject"));
+            status = ER_FAIL;
+        } else if (!jifcName || !jsignature) {
+            status = ER_FAIL;
+        } else {
+            env->CallStaticVoidMethod(CLS_InterfaceDescription, MID_InterfaceDescription_getAllProperties, (jlong)&read,
+                                      (jobject)jo, (jstring)jifcName, (jobjectArray)all->second.jnames,
+                                      (jobjectArray)all->second.jgetters, (jstring)jsignature);
+            if (env->ExceptionCheck()) {
+                status = ER_FAIL;
+            }
+        }
+
+        if (ER_OK == status) {
+            values = read.v_struct.members;
+
+            cacheLock.Lock();
+            if (generation == cacheGeneration) {
+                for (size_t i = 0; i < numProps; ++i) {
+                    if (tables->properties.find(props[i])->second.cached) {
+                        cache[props[i]] = values[i];
+                    }
+                }
+            }
+            cacheLock.Unlock();
+        }
+    }
+
+    if (ER_OK == status) {
+        MsgArg* entries = new MsgArg[numProps];
+        for (size_t i = 0; i < numProps; ++i) {
+            entries[i].Set("{sv}", props[i]->name.c_str(), &values[i]);
+        }
+        MsgArg dict("a{sv}", numProps, entries);
+        status = BusObject::MethodReply(msg, &dict, 1);
+        delete [] entries;
+    } else {
+        status = BusObject::MethodReply(msg, status);
+    }
+    if (ER_OK != status) {
+        QCC_LogError(status, ("JBusObject::GetAllProps(): Can't reply"));
+    }
+
+    delete [] cached;
+}
+
+/**
+ * Replace the cached value of a property with the value just announced for
+ * it, or discard the cached value if val is NULL.  Does nothing if the
+ * property is not cached.
+ */
+void JBusObject::CacheProperty(const InterfaceDescription::Property* prop, const MsgArg* val)
+{
+    JProperty::const_iterator property = tables->properties.find(prop);
+    if (tables->properties.end() == property || !property->second.cached) {
+        return;
+    }
+
+    cacheLock.Lock();
+    ++cacheGeneration;
+    if (val) {
+        cache[prop] = *val;
+    } else {
+        cache.erase(prop);
+    }
+    cacheLock.Unlock();
+}
+
+/**
+ * Discard the cached values of the properties of an interface, or of one of
+ * them if propName is not NULL.
+ */
+void JBusObject::InvalidateCachedProperties(const InterfaceDescription* intf, const char* propName)
+{
+    cacheLock.Lock();
+    ++cacheGeneration;
+    map<const InterfaceDescription::Property*, MsgArg>::iterator i = cache.begin();
+    while (i != cache.end()) {
+        if (intf->GetProperty(i->first->name.c_str()) == i->first && (!propName || i->first->name == propName)) {
+            cache.erase(i++);
+        } else {
+            ++i;
+        }
+    }
+    cacheLock.Unlock();
+}
+
+/**
+ * Find the Java accessors of a property by name.  Properties are keyed by
+ * their native description, which we get from the interface AllJoyn knows
+ * under the given name.
+ */
+JBusObject::JProperty::const_iterator JBusObject::FindProperty(const char* ifcName, const char* propName)
+{
+    const InterfaceDescription* intf = bus->GetInterface(ifcName);
+    if (!intf) {
+        return tables->properties.end();
+    }
+    const InterfaceDescription::Property* prop = intf->GetProperty(propName);
+    if (!prop) {
+        return tables->properties.end();
+    }
+    return tables->properties.find(prop);
+}
+
 String JBusObject::GenerateIntrospection(bool deep, size_t indent) const
 {
     QCC_DbgPrintf(("JBusObject::GenerateIntrospection()"));
@@ -8198,7 +9694,7 @@ void JBusObject::ObjectUnregistered()
 
 JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusObject(JNIEnv* env, jobject thiz, jstring jobjPath,
                                                                                jobject jbusObject, jobjectArray jbusInterfaces,
-                                                                               jboolean jsecure)
+                                                                               jboolean jsecure, jobject jdispatcher)
 {
     QCC_DbgPrintf(("BusAttachment_registerBusObject()"));
 
@@ -8225,7 +9721,7 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusObject(J
 
     QCC_DbgPrintf(("BusAttachment_registerBusObject(): Refcount on busPtr is %d", busPtr->GetRef()));
 
-    QStatus status = busPtr->RegisterBusObject(objPath.c_str(), jbusObject, jbusInterfaces, jsecure);
+    QStatus status = busPtr->RegisterBusObject(objPath.c_str(), jbusObject, jbusInterfaces, jsecure, jdispatcher);
     if (env->ExceptionCheck()) {
         QCC_LogError(ER_FAIL, ("BusAttachment_registerBusObject(): Exception"));
         return NULL;
@@ -8237,22 +9733,21 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusObject(J
 JNIEXPORT jboolean JNICALL Java_org_alljoyn_bus_BusAttachment_isSecureBusObject(JNIEnv* env, jobject thiz, jobject jbusObject)
 {
     QCC_DbgPrintf(("BusAttachment_isSecureBusObjectt()"));
-    gBusObjectMapLock.Lock();
-    JBusObject* busObject = GetBackingObject(jbusObject);
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    shard->lock.Unlock();
 
     if (!busObject) {
-        QCC_DbgPrintf(("BusAttachment_isSecureBusObject(): Releasing global Bus Object map lock"));
-        gBusObjectMapLock.Unlock();
         QCC_LogError(ER_FAIL, ("BusAttachment_isSecureBusObject(): Exception"));
         env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
         return false;
     }
     bool result = busObject->IsSecure();
-    gBusObjectMapLock.Unlock();
+    busObject->DecRef();
     return result;
 }
 
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusObject(JNIEnv* env, jobject thiz, jobject jbusObject)
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusObjectNative(JNIEnv* env, jobject thiz, jobject jbusObject)
 {
     QCC_DbgPrintf(("BusAttachment_unregisterBusObject()"));
 
@@ -8272,12 +9767,33 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusObject(JN
     busPtr->UnregisterBusObject(jbusObject);
 }
 
-JSignalHandler::JSignalHandler(jobject jobj, jobject jmeth)
-    : jsignalHandler(NULL), jmethod(NULL), member(NULL)
+/**
+ * Create a Java MessageContext for a message.  The Java MessageContext keeps
+ * its own reference to the message so that its string fields can be filled
+ * in when they are first read.
+ */
+static jobject NewMessageContext(const Message& msg)
+{
+    JNIEnv* env = GetEnv();
+    Message* handle = new Message(msg);
+    jobject jcontext = env->NewObject(CLS_MessageContext, MID_MessageContext_init, (jlong)handle,
+                                      msg->IsUnreliable(), msg->GetSessionId(), msg->GetCallSerial());
+    if (!jcontext) {
+        delete handle;
+        return NULL;
+    }
+    return jcontext;
+}
+
+JSignalHandler::JSignalHandler(jobject jobj, jobject jmeth, jobject jq)
+    : jsignalHandler(NULL), jmethod(NULL), jqueue(NULL), member(NULL)
 {
     JNIEnv* env = GetEnv();
     jsignalHandler = env->NewWeakGlobalRef(jobj);
     jmethod = env->NewGlobalRef(jmeth);
+    if (jq) {
+        jqueue = env->NewGlobalRef(jq);
+    }
 }
 
 JSignalHandler::~JSignalHandler()
@@ -8288,6 +9804,11 @@ JSignalHandler::~JSignalHandler()
         env->DeleteGlobalRef(jmethod);
         jmethod = NULL;
     }
+    if (jqueue) {
+        QCC_DbgPrintf(("JSignalHandler::~JSignalHandler(): Forgetting jqueue"));
+        env->DeleteGlobalRef(jqueue);
+        jqueue = NULL;
+    }
     if (jsignalHandler) {
         QCC_DbgPrintf(("JSignalHandler::~JSignalHandler(): Forgetting jsignalHandler"));
         env->DeleteWeakGlobalRef(jsignalHandler);
@@ -8308,7 +9829,126 @@ bool JSignalHandler::IsSameObject(jobject jobj, jobject jmeth)
         return false;
     }
 
-    return env->IsSameObject(jo, jobj) && env->CallBooleanMethod(jmethod, MID_Object_equals, jmeth);
+    bool same = env->IsSameObject(jo, jobj) && env->CallBooleanMethod(jmethod, MID_Object_equals, jmeth);
+    env->DeleteLocalRef(jo);
+    return same;
+}
+
+/**
+ * Parse the argument conditions of a signal handler rule, a comma separated
+ * list of argN='value' and argNpath='value' entries in the syntax of a D-Bus
+ * match rule.
+ */
+QStatus JSignalHandler::SetRule(const char* rule)
+{
+    argMatches.clear();
+    if (!rule) {
+        return ER_OK;
+    }
+
+    const char* p = rule;
+    while (*p) {
+        while (*p == ' ' || *p == ',') {
+            ++p;
+        }
+        if (!*p) {
+            break;
+        }
+
+        if (strncmp(p, "arg", 3) != 0) {
+            return ER_BUS_BAD_VALUE;
+        }
+        p += 3;
+        if (*p < '0' || *p > '9') {
+            return ER_BUS_BAD_VALUE;
+        }
+        ArgMatch match;
+        match.index = 0;
+        while (*p >= '0' && *p <= '9') {
+            match.index = match.index * 10 + (*p++ - '0');
+            if (match.index > 63) {
+                return ER_BUS_BAD_VALUE;
+            }
+        }
+        match.path = (strncmp(p, "path", 4) == 0);
+        if (match.path) {
+            p += 4;
+        }
+        if (p[0] != '=' || p[1] != '\'') {
+            return ER_BUS_BAD_VALUE;
+        }
+        p += 2;
+        const char* end = strchr(p, '\'');
+        if (!end) {
+            return ER_BUS_BAD_VALUE;
+        }
+        match.value = String(p, end - p);
+        argMatches.push_back(match);
+
+        p = end + 1;
+        while (*p == ' ') {
+            ++p;
+        }
+        if (*p && *p != ',') {
+            return ER_BUS_BAD_VALUE;
+        }
+    }
+    return ER_OK;
+}
+
+/**
+ * Check the arguments of a signal against the rule of this signal handler
+ * without unmarshalling them into Java objects.
+ */
+bool JSignalHandler::Matches(Message& msg)
+{
+    if (argMatches.empty()) {
+        return true;
+    }
+
+    size_t numArgs;
+    const MsgArg* args;
+    msg->GetArgs(numArgs, args);
+
+    for (vector<ArgMatch>::const_iterator i = argMatches.begin(); i != argMatches.end(); ++i) {
+        if (i->index >= numArgs) {
+            return false;
+        }
+        const MsgArg& arg = args[i->index];
+        const char* str;
+        size_t len;
+        if (arg.typeId == ALLJOYN_STRING) {
+            str = arg.v_string.str;
+            len = arg.v_string.len;
+        } else if (i->path && arg.typeId == ALLJOYN_OBJECT_PATH) {
+            str = arg.v_objPath.str;
+            len = arg.v_objPath.len;
+        } else {
+            return false;
+        }
+
+        const String& value = i->value;
+        if (len == value.size() && memcmp(str, value.c_str(), len) == 0) {
+            continue;
+        }
+        if (!i->path) {
+            return false;
+        }
+        /*
+         * A path matches if either it or the value ends in '/' and is a
+         * prefix of the other.
+         */
+        if (value.size() && value[value.size() - 1] == '/' && len > value.size() &&
+            memcmp(str, value.c_str(), value.size()) == 0) {
+            continue;
+        }
+        if (len && str[len - 1] == '/' && len < value.size() &&
+            memcmp(str, value.c_str(), len) == 0) {
+            continue;
+        }
+        return false;
+    }
+    return true;
 }
 
 QStatus JSignalHandler::Register(BusAttachment& bus, const char* ifaceName, const char* signalName,
@@ -8351,6 +9991,13 @@ void JSignalHandler::SignalHandler(const InterfaceDescription::Member* member,
                                    const char* sourcePath,
                                    Message& msg)
 {
+    /*
+     * Signals that do not match the rule never cross into the JVM.
+     */
+    if (!Matches(msg)) {
+        return;
+    }
+
     /*
      * JScopedEnv will automagically attach the JVM to the current native
      * thread.
@@ -8365,13 +10012,6 @@ void JSignalHandler::SignalHandler(const InterfaceDescription::Member* member,
         return;
     }
 
-    JLocalRef<jclass> clazz = env->GetObjectClass(jmethod);
-    jmethodID mid = env->GetMethodID(clazz, "invoke",
-                                     "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
-    if (!mid) {
-        return;
-    }
-
     /*
      * The weak global reference jsignalHandler cannot be directly used.  We
      * have to get a "hard" reference to it and then use that.  If you try to
@@ -8381,12 +10021,32 @@ void JSignalHandler::SignalHandler(const InterfaceDescription::Member* member,
     if (!jo) {
         return;
     }
-    env->CallObjectMethod(jmethod, mid, jo, (jobjectArray)jargs);
+
+    if (!jqueue) {
+        env->CallObjectMethod(jmethod, MID_Method_invoke, jo, (jobjectArray)jargs);
+        return;
+    }
+
+    /*
+     * The handler runs later on another thread, so it gets a message context
+     * of its own rather than the thread-local one set up above.  Queueing may
+     * block this thread if the queue is full and its overflow policy says so.
+     */
+    JLocalRef<jobject> jcontext = NewMessageContext(msg);
+    if (!jcontext) {
+        return;
+    }
+    env->CallVoidMethod(jqueue, MID_SignalHandlerQueue_enqueue, jo, jmethod, (jobjectArray)jargs,
+                        (jobject)jcontext);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("JSignalHandler::SignalHandler(): Exception"));
+    }
 }
 
 JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerNativeSignalHandler(JNIEnv* env, jobject thiz, jstring jifaceName,
                                                                                          jstring jsignalName, jobject jsignalHandler,
-                                                                                         jobject jmethod, jstring jsource)
+                                                                                         jobject jmethod, jstring jsource, jstring jrule,
+                                                                                         jboolean jaddMatch, jobject jqueue)
 {
     QCC_DbgPrintf(("BusAttachment_registerNativeSignalHandler()"));
 
@@ -8410,6 +10070,11 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerNativeSigna
         srcPath = source.c_str();
     }
 
+    JString rule(jrule);
+    if (env->ExceptionCheck()) {
+        return NULL;
+    }
+
     JBusAttachment* busPtr = GetHandle<JBusAttachment*>(thiz);
     if (env->ExceptionCheck()) {
         QCC_LogError(ER_FAIL, ("BusAttachment_registerNativeSignalHandler(): Exception"));
@@ -8428,7 +10093,8 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerNativeSigna
 
     QCC_DbgPrintf(("BusAttachment_registerNativeSignalHandler(): Refcount on busPtr is %d", busPtr->GetRef()));
 
-    QStatus status = busPtr->RegisterSignalHandler(ifaceName.c_str(), signalName.c_str(), jsignalHandler, jmethod, srcPath);
+    QStatus status = busPtr->RegisterSignalHandler(ifaceName.c_str(), signalName.c_str(), jsignalHandler, jmethod, srcPath,
+                                                   rule.c_str(), jaddMatch, jqueue);
     if (env->ExceptionCheck()) {
         QCC_LogError(ER_FAIL, ("BusAttachment_registerBusObject(): Exception"));
         return NULL;
@@ -8707,59 +10373,64 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_reloadKeyStore(JNIE
     return JStatus(status);
 }
 
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_getMessageContext(JNIEnv* env, jobject thiz)
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_currentMessageContext(JNIEnv* env, jobject thiz,
+                                                                                  jboolean populate)
 {
-    QCC_DbgPrintf(("BusAttachment_getMessageContext()"));
+    QCC_DbgPrintf(("BusAttachment_currentMessageContext()"));
 
-    Message msg = MessageContext::GetMessage();
+    const Message* msg = MessageContext::GetMessage();
+    if (!msg) {
+        QCC_LogError(ER_FAIL, ("BusAttachment_currentMessageContext(): No message for this thread"));
+        return NULL;
+    }
+
+    if (!populate) {
+        return NewMessageContext(*msg);
+    }
 
-    JLocalRef<jstring> jobjectPath = env->NewStringUTF(msg->GetObjectPath());
+    /*
+     * Every field is wanted, so convert them all now instead of keeping a
+     * copy of the message for the getters to convert later.
+     */
+    JLocalRef<jstring> jobjectPath = env->NewStringUTF((*msg)->GetObjectPath());
     if (!jobjectPath) {
         return NULL;
     }
 
-    JLocalRef<jstring> jinterfaceName = env->NewStringUTF(msg->GetInterface());
+    JLocalRef<jstring> jinterfaceName = env->NewStringUTF((*msg)->GetInterface());
     if (!jinterfaceName) {
         return NULL;
     }
 
-    JLocalRef<jstring> jmemberName = env->NewStringUTF(msg->GetMemberName());
+    JLocalRef<jstring> jmemberName = env->NewStringUTF((*msg)->GetMemberName());
     if (!jmemberName) {
         return NULL;
     }
 
-    JLocalRef<jstring> jdestination = env->NewStringUTF(msg->GetDestination());
+    JLocalRef<jstring> jdestination = env->NewStringUTF((*msg)->GetDestination());
     if (!jdestination) {
         return NULL;
     }
 
-    JLocalRef<jstring> jsender = env->NewStringUTF(msg->GetSender());
+    JLocalRef<jstring> jsender = env->NewStringUTF((*msg)->GetSender());
     if (!jsender) {
         return NULL;
     }
 
-    JLocalRef<jstring> jsignature = env->NewStringUTF(msg->GetSignature());
+    JLocalRef<jstring> jsignature = env->NewStringUTF((*msg)->GetSignature());
     if (!jsignature) {
         return NULL;
     }
 
-    JLocalRef<jstring> jauthMechanism = env->NewStringUTF(msg->GetAuthMechanism().c_str());
+    JLocalRef<jstring> jauthMechanism = env->NewStringUTF((*msg)->GetAuthMechanism().c_str());
     if (!jauthMechanism) {
         return NULL;
     }
 
-    SessionId sessionId = msg->GetSessionId();
-    uint32_t serial = msg->GetCallSerial();
-
-    jmethodID mid = env->GetMethodID(CLS_MessageContext, "<init>", "(ZLjava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;I)V");
-    if (!mid) {
-        return NULL;
-    }
-
-    return env->NewObject(CLS_MessageContext, mid, msg->IsUnreliable(), (jstring)jobjectPath,
-                          (jstring)jinterfaceName, (jstring)jmemberName, (jstring)jdestination,
-                          (jstring)jsender, sessionId, (jstring)jsignature, (jstring)jauthMechanism,
-                          serial);
+    return env->NewObject(CLS_MessageContext, MID_MessageContext_initPopulated, (*msg)->IsUnreliable(),
+                          (jstring)jobjectPath, (jstring)jinterfaceName, (jstring)jmemberName,
+                          (jstring)jdestination, (jstring)jsender, (jint)(*msg)->GetSessionId(),
+                          (jstring)jsignature, (jstring)jauthMechanism, (jint)(*msg)->GetCallSerial());
 }
 
 JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_enableConcurrentCallbacks(JNIEnv* env, jobject thiz)
@@ -9739,31 +11410,266 @@ JNIEXPORT jboolean JNICALL Java_org_alljoyn_bus_ProxyBusObject_isProxyBusObjectS
     return proxyBusObj->IsSecure();
 }
 
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signal(JNIEnv* env, jobject thiz, jobject jbusObject, jstring jdestination,
-                                                                 jint sessionId, jstring jifaceName, jstring jsignalName,
-                                                                 jstring jinputSig, jobjectArray jargs, jint timeToLive, jint flags,
-                                                                 jobject jmsgContext)
+JNIEXPORT jstring JNICALL Java_org_alljoyn_bus_MessageContext_getString(JNIEnv* env, jobject thiz, jint field)
 {
-    QCC_DbgPrintf(("SignalEmitter_signal()"));
+    QCC_DbgPrintf(("MessageContext_getString()"));
 
-    JString destination(jdestination);
+    Message* msg = GetHandle<Message*>(thiz);
     if (env->ExceptionCheck()) {
-        QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
+        QCC_LogError(ER_FAIL, ("MessageContext_getString(): Exception"));
+        return NULL;
+    }
+
+    /* A context constructed by the application has no message behind it. */
+    if (msg == NULL) {
+        return NULL;
+    }
+
+    switch (field) {
+    case 0:
+        return env->NewStringUTF((*msg)->GetObjectPath());
+
+    case 1:
+        return env->NewStringUTF((*msg)->GetInterface());
+
+    case 2:
+        return env->NewStringUTF((*msg)->GetMemberName());
+
+    case 3:
+        return env->NewStringUTF((*msg)->GetDestination());
+
+    case 4:
+        return env->NewStringUTF((*msg)->GetSender());
+
+    case 5:
+        return env->NewStringUTF((*msg)->GetSignature());
+
+    case 6:
+        return env->NewStringUTF((*msg)->GetAuthMechanism().c_str());
+
+    default:
+        QCC_LogError(ER_FAIL, ("MessageContext_getString(): Unknown field %d", field));
+        return NULL;
+    }
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MessageContext_destroy(JNIEnv* env, jobject thiz)
+{
+    QCC_DbgPrintf(("MessageContext_destroy()"));
+
+    Message* msg = GetHandle<Message*>(thiz);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MessageContext_destroy(): Exception"));
         return;
     }
 
-    JString ifaceName(jifaceName);
+    if (msg == NULL) {
+        return;
+    }
+
+    delete msg;
+
+    SetHandle(thiz, NULL);
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_invoke(JNIEnv* env, jobject thiz)
+{
+    QCC_DbgPrintf(("MethodCall_invoke()"));
+
+    JMethodCall* call = GetHandle<JMethodCall*>(thiz);
     if (env->ExceptionCheck()) {
-        QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
+        QCC_LogError(ER_FAIL, ("MethodCall_invoke(): Exception"));
+        return;
+    }
+
+    if (call == NULL) {
+        QCC_DbgPrintf(("MethodCall_invoke(): Already invoked. Returning."));
+        return;
+    }
+
+    /*
+     * A method call may only be replied to once, so forget about the C++
+     * object before calling out to the bus object.
+     */
+    SetHandle(thiz, NULL);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_invoke(): Exception"));
+        return;
+    }
+
+    call->Invoke();
+
+    /*
+     * Nobody is waiting on the dispatcher thread for the outcome of the reply,
+     * so log and clear any exception instead of letting it escape run().
+     */
+    {
+        JLocalRef<jthrowable> ex = env->ExceptionOccurred();
+        if (ex) {
+            env->ExceptionClear();
+            env->CallStaticVoidMethod(CLS_BusException, MID_BusException_log, (jthrowable)ex);
+        }
+    }
+
+    delete call;
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_sendReply(JNIEnv* env, jobject thiz, jobject jreply)
+{
+    QCC_DbgPrintf(("MethodCall_sendReply()"));
+
+    JMethodCall* call = GetHandle<JMethodCall*>(thiz);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_sendReply(): Exception"));
         return;
     }
 
+    if (call == NULL) {
+        QCC_LogError(ER_BUS_NO_CALL_FOR_REPLY, ("MethodCall_sendReply(): Already replied"));
+        return;
+    }
+
+    SetHandle(thiz, NULL);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_sendReply(): Exception"));
+        return;
+    }
+
+    call->Reply(jreply);
+
+    /*
+     * Whoever completed the DeferredReply has no way to deal with a failure
+     * to send the reply, so log and clear any exception.
+     */
+    {
+        JLocalRef<jthrowable> ex = env->ExceptionOccurred();
+        if (ex) {
+            env->ExceptionClear();
+            env->CallStaticVoidMethod(CLS_BusException, MID_BusException_log, (jthrowable)ex);
+        }
+    }
+
+    delete call;
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_sendErrorReply(JNIEnv* env, jobject thiz, jthrowable jexception)
+{
+    QCC_DbgPrintf(("MethodCall_sendErrorReply()"));
+
+    JMethodCall* call = GetHandle<JMethodCall*>(thiz);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_sendErrorReply(): Exception"));
+        return;
+    }
+
+    if (call == NULL) {
+        QCC_LogError(ER_BUS_NO_CALL_FOR_REPLY, ("MethodCall_sendErrorReply(): Already replied"));
+        return;
+    }
+
+    SetHandle(thiz, NULL);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_sendErrorReply(): Exception"));
+        return;
+    }
+
+    call->ErrorReply(jexception);
+    delete call;
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_destroy(JNIEnv* env, jobject thiz)
+{
+    QCC_DbgPrintf(("MethodCall_destroy()"));
+
+    JMethodCall* call = GetHandle<JMethodCall*>(thiz);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_destroy(): Exception"));
+        return;
+    }
+
+    if (call == NULL) {
+        QCC_DbgPrintf(("MethodCall_destroy(): Already destroyed. Returning."));
+        return;
+    }
+
+    SetHandle(thiz, NULL);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("MethodCall_destroy(): Exception"));
+        return;
+    }
+
+    /*
+     * The method call was never run, or its DeferredReply was dropped without
+     * being completed, so send an error reply now rather than leave the caller
+     * waiting until its call times out.
+     */
+    QCC_LogError(ER_FAIL, ("MethodCall_destroy(): Method call was never replied to"));
+    call->ErrorReply(NULL);
+    if (env->ExceptionCheck()) {
+        env->ExceptionClear();
+    }
+    delete call;
+}
+
+/**
+ * Get the native member of a signal sent by a bus object.
+ *
+ * A Java SignalEmitter.Signal remembers the member it was last resolved to
+ * along with the identifier of the backing bus object it was resolved on, so
+ * the interface and member names are only looked up the first time a signal
+ * is sent from a registered bus object.  Must be called with a reference
+ * taken on the backing object and the lock of its shard of the global bus
+ * object map held (see AcquireBackingObject).  The reference keeps the
+ * remembered member valid and the shard lock, which every sender of the
+ * signal takes, keeps the two fields consistent.
+ *
+ * @param env The environment pointer.
+ * @param busObject The backing object of the bus object sending the signal.
+ * @param jsignal The Java SignalEmitter.Signal describing the signal.
+ * @param signal Returns the member.
+ *
+ * @return ER_OK if the member was found.
+ */
+static QStatus GetSignalMember(JNIEnv* env, JBusObject* busObject, jobject jsignal, const InterfaceDescription::Member*& signal)
+{
+    if (env->GetIntField(jsignal, FID_Signal_owner) == busObject->GetId()) {
+        signal = reinterpret_cast<const InterfaceDescription::Member*>(env->GetLongField(jsignal, FID_Signal_member));
+        return ER_OK;
+    }
+
+    JLocalRef<jstring> jifaceName = (jstring)env->GetObjectField(jsignal, FID_Signal_ifaceName);
+    JString ifaceName(jifaceName);
+    if (env->ExceptionCheck()) {
+        return ER_FAIL;
+    }
+
+    JLocalRef<jstring> jsignalName = (jstring)env->GetObjectField(jsignal, FID_Signal_signalName);
     JString signalName(jsignalName);
+    if (env->ExceptionCheck()) {
+        return ER_FAIL;
+    }
+
+    QStatus status = busObject->FindSignal(ifaceName.c_str(), signalName.c_str(), signal);
+    if (ER_OK == status) {
+        env->SetLongField(jsignal, FID_Signal_member, reinterpret_cast<jlong>(signal));
+        env->SetIntField(jsignal, FID_Signal_owner, busObject->GetId());
+    }
+    return status;
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signal(JNIEnv* env, jobject thiz, jobject jbusObject, jstring jdestination,
+                                                                 jint sessionId, jobject jsignal, jobjectArray jargs, jint timeToLive,
+                                                                 jint flags, jobject jmsgContext)
+{
+    QCC_DbgPrintf(("SignalEmitter_signal()"));
+
+    JString destination(jdestination);
     if (env->ExceptionCheck()) {
         QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
         return;
     }
 
+    JLocalRef<jstring> jinputSig = (jstring)env->GetObjectField(jsignal, FID_Signal_inputSig);
     JString inputSig(jinputSig);
     if (env->ExceptionCheck()) {
         QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
@@ -9784,58 +11690,272 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signal(JNIEnv* env, jo
      * would mess us up.  For example, she could call signal on one thread and also
      * "simultaneously" call UnregisterBusObject on another, which could cause the
      * C++ backing object to be deleted out from under us.  To prevent such scenarios
-     * we take the global bus object map lock during the entire signal processing
-     * time.  This does mean that if the Signal function causes the execution of
-     * something that needs to come back in and manage the global bus objects, we
-     * will deadlock.
+     * we take a reference to the backing object for the entire signal processing
+     * time.  The lock of the map shard holding the object is only held while the
+     * member is looked up, so signals sent from other bus objects, and other
+     * signals sent from this one, are not held up while this one is sent.
      */
-    QCC_DbgPrintf(("SignalEmitter_signal(): Taking global Bus Object map lock"));
-    gBusObjectMapLock.Lock();
-    JBusObject* busObject = GetBackingObject(jbusObject);
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
     if (!busObject) {
-        QCC_DbgPrintf(("SignalEmitter_signal(): Releasing global Bus Object map lock"));
-        gBusObjectMapLock.Unlock();
+        shard->lock.Unlock();
         QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
         env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
         return;
     }
 
+    const InterfaceDescription::Member* signal = NULL;
+    QStatus status = GetSignalMember(env, busObject, jsignal, signal);
+    shard->lock.Unlock();
+
     BusAttachment& bus = const_cast<BusAttachment&>(busObject->GetBusAttachment());
     Message msg(bus);
-    QStatus status = busObject->Signal(destination.c_str(), sessionId, ifaceName.c_str(), signalName.c_str(),
-                                       args.v_struct.members, args.v_struct.numMembers, timeToLive, flags, msg);
+    if (ER_OK == status) {
+        status = busObject->Signal(destination.c_str(), sessionId, *signal, args.v_struct.members,
+                                   args.v_struct.numMembers, timeToLive, flags, msg);
+    }
 
-    QCC_DbgPrintf(("SignalEmitter_signal(): Releasing global Bus Object map lock"));
-    gBusObjectMapLock.Unlock();
+    busObject->DecRef();
 
-    if (ER_OK == status) {
-        /* Update MessageContext */
-        jclass msgCtxClass = env->FindClass("org/alljoyn/bus/MessageContext");
-        jfieldID fid = env->GetFieldID(msgCtxClass, "isUnreliable", "Z");
-        env->SetBooleanField(jmsgContext, fid, msg->IsUnreliable());
-        fid = env->GetFieldID(msgCtxClass, "objectPath", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetObjectPath()));
-        fid = env->GetFieldID(msgCtxClass, "interfaceName", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetInterface()));
-        fid = env->GetFieldID(msgCtxClass, "memberName", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetMemberName()));
-        fid = env->GetFieldID(msgCtxClass, "destination", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetDestination()));
-        fid = env->GetFieldID(msgCtxClass, "sender", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetSender()));
-        fid = env->GetFieldID(msgCtxClass, "sessionId", "I");
-        env->SetIntField(jmsgContext, fid, msg->GetSessionId());
-        fid = env->GetFieldID(msgCtxClass, "serial", "I");
-        env->SetIntField(jmsgContext, fid, msg->GetCallSerial());
-        fid = env->GetFieldID(msgCtxClass, "signature", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetSignature()));
-        fid = env->GetFieldID(msgCtxClass, "authMechanism", "Ljava/lang/String;");
-        env->SetObjectField(jmsgContext, fid, env->NewStringUTF(msg->GetAuthMechanism().c_str()));
+    /*
+     * Hand the emitter's MessageContext its own reference to the message.
+     * The fields are only converted to Java if the context is asked for.
+     */
+    if (ER_OK == status && jmsgContext) {
+        Message* handle = new Message(msg);
+        env->CallVoidMethod(jmsgContext, MID_MessageContext_setMessage, (jlong)handle, msg->IsUnreliable(),
+                            msg->GetSessionId(), msg->GetCallSerial());
+        if (env->ExceptionCheck()) {
+            QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
+            delete handle;
+            return;
+        }
     }
 
     if (ER_OK != status) {
         QCC_LogError(ER_FAIL, ("SignalEmitter_signal(): Exception"));
-        env->ThrowNew(CLS_BusException, QCC_StatusText(status));
+        if (!env->ExceptionCheck()) {
+            env->ThrowNew(CLS_BusException, QCC_StatusText(status));
+        }
+    }
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signalBatch(JNIEnv* env, jobject thiz, jobject jbusObject, jstring jdestination,
+                                                                      jint sessionId, jobjectArray jsignals, jobjectArray jargs,
+                                                                      jint timeToLive, jint flags, jobjectArray jstatuses,
+                                                                      jintArray jserials)
+{
+    QCC_DbgPrintf(("SignalEmitter_signalBatch()"));
+
+    JString destination(jdestination);
+    if (env->ExceptionCheck()) {
+        QCC_LogError(ER_FAIL, ("SignalEmitter_signalBatch(): Exception"));
+        return;
+    }
+
+    jsize count = env->GetArrayLength(jsignals);
+    MsgArg* args = new MsgArg[count];
+    QStatus* statuses = new QStatus[count];
+    jint* serials = new jint[count];
+
+    /*
+     * Marshal everything before taking the lock.  The signature string is
+     * handed straight back to MsgArg.marshal, so unlike a single signal there
+     * is no conversion to UTF-8 and back.  A signal whose arguments cannot be
+     * marshalled is reported in its status and the rest are still sent.
+     */
+    for (jsize i = 0; i < count; ++i) {
+        serials[i] = 0;
+        JLocalRef<jobject> jsignal = env->GetObjectArrayElement(jsignals, i);
+        JLocalRef<jobjectArray> jsignalArgs = (jobjectArray)env->GetObjectArrayElement(jargs, i);
+        JLocalRef<jstring> jinputSig = (jstring)env->GetObjectField(jsignal, FID_Signal_inputSig);
+        env->CallStaticVoidMethod(CLS_MsgArg, MID_MsgArg_marshal_array, (jlong)&args[i], (jstring)jinputSig,
+                                  (jobjectArray)jsignalArgs);
+        JLocalRef<jthrowable> ex = env->ExceptionOccurred();
+        if (ex) {
+            env->ExceptionClear();
+            env->CallStaticVoidMethod(CLS_BusException, MID_BusException_log, (jthrowable)ex);
+            statuses[i] = ER_BUS_BAD_VALUE;
+        } else {
+            statuses[i] = ER_OK;
+        }
+    }
+
+    /*
+     * See SignalEmitter_signal for why a reference to the backing object is
+     * held while the signals are sent.  Here the members of the whole batch
+     * are looked up under one acquisition of the map shard lock.
+     */
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    if (!busObject) {
+        shard->lock.Unlock();
+        delete [] args;
+        delete [] statuses;
+        delete [] serials;
+        QCC_LogError(ER_FAIL, ("SignalEmitter_signalBatch(): Exception"));
+        env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
+        return;
+    }
+
+    const InterfaceDescription::Member** signals = new const InterfaceDescription::Member*[count];
+    for (jsize i = 0; i < count; ++i) {
+        signals[i] = NULL;
+        if (ER_OK != statuses[i]) {
+            continue;
+        }
+        JLocalRef<jobject> jsignal = env->GetObjectArrayElement(jsignals, i);
+        statuses[i] = GetSignalMember(env, busObject, jsignal, signals[i]);
+        if (env->ExceptionCheck()) {
+            env->ExceptionClear();
+        }
+    }
+    shard->lock.Unlock();
+
+    BusAttachment& bus = const_cast<BusAttachment&>(busObject->GetBusAttachment());
+    for (jsize i = 0; i < count; ++i) {
+        if (ER_OK == statuses[i]) {
+            Message msg(bus);
+            statuses[i] = busObject->Signal(destination.c_str(), sessionId, *signals[i], args[i].v_struct.members,
+                                            args[i].v_struct.numMembers, timeToLive, flags, msg);
+            if (ER_OK == statuses[i]) {
+                serials[i] = msg->GetCallSerial();
+            }
+        }
+    }
+
+    busObject->DecRef();
+    delete [] signals;
+
+    env->SetIntArrayRegion(jserials, 0, count, serials);
+    for (jsize i = 0; i < count && !env->ExceptionCheck(); ++i) {
+        JLocalRef<jobject> jstatus = JStatus(statuses[i]);
+        env->SetObjectArrayElement(jstatuses, i, jstatus);
+    }
+
+    delete [] args;
+    delete [] statuses;
+    delete [] serials;
+}
+
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signalFanOut(JNIEnv* env, jobject thiz, jobject jbusObject,
+                                                                       jobjectArray jdestinations, jintArray jsessionIds,
+                                                                       jobject jsignal, jobjectArray jargs, jint timeToLive,
+                                                                       jint flags, jobjectArray jstatuses, jintArray jserials)
+{
+    QCC_DbgPrintf(("SignalEmitter_signalFanOut()"));
+
+    jsize count = env->GetArrayLength(jsessionIds);
+    jint* sessionIds = new jint[count];
+    env->GetIntArrayRegion(jsessionIds, 0, count, sessionIds);
+
+    /*
+     * A NULL destination is kept apart from an empty one since only the
+     * former means a broadcast to the session.
+     */
+    vector<String> destinations(count);
+    vector<bool> hasDestination(count, false);
+    for (jsize i = 0; i < count; ++i) {
+        JLocalRef<jstring> jdestination = (jstring)env->GetObjectArrayElement(jdestinations, i);
+        if (jdestination) {
+            JString destination(jdestination);
+            if (env->ExceptionCheck()) {
+                delete [] sessionIds;
+                QCC_LogError(ER_FAIL, ("SignalEmitter_signalFanOut(): Exception"));
+                return;
+            }
+            destinations[i] = destination.c_str();
+            hasDestination[i] = true;
+        }
+    }
+
+    JLocalRef<jstring> jinputSig = (jstring)env->GetObjectField(jsignal, FID_Signal_inputSig);
+    JString inputSig(jinputSig);
+    if (env->ExceptionCheck()) {
+        delete [] sessionIds;
+        QCC_LogError(ER_FAIL, ("SignalEmitter_signalFanOut(): Exception"));
+        return;
+    }
+
+    /*
+     * The arguments are marshalled once for all of the targets.
+     */
+    MsgArg args;
+    if (!Marshal(inputSig.c_str(), jargs, &args)) {
+        delete [] sessionIds;
+        QCC_LogError(ER_FAIL, ("SignalEmitter_signalFanOut(): Marshal() error"));
+        return;
+    }
+
+    QStatus* statuses = new QStatus[count];
+    jint* serials = new jint[count];
+
+    /*
+     * See SignalEmitter_signal for why a reference to the backing object is
+     * held while the signals are sent.
+     */
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    if (!busObject) {
+        shard->lock.Unlock();
+        delete [] sessionIds;
+        delete [] statuses;
+        delete [] serials;
+        QCC_LogError(ER_FAIL, ("SignalEmitter_signalFanOut(): Exception"));
+        env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
+        return;
+    }
+
+    const InterfaceDescription::Member* signal = NULL;
+    QStatus status = GetSignalMember(env, busObject, jsignal, signal);
+    shard->lock.Unlock();
+
+    BusAttachment& bus = const_cast<BusAttachment&>(busObject->GetBusAttachment());
+    for (jsize i = 0; i < count; ++i) {
+        serials[i] = 0;
+        statuses[i] = status;
+        if (ER_OK == status) {
+            Message msg(bus);
+            statuses[i] = busObject->Signal(hasDestination[i] ? destinations[i].c_str() : NULL, sessionIds[i], *signal,
+                                            args.v_struct.members, args.v_struct.numMembers, timeToLive, flags, msg);
+            if (ER_OK == statuses[i]) {
+                serials[i] = msg->GetCallSerial();
+            }
+        }
+    }
+
+    busObject->DecRef();
+
+    if (env->ExceptionCheck()) {
+        env->ExceptionClear();
+    }
+    env->SetIntArrayRegion(jserials, 0, count, serials);
+    for (jsize i = 0; i < count && !env->ExceptionCheck(); ++i) {
+        JLocalRef<jobject> jstatus = JStatus(statuses[i]);
+        env->SetObjectArrayElement(jstatuses, i, jstatus);
+    }
+
+    /*
+     * The status of each target is reported either way, but if the signal
+     * could not be sent to any of them the proxy throws as well.
+     */
+    QStatus failure = ER_OK;
+    for (jsize i = 0; i < count; ++i) {
+        if (ER_OK == statuses[i]) {
+            failure = ER_OK;
+            break;
+        } else if (ER_OK == failure) {
+            failure = statuses[i];
+        }
+    }
+
+    delete [] sessionIds;
+    delete [] statuses;
+    delete [] serials;
+
+    if (ER_OK != failure && !env->ExceptionCheck()) {
+        QCC_LogError(failure, ("SignalEmitter_signalFanOut(): No signal sent"));
+        env->ThrowNew(CLS_BusException, QCC_StatusText(failure));
     }
 }
 
@@ -9843,10 +11963,10 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_SignalEmitter_cancelSessionlessSi
 {
     QCC_DbgPrintf(("SignalEmitter_cancelSessionlessSignal()"));
 
-    gBusObjectMapLock.Lock();
-    JBusObject* busObject = GetBackingObject(jbusObject);
+    BusObjectMapShard* shard;
+    JBusObject* busObject = AcquireBackingObject(env, jbusObject, shard);
+    shard->lock.Unlock();
     if (!busObject) {
-        gBusObjectMapLock.Unlock();
         QCC_LogError(ER_FAIL, ("SignalEmitter_cancelSessionlessSignal(): Exception"));
         env->ThrowNew(CLS_BusException, QCC_StatusText(ER_BUS_NO_SUCH_OBJECT));
         return NULL;
@@ -9854,7 +11974,7 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_SignalEmitter_cancelSessionlessSi
 
     QStatus status = busObject->CancelSessionlessMessage(serialNum);
 
-    gBusObjectMapLock.Unlock();
+    busObject->DecRef();
 
     return JStatus(status);
 }
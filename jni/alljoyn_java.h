@@ -46,6 +46,22 @@ extern "C" {
 JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_emitChangedSignal
   (JNIEnv *, jobject, jobject, jstring, jstring, jobject, jint);
 
+/*
+ * Class:     org_alljoyn_bus_BusAttachment
+ * Method:    emitChangedSignals
+ * Signature: (Lorg/alljoyn/bus/BusObject;Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/Object;I)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_emitChangedSignals
+  (JNIEnv *, jobject, jobject, jstring, jobjectArray, jobjectArray, jint);
+
+/*
+ * Class:     org_alljoyn_bus_BusAttachment
+ * Method:    invalidateCachedProperty
+ * Signature: (Lorg/alljoyn/bus/BusObject;Ljava/lang/String;Ljava/lang/String;)Lorg/alljoyn/bus/Status;
+ */
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_invalidateCachedProperty
+  (JNIEnv *, jobject, jobject, jstring, jstring);
+
 /*
  * Class:     org_alljoyn_bus_BusAttachment
  * Method:    create
@@ -179,10 +195,10 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_cancelFindAdvertise
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    bindSessionPort
+ * Method:    bindSessionPortNative
  * Signature: (Lorg/alljoyn/bus/Mutable$ShortValue;Lorg/alljoyn/bus/SessionOpts;Lorg/alljoyn/bus/SessionPortListener;)Lorg/alljoyn/bus/Status;
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_bindSessionPort
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_bindSessionPortNative
   (JNIEnv *, jobject,
    jobject, jobject, jobject);
 
@@ -213,10 +229,10 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_SessionPortListener_destroy
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    joinSession
+ * Method:    joinSessionNative
  * Signature: (Ljava/lang/String;SLorg/alljoyn/bus/Mutable/IntegerValue;Lorg/alljoyn/bus/SessionOpts;Lorg/alljoyn/bus/SessionListener;)Lorg/alljoyn/bus/Status;
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_joinSession
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_joinSessionNative
   (JNIEnv *, jobject, jstring, jshort, jobject, jobject, jobject);
 
 /*
@@ -279,10 +295,10 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_OnJoinSessionListener_destroy
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    setSessionListener
+ * Method:    setSessionListenerNative
  * Signature: (I)Lorg/alljoyn/bus/Status;
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_setSessionListener
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_setSessionListenerNative
   (JNIEnv *, jobject,
    jint, jobject);
 
@@ -295,6 +311,94 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_getSessionFd
   (JNIEnv *, jobject,
    jint, jobject);
 
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    readDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_readDirect
+  (JNIEnv *, jclass, jint, jobject, jint, jint);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    readArray
+ * Signature: (I[BII)I
+ */
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_readArray
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    readv
+ * Signature: (I[Ljava/nio/ByteBuffer;I[I[I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_alljoyn_bus_RawSessionChannel_readv
+  (JNIEnv *, jclass, jint, jobjectArray, jint, jintArray, jintArray);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    writeDirect
+ * Signature: (ILjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_writeDirect
+  (JNIEnv *, jclass, jint, jobject, jint, jint);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    writeArray
+ * Signature: (I[BII)I
+ */
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_writeArray
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    writev
+ * Signature: (I[Ljava/nio/ByteBuffer;I[I[I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_alljoyn_bus_RawSessionChannel_writev
+  (JNIEnv *, jclass, jint, jobjectArray, jint, jintArray, jintArray);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    sendFile
+ * Signature: (ILjava/io/FileDescriptor;JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_org_alljoyn_bus_RawSessionChannel_sendFile
+  (JNIEnv *, jclass, jint, jobject, jlong, jlong);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    setBlocking
+ * Signature: (IZ)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_RawSessionChannel_setBlocking
+  (JNIEnv *, jclass, jint, jboolean);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    poll
+ * Signature: (III)I
+ */
+JNIEXPORT jint JNICALL Java_org_alljoyn_bus_RawSessionChannel_poll
+  (JNIEnv *, jclass, jint, jint, jint);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    shutdownSocket
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_RawSessionChannel_shutdownSocket
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     org_alljoyn_bus_RawSessionChannel
+ * Method:    closeSocket
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_RawSessionChannel_closeSocket
+  (JNIEnv *, jclass, jint);
+
 /*
  * Class:     org_alljoyn_bus_BusAttachment
  * Method:    setLinkTimeout
@@ -350,18 +454,18 @@ JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_useOSLogging
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    registerBusListener
+ * Method:    registerBusListenerNative
  * Signature: (Lorg/alljoyn/bus/BusListener;)V;
  */
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusListener
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusListenerNative
   (JNIEnv *, jobject, jobject);
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    unregisterBusListener
+ * Method:    unregisterBusListenerNative
  * Signature: (Lorg/alljoyn/bus/BusListener;)V;
  */
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusListener
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusListenerNative
   (JNIEnv *, jobject, jobject);
 
 /*
@@ -392,10 +496,10 @@ Java_org_alljoyn_bus_BusAttachment_enablePeerSecurity
 /*
  * Class:     org_alljoyn_bus_BusAttachment
  * Method:    registerBusObject
- * Signature: (Ljava/lang/String;Lorg/alljoyn/bus/BusObject;[Lorg/alljoyn/bus/InterfaceDescription;Z)Lorg/alljoyn/bus/Status;
+ * Signature: (Ljava/lang/String;Lorg/alljoyn/bus/BusObject;[Lorg/alljoyn/bus/InterfaceDescription;ZLorg/alljoyn/bus/MethodDispatcher;)Lorg/alljoyn/bus/Status;
  */
 JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerBusObject
-  (JNIEnv *, jobject, jstring, jobject, jobjectArray, jboolean);
+  (JNIEnv *, jobject, jstring, jobject, jobjectArray, jboolean, jobject);
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
@@ -407,19 +511,19 @@ JNIEXPORT jboolean JNICALL Java_org_alljoyn_bus_BusAttachment_isSecureBusObject
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    unregisterBusObject
+ * Method:    unregisterBusObjectNative
  * Signature: (Lorg/alljoyn/bus/BusObject;)V
  */
-JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusObject
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_BusAttachment_unregisterBusObjectNative
   (JNIEnv *, jobject, jobject);
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
  * Method:    registerNativeSignalHandler
- * Signature: (Ljava/lang/String;Ljava/lang/String;Ljava/lang/Object;Ljava/lang/reflect/Method;Ljava/lang/String;)Lorg/alljoyn/bus/Status;
+ * Signature: (Ljava/lang/String;Ljava/lang/String;Ljava/lang/Object;Ljava/lang/reflect/Method;Ljava/lang/String;Ljava/lang/String;ZLorg/alljoyn/bus/SignalHandlerQueue;)Lorg/alljoyn/bus/Status;
  */
 JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_registerNativeSignalHandler
-  (JNIEnv *, jobject, jstring, jstring, jobject, jobject, jstring);
+  (JNIEnv *, jobject, jstring, jstring, jobject, jobject, jstring, jstring, jboolean, jobject);
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
@@ -487,11 +591,11 @@ JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_reloadKeyStore
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
- * Method:    getMessageContext
- * Signature: ()Lorg/alljoyn/bus/MessageContext;
+ * Method:    currentMessageContext
+ * Signature: (Z)Lorg/alljoyn/bus/MessageContext;
  */
-JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_getMessageContext
-  (JNIEnv *, jobject);
+JNIEXPORT jobject JNICALL Java_org_alljoyn_bus_BusAttachment_currentMessageContext
+  (JNIEnv *, jobject, jboolean);
 
 /*
  * Class:     org_alljoyn_bus_BusAttachment
@@ -664,6 +768,65 @@ extern "C" {
 #ifdef __cplusplus
 extern "C" {
 #endif
+/*
+ * Class:     org_alljoyn_bus_MessageContext
+ * Method:    getString
+ * Signature: (I)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_alljoyn_bus_MessageContext_getString
+  (JNIEnv *, jobject, jint);
+
+/*
+ * Class:     org_alljoyn_bus_MessageContext
+ * Method:    destroy
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MessageContext_destroy
+  (JNIEnv *, jobject);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
+/* Header for class org_alljoyn_bus_MethodCall */
+
+#ifndef _Included_org_alljoyn_bus_MethodCall
+#define _Included_org_alljoyn_bus_MethodCall
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     org_alljoyn_bus_MethodCall
+ * Method:    invoke
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_invoke
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     org_alljoyn_bus_MethodCall
+ * Method:    sendReply
+ * Signature: (Ljava/lang/Object;)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_sendReply
+  (JNIEnv *, jobject, jobject);
+
+/*
+ * Class:     org_alljoyn_bus_MethodCall
+ * Method:    sendErrorReply
+ * Signature: (Ljava/lang/Throwable;)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_sendErrorReply
+  (JNIEnv *, jobject, jthrowable);
+
+/*
+ * Class:     org_alljoyn_bus_MethodCall
+ * Method:    destroy
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_MethodCall_destroy
+  (JNIEnv *, jobject);
+
 #ifdef __cplusplus
 }
 #endif
@@ -755,10 +918,26 @@ extern "C" {
 /*
  * Class:     org_alljoyn_bus_SignalEmitter
  * Method:    signal
- * Signature: (Lorg/alljoyn/bus/BusObject;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/Object;IILorg/alljoyn/bus/MessageContext)V
+ * Signature: (Lorg/alljoyn/bus/BusObject;Ljava/lang/String;ILorg/alljoyn/bus/SignalEmitter$Signal;[Ljava/lang/Object;IILorg/alljoyn/bus/MessageContext)V
  */
 JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signal
-(JNIEnv *, jobject, jobject, jstring, jint, jstring, jstring, jstring, jobjectArray, jint, jint, jobject);
+(JNIEnv *, jobject, jobject, jstring, jint, jobject, jobjectArray, jint, jint, jobject);
+
+/*
+ * Class:     org_alljoyn_bus_SignalEmitter
+ * Method:    signalBatch
+ * Signature: (Lorg/alljoyn/bus/BusObject;Ljava/lang/String;I[Lorg/alljoyn/bus/SignalEmitter$Signal;[[Ljava/lang/Object;II[Lorg/alljoyn/bus/Status;[I)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signalBatch
+(JNIEnv *, jobject, jobject, jstring, jint, jobjectArray, jobjectArray, jint, jint, jobjectArray, jintArray);
+
+/*
+ * Class:     org_alljoyn_bus_SignalEmitter
+ * Method:    signalFanOut
+ * Signature: (Lorg/alljoyn/bus/BusObject;[Ljava/lang/String;[ILorg/alljoyn/bus/SignalEmitter$Signal;[Ljava/lang/Object;II[Lorg/alljoyn/bus/Status;[I)V
+ */
+JNIEXPORT void JNICALL Java_org_alljoyn_bus_SignalEmitter_signalFanOut
+(JNIEnv *, jobject, jobject, jobjectArray, jintArray, jobject, jobjectArray, jint, jint, jobjectArray, jintArray);
 
 /*
  * Class:     org_alljoyn_bus_SignalEmitter
@@ -16,16 +16,15 @@
 
 package org.alljoyn.bus.samples.rawclient;
 
-import java.io.FileDescriptor;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
+import java.nio.channels.Channels;
 
 import org.alljoyn.bus.BusAttachment;
 import org.alljoyn.bus.BusListener;
 import org.alljoyn.bus.Mutable;
 import org.alljoyn.bus.ProxyBusObject;
+import org.alljoyn.bus.RawSessionChannel;
 import org.alljoyn.bus.SessionListener;
 import org.alljoyn.bus.SessionOpts;
 import org.alljoyn.bus.Status;
@@ -395,10 +394,9 @@ public class Client extends Activity {
              * fiel descriptor and will not be encapsulated in AllJoyn 
              * messages).
              * 
-             * Once we have joined the raw session, we can retrieve the 
-             * underlying session's OS socket file descriptor and build a Java
-             * FileDescriptor using a private constructor found via reflection.
-             * We then create a Java output stream using that FileDescriptor.
+             * Once we have joined the raw session, we open a
+             * RawSessionChannel on the underlying session's OS socket file
+             * descriptor and create a Java output stream on the channel.
              *
              * Once/If we have the raw session all set up, and have a Java IO
              * stream ready, we simply send the bytes of the string to the
@@ -438,37 +436,15 @@ public class Client extends Activity {
                         mRawSessionId = sessionId.value;
 
                         /*
-                         * The session is in raw mode, but we need to get a
-                         * socket file descriptor back from AllJoyn that
-                         * represents the established connection.  We are then
-                         * free to do whatever we want with the sock.
+                         * The session is in raw mode, but we need to get the
+                         * socket file descriptor that represents the
+                         * established connection back from AllJoyn.  A
+                         * RawSessionChannel owns that socket, and any Java
+                         * stream or NIO code can use the channel.
                          */
-                        logInfo("getSessionFd()");
-                        Mutable.IntegerValue sockFd = new Mutable.IntegerValue();
-                        status = mBus.getSessionFd(mRawSessionId, sockFd);
-                        logStatus("BusAttachment.getSessionFd()", status);
-                        if (status != Status.OK) {
-                        	break;
-                        }
-
-                      	/*
-                    	 * We have a socked FD, but now we need a Java file
-                    	 * descriptor.  There is no appropriate constructor,
-                    	 * public or not in the Dalvik FileDescriptor, so 
-                    	 * we new up a file descriptor and set its internal
-                    	 * descriptor field using reflection.
-                    	 */
-                    	Field field = FileDescriptor.class.getDeclaredField("descriptor");
-                    	field.setAccessible(true);
-                     	FileDescriptor fd = new FileDescriptor();
-                    	field.set(fd, sockFd.value);
-                    	
-                    	/*
-                    	 * Now that we have a FileDescriptor with an AllJoyn
-                    	 * raw session socket FD in it, we can use it like
-                    	 * any other "normal" FileDescriptor.
-                    	 */
-                        mOutputStream = new FileOutputStream(fd);
+                        logInfo("RawSessionChannel.open()");
+                        RawSessionChannel channel = RawSessionChannel.open(mBus, mRawSessionId);
+                        mOutputStream = Channels.newOutputStream(channel);
                         mStreamUp = true;
                     } catch (Throwable ex) {
                         logInfo(String.format("Exception bringing up raw stream: %s", ex.toString()));
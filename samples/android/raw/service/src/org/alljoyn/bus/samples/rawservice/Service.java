@@ -17,6 +17,7 @@
 package org.alljoyn.bus.samples.rawservice;
 
 import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.RawSessionChannel;
 import org.alljoyn.bus.SessionPortListener;
 import org.alljoyn.bus.BusObject;
 import org.alljoyn.bus.Mutable;
@@ -37,15 +38,13 @@ import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.Toast;
 
-import java.lang.reflect.Field;
 
 import java.io.InputStream;
-import java.io.FileDescriptor;
-import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.Channels;
 
 public class Service extends Activity {
     /*
@@ -478,37 +477,20 @@ public class Service extends Activity {
              * established connection.  Once we have the sock FD we are then
              * free to do whatever we want with it.
              *  
-             * What we are going to do with the sock FD is to create a Java
-             * file descriptor out of it, and then use that Java FD to create
+             * What we are going to do with the sock FD is to open a
+             * RawSessionChannel on it, and then use that channel to create
              * an input stream.
              */
             case JOINED: {               
-                /*
-                 * Get the socket FD from AllJoyn.  It is a socket FD just
-                 * any other file descriptor.
-                 */
-            	Mutable.IntegerValue sockFd = new Mutable.IntegerValue();
-                Status status = mBus.getSessionFd(mRawSessionId, sockFd);
-                logStatus("BusAttachment.getSession()", status);
                 try {
                 	/*
-                	 * We have a socked FD, but now we need a Java file
-                	 * descriptor.  There is no appropriate constructor,
-                	 * public or not in the Dalvik FileDescriptor, so 
-                	 * we new up a file descriptor and set its internal
-                	 * descriptor field using reflection.
-                	 */
-                	Field field = FileDescriptor.class.getDeclaredField("descriptor");
-                	field.setAccessible(true);
-                 	FileDescriptor fd = new FileDescriptor();
-                	field.set(fd, sockFd.value);
-                	
-                	/*
-                	 * Now that we have a FileDescriptor with an AllJoyn
-                	 * raw session socket FD in it, we can use it like
-                	 * any other "normal" FileDescriptor.
+                	 * Get the socket FD of the session from AllJoyn in a
+                	 * RawSessionChannel, and read from it with a Java input
+                	 * stream like any other channel.
                 	 */
-                	InputStream is = new FileInputStream(fd);
+                	RawSessionChannel channel = RawSessionChannel.open(mBus, mRawSessionId);
+                	logInfo("RawSessionChannel.open() succeeds");
+                	InputStream is = Channels.newInputStream(channel);
                 	final Reader reader = new BufferedReader(new InputStreamReader(is), 80);
                 	
                 	/*
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.alljoyn.bus.ifaces.BulkTransfer;
+
+/**
+ * A bus object that receives the transfers sent by {@link BulkSender}s and
+ * reassembles them into direct buffers or files.
+ *
+ * Chunks may arrive in any order and several at once; each is written in
+ * place as it arrives.  The receiver remembers the chunks of an unfinished
+ * transfer after the session it was sent in is lost, so that the sender can
+ * resume it, until the transfer is completed or cancelled.  Transfers are
+ * known by their names alone, so names must be unique among the senders
+ * using a receiver.
+ */
+public class BulkReceiver implements BulkTransfer, BusObject {
+
+    /** Told of the progress and completion of transfers. */
+    public static abstract class Listener {
+
+        /**
+         * Called each time a new chunk is received.  May be called from
+         * several threads at once.
+         *
+         * @param transferId the name of the transfer
+         * @param received the number of bytes received
+         * @param size the size of the data
+         */
+        public void progress(String transferId, long received, long size) {}
+
+        /**
+         * Called when a transfer into memory is complete.
+         *
+         * @param transferId the name of the transfer
+         * @param data a direct buffer holding the data, from position 0 to
+         *             its limit
+         */
+        public void received(String transferId, ByteBuffer data) {}
+
+        /**
+         * Called when a transfer into a file is complete.
+         *
+         * @param transferId the name of the transfer
+         * @param file the file holding the data
+         */
+        public void received(String transferId, File file) {}
+    }
+
+    /** The transfer names allowed as file names. */
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final File directory;
+    private final Listener listener;
+
+    /** The unfinished transfers, by name. */
+    private final Map<String, Transfer> transfers;
+
+    /**
+     * Constructs a BulkReceiver that receives transfers into direct buffers.
+     * Transfers must then be smaller than 2 GiB.
+     *
+     * @param listener the listener told of transfers
+     */
+    public BulkReceiver(Listener listener) {
+        this(null, listener);
+    }
+
+    /**
+     * Constructs a BulkReceiver that receives each transfer into a file
+     * named after it.
+     *
+     * @param directory the directory to receive files in, or null to
+     *                  receive into direct buffers
+     * @param listener the listener told of transfers
+     */
+    public BulkReceiver(File directory, Listener listener) {
+        this.directory = directory;
+        this.listener = listener;
+        this.transfers = new HashMap<String, Transfer>();
+    }
+
+    /** The state of an unfinished transfer. */
+    private static final class Transfer {
+        private final String transferId;
+        private final long size;
+        private final int chunkSize;
+        private final BitSet chunks;
+        private long received;
+        private ByteBuffer buffer;
+        private File file;
+        private RandomAccessFile raf;
+        private FileChannel channel;
+
+        Transfer(String transferId, long size, int chunkSize) {
+            this.transferId = transferId;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunks = new BitSet();
+        }
+
+        long chunkCount() {
+            return (size + chunkSize - 1) / chunkSize;
+        }
+
+        void close() {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ex) {
+                    BusException.log(ex);
+                }
+                raf = null;
+                channel = null;
+            }
+        }
+    }
+
+    public long Begin(String transferId, long size, int chunkSize) throws BusException {
+        if (size < 0 || chunkSize < 1 || (size + chunkSize - 1) / chunkSize > Integer.MAX_VALUE) {
+            throw new BusException("bad transfer size " + size + " or chunk size " + chunkSize);
+        }
+        if (directory == null && size > Integer.MAX_VALUE) {
+            throw new BusException("transfer of " + size + " bytes is too large for memory");
+        }
+        if (directory != null && !SAFE_NAME.matcher(transferId).matches()) {
+            throw new BusException("transfer name " + transferId + " is not a safe file name");
+        }
+
+        Transfer transfer;
+        synchronized (transfers) {
+            transfer = transfers.get(transferId);
+            if (transfer != null && transfer.size == size && transfer.chunkSize == chunkSize) {
+                synchronized (transfer) {
+                    return (long) transfer.chunks.nextClearBit(0) * chunkSize;
+                }
+            }
+            if (transfer != null) {
+                /* The data changed shape, so start over. */
+                synchronized (transfer) {
+                    transfer.close();
+                }
+            }
+            transfer = new Transfer(transferId, size, chunkSize);
+            try {
+                if (directory == null) {
+                    transfer.buffer = ByteBuffer.allocateDirect((int) size);
+                } else {
+                    transfer.file = new File(directory, transferId);
+                    transfer.raf = new RandomAccessFile(transfer.file, "rw");
+                    transfer.raf.setLength(size);
+                    transfer.channel = transfer.raf.getChannel();
+                }
+            } catch (IOException ex) {
+                transfer.close();
+                throw new BusException("cannot open " + transfer.file, ex);
+            } catch (OutOfMemoryError ex) {
+                throw new BusException("cannot allocate " + size + " bytes");
+            }
+            transfers.put(transferId, transfer);
+        }
+        return 0;
+    }
+
+    public void Chunk(String transferId, long offset, byte[] data) throws BusException {
+        Transfer transfer = getTransfer(transferId);
+        long index = offset / transfer.chunkSize;
+        if (offset < 0 || offset % transfer.chunkSize != 0 || index >= transfer.chunkCount()
+            || data.length != Math.min(transfer.chunkSize, transfer.size - offset)) {
+            throw new BusException("chunk at " + offset + " of " + data.length + " bytes does not fit transfer "
+                                   + transferId);
+        }
+
+        /* Chunks are written outside the lock; they never overlap. */
+        ByteBuffer src = ByteBuffer.wrap(data);
+        if (transfer.buffer != null) {
+            ByteBuffer dst = transfer.buffer.duplicate();
+            dst.position((int) offset);
+            dst.put(src);
+        } else {
+            FileChannel channel;
+            synchronized (transfer) {
+                channel = transfer.channel;
+            }
+            if (channel == null) {
+                throw new BusException("transfer " + transferId + " was cancelled");
+            }
+            try {
+                long position = offset;
+                while (src.hasRemaining()) {
+                    position += channel.write(src, position);
+                }
+            } catch (IOException ex) {
+                throw new BusException("cannot write " + transfer.file, ex);
+            }
+        }
+
+        long received;
+        synchronized (transfer) {
+            if (transfer.chunks.get((int) index)) {
+                return;
+            }
+            transfer.chunks.set((int) index);
+            transfer.received += data.length;
+            received = transfer.received;
+        }
+        if (listener != null) {
+            listener.progress(transferId, received, transfer.size);
+        }
+    }
+
+    public void End(String transferId) throws BusException {
+        Transfer transfer = getTransfer(transferId);
+        synchronized (transfer) {
+            if (transfer.chunks.cardinality() != transfer.chunkCount()) {
+                throw new BusException("transfer " + transferId + " is missing "
+                                       + (transfer.chunkCount() - transfer.chunks.cardinality()) + " chunks");
+            }
+            transfer.close();
+        }
+        synchronized (transfers) {
+            if (transfers.get(transferId) == transfer) {
+                transfers.remove(transferId);
+            }
+        }
+        if (listener == null) {
+            return;
+        }
+        if (transfer.buffer != null) {
+            ByteBuffer data = transfer.buffer.duplicate();
+            data.clear();
+            listener.received(transferId, data);
+        } else {
+            listener.received(transferId, transfer.file);
+        }
+    }
+
+    /**
+     * Forgets an unfinished transfer and deletes its partial file, if any.
+     *
+     * @param transferId the name of the transfer
+     */
+    public void cancel(String transferId) {
+        Transfer transfer;
+        synchronized (transfers) {
+            transfer = transfers.remove(transferId);
+        }
+        if (transfer != null) {
+            synchronized (transfer) {
+                transfer.close();
+            }
+            if (transfer.file != null) {
+                transfer.file.delete();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of bytes received of an unfinished transfer.
+     *
+     * @param transferId the name of the transfer
+     * @return the number of bytes received, or -1 if the transfer is unknown
+     */
+    public long getReceived(String transferId) {
+        Transfer transfer;
+        synchronized (transfers) {
+            transfer = transfers.get(transferId);
+        }
+        if (transfer == null) {
+            return -1;
+        }
+        synchronized (transfer) {
+            return transfer.received;
+        }
+    }
+
+    private Transfer getTransfer(String transferId) throws BusException {
+        synchronized (transfers) {
+            Transfer transfer = transfers.get(transferId);
+            if (transfer == null) {
+                throw new BusException("unknown transfer " + transferId);
+            }
+            return transfer;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.alljoyn.bus.ifaces.BulkTransfer;
+
+/**
+ * Sends data larger than a message to a {@link BulkReceiver} over a message
+ * session.
+ *
+ * The data is split into chunks that each fit in a message, and up to a
+ * window of chunks is kept in flight at once, each on its own thread, so
+ * that the link does not sit idle for a round trip after every chunk.  The
+ * receiver acknowledges each chunk and remembers the chunks it has.  If a
+ * send fails, for instance because the session was lost, sending the same
+ * transfer again, in the same session or a new one, resumes from the first
+ * chunk the receiver does not have.
+ */
+public class BulkSender {
+
+    /** The chunk size used unless another is set. */
+    public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+    /**
+     * The largest chunk size, which leaves room in a packet for the header
+     * and other arguments of the chunk message.
+     */
+    public static final int MAX_CHUNK_SIZE = BusAttachment.ALLJOYN_MAX_PACKET_LEN - 4096;
+
+    /** The number of chunks in flight unless another window is set. */
+    public static final int DEFAULT_WINDOW = 8;
+
+    /** Reports the progress of transfers. */
+    public static abstract class Listener {
+
+        /**
+         * Called each time a chunk is acknowledged.  May be called from
+         * several threads at once.
+         *
+         * @param transferId the name of the transfer
+         * @param acknowledged the number of bytes the receiver has
+         * @param size the size of the data
+         */
+        public void progress(String transferId, long acknowledged, long size) {}
+    }
+
+    private final BusAttachment bus;
+    private final String busName;
+    private final String objPath;
+    private int chunkSize;
+    private int window;
+    private Listener listener;
+
+    /**
+     * Constructs a BulkSender.
+     *
+     * @param bus the bus attachment to send from
+     * @param busName the bus name of the receiver
+     * @param objPath the object path the BulkReceiver is registered at
+     */
+    public BulkSender(BusAttachment bus, String busName, String objPath) {
+        this.bus = bus;
+        this.busName = busName;
+        this.objPath = objPath;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.window = DEFAULT_WINDOW;
+    }
+
+    /**
+     * Sets the size of the chunks of transfers started from now on.  A
+     * resumed transfer must use the chunk size it was started with, or it
+     * starts over.
+     *
+     * @param chunkSize the chunk size, from 1 to {@link #MAX_CHUNK_SIZE}
+     */
+    public synchronized void setChunkSize(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunk size must be from 1 to " + MAX_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the number of chunks kept in flight.
+     *
+     * @param window the window, at least 1
+     */
+    public synchronized void setWindow(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be at least 1");
+        }
+        this.window = window;
+    }
+
+    /**
+     * Sets the listener told of the progress of transfers.
+     *
+     * @param listener the listener, or null for none
+     */
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sends an array.
+     *
+     * @param sessionId the session to send in
+     * @param transferId the name of the transfer, unique at the receiver
+     * @param data the data
+     * @throws BusException if the transfer fails; send it again to resume
+     */
+    public void send(int sessionId, String transferId, byte[] data) throws BusException {
+        send(sessionId, transferId, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Sends the remaining bytes of a buffer.  The position of the buffer is
+     * not changed.
+     *
+     * @param sessionId the session to send in
+     * @param transferId the name of the transfer, unique at the receiver
+     * @param data the data
+     * @throws BusException if the transfer fails; send it again to resume
+     */
+    public void send(int sessionId, String transferId, final ByteBuffer data) throws BusException {
+        final ByteBuffer source = data.slice();
+        send(sessionId, transferId, source.remaining(), new Source() {
+                public void read(long offset, ByteBuffer chunk) {
+                    ByteBuffer part = source.duplicate();
+                    part.position((int) offset);
+                    part.limit((int) offset + chunk.remaining());
+                    chunk.put(part);
+                }
+            });
+    }
+
+    /**
+     * Sends a file.
+     *
+     * @param sessionId the session to send in
+     * @param transferId the name of the transfer, unique at the receiver
+     * @param file the file
+     * @throws BusException if the transfer fails; send it again to resume
+     * @throws IOException if the file cannot be read
+     */
+    public void send(int sessionId, String transferId, File file) throws BusException, IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            send(sessionId, transferId, channel.size(), new Source() {
+                    public void read(long offset, ByteBuffer chunk) throws IOException {
+                        while (chunk.hasRemaining()) {
+                            int n = channel.read(chunk, offset);
+                            if (n < 0) {
+                                throw new IOException("file truncated");
+                            }
+                            offset += n;
+                        }
+                    }
+                });
+        } catch (ReadFailure ex) {
+            throw (IOException) ex.getCause();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** The data of a transfer. */
+    private interface Source {
+
+        /* Fill the chunk with the data at offset. */
+        void read(long offset, ByteBuffer chunk) throws IOException;
+    }
+
+    /** Carries an IOException from a worker out of send(). */
+    private static final class ReadFailure extends BusException {
+        ReadFailure(IOException cause) {
+            super("cannot read the data to send", cause);
+        }
+    }
+
+    private void send(int sessionId, final String transferId, final long size, final Source source)
+        throws BusException {
+        final int chunkSize;
+        int window;
+        final Listener listener;
+        synchronized (this) {
+            chunkSize = this.chunkSize;
+            window = this.window;
+            listener = this.listener;
+        }
+
+        ProxyBusObject proxy = bus.getProxyBusObject(busName, objPath, sessionId,
+                                                     new Class<?>[] { BulkTransfer.class });
+        try {
+            final BulkTransfer receiver = proxy.getInterface(BulkTransfer.class);
+            long resume = receiver.Begin(transferId, size, chunkSize);
+            final long chunks = (size + chunkSize - 1) / chunkSize;
+            final AtomicLong next = new AtomicLong(resume / chunkSize);
+            final AtomicLong acknowledged = new AtomicLong(resume);
+            final AtomicReference<BusException> failure = new AtomicReference<BusException>();
+
+            Runnable worker = new Runnable() {
+                    public void run() {
+                        while (failure.get() == null) {
+                            long index = next.getAndIncrement();
+                            if (index >= chunks) {
+                                return;
+                            }
+                            long offset = index * chunkSize;
+                            byte[] data = new byte[(int) Math.min(chunkSize, size - offset)];
+                            try {
+                                source.read(offset, ByteBuffer.wrap(data));
+                                receiver.Chunk(transferId, offset, data);
+                            } catch (IOException ex) {
+                                failure.compareAndSet(null, new ReadFailure(ex));
+                                return;
+                            } catch (BusException ex) {
+                                failure.compareAndSet(null, ex);
+                                return;
+                            }
+                            long total = acknowledged.addAndGet(data.length);
+                            if (listener != null) {
+                                listener.progress(transferId, total, size);
+                            }
+                        }
+                    }
+                };
+
+            /* The calling thread is one of the workers. */
+            long remaining = chunks - next.get();
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 1; i < Math.min(window, remaining); ++i) {
+                Thread thread = new Thread(worker, "BulkSender " + transferId);
+                thread.start();
+                threads.add(thread);
+            }
+            worker.run();
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, new BusException("interrupted", ex));
+                }
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+
+            receiver.End(transferId);
+        } finally {
+            proxy.release();
+        }
+    }
+}
@@ -23,9 +23,15 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.lang.ref.WeakReference;
@@ -62,6 +68,40 @@ public class BusAttachment {
      */
     public native void emitChangedSignal(BusObject busObject, String ifcName, String propName, Object val, int sessionId);
 
+    /**
+     * Emit one PropertiesChanged for several properties of an interface.
+     * A property is listed with its new value or as invalidated according to
+     * its org.freedesktop.DBus.Property.EmitsChangedSignal annotation, and is
+     * always invalidated when its value is null.
+     *
+     * @param busObject  The BusObject that is the source of this signal
+     * @param ifcName    The name of the interface
+     * @param propNames  The names of the properties being changed
+     * @param vals       The new values of the properties
+     * @param sessionId  Id of the session we broadcast to (0 for all)
+     * @throws BusException if the signal cannot be sent
+     * @see PropertyChangeBatcher
+     */
+    native void emitChangedSignals(BusObject busObject, String ifcName, String[] propNames, Object[] vals,
+                                   int sessionId) throws BusException;
+
+    /**
+     * Discard the value the binding keeps for a cached property, so that the
+     * next Get request calls the get method of the property again.
+     *
+     * @param busObject The BusObject the property belongs to
+     * @param ifcName   The name of the interface
+     * @param propName  The name of the property, or null for every cached
+     *                  property of the interface
+     * @return <ul>
+     *         <li>OK if the value was discarded or was not cached
+     *         <li>BUS_NO_SUCH_OBJECT if the BusObject is not registered
+     *         <li>BUS_NO_SUCH_INTERFACE if the interface is unknown
+     *         </ul>
+     * @see org.alljoyn.bus.annotation.BusProperty#cached()
+     */
+    public native Status invalidateCachedProperty(BusObject busObject, String ifcName, String propName);
+
 
     /**
      * Request a well-known name.
@@ -297,7 +337,13 @@ public class BusAttachment {
      * <li>other error status codes indicating a failure.</li>
      * <ul>
      */
-    public native Status bindSessionPort(Mutable.ShortValue sessionPort,
+    public Status bindSessionPort(Mutable.ShortValue sessionPort,
+            SessionOpts opts,
+            SessionPortListener listener) {
+        return bindSessionPortNative(sessionPort, opts, listenerDispatcher.wrap(listener));
+    }
+
+    private native Status bindSessionPortNative(Mutable.ShortValue sessionPort,
             SessionOpts opts,
             SessionPortListener listener);
 
@@ -346,7 +392,15 @@ public class BusAttachment {
      * <li>other error status codes indicating a failure.</li>
      * </ul>
      */
-    public native Status joinSession(String sessionHost,
+    public Status joinSession(String sessionHost,
+            short sessionPort,
+            Mutable.IntegerValue sessionId,
+            SessionOpts opts,
+            SessionListener listener) {
+        return joinSessionNative(sessionHost, sessionPort, sessionId, opts, listenerDispatcher.wrap(listener, null));
+    }
+
+    private native Status joinSessionNative(String sessionHost,
             short sessionPort,
             Mutable.IntegerValue sessionId,
             SessionOpts opts,
@@ -389,7 +443,9 @@ public class BusAttachment {
             SessionListener listener,
             OnJoinSessionListener onJoinSession,
             Object context) {
-        return joinSessionAsync(sessionHost, sessionPort, opts, listener, onJoinSession, context);
+        ListenerDispatcher.Lane lane = listenerDispatcher.newLane();
+        return joinSessionAsync(sessionHost, sessionPort, opts, listenerDispatcher.wrap(listener, lane),
+                                listenerDispatcher.wrap(onJoinSession, lane), context);
     }
 
     /**
@@ -439,7 +495,11 @@ public class BusAttachment {
      * @param listener     The SessionListener to associate with the session. May be null to clear previous listener.
      * @return  ER_OK if successful.
      */
-    public native Status setSessionListener(int sessionId, SessionListener listener);
+    public Status setSessionListener(int sessionId, SessionListener listener) {
+        return setSessionListenerNative(sessionId, listenerDispatcher.wrap(listener, null));
+    }
+
+    private native Status setSessionListenerNative(int sessionId, SessionListener listener);
 
     /**
      * Get the file descriptor for a raw (non-message based) session.
@@ -572,14 +632,97 @@ public class BusAttachment {
      *
      * @param listener  Object instance that will receive bus event notifications.
      */
-    public native void registerBusListener(BusListener listener);
+    public void registerBusListener(BusListener listener) {
+        BusListener registered;
+        synchronized (dispatchedBusListeners) {
+            /*
+             * A listener registered again reuses its forwarding listener, so
+             * that every registration is undone by unregisterBusListener().
+             */
+            registered = dispatchedBusListeners.get(listener);
+            if (registered == null) {
+                registered = listenerDispatcher.wrap(listener);
+            }
+            if (registered != listener) {
+                Integer count = dispatchedBusListenerCounts.get(listener);
+                dispatchedBusListeners.put(listener, registered);
+                dispatchedBusListenerCounts.put(listener, (count == null) ? 1 : count + 1);
+            }
+        }
+        registerBusListenerNative(registered);
+    }
+
+    private native void registerBusListenerNative(BusListener listener);
 
     /**
      * unregister an object that was previously registered with RegisterBusListener.
      *
      * @param listener  Object instance to un-register as a listener.
      */
-    public native void unregisterBusListener(BusListener listener);
+    public void unregisterBusListener(BusListener listener) {
+        BusListener registered;
+        synchronized (dispatchedBusListeners) {
+            registered = dispatchedBusListeners.get(listener);
+            if (registered != null) {
+                int count = dispatchedBusListenerCounts.get(listener);
+                if (count > 1) {
+                    dispatchedBusListenerCounts.put(listener, count - 1);
+                } else {
+                    dispatchedBusListeners.remove(listener);
+                    dispatchedBusListenerCounts.remove(listener);
+                }
+            }
+        }
+        unregisterBusListenerNative((registered == null) ? listener : registered);
+    }
+
+    private native void unregisterBusListenerNative(BusListener listener);
+
+    /**
+     * Sets the executor that calls the listeners given to this attachment.
+     * <p>
+     * By default listeners are called on the AllJoyn threads that deliver
+     * the events, and a listener that blocks, for instance by calling
+     * joinSession() from foundAdvertisedName(), holds up every later
+     * callback unless it first calls {@link #enableConcurrentCallbacks()}.
+     * With an executor set, the listeners registered with
+     * registerBusListener(), bindSessionPort(), joinSession() and
+     * setSessionListener() from then on are called on the executor instead,
+     * and the AllJoyn threads return as soon as a callback is queued.  Any
+     * executor may be used, such as a thread pool or, on runtimes that have
+     * them, an executor that starts a virtual thread per task.
+     * <p>
+     * The callbacks keep these ordering guarantees:
+     * <ul>
+     * <li>The callbacks of one listener run one at a time, in the order
+     * AllJoyn delivered them.  The callbacks of different listeners may run
+     * at the same time.</li>
+     * <li>BusListener.listenerRegistered() is called on the thread calling
+     * registerBusListener(), before any other callback of the listener.
+     * BusListener.listenerUnregistered() is the last callback of the
+     * listener, after the callbacks delivered before it was unregistered,
+     * and may run after unregisterBusListener() returns.</li>
+     * <li>The session listener and the OnJoinSessionListener given to one
+     * asynchronous joinSession() call share their order, so their callbacks
+     * run one at a time in the order AllJoyn delivered them.</li>
+     * <li>SessionPortListener.acceptSessionJoiner() returns its answer to
+     * AllJoyn and is still called on the AllJoyn thread.  It may therefore
+     * run while sessionJoined() of an earlier joiner is still queued.</li>
+     * <li>Bus method and signal handlers are not affected; see
+     * {@link MethodDispatcher} and {@link SignalHandlerQueue} for those.</li>
+     * </ul>
+     * <p>
+     * Listeners registered before the executor is set stay on the AllJoyn
+     * threads.  The executor is not shut down when the attachment is
+     * released.  If it refuses a callback, the callback is run on the
+     * AllJoyn thread.
+     *
+     * @param executor the executor, or null to call listeners registered
+     *                 from now on on the AllJoyn threads
+     */
+    public void setCallbackExecutor(Executor executor) {
+        listenerDispatcher.setExecutor(executor);
+    }
 
     /** The native connection handle. */
     private long handle;
@@ -703,6 +846,30 @@ public class BusAttachment {
 
     private ExecutorService executor;
 
+    /** Runs listener callbacks on the executor set by the application. */
+    private ListenerDispatcher listenerDispatcher;
+
+    /** The forwarding listeners registered in place of the application's bus listeners. */
+    private final Map<BusListener, BusListener> dispatchedBusListeners =
+        new IdentityHashMap<BusListener, BusListener>();
+
+    /** The number of times each bus listener in dispatchedBusListeners has been registered. */
+    private final Map<BusListener, Integer> dispatchedBusListenerCounts =
+        new IdentityHashMap<BusListener, Integer>();
+
+    /** Runs method calls for bus objects annotated with DispatchPolicy. */
+    private MethodDispatcher methodDispatcher;
+
+    /** The unique name of the attachment while it is connected. */
+    private volatile String uniqueName;
+
+    /**
+     * The registered bus objects that proxies on this attachment may call
+     * directly, keyed by object path.  Secure bus objects and bus objects
+     * whose calls are run by the method dispatcher are left out.
+     */
+    private final Map<String, BusObject> localBusObjects = new ConcurrentHashMap<String, BusObject>();
+
     private Method lostAdvertisedName;
 
     private DBusProxyObj dbus;
@@ -752,6 +919,8 @@ public class BusAttachment {
                 new Class[] { DBusProxyObj.class });
         dbus = dbusbo.getInterface(DBusProxyObj.class);
         executor = Executors.newSingleThreadExecutor();
+        listenerDispatcher = new ListenerDispatcher();
+        methodDispatcher = new MethodDispatcher();
     }
     /* Set of all the connected BusAttachments. Maintain a weakreference so we dont delay garbage collection */
     private static HashSet<WeakReference<BusAttachment>> busAttachmentSet = new HashSet<WeakReference<BusAttachment>>();
@@ -802,12 +971,13 @@ public class BusAttachment {
             AuthListenerInternal busAuthListener, String keyStoreFileName, Boolean isShared);
 
     private native Status registerBusObject(String objPath, BusObject busObj,
-            InterfaceDescription[] busInterfaces, boolean secure);
+            InterfaceDescription[] busInterfaces, boolean secure, MethodDispatcher dispatcher);
 
     private native boolean isSecureBusObject(BusObject busObj);
 
     private native Status registerNativeSignalHandler(String ifaceName, String signalName,
-            Object obj, Method handlerMethod, String source);
+            Object obj, Method handlerMethod, String source, String rule, boolean addMatch,
+            SignalHandlerQueue queue);
 
     /**
      * Release resources immediately.
@@ -841,7 +1011,13 @@ public class BusAttachment {
             dbusbo = null;
         }
         dbus = null;
+        localBusObjects.clear();
+        synchronized (dispatchedBusListeners) {
+            dispatchedBusListeners.clear();
+            dispatchedBusListenerCounts.clear();
+        }
         destroy();
+        methodDispatcher.shutdown();
 	/* Remove this bus attachment from the busAttachmentSet */
 	synchronized(busAttachmentSet){
 		Iterator<WeakReference<BusAttachment>> iterator = busAttachmentSet.iterator();
@@ -903,6 +1079,11 @@ public class BusAttachment {
      * blocking calls back into the library.
      */
     void execute(Runnable runnable) {
+        Executor callbackExecutor = listenerDispatcher.getExecutor();
+        if (callbackExecutor != null) {
+            callbackExecutor.execute(runnable);
+            return;
+        }
         executor.execute(runnable);
     }
     private static boolean shutdownHookRegistered = false;
@@ -938,6 +1119,7 @@ public class BusAttachment {
 			busAttachmentSet.add(new WeakReference<BusAttachment>(this));
 		}
                 isConnected = true;
+                uniqueName = getUniqueName();
             }
             return status;
         } else {
@@ -959,6 +1141,7 @@ public class BusAttachment {
         if (address != null) {
             //            unregisterSignalHandler(this, foundAdvertisedName);
             //            unregisterSignalHandler(this, lostAdvertisedName);
+            uniqueName = null;
             disconnect(address);
             isConnected = false;
         }
@@ -996,18 +1179,35 @@ public class BusAttachment {
     public Status registerBusObject(BusObject busObj, String objPath, boolean secure) {
         try {
             List<InterfaceDescription> descs = new ArrayList<InterfaceDescription>();
-            Status status = InterfaceDescription.create(this, busObj.getClass().getInterfaces(),
-                    descs);
+            Status status = InterfaceDescription.create(this,
+                    InterfaceDescription.getInterfaces(busObj.getClass()), descs);
             if (status != Status.OK) {
                 return status;
             }
-            return registerBusObject(objPath, busObj, descs.toArray(new InterfaceDescription[0]), secure);
+            MethodDispatcher dispatcher = MethodDispatcher.isDispatched(busObj) ? methodDispatcher : null;
+            status = registerBusObject(objPath, busObj, descs.toArray(new InterfaceDescription[0]), secure,
+                    dispatcher);
+            if (status == Status.OK && !secure && dispatcher == null) {
+                localBusObjects.put(objPath, busObj);
+            }
+            return status;
         } catch (AnnotationBusException ex) {
             BusException.log(ex);
             return Status.BAD_ANNOTATION;
         }
     }
 
+    /**
+     * Gets the method dispatcher used for bus objects annotated with
+     * {@link org.alljoyn.bus.annotation.DispatchPolicy}.  The dispatcher may
+     * be given an executor and reports queue depth and wait time statistics.
+     *
+     * @return the method dispatcher of this bus attachment
+     */
+    public MethodDispatcher getMethodDispatcher() {
+        return methodDispatcher;
+    }
+
     /**
      * Indicates if the BusObject is secure.
      *
@@ -1022,7 +1222,27 @@ public class BusAttachment {
      *
      * @param obj the BusObject to unregister
      */
-    public native void unregisterBusObject(BusObject obj);
+    public void unregisterBusObject(BusObject obj) {
+        localBusObjects.values().remove(obj);
+        unregisterBusObjectNative(obj);
+    }
+
+    private native void unregisterBusObjectNative(BusObject obj);
+
+    /**
+     * Gets a bus object registered on this attachment that a proxy for the
+     * given bus name and object path may call directly.
+     *
+     * @return the bus object, or null if calls to the object must go through
+     *         the bus
+     */
+    BusObject getLocalBusObject(String busName, String objPath) {
+        String name = uniqueName;
+        if (name == null || !name.equals(busName)) {
+            return null;
+        }
+        return localBusObjects.get(objPath);
+    }
 
     /**
      * Creates a proxy bus object for a remote bus object.
@@ -1151,33 +1371,112 @@ public class BusAttachment {
             Object obj,
             Method handlerMethod,
             String source) {
-        Status status = registerNativeSignalHandler(ifaceName, signalName, obj, handlerMethod,
-                source);
-        if (status == Status.BUS_NO_SUCH_INTERFACE) {
+        return registerSignalHandler(ifaceName, signalName, obj, handlerMethod, source, null);
+    }
+
+    /**
+     * Registers a public method to receive a signal from specific objects
+     * emitting it, delivered through a queue on another thread.
+     * Once registered, the method of the object will receive the signal
+     * specified from objects implementing the interface.
+     *
+     * @param ifaceName the interface name of the signal
+     * @param signalName the member name of the signal
+     * @param obj the object receiving the signal
+     * @param handlerMethod the signal handler method
+     * @param source the object path of the emitter of the signal
+     * @param queue the queue delivering the signal to the handler, or null
+     *              to call the handler on the AllJoyn thread that received
+     *              the signal
+     * @return OK if the register is succesful
+     */
+    public Status registerSignalHandler(String ifaceName,
+            String signalName,
+            Object obj,
+            Method handlerMethod,
+            String source,
+            SignalHandlerQueue queue) {
+        return registerSignalHandler(ifaceName, signalName, obj, handlerMethod, source, "", false, queue);
+    }
+
+    /**
+     * Registers a public method to receive the instances of a signal whose
+     * arguments match a rule.  Signals that do not match are dropped before
+     * they are unmarshalled.
+     *
+     * @param ifaceName the interface name of the signal
+     * @param signalName the member name of the signal
+     * @param obj the object receiving the signal
+     * @param handlerMethod the signal handler method
+     * @param source the object path of the emitter of the signal
+     * @param rule the conditions on the arguments of the signal, see
+     *             {@link BusSignalHandler#rule()}
+     * @param addMatch whether to also add the rule to the match rules of the
+     *                 bus, see {@link BusSignalHandler#addMatch()}
+     * @param queue the queue delivering the signal to the handler, or null
+     *              to call the handler on the AllJoyn thread that received
+     *              the signal
+     * @return <ul>
+     *         <li>OK if the register is succesful
+     *         <li>BUS_BAD_VALUE if the rule cannot be parsed
+     *         </ul>
+     */
+    public Status registerSignalHandler(String ifaceName,
+            String signalName,
+            Object obj,
+            Method handlerMethod,
+            String source,
+            String rule,
+            boolean addMatch,
+            SignalHandlerQueue queue) {
+        return registerSignalHandler(ifaceName, signalName, obj, handlerMethod, source, rule, addMatch,
+                queue, null);
+    }
+
+    /*
+     * Register a signal handler, creating the interface description from the
+     * Java interface if the interface is not known to the BusAttachment.
+     * Java interfaces whose descriptions have already been created are found
+     * in resolved, when given, so that they are not loaded and created again
+     * when registering many signal handlers at once.
+     */
+    private Status registerSignalHandler(String ifaceName, String signalName, Object obj,
+            Method handlerMethod, String source, String rule, boolean addMatch,
+            SignalHandlerQueue queue, Map<String, Class<?>> resolved) {
+        Class<?> iface = (resolved == null) ? null : resolved.get(ifaceName);
+        if (iface == null) {
+            Status status = registerNativeSignalHandler(ifaceName, signalName, obj, handlerMethod,
+                    source, rule, addMatch, queue);
+            if (status != Status.BUS_NO_SUCH_INTERFACE) {
+                return status;
+            }
             try {
-                Class<?> iface = Class.forName(ifaceName);
+                iface = Class.forName(ifaceName);
                 InterfaceDescription desc = new InterfaceDescription();
                 status = desc.create(this, iface);
-                if (status == Status.OK) {
-                    ifaceName = InterfaceDescription.getName(iface);
-                    try {
-                        Method signal = iface.getMethod(signalName, handlerMethod.getParameterTypes());
-                        signalName = InterfaceDescription.getName(signal);
-                    } catch (NoSuchMethodException ex) {
-                        // Ignore, use signalName parameter provided
-                    }
-                    status = registerNativeSignalHandler(ifaceName, signalName, obj, handlerMethod,
-                            source);
+                if (status != Status.OK) {
+                    return status;
                 }
             } catch (ClassNotFoundException ex) {
                 BusException.log(ex);
-                status = Status.BUS_NO_SUCH_INTERFACE;
+                return Status.BUS_NO_SUCH_INTERFACE;
             } catch (AnnotationBusException ex) {
                 BusException.log(ex);
-                status = Status.BAD_ANNOTATION;
+                return Status.BAD_ANNOTATION;
+            }
+            if (resolved != null) {
+                resolved.put(ifaceName, iface);
             }
         }
-        return status;
+        ifaceName = InterfaceDescription.getName(iface);
+        try {
+            Method signal = iface.getMethod(signalName, handlerMethod.getParameterTypes());
+            signalName = InterfaceDescription.getName(signal);
+        } catch (NoSuchMethodException ex) {
+            // Ignore, use signalName parameter provided
+        }
+        return registerNativeSignalHandler(ifaceName, signalName, obj, handlerMethod,
+                source, rule, addMatch, queue);
     }
 
     /**
@@ -1194,19 +1493,155 @@ public class BusAttachment {
      *         </ul>
      */
     public Status registerSignalHandlers(Object obj) {
+        return registerSignalHandlers(obj, null);
+    }
+
+    /**
+     * Registers all public methods that are annotated as signal handlers,
+     * delivering their signals through a queue on another thread.
+     * The handlers share the capacity and ordering of the queue, and the
+     * queue keeps the delivery statistics of each handler method apart, see
+     * {@link SignalHandlerQueue#getHandlerStatistics()}.  Register the
+     * handlers one at a time with
+     * {@link #registerSignalHandler(String, String, Object, Method, String, SignalHandlerQueue)}
+     * to give each its own queue.
+     *
+     * @param obj object with methods annotated with as signal handlers
+     * @param queue the queue delivering the signals to all of the handlers,
+     *              or null to call the handlers on the AllJoyn thread that
+     *              received the signal
+     * @return <ul>
+     *         <li>OK if the register is succesful
+     *         <li>BUS_NO_SUCH_INTERFACE if the interface and signal
+     *         specified in any {@code @BusSignalHandler} annotations
+     *         of {@code obj} are unknown to this BusAttachment.
+     *         </ul>
+     * @see #registerSignalHandlers(Object)
+     */
+    public Status registerSignalHandlers(Object obj, SignalHandlerQueue queue) {
+        return registerSignalHandlers(obj, getSignalHandlerMethods(obj.getClass()), queue,
+                new HashMap<String, Class<?>>());
+    }
+
+    /**
+     * Registers all public methods that are annotated as signal handlers in
+     * each of a collection of objects.  This is equivalent to calling
+     * {@link #registerSignalHandlers(Object)} on each object, but the
+     * annotations of each class and the interface named by each annotation
+     * are only looked up once.
+     *
+     * @param objs objects with methods annotated with as signal handlers
+     * @return <ul>
+     *         <li>OK if the register is succesful
+     *         <li>BUS_NO_SUCH_INTERFACE if the interface and signal
+     *         specified in any {@code @BusSignalHandler} annotations
+     *         are unknown to this BusAttachment.
+     *         </ul>
+     *         Registration stops at the first failure.
+     */
+    public Status registerSignalHandlers(Collection<?> objs) {
+        return registerSignalHandlers(objs, null);
+    }
+
+    /**
+     * Registers all public methods that are annotated as signal handlers in
+     * each of a collection of objects, delivering their signals through a
+     * queue on another thread.
+     *
+     * @param objs objects with methods annotated with as signal handlers
+     * @param queue the queue delivering the signals to all of the handlers,
+     *              or null to call the handlers on the AllJoyn thread that
+     *              received the signal
+     * @return OK if the register is succesful, or the status of the first
+     *         failure
+     * @see #registerSignalHandlers(Collection)
+     */
+    public Status registerSignalHandlers(Collection<?> objs, SignalHandlerQueue queue) {
+        Map<Class<?>, List<Method>> methods = new HashMap<Class<?>, List<Method>>();
+        Map<String, Class<?>> resolved = new HashMap<String, Class<?>>();
+        Status status = Status.OK;
+        for (Object obj : objs) {
+            List<Method> handlers = methods.get(obj.getClass());
+            if (handlers == null) {
+                handlers = getSignalHandlerMethods(obj.getClass());
+                methods.put(obj.getClass(), handlers);
+            }
+            status = registerSignalHandlers(obj, handlers, queue, resolved);
+            if (status != Status.OK) {
+                break;
+            }
+        }
+        return status;
+    }
+
+    private Status registerSignalHandlers(Object obj, List<Method> handlers, SignalHandlerQueue queue,
+            Map<String, Class<?>> resolved) {
         Status status = Status.OK;
-        for (Method m : obj.getClass().getMethods()) {
+        for (Method m : handlers) {
             BusSignalHandler a = m.getAnnotation(BusSignalHandler.class);
-            if (a != null) {
-                status = registerSignalHandler(a.iface(), a.signal(), obj, m, a.source());
-                if (status != Status.OK) {
-                    break;
-                }
+            status = registerSignalHandler(a.iface(), a.signal(), obj, m, a.source(), a.rule(),
+                    a.addMatch(), queue, resolved);
+            if (status != Status.OK) {
+                break;
             }
         }
         return status;
     }
 
+    /* Gets the public methods of a class that are annotated as signal handlers. */
+    private static List<Method> getSignalHandlerMethods(Class<?> cls) {
+        List<Method> handlers = new ArrayList<Method>();
+        for (Method m : cls.getMethods()) {
+            if (m.getAnnotation(BusSignalHandler.class) != null) {
+                handlers.add(m);
+            }
+        }
+        return handlers;
+    }
+
+    /**
+     * Gets a publisher of the instances of a signal.  Received signals are
+     * buffered for each subscriber, up to 256 of them, until the subscriber
+     * requests them; the oldest are dropped when the buffer is full.
+     *
+     * @param iface the interface of the signal
+     * @param signal the Java method name or member name of the signal
+     * @param payloadType the type each signal is decoded into, see
+     *                    {@link SignalPublisher}
+     * @param <T> the type of the payload
+     * @return a new publisher
+     * @throws IllegalArgumentException if the signal is not found in the
+     *                                  interface or cannot be decoded into
+     *                                  payloadType
+     */
+    public <T> SignalPublisher<T> signals(Class<?> iface, String signal, Class<T> payloadType) {
+        return signals(iface, signal, payloadType, null, 256, SignalHandlerQueue.Overflow.DropOldest);
+    }
+
+    /**
+     * Gets a publisher of the instances of a signal.
+     *
+     * @param iface the interface of the signal
+     * @param signal the Java method name or member name of the signal
+     * @param payloadType the type each signal is decoded into, see
+     *                    {@link SignalPublisher}
+     * @param executor the executor calling the subscribers, or null for a
+     *                 shared pool of daemon threads
+     * @param capacity the largest number of signals buffered for each
+     *                 subscriber
+     * @param overflow what to do when a signal arrives and the buffer of a
+     *                 subscriber is full
+     * @param <T> the type of the payload
+     * @return a new publisher
+     * @throws IllegalArgumentException if the signal is not found in the
+     *                                  interface or cannot be decoded into
+     *                                  payloadType
+     */
+    public <T> SignalPublisher<T> signals(Class<?> iface, String signal, Class<T> payloadType,
+            Executor executor, int capacity, SignalHandlerQueue.Overflow overflow) {
+        return new SignalPublisher<T>(this, iface, signal, payloadType, executor, capacity, overflow);
+    }
+
     /**
      * Unregisters a signal handler.
      *
@@ -1223,9 +1658,28 @@ public class BusAttachment {
      * @see org.alljoyn.bus.annotation.BusSignalHandler
      */
     public void unregisterSignalHandlers(Object obj) {
-        for (Method m : obj.getClass().getMethods()) {
-            BusSignalHandler a = m.getAnnotation(BusSignalHandler.class);
-            if (a != null) {
+        for (Method m : getSignalHandlerMethods(obj.getClass())) {
+            unregisterSignalHandler(obj, m);
+        }
+    }
+
+    /**
+     * Unregisters all public methods annotated as signal handlers in each of
+     * a collection of objects.
+     *
+     * @param objs objects with previously annotated signal handlers that
+     *             have been registered
+     * @see #registerSignalHandlers(Collection)
+     */
+    public void unregisterSignalHandlers(Collection<?> objs) {
+        Map<Class<?>, List<Method>> methods = new HashMap<Class<?>, List<Method>>();
+        for (Object obj : objs) {
+            List<Method> handlers = methods.get(obj.getClass());
+            if (handlers == null) {
+                handlers = getSignalHandlerMethods(obj.getClass());
+                methods.put(obj.getClass(), handlers);
+            }
+            for (Method m : handlers) {
                 unregisterSignalHandler(obj, m);
             }
         }
@@ -1399,7 +1853,41 @@ public class BusAttachment {
      *         handler, security violation, or null if no message can be found
      *         for the calling thread
      */
-    public native MessageContext getMessageContext();
+    public MessageContext getMessageContext() {
+        return getMessageContext(true);
+    }
+
+    /**
+     * Gets the message context of the currently executing method, signal
+     * handler, or security violation, optionally leaving the string fields
+     * to be filled in when they are read through the getters of the
+     * MessageContext.
+     * <p>
+     * This method can only be called from within the method, signal, or
+     * security violation handler itself since the caller's thread information
+     * is used to find the appropriate context.
+     *
+     * @param populate {@code true} to fill in every field of the context as
+     *                 {@link #getMessageContext()} does, {@code false} to fill
+     *                 in only the isUnreliable, sessionId and serial fields
+     * @return message context for the currently executing method, signal
+     *         handler, security violation, or null if no message can be found
+     *         for the calling thread
+     */
+    public MessageContext getMessageContext(boolean populate) {
+        /* A context dispatched in Java is always inside any native dispatch on the thread. */
+        MessageContext context = MessageContext.getCurrent();
+        if (context == null) {
+            /* A populated context from the native code has no message to release. */
+            return currentMessageContext(populate);
+        }
+        if (populate) {
+            context.populate();
+        }
+        return context;
+    }
+
+    private native MessageContext currentMessageContext(boolean populate);
 
     /**
      * Enable callbacks within the context of the currently executing method
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alljoyn.bus.annotation.BusSignalHandler;
+
+/**
+ * A pool of bus attachments with the same configuration, each with its own
+ * connection to the bus and its own dispatcher threads, used by a client to
+ * make more calls at once than a single attachment can carry.
+ * <p>
+ * Proxies obtained from the pool spread their method calls across the
+ * attachments, either in turn or to the attachment with the fewest calls
+ * outstanding.
+ * <p>
+ * Signals are only handled once.  The first attachment owns the pool's
+ * subscriptions: match rules added to the pool are added to it alone, so
+ * broadcast and sessionless signals are routed to it alone.  Signal handlers
+ * are registered with every attachment, but the other attachments only pass
+ * on the signals sent in a session or to them, so that signals sent in the
+ * sessions each attachment joined are received.  A signal that still reaches
+ * more than one attachment, for instance in a session joined by several of
+ * them, is handled once, its copies being recognized by their sender and
+ * serial number.  The handlers are called on the AllJoyn threads of the
+ * attachments, one signal at a time for each attachment.
+ * <p>
+ * Sessions belong to the attachment that joined them, so a session to be
+ * used by a pooled proxy must be joined from each attachment (see
+ * {@link #getBusAttachments()}) and the session IDs given to
+ * {@link #getProxy(String, String, int[], Class)}.
+ */
+public class BusAttachmentPool {
+
+    /** How method calls are spread across the attachments of a pool. */
+    public enum Balancing {
+
+        /** Each call goes to the attachment after the one the last call went to. */
+        RoundRobin,
+
+        /** Each call goes to the attachment with the fewest calls waiting for a reply. */
+        LeastOutstanding
+    }
+
+    /** The number of signals received recently enough to be recognized when received again. */
+    private static final int RECENT_SIGNALS = 1024;
+
+    /** The number of signals each attachment queues while a handler is busy. */
+    private static final int SIGNAL_CAPACITY = 64;
+
+    /** Runs the signal handlers on the AllJoyn thread that queued the signal. */
+    private static final Executor DIRECT = new Executor() {
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        };
+
+    private final BusAttachment[] buses;
+    private final Balancing balancing;
+
+    /** The queues the signal handlers of each attachment are registered with. */
+    private final SignalHandlerQueue[] signalQueues;
+
+    /** The signals recently passed on to each handler, oldest first. */
+    private final Map<Received, Boolean> recentSignals;
+
+    /** The calls made through the proxies of each attachment and not yet returned. */
+    private final AtomicInteger[] outstanding;
+
+    /** The attachment the next round-robin call goes to, or where the search for the least loaded one starts. */
+    private final AtomicInteger next;
+
+    /** The proxy bus objects created for the pooled proxies, released with the pool. */
+    private final List<ProxyBusObject> proxyBusObjects;
+
+    /** The number of times each signal handler object has been registered. */
+    private final Map<Object, Integer> signalHandlers;
+
+    /** The number of times each match rule has been added. */
+    private final Map<String, Integer> matchRules;
+
+    /**
+     * Constructs a BusAttachmentPool.
+     *
+     * @param applicationName the name of the application
+     * @param policy if the attachments are allowed to receive messages from
+     *               remote devices
+     * @param size the number of attachments
+     * @param balancing how method calls are spread across the attachments
+     */
+    public BusAttachmentPool(String applicationName, BusAttachment.RemoteMessage policy, int size,
+                             Balancing balancing) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1");
+        }
+        this.balancing = balancing;
+        buses = new BusAttachment[size];
+        outstanding = new AtomicInteger[size];
+        signalQueues = new SignalHandlerQueue[size];
+        for (int i = 0; i < size; ++i) {
+            buses[i] = new BusAttachment(applicationName, policy);
+            outstanding[i] = new AtomicInteger();
+            signalQueues[i] = new SignalHandlerQueue(DIRECT, SIGNAL_CAPACITY, SignalHandlerQueue.Overflow.Block,
+                                                     false, new SignalFilter(i == 0));
+        }
+        recentSignals = new LinkedHashMap<Received, Boolean>() {
+                protected boolean removeEldestEntry(Map.Entry<Received, Boolean> eldest) {
+                    return size() > RECENT_SIGNALS;
+                }
+            };
+        next = new AtomicInteger();
+        proxyBusObjects = new ArrayList<ProxyBusObject>();
+        signalHandlers = new IdentityHashMap<Object, Integer>();
+        matchRules = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Constructs a BusAttachmentPool that does not receive messages from
+     * remote devices and spreads calls round-robin.
+     *
+     * @param applicationName the name of the application
+     * @param size the number of attachments
+     */
+    public BusAttachmentPool(String applicationName, int size) {
+        this(applicationName, BusAttachment.RemoteMessage.Ignore, size, Balancing.RoundRobin);
+    }
+
+    /**
+     * Gets the attachments of the pool, for instance to join a session from
+     * each of them.
+     *
+     * @return the attachments, in the order their session IDs are given to
+     *         {@link #getProxy(String, String, int[], Class)}
+     */
+    public List<BusAttachment> getBusAttachments() {
+        return Collections.unmodifiableList(Arrays.asList(buses));
+    }
+
+    /**
+     * Registers a user-defined key store listener with every attachment.
+     * This must be called prior to {@link #connect()}.
+     *
+     * @param listener the key store listener
+     */
+    public void registerKeyStoreListener(KeyStoreListener listener) {
+        for (BusAttachment bus : buses) {
+            bus.registerKeyStoreListener(listener);
+        }
+    }
+
+    /**
+     * Registers the same authentication listener and default key store with
+     * every attachment.  The attachments of a pool of more than one share the
+     * key store file, so it is opened as shared whatever isShared says.
+     *
+     * @param authMechanisms the authentication mechanism(s) to use for
+     *                       peer-to-peer authentication
+     * @param listener the authentication listener, which must be
+     *                 multithread safe since every attachment calls it
+     * @param keyStoreFileName the name of the default key store
+     * @param isShared true if the default key store will be shared between
+     *                 multiple programs
+     * @return OK if successful, or the status of the first attachment that
+     *         failed
+     * @see BusAttachment#registerAuthListener(String, AuthListener, String, boolean)
+     */
+    public Status registerAuthListener(String authMechanisms, AuthListener listener, String keyStoreFileName,
+                                       boolean isShared) {
+        for (BusAttachment bus : buses) {
+            Status status = bus.registerAuthListener(authMechanisms, listener, keyStoreFileName,
+                                                     isShared || buses.length > 1);
+            if (status != Status.OK) {
+                return status;
+            }
+        }
+        return Status.OK;
+    }
+
+    /**
+     * Connects every attachment to the bus.
+     *
+     * @return OK if successful, or the status of the first attachment that
+     *         failed to connect.  The attachments connected before it stay
+     *         connected.
+     */
+    public Status connect() {
+        for (BusAttachment bus : buses) {
+            Status status = bus.connect();
+            if (status != Status.OK) {
+                return status;
+            }
+        }
+        return Status.OK;
+    }
+
+    /**
+     * Disconnects every attachment from the bus.
+     */
+    public void disconnect() {
+        for (BusAttachment bus : buses) {
+            bus.disconnect();
+        }
+    }
+
+    /**
+     * Releases the proxies obtained from the pool and every attachment.  It
+     * is a programming error to use the pool or its proxies afterwards.
+     */
+    public void release() {
+        synchronized (proxyBusObjects) {
+            for (ProxyBusObject proxyBusObj : proxyBusObjects) {
+                proxyBusObj.release();
+            }
+            proxyBusObjects.clear();
+        }
+        for (BusAttachment bus : buses) {
+            bus.release();
+        }
+    }
+
+    /**
+     * Gets a proxy for a remote object whose method calls are spread across
+     * the attachments of the pool, all using the same session ID.  This is
+     * typically {@link BusAttachment#SESSION_ID_ANY}.
+     *
+     * @param busName the well-known or unique bus name of the remote object
+     * @param objPath the object path of the remote object
+     * @param sessionId the session ID every attachment uses to reach the
+     *                  remote object
+     * @param busInterface the bus interface of the remote object
+     * @return the proxy
+     */
+    public <T> T getProxy(String busName, String objPath, int sessionId, Class<T> busInterface) {
+        int[] sessionIds = new int[buses.length];
+        Arrays.fill(sessionIds, sessionId);
+        return getProxy(busName, objPath, sessionIds, busInterface);
+    }
+
+    /**
+     * Gets a proxy for a remote object whose method calls are spread across
+     * the attachments of the pool, each attachment using the session it
+     * joined.
+     *
+     * @param busName the well-known or unique bus name of the remote object
+     * @param objPath the object path of the remote object
+     * @param sessionIds the session ID each attachment, in the order of
+     *                   {@link #getBusAttachments()}, uses to reach the
+     *                   remote object
+     * @param busInterface the bus interface of the remote object
+     * @return the proxy
+     */
+    public <T> T getProxy(String busName, String objPath, int[] sessionIds, Class<T> busInterface) {
+        if (sessionIds.length != buses.length) {
+            throw new IllegalArgumentException("expected " + buses.length + " session IDs");
+        }
+        final Object[] targets = new Object[buses.length];
+        synchronized (proxyBusObjects) {
+            for (int i = 0; i < buses.length; ++i) {
+                ProxyBusObject proxyBusObj = buses[i].getProxyBusObject(busName, objPath, sessionIds[i],
+                                                                        new Class<?>[] { busInterface });
+                proxyBusObjects.add(proxyBusObj);
+                targets[i] = proxyBusObj.getInterface(busInterface);
+            }
+        }
+
+        Object proxy = Proxy.newProxyInstance(busInterface.getClassLoader(), new Class<?>[] { busInterface },
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return invokeObjectMethod(proxy, method, args);
+                    }
+                    int i = choose();
+                    outstanding[i].incrementAndGet();
+                    try {
+                        return method.invoke(targets[i], args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    } finally {
+                        outstanding[i].decrementAndGet();
+                    }
+                }
+            });
+        return busInterface.cast(proxy);
+    }
+
+    private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        } else if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        }
+        return "BusAttachmentPool proxy@" + Integer.toHexString(System.identityHashCode(proxy));
+    }
+
+    /** Chooses the attachment the next call goes to. */
+    private int choose() {
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % buses.length;
+        if (balancing == Balancing.RoundRobin) {
+            return start;
+        }
+
+        /*
+         * Ties are broken by starting the search at the round-robin choice,
+         * so idle attachments are used in turn.
+         */
+        int best = start;
+        int fewest = outstanding[start].get();
+        for (int n = 1; n < buses.length && fewest > 0; ++n) {
+            int i = (start + n) % buses.length;
+            int count = outstanding[i].get();
+            if (count < fewest) {
+                best = i;
+                fewest = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the number of calls made through the pooled proxies on an
+     * attachment that have not yet returned.
+     *
+     * @param index the index of the attachment in {@link #getBusAttachments()}
+     * @return the number of outstanding calls
+     */
+    public int getOutstandingCount(int index) {
+        return outstanding[index].get();
+    }
+
+    /** A signal received for a handler, known by its sender and serial number. */
+    private static final class Received {
+        private final Object handler;
+        private final Method method;
+        private final String sender;
+        private final int serial;
+
+        Received(Object handler, Method method, String sender, int serial) {
+            this.handler = handler;
+            this.method = method;
+            this.sender = sender;
+            this.serial = serial;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Received)) {
+                return false;
+            }
+            Received other = (Received) obj;
+            return handler == other.handler && method.equals(other.method) && sender.equals(other.sender)
+                && serial == other.serial;
+        }
+
+        public int hashCode() {
+            return (System.identityHashCode(handler) * 31 + sender.hashCode()) * 31 + serial;
+        }
+    }
+
+    /** Passes on the signals an attachment should handle for the pool, once each. */
+    private final class SignalFilter implements SignalHandlerQueue.Filter {
+        private final boolean owner;
+
+        SignalFilter(boolean owner) {
+            this.owner = owner;
+        }
+
+        public boolean accept(Object handler, Method method, MessageContext context) {
+            if (context == null) {
+                return true;
+            }
+            /* Broadcast and sessionless signals belong to the first attachment. */
+            if (!owner && context.sessionId == 0 && context.getDestination().length() == 0) {
+                return false;
+            }
+            Received received = new Received(handler, method, context.getSender(), context.serial);
+            synchronized (recentSignals) {
+                return recentSignals.put(received, Boolean.TRUE) == null;
+            }
+        }
+    }
+
+    /**
+     * Registers all public methods of an object that are annotated as signal
+     * handlers with every attachment, so that each signal is handled once
+     * whichever attachments receive it.  An object registered again is only
+     * counted, and its handlers stay registered until it has been
+     * unregistered as many times.  Match rules named by the annotations are
+     * only added to the first attachment.
+     *
+     * @param obj object with methods annotated as signal handlers
+     * @return OK if successful, or the status of the first attachment that
+     *         failed.  The handlers are then not registered with any
+     *         attachment.
+     * @see BusAttachment#registerSignalHandlers(Object)
+     */
+    public Status registerSignalHandlers(Object obj) {
+        synchronized (signalHandlers) {
+            Integer count = signalHandlers.get(obj);
+            if (count == null) {
+                for (int i = 0; i < buses.length; ++i) {
+                    Status status = registerSignalHandlers(i, obj);
+                    if (status != Status.OK) {
+                        while (i >= 0) {
+                            buses[i--].unregisterSignalHandlers(obj);
+                        }
+                        return status;
+                    }
+                }
+                count = 0;
+            }
+            signalHandlers.put(obj, count + 1);
+            return Status.OK;
+        }
+    }
+
+    private Status registerSignalHandlers(int index, Object obj) {
+        for (Method m : obj.getClass().getMethods()) {
+            BusSignalHandler a = m.getAnnotation(BusSignalHandler.class);
+            if (a == null) {
+                continue;
+            }
+            Status status = buses[index].registerSignalHandler(a.iface(), a.signal(), obj, m, a.source(), a.rule(),
+                                                               a.addMatch() && index == 0, signalQueues[index]);
+            if (status != Status.OK) {
+                return status;
+            }
+        }
+        return Status.OK;
+    }
+
+    /**
+     * Unregisters the signal handlers of an object registered with
+     * {@link #registerSignalHandlers(Object)} from every attachment once it
+     * has been unregistered as many times as it was registered.
+     *
+     * @param obj object with previously registered signal handlers
+     */
+    public void unregisterSignalHandlers(Object obj) {
+        synchronized (signalHandlers) {
+            Integer count = signalHandlers.get(obj);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                signalHandlers.put(obj, count - 1);
+                return;
+            }
+            signalHandlers.remove(obj);
+            for (BusAttachment bus : buses) {
+                bus.unregisterSignalHandlers(obj);
+            }
+        }
+    }
+
+    /**
+     * Adds a match rule to the first attachment, which receives the
+     * broadcast signals for the pool.  A rule added again is only counted,
+     * and stays added until it has been removed as many times.
+     *
+     * @param rule match rule to be added
+     * @return OK if successful
+     * @see BusAttachment#addMatch(String)
+     */
+    public Status addMatch(String rule) {
+        synchronized (matchRules) {
+            Integer count = matchRules.get(rule);
+            if (count == null) {
+                Status status = buses[0].addMatch(rule);
+                if (status != Status.OK) {
+                    return status;
+                }
+                count = 0;
+            }
+            matchRules.put(rule, count + 1);
+            return Status.OK;
+        }
+    }
+
+    /**
+     * Removes a match rule added with {@link #addMatch(String)} once it has
+     * been removed as many times as it was added.
+     *
+     * @param rule match rule to be removed
+     * @return OK if successful
+     */
+    public Status removeMatch(String rule) {
+        synchronized (matchRules) {
+            Integer count = matchRules.get(rule);
+            if (count == null) {
+                return Status.FAIL;
+            }
+            if (count > 1) {
+                matchRules.put(rule, count - 1);
+                return Status.OK;
+            }
+            matchRules.remove(rule);
+            return buses[0].removeMatch(rule);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A helper proxy used by BusObjects to send state signals of which only the
+ * latest value matters, such as a position or a level.
+ *
+ * Signals sent through the proxy returned by {@link #getInterface(Class)} are
+ * not sent right away.  They are held in a buffer that keeps only the newest
+ * arguments of each signal and key, and the buffer is sent as one batch
+ * through the underlying {@link SignalEmitter} each time the flush interval
+ * elapses or {@link #flush()} is called.  Any updates replaced in the buffer
+ * before they were sent are counted as conflated.
+ *
+ * The key of an update is the signal together with the value of its key
+ * argument, compared with {@code equals}.  Signals are sent in the order in
+ * which their keys were first buffered.  The destination, session,
+ * time-to-live and flags of the underlying emitter apply to the sent signals.
+ */
+public class ConflatingSignalEmitter {
+
+    /** The value of keyArgument when only the signal itself is the key. */
+    public static final int NO_KEY_ARGUMENT = -1;
+
+    private final SignalEmitter emitter;
+    private final int keyArgument;
+    private final Object proxy;
+
+    /** The newest arguments of each key waiting to be sent. */
+    private LinkedHashMap<Key, Update> pending;
+
+    private ScheduledFuture<?> flusher;
+
+    /**
+     * Held by a flush from taking the buffered updates until they are sent,
+     * so that a flush never sends an update older than one already sent by
+     * another.
+     */
+    private final Object flushLock;
+
+    private final AtomicLong updateCount;
+    private final AtomicLong conflatedCount;
+    private final AtomicLong sentCount;
+
+    /** Runs the periodic flushes of every conflating emitter. */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a ConflatingSignalEmitter.
+     *
+     * @param emitter the emitter the signals are sent through
+     * @param keyArgument the position of the argument that, together with the
+     *                    signal, identifies an update, or
+     *                    {@link #NO_KEY_ARGUMENT} to keep only the newest
+     *                    update of each signal
+     * @param flushInterval the time between flushes, or 0 to send the
+     *                      buffered signals only when {@link #flush()} is
+     *                      called
+     * @param unit the unit of flushInterval
+     */
+    public ConflatingSignalEmitter(SignalEmitter emitter, int keyArgument, long flushInterval, TimeUnit unit) {
+        this.emitter = emitter;
+        this.keyArgument = keyArgument;
+        BusObject source = emitter.getSource();
+        proxy = Proxy.newProxyInstance(source.getClass().getClassLoader(),
+                                       InterfaceDescription.getInterfaces(source.getClass()), new Conflator());
+        pending = new LinkedHashMap<Key, Update>();
+        flushLock = new Object();
+        updateCount = new AtomicLong();
+        conflatedCount = new AtomicLong();
+        sentCount = new AtomicLong();
+        if (flushInterval > 0) {
+            flusher = getScheduler().scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        try {
+                            flush();
+                        } catch (BusException ex) {
+                            BusException.log(ex);
+                        }
+                    }
+                }, flushInterval, flushInterval, unit);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ConflatingSignalEmitter");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return scheduler;
+    }
+
+    /** Identifies the updates that replace each other. */
+    private static final class Key {
+        private final Method method;
+        private final Object value;
+
+        Key(Method method, Object value) {
+            this.method = method;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return method.equals(other.method)
+                && (value == null ? other.value == null : value.equals(other.value));
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 31 + (value == null ? 0 : value.hashCode());
+        }
+    }
+
+    /** The newest update of a key. */
+    private static final class Update {
+        private final Method method;
+        private final Object[] args;
+
+        Update(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+    }
+
+    private class Conflator implements InvocationHandler {
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws BusException {
+            if (method.getDeclaringClass() == Object.class) {
+                return SignalEmitter.invokeObjectMethod(proxy, method, args);
+            }
+            emitter.getSignal(method);
+            Object value = null;
+            if (keyArgument != NO_KEY_ARGUMENT && args != null && keyArgument < args.length) {
+                value = args[keyArgument];
+            }
+            updateCount.incrementAndGet();
+            synchronized (ConflatingSignalEmitter.this) {
+                /* The caller may reuse its argument array once the call returns. */
+                Update update = new Update(method, args == null ? null : args.clone());
+                if (pending.put(new Key(method, value), update) != null) {
+                    conflatedCount.incrementAndGet();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Gets a proxy to the interface whose signal methods buffer updates.
+     *
+     * @param intf the interface of the bus object that emits the signals
+     * @return the proxy implementing the conflating signal emitter
+     */
+    public <T> T getInterface(Class<T> intf) {
+        @SuppressWarnings(value = "unchecked")
+        T p = (T) proxy;
+        return p;
+    }
+
+    /**
+     * Sends the buffered updates now.  If nothing could be sent the updates
+     * stay buffered for the next flush.
+     *
+     * @return OK if every buffered update was sent, otherwise the status of
+     *         the first one that was not
+     * @throws BusException if an update is not a signal of the bus object or
+     *                      the bus object is not registered
+     */
+    public Status flush() throws BusException {
+        synchronized (flushLock) {
+            LinkedHashMap<Key, Update> updates;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return Status.OK;
+                }
+                updates = pending;
+                pending = new LinkedHashMap<Key, Update>();
+            }
+
+            Status status;
+            try {
+                SignalEmitter.Batch batch = emitter.newBatch();
+                for (Update update : updates.values()) {
+                    batch.add(update.method, update.args);
+                }
+                status = emitter.emitBatch(batch);
+            } catch (BusException ex) {
+                /* Put the updates back; any buffered meanwhile are newer and win. */
+                synchronized (this) {
+                    for (Map.Entry<Key, Update> entry : pending.entrySet()) {
+                        if (updates.put(entry.getKey(), entry.getValue()) != null) {
+                            conflatedCount.incrementAndGet();
+                        }
+                    }
+                    pending = updates;
+                }
+                throw ex;
+            }
+            sentCount.addAndGet(updates.size());
+            return status;
+        }
+    }
+
+    /**
+     * Stops the periodic flushes and sends the buffered updates.
+     *
+     * @return the result of the final {@link #flush()}
+     * @throws BusException if the final flush fails
+     */
+    public Status close() throws BusException {
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.cancel(false);
+                flusher = null;
+            }
+        }
+        return flush();
+    }
+
+    /**
+     * Gets the number of updates waiting to be sent.
+     *
+     * @return the number of buffered updates
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of updates made through the proxy.
+     *
+     * @return the number of updates
+     */
+    public long getUpdateCount() {
+        return updateCount.get();
+    }
+
+    /**
+     * Gets the number of updates replaced by a newer update of the same key
+     * before they were sent.
+     *
+     * @return the number of updates conflated away
+     */
+    public long getConflatedCount() {
+        return conflatedCount.get();
+    }
+
+    /**
+     * Gets the number of updates handed to the underlying emitter.
+     *
+     * @return the number of updates sent
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+}
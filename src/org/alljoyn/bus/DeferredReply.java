@@ -0,0 +1,202 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of a bus method that is computed after the method returns.
+ *
+ * A bus method declared to return {@code DeferredReply<T>} has the reply
+ * signature of {@code T}.  The bus object implementation returns a
+ * DeferredReply right away and calls {@link #complete(Object)} or
+ * {@link #completeExceptionally(Throwable)} later, from any thread.  The
+ * method call message is kept until then and the reply is sent when the
+ * DeferredReply completes, so the thread that called the bus object is free
+ * to handle other calls in the meantime.
+ * <p>
+ * An {@link ErrorReplyBusException} given to completeExceptionally is sent as
+ * the corresponding error reply, just as if it had been thrown by the bus
+ * method.  Any other exception is sent as a generic failure.
+ * <p>
+ * A DeferredReply that will never be completed should be cancelled, which
+ * sends the caller an error reply at once.  One that is dropped without
+ * being completed or cancelled sends a generic failure when it is garbage
+ * collected, so the caller is not left waiting for the call to time out.
+ * <p>
+ * On the client side a proxy method declared to return a DeferredReply
+ * returns one that has already completed with the reply.  Error replies are
+ * thrown by the proxy method as usual.
+ *
+ * @param <T> the type of the reply
+ */
+public class DeferredReply<T> implements Future<T> {
+
+    private T value;
+    private Throwable exception;
+    private boolean done;
+    private boolean cancelled;
+
+    /** The method call to reply to, once the native code has given it to us. */
+    private MethodCall call;
+
+    /**
+     * Constructs a DeferredReply that has not completed.
+     */
+    public DeferredReply() {
+    }
+
+    /**
+     * Completes with a reply value.  Has no effect if already completed.
+     *
+     * @param value the reply value
+     * @return true if this call completed the reply
+     */
+    public boolean complete(T value) {
+        return finish(value, null, false);
+    }
+
+    /**
+     * Completes with an error reply.  Has no effect if already completed.
+     *
+     * @param exception the error, an {@link ErrorReplyBusException} to send a
+     *                  specific error name or status
+     * @return true if this call completed the reply
+     */
+    public boolean completeExceptionally(Throwable exception) {
+        if (exception == null) {
+            throw new NullPointerException();
+        }
+        return finish(null, exception, false);
+    }
+
+    /**
+     * Cancels the reply.  The caller receives an error reply with the status
+     * {@link Status#CANCELLED}.
+     *
+     * @param mayInterruptIfRunning ignored since there is no running task
+     * @return true if this call completed the reply
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(null, new ErrorReplyBusException(Status.CANCELLED), true);
+    }
+
+    private boolean finish(T value, Throwable exception, boolean cancel) {
+        MethodCall pending;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.value = value;
+            this.exception = exception;
+            this.cancelled = cancel;
+            done = true;
+            notifyAll();
+            pending = call;
+            call = null;
+        }
+        if (pending != null) {
+            send(pending);
+        }
+        return true;
+    }
+
+    /* The fields are not changed once done is set. */
+    private void send(MethodCall call) {
+        if (exception != null) {
+            call.replyError(exception);
+        } else {
+            call.reply(value);
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return result();
+    }
+
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return value;
+    }
+
+    /**
+     * Called by the native code when a bus method returns this DeferredReply.
+     * If the reply has already completed it is sent right away.
+     */
+    private void setMethodCall(MethodCall call) {
+        synchronized (this) {
+            if (!done) {
+                this.call = call;
+                return;
+            }
+        }
+        send(call);
+    }
+
+    /**
+     * Gets the type of the reply carried by a method's return type.
+     *
+     * @param type the generic return type of a bus method
+     * @return {@code T} if type is {@code DeferredReply<T>}, type otherwise
+     */
+    static Type replyType(Type type) {
+        if (type instanceof ParameterizedType) {
+            ParameterizedType pt = (ParameterizedType) type;
+            if (pt.getRawType() == DeferredReply.class) {
+                return pt.getActualTypeArguments()[0];
+            }
+        } else if (type == DeferredReply.class) {
+            return Object.class;
+        }
+        return type;
+    }
+}
@@ -20,9 +20,11 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.alljoyn.bus.annotation.AccessPermission;
@@ -143,6 +145,43 @@ class InterfaceDescription {
         return null;
     }
 
+    /**
+     * Called by the native code to answer a GetAll request for the properties
+     * of an interface in one call.  The values are taken from the snapshot of
+     * a {@link PropertySnapshotListener} where it has them and read with the
+     * get methods otherwise, and are marshalled into msgArg as one struct.
+     */
+    private static void getAllProperties(long msgArg, Object busObject, String ifaceName, String[] names,
+                                         Method[] getters, String signature) throws Exception {
+        Map<String, Object> snapshot = null;
+        if (busObject instanceof PropertySnapshotListener) {
+            snapshot = ((PropertySnapshotListener) busObject).getPropertySnapshot(ifaceName);
+        }
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            if (snapshot != null && snapshot.containsKey(names[i])) {
+                values[i] = snapshot.get(names[i]);
+            } else {
+                values[i] = getters[i].invoke(busObject);
+            }
+        }
+        MsgArg.marshal(msgArg, signature, values);
+    }
+
+    /**
+     * Called by the native code when registering bus objects to find out
+     * whether the binding should cache the value of a property.
+     */
+    private boolean isCachedProperty(String name) {
+        for (Property p : properties.values()) {
+            if (p.name.equals(name)) {
+                return (p.get != null && p.get.getAnnotation(BusProperty.class).cached())
+                    || (p.set != null && p.set.getAnnotation(BusProperty.class).cached());
+            }
+        }
+        return false;
+    }
+
     /**
      * Create the native interface description for the busInterface.
      *
@@ -337,6 +376,22 @@ class InterfaceDescription {
         return Status.OK;
     }
 
+    /**
+     * Get the interfaces implemented by a class and its superclasses, in
+     * the order Class.getInterfaces() lists them, nearest class first.
+     *
+     * @param clazz The class of a bus object.
+     */
+    public static Class<?>[] getInterfaces(Class<?> clazz) {
+        Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            for (Class<?> intf : c.getInterfaces()) {
+                interfaces.add(intf);
+            }
+        }
+        return interfaces.toArray(new Class<?>[interfaces.size()]);
+    }
+
     /**
      * Get the DBus interface name.
      *
@@ -395,20 +450,22 @@ class InterfaceDescription {
     }
 
     /**
-     * Get the DBus member output signature.
+     * Get the DBus member output signature.  The output signature of a method
+     * returning {@code DeferredReply<T>} is that of {@code T}.
      *
      * @param method the method
      */
     public static String getOutSig(Method method) throws AnnotationBusException {
+        Type type = DeferredReply.replyType(method.getGenericReturnType());
         BusMethod busMethod = method.getAnnotation(BusMethod.class);
         if (busMethod != null && busMethod.replySignature().length() > 0) {
-            return Signature.typeSig(method.getGenericReturnType(), busMethod.replySignature());
+            return Signature.typeSig(type, busMethod.replySignature());
         }
         BusSignal busSignal = method.getAnnotation(BusSignal.class);
         if (busSignal != null && busSignal.replySignature().length() > 0) {
-            return Signature.typeSig(method.getGenericReturnType(), busSignal.replySignature());
+            return Signature.typeSig(type, busSignal.replySignature());
         }
-        return Signature.typeSig(method.getGenericReturnType(), null);
+        return Signature.typeSig(type, null);
     }
 
     /**
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The queue statistics of the per-session serial lane of one session, as
+ * kept by {@link MethodDispatcher} for PerSession bus objects and by
+ * {@link SignalHandlerQueue} in per-session mode.
+ *
+ * The statistics returned to the application are snapshots and do not
+ * change afterwards.  The wait time of a message is the time from when it
+ * was received until it started running.  The statistics of a session are
+ * kept while it has messages waiting or running and are dropped when its
+ * lanes go idle, so ended sessions are not remembered.
+ */
+public final class LaneStatistics {
+
+    private final int sessionId;
+    private int queueDepth;
+    private int maxQueueDepth;
+    private long count;
+    private long dropCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    LaneStatistics(int sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Gets the session id of the lane.
+     *
+     * @return the session id
+     */
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Gets the number of messages waiting in the lane.
+     *
+     * @return the queue depth
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the largest queue depth seen since the statistics were last reset.
+     *
+     * @return the maximum queue depth
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Gets the number of messages started since the statistics were last
+     * reset.
+     *
+     * @return the number of messages run
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of messages of the lane discarded or replaced because
+     * of an overflow policy since the statistics were last reset.
+     *
+     * @return the number of messages dropped
+     */
+    public synchronized long getDropCount() {
+        return dropCount;
+    }
+
+    /**
+     * Gets the average time the messages of the lane waited to run.
+     *
+     * @return the average wait time in nanoseconds, or 0 if nothing has run
+     */
+    public synchronized long getAverageWaitTime() {
+        return (count == 0) ? 0 : totalWaitNanos / count;
+    }
+
+    /**
+     * Gets the longest time a message of the lane waited to run.
+     *
+     * @return the maximum wait time in nanoseconds
+     */
+    public synchronized long getMaxWaitTime() {
+        return maxWaitNanos;
+    }
+
+    synchronized void queued() {
+        if (++queueDepth > maxQueueDepth) {
+            maxQueueDepth = queueDepth;
+        }
+    }
+
+    /*
+     * Counts a dropped message.  A message that was waiting in the lane also
+     * leaves the queue depth.
+     */
+    synchronized void dropped(boolean queued) {
+        if (queued) {
+            --queueDepth;
+        }
+        ++dropCount;
+    }
+
+    synchronized void started(long waitNanos) {
+        --queueDepth;
+        ++count;
+        totalWaitNanos += waitNanos;
+        if (waitNanos > maxWaitNanos) {
+            maxWaitNanos = waitNanos;
+        }
+    }
+
+    private synchronized LaneStatistics snapshot() {
+        LaneStatistics copy = new LaneStatistics(sessionId);
+        copy.queueDepth = queueDepth;
+        copy.maxQueueDepth = maxQueueDepth;
+        copy.count = count;
+        copy.dropCount = dropCount;
+        copy.totalWaitNanos = totalWaitNanos;
+        copy.maxWaitNanos = maxWaitNanos;
+        return copy;
+    }
+
+    /* Returns true if the lane is idle and may be forgotten. */
+    private synchronized boolean reset() {
+        maxQueueDepth = queueDepth;
+        count = 0;
+        dropCount = 0;
+        totalWaitNanos = 0;
+        maxWaitNanos = 0;
+        return queueDepth == 0;
+    }
+
+    /**
+     * Gets the statistics of a session from a map of lane statistics, adding
+     * them if the session has none yet.  The caller synchronizes on the map.
+     */
+    static LaneStatistics get(Map<Integer, LaneStatistics> lanes, int sessionId) {
+        LaneStatistics stats = lanes.get(sessionId);
+        if (stats == null) {
+            stats = new LaneStatistics(sessionId);
+            lanes.put(sessionId, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Drops the statistics of a session from a map of lane statistics if no
+     * messages of the session are waiting.  Called when a lane of the session
+     * goes idle.  The caller synchronizes on the map.
+     */
+    static void removeIdle(Map<Integer, LaneStatistics> lanes, int sessionId) {
+        LaneStatistics stats = lanes.get(sessionId);
+        if (stats != null && stats.getQueueDepth() == 0) {
+            lanes.remove(sessionId);
+        }
+    }
+
+    /**
+     * Takes snapshots of a map of lane statistics.  The caller synchronizes
+     * on the map.
+     */
+    static Map<Integer, LaneStatistics> snapshot(Map<Integer, LaneStatistics> lanes) {
+        Map<Integer, LaneStatistics> copy = new HashMap<Integer, LaneStatistics>();
+        for (LaneStatistics stats : lanes.values()) {
+            copy.put(stats.sessionId, stats.snapshot());
+        }
+        return copy;
+    }
+
+    /**
+     * Resets a map of lane statistics and forgets the idle lanes, so that
+     * ended sessions are not remembered.  The caller synchronizes on the map.
+     */
+    static void reset(Map<Integer, LaneStatistics> lanes) {
+        for (Iterator<LaneStatistics> it = lanes.values().iterator(); it.hasNext();) {
+            if (it.next().reset()) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the callbacks of the listeners given to a bus attachment on the
+ * executor set with {@link BusAttachment#setCallbackExecutor(Executor)}
+ * instead of the AllJoyn threads that deliver them.
+ *
+ * Listeners are wrapped in forwarding listeners when they are registered.
+ * The forwarding listener queues each callback on a serial lane and returns
+ * to AllJoyn at once, so a callback that blocks only holds up the later
+ * callbacks of its own lane.  A lane runs one callback at a time, in the
+ * order AllJoyn delivered them, and gives up its executor thread after each
+ * callback so that a busy lane cannot starve the others.
+ *
+ * Callbacks that return a value to AllJoyn, such as
+ * {@link SessionPortListener#acceptSessionJoiner}, cannot be deferred and
+ * are still called on the AllJoyn thread.
+ */
+final class ListenerDispatcher {
+
+    /** The executor provided by the application, if any. */
+    private volatile Executor executor;
+
+    /**
+     * Sets the executor used to run the callbacks of listeners wrapped from
+     * now on.
+     *
+     * @param executor the executor, or null to call listeners on the AllJoyn
+     *                 threads
+     */
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the executor set by the application.
+     *
+     * @return the executor, or null if there is none
+     */
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /*
+     * Hand a runnable to the executor.  If the executor has been removed or
+     * refuses it, run it here rather than lose the callback.
+     */
+    private void execute(Runnable runnable) {
+        Executor executor = this.executor;
+        if (executor == null) {
+            runnable.run();
+            return;
+        }
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException ex) {
+            BusException.log(ex);
+            runnable.run();
+        }
+    }
+
+    /**
+     * A queue of callbacks that must run one at a time.  The lane runs a
+     * single callback each time the executor runs it and reschedules itself
+     * while callbacks remain.
+     */
+    final class Lane implements Runnable {
+        private final LinkedList<Runnable> callbacks = new LinkedList<Runnable>();
+        private boolean running;
+
+        void post(Runnable callback) {
+            boolean schedule = false;
+            synchronized (this) {
+                callbacks.add(callback);
+                if (!running) {
+                    running = true;
+                    schedule = true;
+                }
+            }
+            if (schedule) {
+                execute(this);
+            }
+        }
+
+        public void run() {
+            Runnable callback;
+            synchronized (this) {
+                callback = callbacks.poll();
+            }
+            try {
+                if (callback != null) {
+                    callback.run();
+                }
+            } finally {
+                boolean reschedule;
+                synchronized (this) {
+                    reschedule = !callbacks.isEmpty();
+                    if (!reschedule) {
+                        running = false;
+                    }
+                }
+                if (reschedule) {
+                    execute(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps a bus listener being registered.
+     *
+     * @return the forwarding listener, or the listener itself if there is no
+     *         executor or it is already wrapped
+     */
+    BusListener wrap(BusListener listener) {
+        if (listener == null || executor == null || listener instanceof DispatchedBusListener) {
+            return listener;
+        }
+        return new DispatchedBusListener(listener, new Lane());
+    }
+
+    /**
+     * Wraps a session listener.  The listener shares the lane of the
+     * OnJoinSessionListener of the same joinSession call, if any.
+     *
+     * @return the forwarding listener, or the listener itself if there is no
+     *         executor or it is already wrapped
+     */
+    SessionListener wrap(SessionListener listener, Lane lane) {
+        if (listener == null || executor == null || listener instanceof DispatchedSessionListener) {
+            return listener;
+        }
+        return new DispatchedSessionListener(listener, (lane == null) ? new Lane() : lane);
+    }
+
+    /**
+     * Wraps a session port listener being bound.
+     *
+     * @return the forwarding listener, or the listener itself if there is no
+     *         executor or it is already wrapped
+     */
+    SessionPortListener wrap(SessionPortListener listener) {
+        if (listener == null || executor == null || listener instanceof DispatchedSessionPortListener) {
+            return listener;
+        }
+        return new DispatchedSessionPortListener(listener, new Lane());
+    }
+
+    /**
+     * Wraps the listener of an asynchronous joinSession call.
+     *
+     * @return the forwarding listener, or the listener itself if there is no
+     *         executor or it is already wrapped
+     */
+    OnJoinSessionListener wrap(OnJoinSessionListener listener, Lane lane) {
+        if (listener == null || executor == null || listener instanceof DispatchedOnJoinSessionListener) {
+            return listener;
+        }
+        return new DispatchedOnJoinSessionListener(listener, (lane == null) ? new Lane() : lane);
+    }
+
+    /**
+     * Makes a lane for the listeners of a joinSession call.
+     *
+     * @return the lane, or null if there is no executor
+     */
+    Lane newLane() {
+        return (executor == null) ? null : new Lane();
+    }
+
+    private static final class DispatchedBusListener extends BusListener {
+        private final BusListener listener;
+        private final Lane lane;
+
+        DispatchedBusListener(BusListener listener, Lane lane) {
+            this.listener = listener;
+            this.lane = lane;
+        }
+
+        /* Called on the registering thread, before any other callback. */
+        public void listenerRegistered(BusAttachment bus) {
+            listener.listenerRegistered(bus);
+        }
+
+        public void listenerUnregistered() {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.listenerUnregistered();
+                    }
+                });
+        }
+
+        public void foundAdvertisedName(final String name, final short transport, final String namePrefix) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.foundAdvertisedName(name, transport, namePrefix);
+                    }
+                });
+        }
+
+        public void lostAdvertisedName(final String name, final short transport, final String namePrefix) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.lostAdvertisedName(name, transport, namePrefix);
+                    }
+                });
+        }
+
+        public void nameOwnerChanged(final String busName, final String previousOwner, final String newOwner) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.nameOwnerChanged(busName, previousOwner, newOwner);
+                    }
+                });
+        }
+
+        public void propertyChanged(final String propName, final Variant propValue) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.propertyChanged(propName, propValue);
+                    }
+                });
+        }
+
+        public void busStopping() {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.busStopping();
+                    }
+                });
+        }
+
+        public void busDisconnected() {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.busDisconnected();
+                    }
+                });
+        }
+    }
+
+    private static final class DispatchedSessionListener extends SessionListener {
+        private final SessionListener listener;
+        private final Lane lane;
+
+        DispatchedSessionListener(SessionListener listener, Lane lane) {
+            this.listener = listener;
+            this.lane = lane;
+        }
+
+        /* Forwards the deprecated callback too, for listeners that only override it. */
+        @SuppressWarnings("deprecation")
+        public void sessionLost(final int sessionId) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.sessionLost(sessionId);
+                    }
+                });
+        }
+
+        public void sessionLost(final int sessionId, final int reason) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.sessionLost(sessionId, reason);
+                    }
+                });
+        }
+
+        public void sessionMemberAdded(final int sessionId, final String uniqueName) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.sessionMemberAdded(sessionId, uniqueName);
+                    }
+                });
+        }
+
+        public void sessionMemberRemoved(final int sessionId, final String uniqueName) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.sessionMemberRemoved(sessionId, uniqueName);
+                    }
+                });
+        }
+    }
+
+    private static final class DispatchedSessionPortListener extends SessionPortListener {
+        private final SessionPortListener listener;
+        private final Lane lane;
+
+        DispatchedSessionPortListener(SessionPortListener listener, Lane lane) {
+            this.listener = listener;
+            this.lane = lane;
+        }
+
+        /* AllJoyn needs the answer, so this is called on the AllJoyn thread. */
+        public boolean acceptSessionJoiner(short sessionPort, String joiner, SessionOpts opts) {
+            return listener.acceptSessionJoiner(sessionPort, joiner, opts);
+        }
+
+        public void sessionJoined(final short sessionPort, final int id, final String joiner) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.sessionJoined(sessionPort, id, joiner);
+                    }
+                });
+        }
+    }
+
+    private static final class DispatchedOnJoinSessionListener extends OnJoinSessionListener {
+        private final OnJoinSessionListener listener;
+        private final Lane lane;
+
+        DispatchedOnJoinSessionListener(OnJoinSessionListener listener, Lane lane) {
+            this.listener = listener;
+            this.lane = lane;
+        }
+
+        public void onJoinSession(final Status status, final int sessionId, final SessionOpts opts,
+                                  final Object context) {
+            lane.post(new Runnable() {
+                    public void run() {
+                        listener.onJoinSession(status, sessionId, opts, context);
+                    }
+                });
+        }
+    }
+}
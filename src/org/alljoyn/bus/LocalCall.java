@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A method call made by a ProxyBusObject directly on a bus object registered
+ * on the same bus attachment, without marshalling it into a message and
+ * routing it through the local endpoint.
+ * <p>
+ * The bus method sees the call as it would see one that came in a message:
+ * it is given copies of the arguments, the caller is given a copy of the
+ * reply, {@link BusAttachment#getMessageContext()} describes the call, and
+ * exceptions are turned into the exceptions the caller would get from an
+ * error reply.  Calls that need the bus, such as calls to secure objects or
+ * interfaces, are not made this way.
+ */
+final class LocalCall {
+
+    /**
+     * Calls a bus method of a local bus object.
+     *
+     * @param uniqueName the unique name of the bus attachment, which is both
+     *                   the sender and the destination of the call
+     * @param busObject the bus object
+     * @param objectPath the object path the bus object is registered at
+     * @param sessionId the session of the proxy making the call
+     * @param method the interface method
+     * @param interfaceName the bus name of the interface
+     * @param memberName the bus name of the method
+     * @param signature the input signature of the method
+     * @param args the arguments of the call
+     * @return a copy of the value returned by the bus method
+     * @throws MarshalBusException if an argument is of a type that cannot be
+     *                             sent in a message
+     * @throws BusException the exception the caller would get from the error
+     *                      reply to the call
+     */
+    static Object invoke(String uniqueName, BusObject busObject, String objectPath, int sessionId, Method method,
+                         String interfaceName, String memberName, String signature, Object[] args)
+        throws BusException {
+        Object[] copies = null;
+        if (args != null) {
+            copies = new Object[args.length];
+            for (int i = 0; i < args.length; ++i) {
+                copies[i] = copy(args[i]);
+            }
+        }
+
+        MessageContext previous = MessageContext.setCurrent(
+            new MessageContext(objectPath, interfaceName, memberName, uniqueName, uniqueName, signature, "",
+                               sessionId));
+        Object reply;
+        try {
+            reply = method.invoke(busObject, copies);
+        } catch (InvocationTargetException ex) {
+            throw errorReply(ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw errorReply(ex);
+        } finally {
+            MessageContext.setCurrent(previous);
+        }
+
+        if (method.getReturnType() == void.class) {
+            return null;
+        }
+        if (reply == null) {
+            /* The error reply the bus object sends for a null return value. */
+            throw new BusException(interfaceName + "." + memberName + " returned null");
+        }
+        try {
+            return copy(reply);
+        } catch (MarshalBusException ex) {
+            /* The reply could not have been marshalled, so the call would have failed remotely. */
+            throw new BusException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Makes the exception a remote caller would get from the error reply the
+     * bus object sends when a bus method throws.
+     */
+    private static BusException errorReply(Throwable cause) {
+        if (cause instanceof ErrorReplyBusException) {
+            ErrorReplyBusException ex = (ErrorReplyBusException) cause;
+            String message = (ex.getErrorMessage() == null) ? "" : ex.getErrorMessage();
+            if (ex.getErrorName() == null) {
+                return statusReply(ex.getErrorStatus());
+            } else if ("org.alljoyn.bus.BusException".equals(ex.getErrorName())) {
+                return new BusException(message);
+            } else {
+                return new ErrorReplyBusException(ex.getErrorName(), message);
+            }
+        }
+        return statusReply(Status.FAIL);
+    }
+
+    private static BusException statusReply(Status status) {
+        return new ErrorReplyBusException("org.alljoyn.Bus.ErStatus", "ER_" + status.name());
+    }
+
+    /**
+     * Copies a value that could be sent in a message, so that neither side of
+     * a local call sees changes the other makes to it afterwards.  Immutable
+     * values are not copied.  Maps are copied into maps of the same class
+     * where possible, and into HashMaps as unmarshalling does otherwise.
+     *
+     * @throws MarshalBusException if the value could not be sent in a message
+     */
+    static Object copy(Object value) throws MarshalBusException {
+        if (value == null) {
+            throw new MarshalBusException("cannot marshal null");
+        }
+        if (value instanceof String || value instanceof Number || value instanceof Boolean
+            || value instanceof Enum) {
+            return value;
+        }
+
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            Class<?> componentType = type.getComponentType();
+            Object copy = Array.newInstance(componentType, length);
+            if (componentType.isPrimitive()) {
+                System.arraycopy(value, 0, copy, 0, length);
+            } else {
+                for (int i = 0; i < length; ++i) {
+                    Array.set(copy, i, copy(Array.get(value, i)));
+                }
+            }
+            return copy;
+        }
+
+        if (value instanceof Map) {
+            Map<Object, Object> copy;
+            try {
+                @SuppressWarnings(value = "unchecked")
+                Map<Object, Object> map = (Map<Object, Object>) type.newInstance();
+                copy = map;
+            } catch (Exception ex) {
+                copy = new HashMap<Object, Object>();
+            }
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(copy(entry.getKey()), copy(entry.getValue()));
+            }
+            return copy;
+        }
+
+        if (value instanceof Variant) {
+            Variant variant = (Variant) value;
+            if (variant.getValue() == null) {
+                /* Holds an unmarshalled message argument, which is never changed. */
+                return variant;
+            }
+            try {
+                return new Variant(copy(variant.getValue()), variant.getSignature());
+            } catch (AnnotationBusException ex) {
+                throw new MarshalBusException("cannot marshal " + variant.getValue().getClass(), ex);
+            }
+        }
+
+        try {
+            Field[] fields = Signature.structFields(type);
+            if (fields.length == 0) {
+                throw new MarshalBusException("cannot marshal " + type);
+            }
+            Object copy = type.newInstance();
+            for (Field field : fields) {
+                field.set(copy, copy(field.get(value)));
+            }
+            return copy;
+        } catch (MarshalBusException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new MarshalBusException("cannot marshal " + type, ex);
+        }
+    }
+}
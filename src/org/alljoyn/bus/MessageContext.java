@@ -19,6 +19,13 @@ package org.alljoyn.bus;
 /**
  * Contains information about a specific method call or signal
  * message.
+ * <p>
+ * A context obtained with {@link BusAttachment#getMessageContext(boolean)}
+ * without populating it only has the isUnreliable, sessionId and serial
+ * fields set.  The other fields are filled in from the message by their
+ * getters the first time they are asked for, so a handler pays only for the
+ * fields it reads.  The getters may be called after the handler has
+ * returned.
  */
 public final class MessageContext {
 
@@ -79,6 +86,38 @@ public final class MessageContext {
      */
     public String authMechanism;
 
+    /**
+     * The opaque pointer to the underlying C++ message, or 0 if this context
+     * was constructed by the application.
+     */
+    private long handle;
+
+    /**
+     * The string fields of a method call made directly on a bus object on the
+     * same bus attachment, which has no underlying message, or null.
+     */
+    private String[] strings;
+
+    private static final int OBJECT_PATH = 0;
+    private static final int INTERFACE_NAME = 1;
+    private static final int MEMBER_NAME = 2;
+    private static final int DESTINATION = 3;
+    private static final int SENDER = 4;
+    private static final int SIGNATURE = 5;
+    private static final int AUTH_MECHANISM = 6;
+
+    /** Created by the native code with the fields that are cheap to get. */
+    private MessageContext(long handle, boolean isUnreliable, int sessionId, int serial) {
+        this.handle = handle;
+        this.isUnreliable = isUnreliable;
+        this.sessionId = sessionId;
+        this.serial = serial;
+    }
+
+    /**
+     * Created by the native code with every field filled in, so there is no
+     * underlying message to keep.
+     */
     private MessageContext(boolean isUnreliable, String objectPath, String interfaceName,
                            String memberName, String destination, String sender, int sessionId,
                            String signature, String authMechanism, int serial) {
@@ -96,4 +135,223 @@ public final class MessageContext {
 
     public MessageContext() {
     }
+
+    /**
+     * Created for a method call made directly on a bus object on the same bus
+     * attachment.  The string fields are filled in from the given values by
+     * the getters, as they would be from a message.
+     */
+    MessageContext(String objectPath, String interfaceName, String memberName, String destination, String sender,
+                   String signature, String authMechanism, int sessionId) {
+        this.strings = new String[] { objectPath, interfaceName, memberName, destination, sender, signature,
+                                      authMechanism };
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * The context of the innermost message being dispatched in Java on each
+     * thread, by a {@link SignalHandlerQueue} or a local call, or null.  Each
+     * dispatch restores the context it replaced, so nested dispatches stack.
+     */
+    private static final ThreadLocal<MessageContext> current = new ThreadLocal<MessageContext>();
+
+    /**
+     * Gets the context of the innermost message being dispatched in Java on
+     * the calling thread.
+     *
+     * @return the message context, or null if the calling thread is not
+     *         dispatching a message in Java
+     */
+    static MessageContext getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Makes a context that of the message being dispatched on the calling
+     * thread.
+     *
+     * @param context the context of the message, or null
+     * @return the context it replaces, to be restored when the dispatch ends
+     */
+    static MessageContext setCurrent(MessageContext context) {
+        MessageContext previous = current.get();
+        current.set(context);
+        return previous;
+    }
+
+    /** Gets one of the string fields of the underlying C++ message. */
+    private synchronized native String getString(int field);
+
+    /** Gets one of the string fields of the message or local call. */
+    private String getField(int field) {
+        return (strings != null) ? strings[field] : getString(field);
+    }
+
+    /** Releases the underlying C++ message. */
+    private synchronized native void destroy();
+
+    /**
+     * Called by the native code to make this the context of another message.
+     * The string fields are cleared to be filled in again by the getters.
+     */
+    private synchronized void setMessage(long handle, boolean isUnreliable, int sessionId, int serial) {
+        destroy();
+        this.handle = handle;
+        this.isUnreliable = isUnreliable;
+        this.sessionId = sessionId;
+        this.serial = serial;
+        strings = null;
+        objectPath = null;
+        interfaceName = null;
+        memberName = null;
+        destination = null;
+        sender = null;
+        signature = null;
+        authMechanism = null;
+    }
+
+    /**
+     * Gets whether the message is unreliable.
+     *
+     * @return {@code true} if the message is unreliable
+     */
+    public boolean isUnreliable() {
+        return isUnreliable;
+    }
+
+    /**
+     * Gets the object path for this message, getting it from the underlying
+     * message the first time it is asked for.
+     *
+     * @return the object path, or an empty string if there is none
+     */
+    public synchronized String getObjectPath() {
+        if (objectPath == null) {
+            objectPath = getField(OBJECT_PATH);
+        }
+        return objectPath;
+    }
+
+    /**
+     * Gets the interface for this message, getting it from the underlying
+     * message the first time it is asked for.
+     *
+     * @return the interface name, or an empty string if there is none
+     */
+    public synchronized String getInterfaceName() {
+        if (interfaceName == null) {
+            interfaceName = getField(INTERFACE_NAME);
+        }
+        return interfaceName;
+    }
+
+    /**
+     * Gets the member (method/signal) name for this message, getting it from
+     * the underlying message the first time it is asked for.
+     *
+     * @return the member name, or an empty string if there is none
+     */
+    public synchronized String getMemberName() {
+        if (memberName == null) {
+            memberName = getField(MEMBER_NAME);
+        }
+        return memberName;
+    }
+
+    /**
+     * Gets the destination for this message, getting it from the underlying
+     * message the first time it is asked for.
+     *
+     * @return the destination, or an empty string if there is none
+     */
+    public synchronized String getDestination() {
+        if (destination == null) {
+            destination = getField(DESTINATION);
+        }
+        return destination;
+    }
+
+    /**
+     * Gets the sender for this message, getting it from the underlying
+     * message the first time it is asked for.
+     *
+     * @return the sender, or an empty string if there is none
+     */
+    public synchronized String getSender() {
+        if (sender == null) {
+            sender = getField(SENDER);
+        }
+        return sender;
+    }
+
+    /**
+     * Gets the session ID that the sender used to send the message.
+     *
+     * @return the session ID
+     */
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Gets the serial number of the message.
+     *
+     * @return the serial number
+     */
+    public int getSerial() {
+        return serial;
+    }
+
+    /**
+     * Gets the signature for this message, getting it from the underlying
+     * message the first time it is asked for.
+     *
+     * @return the signature, or an empty string if there is none
+     */
+    public synchronized String getSignature() {
+        if (signature == null) {
+            signature = getField(SIGNATURE);
+        }
+        return signature;
+    }
+
+    /**
+     * Gets the authentication mechanism in use for this message, getting it
+     * from the underlying message the first time it is asked for.
+     *
+     * @return the authentication mechanism
+     */
+    public synchronized String getAuthMechanism() {
+        if (authMechanism == null) {
+            authMechanism = getField(AUTH_MECHANISM);
+        }
+        return authMechanism;
+    }
+
+    /**
+     * Fills in every field from the underlying message, then releases the
+     * message since nothing more is needed from it.
+     */
+    synchronized void populate() {
+        getObjectPath();
+        getInterfaceName();
+        getMemberName();
+        getDestination();
+        getSender();
+        getSignature();
+        getAuthMechanism();
+        destroy();
+    }
+
+    /**
+     * Let the Java garbage collector release the underlying C++ message.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            destroy();
+        } finally {
+            super.finalize();
+        }
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+/**
+ * A method call received by a bus object whose reply has not been sent yet.
+ *
+ * A method call handed to a {@link MethodDispatcher} is run to call the bus
+ * object method on the current thread and send the reply.  A method call
+ * whose bus method returned a {@link DeferredReply} is replied to when the
+ * DeferredReply completes.
+ */
+final class MethodCall implements Runnable {
+
+    /**
+     * The opaque pointer to the underlying C++ object which is actually tied
+     * to the AllJoyn code.
+     */
+    private long handle;
+
+    /** Created by the native code. */
+    private MethodCall(long handle) {
+        this.handle = handle;
+    }
+
+    /** Call the bus object method and reply, releasing native resources. */
+    private synchronized native void invoke();
+
+    /** Send a method reply, releasing native resources. */
+    private synchronized native void sendReply(Object value);
+
+    /** Send an error reply, releasing native resources. */
+    private synchronized native void sendErrorReply(Throwable exception);
+
+    /** Send an error reply, if none was sent, and release native resources. */
+    private synchronized native void destroy();
+
+    public void run() {
+        invoke();
+    }
+
+    /**
+     * Reply to a method call whose bus method returned a DeferredReply.
+     *
+     * @param value the value returned to the caller
+     */
+    void reply(Object value) {
+        sendReply(value);
+    }
+
+    /**
+     * Send an error reply to a method call whose bus method returned a
+     * DeferredReply.
+     *
+     * @param exception the error returned to the caller
+     */
+    void replyError(Throwable exception) {
+        sendErrorReply(exception);
+    }
+
+    /**
+     * Send an error reply to a method call that could not be dispatched,
+     * unless it has already been run or replied to.
+     *
+     * @param exception the error returned to the caller
+     */
+    synchronized void abort(Throwable exception) {
+        if (handle != 0) {
+            sendErrorReply(exception);
+        }
+    }
+
+    /**
+     * Let the Java garbage collector release resources of a method call that
+     * was never run, or whose DeferredReply was dropped without completing,
+     * and send the caller an error reply.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            destroy();
+        } finally {
+            super.finalize();
+        }
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alljoyn.bus.annotation.BusInterface;
+import org.alljoyn.bus.annotation.DispatchPolicy;
+
+/**
+ * Runs incoming method calls for bus objects annotated with
+ * {@link DispatchPolicy} on an {@link Executor} instead of the AllJoyn
+ * dispatcher thread.
+ *
+ * Each bus attachment owns one MethodDispatcher.  Until an executor is
+ * provided with {@link #setExecutor(Executor)} a cached thread pool is
+ * created on first use and shut down when the bus attachment is released.
+ *
+ * Calls that must be ordered (PerObject and PerSession) are queued on a
+ * serial lane and the lane runs one call at a time on the executor.  A lane
+ * gives up its executor thread after each call so that a busy lane cannot
+ * starve the others.  On an executor that takes tasks in the order they are
+ * queued, such as a fixed thread pool, the lanes with calls waiting
+ * therefore take turns, one call each, however many calls each has queued.
+ *
+ * The queue depth and wait time statistics count every call from the time it
+ * is received from the bus until the time the executor starts running it.
+ * PerSession calls are also counted per session, see
+ * {@link #getSessionStatistics()}.
+ */
+public final class MethodDispatcher {
+
+    /** The executor provided by the application, if any. */
+    private Executor executor;
+
+    /** The executor created when the application did not provide one. */
+    private ExecutorService defaultExecutor;
+
+    /** The serial lanes that currently have calls queued or running. */
+    private final Map<LaneKey, Lane> lanes;
+
+    private final AtomicInteger queueDepth;
+    private final AtomicInteger maxQueueDepth;
+    private final AtomicLong dispatchCount;
+    private final AtomicLong totalWaitNanos;
+    private final AtomicLong maxWaitNanos;
+
+    /** The statistics of the sessions with PerSession calls, by session id. */
+    private final Map<Integer, LaneStatistics> sessionStatistics;
+
+    /**
+     * The dispatch orderings of each bus object class, indexed by interface
+     * name.  Classes are weakly referenced so they may still be unloaded.
+     */
+    private static final Map<Class<?>, Map<String, DispatchPolicy.Ordering>> orderings =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, Map<String, DispatchPolicy.Ordering>>());
+
+    MethodDispatcher() {
+        lanes = new HashMap<LaneKey, Lane>();
+        queueDepth = new AtomicInteger();
+        maxQueueDepth = new AtomicInteger();
+        dispatchCount = new AtomicLong();
+        totalWaitNanos = new AtomicLong();
+        maxWaitNanos = new AtomicLong();
+        sessionStatistics = new HashMap<Integer, LaneStatistics>();
+    }
+
+    /**
+     * Sets the executor used to run dispatched method calls.
+     *
+     * Calls already handed to the previous executor are not affected.  The
+     * executor is not shut down when the bus attachment is released.
+     *
+     * @param executor the executor, or null to use the default thread pool
+     */
+    public synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the number of method calls that have been received but have not
+     * yet started running.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Gets the largest queue depth seen since the statistics were last reset.
+     *
+     * @return the maximum queue depth
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Gets the number of method calls started since the statistics were last
+     * reset.
+     *
+     * @return the number of method calls dispatched
+     */
+    public long getDispatchCount() {
+        return dispatchCount.get();
+    }
+
+    /**
+     * Gets the total time the dispatched method calls spent waiting to run.
+     *
+     * @return the total wait time in nanoseconds
+     */
+    public long getTotalWaitTime() {
+        return totalWaitNanos.get();
+    }
+
+    /**
+     * Gets the longest time a dispatched method call spent waiting to run.
+     *
+     * @return the maximum wait time in nanoseconds
+     */
+    public long getMaxWaitTime() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Gets the average time a dispatched method call spent waiting to run.
+     *
+     * @return the average wait time in nanoseconds, or 0 if nothing has been
+     *         dispatched
+     */
+    public long getAverageWaitTime() {
+        long count = dispatchCount.get();
+        return (count == 0) ? 0 : totalWaitNanos.get() / count;
+    }
+
+    /**
+     * Gets the queue statistics of each session that has PerSession calls
+     * waiting or running.  The calls to all PerSession bus objects in a
+     * session are counted together, and a session's statistics are dropped
+     * when its lanes go idle.
+     *
+     * @return snapshots of the statistics, by session id
+     */
+    public Map<Integer, LaneStatistics> getSessionStatistics() {
+        synchronized (sessionStatistics) {
+            return LaneStatistics.snapshot(sessionStatistics);
+        }
+    }
+
+    /**
+     * Resets the maximum queue depth, dispatch count and wait time statistics,
+     * including those of each session.  Sessions with no calls waiting are
+     * forgotten.
+     */
+    public void resetStatistics() {
+        maxQueueDepth.set(queueDepth.get());
+        dispatchCount.set(0);
+        totalWaitNanos.set(0);
+        maxWaitNanos.set(0);
+        synchronized (sessionStatistics) {
+            LaneStatistics.reset(sessionStatistics);
+        }
+    }
+
+    /**
+     * Indicates if any method of the bus object must be dispatched.
+     *
+     * @param busObj the bus object about to be registered
+     * @return true if at least one bus interface is not dispatched Inline
+     */
+    static boolean isDispatched(BusObject busObj) {
+        for (DispatchPolicy.Ordering ordering : getOrderings(busObj.getClass()).values()) {
+            if (ordering != DispatchPolicy.Ordering.Inline) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, DispatchPolicy.Ordering> getOrderings(Class<?> busObjClass) {
+        Map<String, DispatchPolicy.Ordering> map = orderings.get(busObjClass);
+        if (map != null) {
+            return map;
+        }
+
+        DispatchPolicy.Ordering defaultOrdering = DispatchPolicy.Ordering.Inline;
+        DispatchPolicy classPolicy = busObjClass.getAnnotation(DispatchPolicy.class);
+        if (classPolicy != null) {
+            defaultOrdering = classPolicy.value();
+        }
+
+        map = new HashMap<String, DispatchPolicy.Ordering>();
+        for (Class<?> intf : InterfaceDescription.getInterfaces(busObjClass)) {
+            if (intf.getAnnotation(BusInterface.class) == null) {
+                continue;
+            }
+            DispatchPolicy policy = intf.getAnnotation(DispatchPolicy.class);
+            map.put(InterfaceDescription.getName(intf), (policy != null) ? policy.value() : defaultOrdering);
+        }
+        orderings.put(busObjClass, map);
+        return map;
+    }
+
+    /**
+     * Called by the native code to hand off a method call received for a
+     * registered bus object.
+     *
+     * @param busObj the bus object the call is for
+     * @param ifaceName the name of the interface of the called member
+     * @param sessionId the session the call was received on
+     * @param call the pending method call
+     */
+    void dispatch(BusObject busObj, String ifaceName, int sessionId, Runnable call) {
+        DispatchPolicy.Ordering ordering = getOrderings(busObj.getClass()).get(ifaceName);
+        if (ordering == null) {
+            ordering = DispatchPolicy.Ordering.Inline;
+        }
+
+        LaneStatistics stats = null;
+        if (ordering == DispatchPolicy.Ordering.PerSession) {
+            synchronized (sessionStatistics) {
+                stats = LaneStatistics.get(sessionStatistics, sessionId);
+                stats.queued();
+            }
+        }
+
+        Task task = new Task(call, stats);
+        int depth = queueDepth.incrementAndGet();
+        for (int max = maxQueueDepth.get(); depth > max; max = maxQueueDepth.get()) {
+            if (maxQueueDepth.compareAndSet(max, depth)) {
+                break;
+            }
+        }
+
+        switch (ordering) {
+        case Inline:
+            task.run();
+            break;
+        case Parallel:
+            execute(task);
+            break;
+        case PerObject:
+            enqueue(new LaneKey(busObj, 0, false), task);
+            break;
+        case PerSession:
+            enqueue(new LaneKey(busObj, sessionId, true), task);
+            break;
+        }
+    }
+
+    /**
+     * Called by the bus attachment when it is released.
+     */
+    synchronized void shutdown() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+    }
+
+    private synchronized Executor getExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newCachedThreadPool();
+        }
+        return defaultExecutor;
+    }
+
+    /*
+     * Hand a runnable to the executor.  If the executor refuses it, run it
+     * here rather than leave the remote caller waiting for a reply that will
+     * never come.  A lane is drained in a loop since rescheduling it from
+     * here would recurse once per call.
+     */
+    private void execute(Runnable runnable) {
+        try {
+            getExecutor().execute(runnable);
+        } catch (RejectedExecutionException ex) {
+            BusException.log(ex);
+            if (runnable instanceof Lane) {
+                Lane lane = (Lane) runnable;
+                while (lane.runNext()) {
+                }
+            } else {
+                runnable.run();
+            }
+        }
+    }
+
+    private void enqueue(LaneKey key, Task task) {
+        Lane lane;
+        boolean schedule = false;
+        synchronized (lanes) {
+            lane = lanes.get(key);
+            if (lane == null) {
+                lane = new Lane(key);
+                lanes.put(key, lane);
+            }
+            lane.tasks.add(task);
+            if (!lane.running) {
+                lane.running = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            execute(lane);
+        }
+    }
+
+    /** A method call, the time it was received and the statistics of its session. */
+    private final class Task implements Runnable {
+        private final Runnable call;
+        private final long received;
+        private final LaneStatistics stats;
+
+        Task(Runnable call, LaneStatistics stats) {
+            this.call = call;
+            this.received = System.nanoTime();
+            this.stats = stats;
+        }
+
+        public void run() {
+            long wait = System.nanoTime() - received;
+            queueDepth.decrementAndGet();
+            dispatchCount.incrementAndGet();
+            totalWaitNanos.addAndGet(wait);
+            if (stats != null) {
+                stats.started(wait);
+            }
+            for (long max = maxWaitNanos.get(); wait > max; max = maxWaitNanos.get()) {
+                if (maxWaitNanos.compareAndSet(max, wait)) {
+                    break;
+                }
+            }
+            call.run();
+        }
+    }
+
+    /**
+     * Identifies a serial lane.  Bus objects are compared by identity since
+     * applications are free to override equals().
+     */
+    private static final class LaneKey {
+        private final Object busObj;
+        private final int sessionId;
+        private final boolean perSession;
+
+        LaneKey(Object busObj, int sessionId, boolean perSession) {
+            this.busObj = busObj;
+            this.sessionId = sessionId;
+            this.perSession = perSession;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LaneKey)) {
+                return false;
+            }
+            LaneKey other = (LaneKey) obj;
+            return busObj == other.busObj && sessionId == other.sessionId && perSession == other.perSession;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(busObj) * 31 + sessionId;
+        }
+    }
+
+    /**
+     * A queue of calls that must run one at a time.  The lane runs a single
+     * call each time the executor runs it and reschedules itself while calls
+     * remain.  Idle lanes are removed so unregistered bus objects and ended
+     * sessions are not remembered.
+     */
+    private final class Lane implements Runnable {
+        private final LaneKey key;
+        private final LinkedList<Task> tasks;
+        private boolean running;
+
+        Lane(LaneKey key) {
+            this.key = key;
+            this.tasks = new LinkedList<Task>();
+        }
+
+        public void run() {
+            if (runNext()) {
+                execute(this);
+            }
+        }
+
+        /* Runs the next call, returning true if more remain. */
+        boolean runNext() {
+            Task task;
+            synchronized (lanes) {
+                task = tasks.poll();
+            }
+            boolean more;
+            try {
+                if (task != null) {
+                    task.run();
+                }
+            } catch (RuntimeException ex) {
+                /* Keep running the rest of the lane. */
+                BusException.log(ex);
+            } finally {
+                synchronized (lanes) {
+                    more = !tasks.isEmpty();
+                    if (!more) {
+                        running = false;
+                        lanes.remove(key);
+                        if (key.perSession) {
+                            synchronized (sessionStatistics) {
+                                LaneStatistics.removeIdle(sessionStatistics, key.sessionId);
+                            }
+                        }
+                    }
+                }
+            }
+            return more;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A helper used by BusObjects to announce changes to the properties of one
+ * of their interfaces in as few PropertiesChanged signals as possible.
+ *
+ * Changes reported through {@link #propertyChanged(String, Object)} are not
+ * sent right away.  The first change opens a flush window, and when the
+ * window closes or {@link #flush()} is called all of the changes reported in
+ * the meantime are sent as a single PropertiesChanged signal.  Only the
+ * newest value of each property is sent, and a value equal to the one last
+ * sent for the property is not sent again.  Consumers keeping a cache of the
+ * properties therefore end up in the same state as if every change had been
+ * sent with {@link BusAttachment#emitChangedSignal}.
+ *
+ * Each property is listed in the signal with its value or as invalidated
+ * according to its org.freedesktop.DBus.Property.EmitsChangedSignal
+ * annotation, as with {@link BusAttachment#emitChangedSignal}.  A null value
+ * invalidates the property.  Array values are copied when they are sent, so
+ * an array may be changed and reported again; other values must not be
+ * changed once reported.
+ */
+public class PropertyChangeBatcher {
+
+    private final BusAttachment bus;
+    private final BusObject busObject;
+    private final String ifaceName;
+    private final int sessionId;
+    private final long flushWindow;
+    private final TimeUnit unit;
+
+    /** The newest value of each changed property waiting to be sent. */
+    private LinkedHashMap<String, Object> pending;
+
+    /** The value last sent for each property. */
+    private final Map<String, Object> sent;
+
+    private ScheduledFuture<?> flusher;
+    private boolean closed;
+
+    private final AtomicLong changeCount;
+    private final AtomicLong conflatedCount;
+    private final AtomicLong unchangedCount;
+    private final AtomicLong signalCount;
+
+    /** Runs the flushes of every batcher whose window has closed. */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a PropertyChangeBatcher.
+     *
+     * @param bus the bus attachment the bus object is registered with
+     * @param busObject the bus object whose properties change
+     * @param ifaceName the name of the interface of the properties
+     * @param sessionId the id of the session the signals are sent to (0 for
+     *                  all)
+     * @param flushWindow the time from the first change reported after a
+     *                    flush until the changes are sent, or 0 to send them
+     *                    only when {@link #flush()} is called
+     * @param unit the unit of flushWindow
+     */
+    public PropertyChangeBatcher(BusAttachment bus, BusObject busObject, String ifaceName, int sessionId,
+                                 long flushWindow, TimeUnit unit) {
+        this.bus = bus;
+        this.busObject = busObject;
+        this.ifaceName = ifaceName;
+        this.sessionId = sessionId;
+        this.flushWindow = flushWindow;
+        this.unit = unit;
+        pending = new LinkedHashMap<String, Object>();
+        sent = new HashMap<String, Object>();
+        changeCount = new AtomicLong();
+        conflatedCount = new AtomicLong();
+        unchangedCount = new AtomicLong();
+        signalCount = new AtomicLong();
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "PropertyChangeBatcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return scheduler;
+    }
+
+    private final Runnable windowClosed = new Runnable() {
+        public void run() {
+            try {
+                flush();
+            } catch (BusException ex) {
+                BusException.log(ex);
+            }
+        }
+    };
+
+    /**
+     * Reports a change to a property.  The change is sent when the flush
+     * window closes or {@link #flush()} is called.
+     *
+     * @param propName the name of the property
+     * @param value the new value of the property, or null to invalidate it
+     */
+    public void propertyChanged(String propName, Object value) {
+        changeCount.incrementAndGet();
+        synchronized (this) {
+            boolean replaced = pending.containsKey(propName);
+            pending.put(propName, value);
+            if (replaced) {
+                conflatedCount.incrementAndGet();
+            }
+            if (flushWindow > 0 && flusher == null && !closed) {
+                flusher = getScheduler().schedule(windowClosed, flushWindow, unit);
+            }
+        }
+    }
+
+    /**
+     * Sends the reported changes now as one PropertiesChanged signal.
+     * Nothing is sent if every changed property still has the value last
+     * sent for it.  If the signal cannot be sent, each change is sent in a
+     * signal of its own so that one bad property or value does not hold up
+     * the others, and the changes that still cannot be sent are dropped.  If
+     * none can be sent, for instance because the bus object is not
+     * registered, the changes are kept for the next flush instead, unless
+     * newer changes to the same properties are reported meanwhile.
+     *
+     * @throws BusException if the bus object is not registered, the
+     *                      interface or one of the properties is unknown, or
+     *                      the signal cannot be sent
+     */
+    public void flush() throws BusException {
+        /*
+         * Flushes are serialized so that the signals, and the values
+         * remembered as sent, are in the order the changes were reported.
+         */
+        synchronized (sent) {
+            LinkedHashMap<String, Object> changes;
+            synchronized (this) {
+                if (flusher != null) {
+                    flusher.cancel(false);
+                    flusher = null;
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                changes = pending;
+                pending = new LinkedHashMap<String, Object>();
+            }
+
+            List<String> propNames = new ArrayList<String>();
+            List<Object> values = new ArrayList<Object>();
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                Object value = change.getValue();
+                if (value != null && sent.containsKey(change.getKey())
+                    && Arrays.deepEquals(new Object[] { value }, new Object[] { sent.get(change.getKey()) })) {
+                    unchangedCount.incrementAndGet();
+                    continue;
+                }
+                propNames.add(change.getKey());
+                values.add(value);
+            }
+            if (propNames.isEmpty()) {
+                return;
+            }
+
+            try {
+                bus.emitChangedSignals(busObject, ifaceName, propNames.toArray(new String[propNames.size()]),
+                                       values.toArray(), sessionId);
+            } catch (BusException ex) {
+                sendEach(changes, propNames, values);
+                throw ex;
+            }
+            signalCount.incrementAndGet();
+            for (int i = 0; i < propNames.size(); ++i) {
+                remember(propNames.get(i), values.get(i));
+            }
+        }
+    }
+
+    /*
+     * Sends the changes of a batch that could not be sent one signal each, or
+     * puts them all back if none can be sent.  Called with sent locked.
+     */
+    private void sendEach(LinkedHashMap<String, Object> changes, List<String> propNames, List<Object> values) {
+        boolean anySent = false;
+        for (int i = 0; i < propNames.size(); ++i) {
+            try {
+                bus.emitChangedSignals(busObject, ifaceName, new String[] { propNames.get(i) },
+                                       new Object[] { values.get(i) }, sessionId);
+            } catch (BusException ex) {
+                BusException.log(ex);
+                continue;
+            }
+            signalCount.incrementAndGet();
+            remember(propNames.get(i), values.get(i));
+            anySent = true;
+        }
+        if (anySent) {
+            return;
+        }
+
+        /* Any changes reported meanwhile are newer and win. */
+        synchronized (this) {
+            for (Map.Entry<String, Object> change : pending.entrySet()) {
+                if (changes.containsKey(change.getKey())) {
+                    conflatedCount.incrementAndGet();
+                }
+                changes.put(change.getKey(), change.getValue());
+            }
+            pending = changes;
+        }
+    }
+
+    /* Remembers the value sent for a property.  Called with sent locked. */
+    private void remember(String propName, Object value) {
+        if (value == null) {
+            sent.remove(propName);
+        } else {
+            sent.put(propName, snapshot(value));
+        }
+    }
+
+    /*
+     * Copies an array value, and the arrays within it, so that the value
+     * remembered as sent does not change if the caller reuses the array.
+     */
+    private static Object snapshot(Object value) {
+        if (!value.getClass().isArray()) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        if (value instanceof Object[]) {
+            for (int i = 0; i < length; ++i) {
+                Object element = Array.get(value, i);
+                Array.set(copy, i, (element == null) ? null : snapshot(element));
+            }
+        } else {
+            System.arraycopy(value, 0, copy, 0, length);
+        }
+        return copy;
+    }
+
+    /**
+     * Stops opening flush windows and sends the reported changes.  Changes
+     * reported after the batcher is closed are only sent by {@link #flush()}.
+     *
+     * @throws BusException if the final flush fails
+     */
+    public void close() throws BusException {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+    }
+
+    /**
+     * Gets the number of properties with changes waiting to be sent.
+     *
+     * @return the number of pending changes
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the number of changes reported.
+     *
+     * @return the number of changes
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Gets the number of changes replaced by a newer change to the same
+     * property before they were sent.
+     *
+     * @return the number of changes conflated away
+     */
+    public long getConflatedCount() {
+        return conflatedCount.get();
+    }
+
+    /**
+     * Gets the number of changes not sent because the property still had
+     * the value last sent for it.
+     *
+     * @return the number of unchanged values skipped
+     */
+    public long getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    /**
+     * Gets the number of PropertiesChanged signals sent.
+     *
+     * @return the number of signals
+     */
+    public long getSignalCount() {
+        return signalCount.get();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.util.Map;
+
+/**
+ * Implemented by a user-defined {@link BusObject} that can read all of the
+ * properties of an interface at once more cheaply than one at a time, for
+ * example by taking a consistent snapshot of its state under one lock.
+ *
+ * When a remote node asks for all of the properties of an interface with
+ * org.freedesktop.DBus.Properties.GetAll, the bus object is asked for a
+ * snapshot once, and only the readable properties missing from the snapshot
+ * are read through their get methods.  Get requests for single properties
+ * still use the get methods.
+ *
+ * Listener objects are the Java objects that handle notification events and are
+ * called from AllJoyn in the context of one of its threads.  All listener
+ * objects are expected to be multithread safe (MT-Safe) between construction
+ * and destruction.  See {@link IntrospectionListener} for details.
+ */
+public interface PropertySnapshotListener {
+
+    /**
+     * Returns the current values of the properties of an interface.
+     *
+     * Any implementation of this function must be multithread safe.  See the
+     * class documentation for details.
+     *
+     * @param ifaceName the name of the interface
+     * @return the values of the properties keyed by their bus names, or null
+     *         to read every property through its get method
+     */
+    Map<String, Object> getPropertySnapshot(String ifaceName);
+}
@@ -16,12 +16,14 @@
 
 package org.alljoyn.bus;
 
+import org.alljoyn.bus.annotation.BusMethod;
 import org.alljoyn.bus.annotation.BusProperty;
 import org.alljoyn.bus.annotation.BusSignalHandler;
 import org.alljoyn.bus.annotation.Secure;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -47,6 +49,9 @@ public class ProxyBusObject {
     /** Object path. */
     private String objPath;
 
+    /** The session the remote object is reached over. */
+    private int sessionId;
+
     /** Native proxy bus object handle. */
     private long handle;
 
@@ -59,6 +64,12 @@ public class ProxyBusObject {
 
     private Method busConnectionLost;
 
+    /** True if the proxy was created for a secure remote object. */
+    private boolean secure;
+
+    /** True if methods of bus objects on the same attachment are called directly. */
+    private volatile boolean localCalls;
+
     /**
      * Construct a ProxyBusObject.
      *
@@ -88,7 +99,10 @@ public class ProxyBusObject {
         this.bus = busAttachment;
         this.busName = busName;
         this.objPath = objPath;
+        this.sessionId = sessionId;
         this.flags = 0;
+        this.secure = secure;
+        this.localCalls = true;
         create(busAttachment, busName, objPath, sessionId, secure);
         replyTimeoutMsecs = 25000;
         proxy = Proxy.newProxyInstance(busInterfaces[0].getClassLoader(), busInterfaces, new Handler());
@@ -155,6 +169,16 @@ public class ProxyBusObject {
             public Type genericReturnType;
             public Class<?> returnType;
 
+            /** True if the method returns a DeferredReply wrapping the reply. */
+            public boolean isDeferred;
+
+            /**
+             * True if the method may be called directly on a bus object on the
+             * same attachment: it expects a reply, does not defer it, and its
+             * interface does not require security.
+             */
+            public boolean isLocal;
+
             public Invocation(Method method) throws BusException {
                 this.method = method;
                 if (method.getAnnotation(BusProperty.class) != null) {
@@ -169,6 +193,30 @@ public class ProxyBusObject {
                 this.methodName = InterfaceDescription.getName(method);
                 this.genericReturnType = method.getGenericReturnType();
                 this.returnType = method.getReturnType();
+                if (this.returnType == DeferredReply.class) {
+                    this.isDeferred = true;
+                    this.genericReturnType = DeferredReply.replyType(this.genericReturnType);
+                    if (this.genericReturnType instanceof ParameterizedType) {
+                        this.returnType = (Class<?>) ((ParameterizedType) this.genericReturnType).getRawType();
+                    } else if (this.genericReturnType instanceof Class) {
+                        this.returnType = (Class<?>) this.genericReturnType;
+                    } else {
+                        this.returnType = Object.class;
+                    }
+                }
+                if (this.isMethod && !this.isDeferred) {
+                    BusMethod busMethod = method.getAnnotation(BusMethod.class);
+                    Secure secureAnnotation = method.getDeclaringClass().getAnnotation(Secure.class);
+                    this.isLocal = (busMethod == null || (busMethod.annotation() & BusMethod.ANNOTATE_NO_REPLY) == 0)
+                        && (secureAnnotation == null || secureAnnotation.value().equals("off"));
+                }
+                if (this.isLocal) {
+                    try {
+                        method.setAccessible(true);
+                    } catch (SecurityException ex) {
+                        this.isLocal = false;
+                    }
+                }
             }
         };
 
@@ -237,7 +285,18 @@ public class ProxyBusObject {
             }
 
             Object value = null;
-            if (invocation.isMethod) {
+            BusObject localObject = null;
+            if (invocation.isLocal && localCalls && !secure) {
+                localObject = bus.getLocalBusObject(busName, objPath);
+                if (localObject != null && !invocation.method.getDeclaringClass().isInstance(localObject)) {
+                    localObject = null;
+                }
+            }
+            if (localObject != null) {
+                value = LocalCall.invoke(busName, localObject, objPath, sessionId, invocation.method,
+                                         invocation.interfaceName, invocation.methodName,
+                                         invocation.inputSig, args);
+            } else if (invocation.isMethod) {
                 value = methodCall(bus,
                                    invocation.interfaceName,
                                    invocation.methodName,
@@ -285,6 +344,11 @@ public class ProxyBusObject {
             if (doThrow) {
                 throw new MarshalBusException("cannot marshal '" + invocation.outSig + "' into " + returnType);
             }
+            if (invocation.isDeferred) {
+                DeferredReply<Object> reply = new DeferredReply<Object>();
+                reply.complete(value);
+                return reply;
+            }
             return value;
         }
     }
@@ -382,6 +446,26 @@ public class ProxyBusObject {
         this.flags = autoStart ? this.flags | AUTO_START : this.flags & ~AUTO_START;
     }
 
+    /**
+     * Sets whether bus methods of an object registered on the same bus
+     * attachment as this proxy are called directly.  A direct call skips
+     * marshalling the call into a message and routing it through the bus,
+     * but otherwise behaves like one that goes through the bus: the bus
+     * object is given copies of the arguments, the caller a copy of the
+     * reply, {@link BusAttachment#getMessageContext()} describes the call
+     * and exceptions are turned into the exceptions of an error reply.
+     * Methods of secure objects and interfaces, methods that do not expect
+     * a reply or defer it, and methods of bus objects whose calls are run by
+     * the {@link MethodDispatcher} always go through the bus.  Direct calls
+     * are enabled by default.
+     *
+     * @param localCalls {@code true} to call local bus objects directly,
+     *                   {@code false} to send every call through the bus
+     */
+    public void setLocalCalls(boolean localCalls) {
+        this.localCalls = localCalls;
+    }
+
     /**
      * Indicates if the remote object for this proxy bus object is secure.
      *
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.spi.AbstractInterruptibleChannel;
+
+/**
+ * A channel reading and writing the socket of a raw session.
+ * <p>
+ * The channel owns the socket returned by
+ * {@link BusAttachment#getSessionFd(int, Mutable.IntegerValue)} and closes
+ * it when the channel is closed.  Reads and writes go straight to the
+ * socket: direct buffers are read and written without copying, and the
+ * scattering and gathering operations use a single system call when all of
+ * the buffers are direct.
+ * <p>
+ * The channel may be put in non-blocking mode, in which case reads and
+ * writes return 0 when they would block.  The socket cannot be registered
+ * with a {@link java.nio.channels.Selector}, since only the channels made by
+ * the runtime's own SelectorProvider can, so use {@link #await(int, long)}
+ * to wait until the channel is ready.
+ * <p>
+ * Files are sent with {@link #transferFrom(FileInputStream, long, long)},
+ * which has the kernel copy the file to the socket where it can, or with
+ * {@link java.nio.channels.FileChannel#transferTo} to this channel.
+ * <p>
+ * Like other interruptible channels, the channel is closed if a thread
+ * blocked in one of its operations is interrupted.  One thread at a time
+ * may read and one thread at a time may write.
+ */
+public final class RawSessionChannel extends AbstractInterruptibleChannel
+    implements ByteChannel, ScatteringByteChannel, GatheringByteChannel {
+
+    /** Returned by the native sendFile when the kernel cannot send the file. */
+    private static final long UNSUPPORTED = -2;
+
+    /** The size of the buffer used to scatter and gather non-direct buffers. */
+    private static final int TEMP_BUFFER_SIZE = 65536;
+
+    private final int fd;
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+    private volatile boolean blocking = true;
+
+    /**
+     * Constructs a RawSessionChannel on a connected stream socket.  The
+     * channel takes ownership of the socket.
+     *
+     * @param fd the socket file descriptor
+     */
+    public RawSessionChannel(int fd) {
+        this.fd = fd;
+    }
+
+    /**
+     * Opens a channel on the socket of a raw session.
+     *
+     * @param bus the bus attachment that bound or joined the session
+     * @param sessionId the id of the raw session
+     * @return the channel
+     * @throws BusException if the socket of the session cannot be had
+     */
+    public static RawSessionChannel open(BusAttachment bus, int sessionId) throws BusException {
+        Mutable.IntegerValue sockFd = new Mutable.IntegerValue();
+        Status status = bus.getSessionFd(sessionId, sockFd);
+        if (status != Status.OK) {
+            throw new BusException("cannot get the socket of session " + sessionId + ": " + status);
+        }
+        return new RawSessionChannel(sockFd.value);
+    }
+
+    /**
+     * Gets the socket file descriptor of the channel.
+     *
+     * @return the file descriptor
+     */
+    public int getFd() {
+        return fd;
+    }
+
+    /**
+     * Puts the channel in blocking or non-blocking mode.
+     *
+     * @param block true to block, false to return 0 from reads and writes
+     *              that would block
+     * @return this channel
+     * @throws IOException if the mode cannot be changed
+     */
+    public RawSessionChannel configureBlocking(boolean block) throws IOException {
+        synchronized (readLock) {
+            synchronized (writeLock) {
+                ensureOpen();
+                setBlocking(fd, block);
+                blocking = block;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Indicates if the channel is in blocking mode.
+     *
+     * @return true if reads and writes block
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Waits until the channel is ready to read or write.  Waiting to read
+     * or write takes the turn of the thread reading or writing, so it waits
+     * for a read or write in progress to finish first.
+     *
+     * @param ops the operations to wait for, SelectionKey.OP_READ,
+     *            SelectionKey.OP_WRITE or both
+     * @param timeout the longest time to wait in milliseconds, 0 to return
+     *                at once or a negative value to wait indefinitely
+     * @return the operations the channel is ready for, or 0 if the timeout
+     *         expired.  A channel whose peer has closed is ready to read.
+     * @throws IOException if the wait fails
+     */
+    public int await(int ops, long timeout) throws IOException {
+        if ((ops & ~(SelectionKey.OP_READ | SelectionKey.OP_WRITE)) != 0) {
+            throw new IllegalArgumentException("ops must be OP_READ and/or OP_WRITE");
+        }
+        /*
+         * Waiting counts as reading and/or writing, so that close() cannot
+         * close the socket, and its descriptor be reused, under the poll.
+         */
+        if ((ops & SelectionKey.OP_READ) != 0) {
+            synchronized (readLock) {
+                if ((ops & SelectionKey.OP_WRITE) != 0) {
+                    synchronized (writeLock) {
+                        return poll(ops, timeout);
+                    }
+                }
+                return poll(ops, timeout);
+            }
+        }
+        synchronized (writeLock) {
+            return poll(ops, timeout);
+        }
+    }
+
+    private int poll(int ops, long timeout) throws IOException {
+        ensureOpen();
+        int ready = 0;
+        try {
+            begin();
+            ready = poll(fd, ops, (int) Math.min(timeout, Integer.MAX_VALUE));
+        } finally {
+            end(true);
+        }
+        return ready;
+    }
+
+    public int read(ByteBuffer dst) throws IOException {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("read-only buffer");
+        }
+        synchronized (readLock) {
+            ensureOpen();
+            int pos = dst.position();
+            int len = dst.remaining();
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            try {
+                begin();
+                if (dst.isDirect()) {
+                    n = readDirect(fd, dst, pos, len);
+                } else {
+                    n = readArray(fd, dst.array(), dst.arrayOffset() + pos, len);
+                }
+            } finally {
+                end(n != -1);
+            }
+            if (n > 0) {
+                dst.position(pos + n);
+            }
+            return n;
+        }
+    }
+
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > dsts.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        boolean direct = true;
+        for (int i = offset; i < offset + length; ++i) {
+            if (dsts[i].isReadOnly()) {
+                throw new IllegalArgumentException("read-only buffer");
+            }
+            direct &= dsts[i].isDirect();
+        }
+        synchronized (readLock) {
+            if (!direct) {
+                ByteBuffer temp = ByteBuffer.allocateDirect((int) Math.min(remaining(dsts, offset, length),
+                                                                           TEMP_BUFFER_SIZE));
+                int n = read(temp);
+                temp.flip();
+                for (int i = offset; temp.hasRemaining(); ++i) {
+                    ByteBuffer part = temp.duplicate();
+                    part.limit(part.position() + Math.min(part.remaining(), dsts[i].remaining()));
+                    dsts[i].put(part);
+                    temp.position(part.position());
+                }
+                return n;
+            }
+
+            ensureOpen();
+            int[] positions = new int[length];
+            int[] lengths = new int[length];
+            long total = 0;
+            for (int i = 0; i < length; ++i) {
+                positions[i] = dsts[offset + i].position();
+                lengths[i] = dsts[offset + i].remaining();
+                total += lengths[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long n = 0;
+            try {
+                begin();
+                n = readv(fd, dsts, offset, positions, lengths);
+            } finally {
+                end(n != -1);
+            }
+            advance(dsts, offset, positions, lengths, n);
+            return n;
+        }
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+        synchronized (writeLock) {
+            ensureOpen();
+            int pos = src.position();
+            int len = src.remaining();
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            try {
+                begin();
+                if (src.isDirect()) {
+                    n = writeDirect(fd, src, pos, len);
+                } else if (src.hasArray()) {
+                    n = writeArray(fd, src.array(), src.arrayOffset() + pos, len);
+                } else {
+                    /* A read-only heap buffer does not give up its array. */
+                    byte[] copy = new byte[len];
+                    src.duplicate().get(copy);
+                    n = writeArray(fd, copy, 0, len);
+                }
+            } finally {
+                end(n > 0 || !blocking);
+            }
+            if (n > 0) {
+                src.position(pos + n);
+            }
+            return n;
+        }
+    }
+
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > srcs.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        boolean direct = true;
+        for (int i = offset; i < offset + length; ++i) {
+            direct &= srcs[i].isDirect();
+        }
+        synchronized (writeLock) {
+            if (!direct) {
+                ByteBuffer temp = ByteBuffer.allocateDirect((int) Math.min(remaining(srcs, offset, length),
+                                                                           TEMP_BUFFER_SIZE));
+                for (int i = offset; i < offset + length && temp.hasRemaining(); ++i) {
+                    ByteBuffer part = srcs[i].duplicate();
+                    part.limit(part.position() + Math.min(part.remaining(), temp.remaining()));
+                    temp.put(part);
+                }
+                temp.flip();
+                int n = write(temp);
+                int[] positions = new int[length];
+                int[] lengths = new int[length];
+                for (int i = 0; i < length; ++i) {
+                    positions[i] = srcs[offset + i].position();
+                    lengths[i] = srcs[offset + i].remaining();
+                }
+                advance(srcs, offset, positions, lengths, n);
+                return n;
+            }
+
+            ensureOpen();
+            int[] positions = new int[length];
+            int[] lengths = new int[length];
+            long total = 0;
+            for (int i = 0; i < length; ++i) {
+                positions[i] = srcs[offset + i].position();
+                lengths[i] = srcs[offset + i].remaining();
+                total += lengths[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long n = 0;
+            try {
+                begin();
+                n = writev(fd, srcs, offset, positions, lengths);
+            } finally {
+                end(n > 0 || !blocking);
+            }
+            advance(srcs, offset, positions, lengths, n);
+            return n;
+        }
+    }
+
+    /**
+     * Sends part of a file over the channel.  Where the platform allows it
+     * the kernel copies the file to the socket without passing it through
+     * Java; otherwise the file is sent with
+     * {@link java.nio.channels.FileChannel#transferTo}.
+     *
+     * @param in the file to send
+     * @param position the position in the file of the first byte to send
+     * @param count the largest number of bytes to send
+     * @return the number of bytes sent, which may be less than count
+     * @throws IOException if the file cannot be read or the socket written
+     */
+    public long transferFrom(FileInputStream in, long position, long count) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("negative position or count");
+        }
+        synchronized (writeLock) {
+            ensureOpen();
+            long n = 0;
+            try {
+                begin();
+                n = sendFile(fd, in.getFD(), position, count);
+            } finally {
+                end(n > 0 || n == UNSUPPORTED || !blocking);
+            }
+            if (n != UNSUPPORTED) {
+                return n;
+            }
+        }
+        return in.getChannel().transferTo(position, count, this);
+    }
+
+    protected void implCloseChannel() throws IOException {
+        /* Wake up blocked readers and writers, then wait for them before closing. */
+        shutdownSocket(fd);
+        synchronized (readLock) {
+            synchronized (writeLock) {
+                closeSocket(fd);
+            }
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static long remaining(ByteBuffer[] buffers, int offset, int length) {
+        long remaining = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            remaining += buffers[i].remaining();
+        }
+        return remaining;
+    }
+
+    /* Move the buffers past the bytes transferred. */
+    private static void advance(ByteBuffer[] buffers, int offset, int[] positions, int[] lengths, long n) {
+        for (int i = 0; i < lengths.length && n > 0; ++i) {
+            int done = (int) Math.min(n, lengths[i]);
+            buffers[offset + i].position(positions[i] + done);
+            n -= done;
+        }
+    }
+
+    /*
+     * The native methods return the number of bytes transferred, 0 if the
+     * socket is non-blocking and not ready, or -1 at end of stream.  Errors
+     * are thrown as IOExceptions.
+     */
+    private static native int readDirect(int fd, ByteBuffer dst, int pos, int len) throws IOException;
+
+    private static native int readArray(int fd, byte[] dst, int off, int len) throws IOException;
+
+    private static native long readv(int fd, ByteBuffer[] dsts, int offset, int[] positions, int[] lengths)
+        throws IOException;
+
+    private static native int writeDirect(int fd, ByteBuffer src, int pos, int len) throws IOException;
+
+    private static native int writeArray(int fd, byte[] src, int off, int len) throws IOException;
+
+    private static native long writev(int fd, ByteBuffer[] srcs, int offset, int[] positions, int[] lengths)
+        throws IOException;
+
+    private static native long sendFile(int fd, FileDescriptor in, long position, long count) throws IOException;
+
+    private static native void setBlocking(int fd, boolean blocking) throws IOException;
+
+    private static native int poll(int fd, int ops, int timeout) throws IOException;
+
+    private static native void shutdownSocket(int fd);
+
+    private static native void closeSocket(int fd) throws IOException;
+}
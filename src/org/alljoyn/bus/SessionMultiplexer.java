@@ -0,0 +1,616 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Runs many logical channels over the one stream of a raw session.
+ * <p>
+ * Opening a logical channel sends a single frame, so it costs no bus round
+ * trips and no new socket, unlike joining a new session.  Each logical
+ * channel is a reliable byte stream with its own flow control window: a
+ * side may send only as many bytes as the other side has room to buffer,
+ * and the reader grants more room as it reads, so that a channel whose
+ * reader is slow does not hold up the others.  Data is sent in frames of at
+ * most {@link #MAX_FRAME_LEN} bytes, taking one frame from each channel
+ * that has data in turn, so that a busy channel cannot starve the others.
+ * <p>
+ * One side of the session must be constructed as the initiator and the
+ * other not, so that the two sides number the channels they open apart.
+ * <p>
+ * The stream is read and written by two threads of the multiplexer; the
+ * underlying channel must allow one thread to read while another writes,
+ * as {@link RawSessionChannel} does.  If the stream fails, or is closed by
+ * the other side, every logical channel still open fails with it.
+ */
+public final class SessionMultiplexer {
+
+    /**
+     * The flow control window every logical channel starts with, in bytes.
+     * It is also the smallest window a channel may have.
+     */
+    public static final int INITIAL_WINDOW = 65536;
+
+    /** The largest amount of data sent in one frame, in bytes. */
+    public static final int MAX_FRAME_LEN = 16384;
+
+    /*
+     * A frame is a header of the channel id, the frame type and a value,
+     * followed by the data of a DATA frame.  The value is the length of the
+     * data of a DATA frame, the receive window of the opener of an OPEN
+     * frame and the room granted by a WINDOW frame.  CLOSE ends the data the
+     * sender sends on a channel.
+     */
+    private static final int HEADER_LEN = 9;
+    private static final byte OPEN = 0;
+    private static final byte DATA = 1;
+    private static final byte WINDOW = 2;
+    private static final byte CLOSE = 3;
+
+    private final ByteChannel channel;
+
+    /** The logical channels not yet closed by both sides, by id. */
+    private final Map<Integer, LogicalChannel> channels;
+
+    /** The channels opened by the other side and not yet accepted. */
+    private final LinkedList<LogicalChannel> accepted;
+
+    /** The WINDOW frames to send, ahead of any data. */
+    private final LinkedList<ByteBuffer> control;
+
+    /** The channels with frames to send, in the order they are served. */
+    private final LinkedList<LogicalChannel> ready;
+
+    private int nextId;
+    private int receiveWindow;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Constructs a SessionMultiplexer and starts its threads.
+     *
+     * @param channel the stream to multiplex, which the multiplexer owns
+     * @param initiator true on one side of the stream and false on the
+     *                  other, for instance true on the side that joined the
+     *                  session and false on the side that bound its port
+     */
+    public SessionMultiplexer(ByteChannel channel, boolean initiator) {
+        this.channel = channel;
+        this.channels = new HashMap<Integer, LogicalChannel>();
+        this.accepted = new LinkedList<LogicalChannel>();
+        this.control = new LinkedList<ByteBuffer>();
+        this.ready = new LinkedList<LogicalChannel>();
+        this.nextId = initiator ? 1 : 2;
+        this.receiveWindow = INITIAL_WINDOW;
+
+        Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    readFrames();
+                }
+            }, "SessionMultiplexer reader");
+        reader.setDaemon(true);
+        reader.start();
+        Thread writer = new Thread(new Runnable() {
+                public void run() {
+                    writeFrames();
+                }
+            }, "SessionMultiplexer writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a multiplexer on the socket of a raw session.
+     *
+     * @param bus the bus attachment that bound or joined the session
+     * @param sessionId the id of the raw session
+     * @param initiator true on the side that joined the session and false
+     *                  on the side that bound its port
+     * @return the multiplexer
+     * @throws BusException if the socket of the session cannot be had
+     */
+    public static SessionMultiplexer open(BusAttachment bus, int sessionId, boolean initiator)
+        throws BusException {
+        return new SessionMultiplexer(RawSessionChannel.open(bus, sessionId), initiator);
+    }
+
+    /**
+     * Sets the receive window of the logical channels opened or accepted
+     * from now on.
+     *
+     * @param window the window in bytes, at least {@link #INITIAL_WINDOW}
+     */
+    public synchronized void setReceiveWindow(int window) {
+        if (window < INITIAL_WINDOW) {
+            throw new IllegalArgumentException("window must be at least " + INITIAL_WINDOW);
+        }
+        receiveWindow = window;
+    }
+
+    /**
+     * Opens a logical channel.  Data may be written to it at once; the other
+     * side gets the channel from {@link #accept()}.
+     *
+     * @return the channel
+     * @throws IOException if the multiplexer is closed or has failed
+     */
+    public synchronized LogicalChannel openChannel() throws IOException {
+        checkOpen();
+        if (nextId < 0) {
+            throw new IOException("out of channel ids");
+        }
+        LogicalChannel ch = new LogicalChannel(nextId, INITIAL_WINDOW, receiveWindow, true);
+        nextId += 2;
+        channels.put(ch.id, ch);
+        schedule(ch);
+        return ch;
+    }
+
+    /**
+     * Waits for the other side to open a logical channel.
+     *
+     * @return the channel
+     * @throws IOException if the multiplexer is closed or fails
+     */
+    public synchronized LogicalChannel accept() throws IOException {
+        while (accepted.isEmpty()) {
+            checkOpen();
+            awaitChange();
+        }
+        return accepted.removeFirst();
+    }
+
+    /**
+     * Closes the multiplexer and the stream under it.  Frames not yet sent
+     * are discarded, and every logical channel is closed.
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        channel.close();
+    }
+
+    /** A logical channel of a multiplexer. */
+    public final class LogicalChannel implements ByteChannel {
+        private final int id;
+
+        /* The frames waiting to be sent. */
+        private final LinkedList<ByteBuffer> frames;
+
+        /* The data received and not yet read. */
+        private final LinkedList<ByteBuffer> incoming;
+
+        /* Whether the OPEN frame is still to be sent. */
+        private boolean openPending;
+
+        /* Whether the channel is in the ready list. */
+        private boolean scheduled;
+
+        /* The bytes this side may still send. */
+        private long sendCredit;
+
+        private int receiveWindow;
+
+        /* The bytes the other side may still send. */
+        private long receiveCredit;
+
+        /* The bytes read since room was last granted. */
+        private int unacknowledged;
+
+        private boolean inputClosed;
+        private boolean outputShutdown;
+        private boolean closed;
+
+        private LogicalChannel(int id, long sendCredit, int receiveWindow, boolean opener) {
+            this.id = id;
+            this.frames = new LinkedList<ByteBuffer>();
+            this.incoming = new LinkedList<ByteBuffer>();
+            this.openPending = opener;
+            this.sendCredit = sendCredit;
+            this.receiveWindow = receiveWindow;
+            /* The opener's window is sent in its OPEN frame. */
+            this.receiveCredit = opener ? 0 : INITIAL_WINDOW;
+        }
+
+        /**
+         * Gets the id of the channel, which is the same on both sides.
+         *
+         * @return the id
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Grows the receive window of the channel.  A window smaller than
+         * the current one is ignored.
+         *
+         * @param window the window in bytes
+         */
+        public void setReceiveWindow(int window) {
+            synchronized (SessionMultiplexer.this) {
+                if (window <= receiveWindow) {
+                    return;
+                }
+                int delta = window - receiveWindow;
+                receiveWindow = window;
+                if (!openPending && !inputClosed && !closed) {
+                    grant(this, delta);
+                }
+            }
+        }
+
+        /**
+         * Reads data, waiting until some is received.
+         *
+         * @param dst the buffer to read into
+         * @return the number of bytes read, or -1 if the other side has
+         *         closed the channel
+         * @throws IOException if the channel is closed or the multiplexer
+         *                     fails
+         */
+        public int read(ByteBuffer dst) throws IOException {
+            synchronized (SessionMultiplexer.this) {
+                while (true) {
+                    if (closed) {
+                        throw new ClosedChannelException();
+                    }
+                    if (!incoming.isEmpty() || !dst.hasRemaining()) {
+                        break;
+                    }
+                    if (inputClosed) {
+                        return -1;
+                    }
+                    checkOpen();
+                    awaitChange();
+                }
+
+                int n = 0;
+                while (dst.hasRemaining() && !incoming.isEmpty()) {
+                    ByteBuffer head = incoming.getFirst();
+                    int len = Math.min(dst.remaining(), head.remaining());
+                    ByteBuffer part = head.duplicate();
+                    part.limit(part.position() + len);
+                    dst.put(part);
+                    head.position(head.position() + len);
+                    if (!head.hasRemaining()) {
+                        incoming.removeFirst();
+                    }
+                    n += len;
+                }
+
+                /* Grant the room in batches rather than a frame per read. */
+                unacknowledged += n;
+                if (unacknowledged >= receiveWindow / 2 && !inputClosed) {
+                    grant(this, unacknowledged);
+                    unacknowledged = 0;
+                }
+                return n;
+            }
+        }
+
+        /**
+         * Writes all of the data, waiting while the other side has no room
+         * for it.
+         *
+         * @param src the buffer to write from
+         * @return the number of bytes written
+         * @throws IOException if the channel is closed or the multiplexer
+         *                     fails
+         */
+        public int write(ByteBuffer src) throws IOException {
+            synchronized (SessionMultiplexer.this) {
+                int n = 0;
+                while (src.hasRemaining()) {
+                    if (closed || outputShutdown) {
+                        throw new ClosedChannelException();
+                    }
+                    checkOpen();
+                    if (sendCredit == 0) {
+                        awaitChange();
+                        continue;
+                    }
+                    int len = (int) Math.min(Math.min(src.remaining(), sendCredit), MAX_FRAME_LEN);
+                    ByteBuffer frame = frame(id, DATA, len, len);
+                    ByteBuffer part = src.duplicate();
+                    part.limit(part.position() + len);
+                    frame.put(part);
+                    frame.flip();
+                    src.position(src.position() + len);
+                    sendCredit -= len;
+                    frames.addLast(frame);
+                    schedule(this);
+                    n += len;
+                }
+                return n;
+            }
+        }
+
+        /**
+         * Ends the data sent on the channel.  The other side reads the end
+         * of the stream once it has read the data sent before, and may go on
+         * writing.
+         */
+        public void shutdownOutput() {
+            synchronized (SessionMultiplexer.this) {
+                if (outputShutdown || closed) {
+                    return;
+                }
+                outputShutdown = true;
+                ByteBuffer frame = frame(id, CLOSE, 0, 0);
+                frame.flip();
+                frames.addLast(frame);
+                schedule(this);
+            }
+        }
+
+        public boolean isOpen() {
+            synchronized (SessionMultiplexer.this) {
+                return !closed && !SessionMultiplexer.this.closed && failure == null;
+            }
+        }
+
+        /**
+         * Closes the channel.  The data sent before is still delivered, and
+         * data received later is discarded.
+         */
+        public void close() {
+            synchronized (SessionMultiplexer.this) {
+                if (closed) {
+                    return;
+                }
+                shutdownOutput();
+                closed = true;
+                if (!inputClosed) {
+                    /* Return the room of the unread data so the other side does not stall. */
+                    int unread = unacknowledged;
+                    for (ByteBuffer buffer : incoming) {
+                        unread += buffer.remaining();
+                    }
+                    if (unread > 0) {
+                        grant(this, unread);
+                    }
+                }
+                incoming.clear();
+                forget(this);
+                SessionMultiplexer.this.notifyAll();
+            }
+        }
+    }
+
+    /* Makes a frame with room for len bytes of data after the header. */
+    private static ByteBuffer frame(int id, byte type, int value, int len) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LEN + len);
+        frame.putInt(id).put(type).putInt(value);
+        return frame;
+    }
+
+    /* Callers hold the lock. */
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (failure != null) {
+            IOException ex = new IOException("session multiplexer failed: " + failure.getMessage());
+            ex.initCause(failure);
+            throw ex;
+        }
+    }
+
+    /* Callers hold the lock. */
+    private void awaitChange() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /* Callers hold the lock. */
+    private void schedule(LogicalChannel ch) {
+        if (!ch.scheduled) {
+            ch.scheduled = true;
+            ready.addLast(ch);
+            notifyAll();
+        }
+    }
+
+    /* Lets the other side send len more bytes on a channel.  Callers hold the lock. */
+    private void grant(LogicalChannel ch, int len) {
+        ch.receiveCredit += len;
+        ByteBuffer frame = frame(ch.id, WINDOW, len, 0);
+        frame.flip();
+        control.addLast(frame);
+        notifyAll();
+    }
+
+    /* Drops a channel once both sides have closed it.  Callers hold the lock. */
+    private void forget(LogicalChannel ch) {
+        if (ch.closed && ch.inputClosed) {
+            channels.remove(ch.id);
+        }
+    }
+
+    /* Takes the next frame to send.  Callers hold the lock. */
+    private ByteBuffer nextFrame() {
+        if (!control.isEmpty()) {
+            return control.removeFirst();
+        }
+        LogicalChannel ch = ready.removeFirst();
+        ByteBuffer frame;
+        if (ch.openPending) {
+            ch.openPending = false;
+            ch.receiveCredit = ch.receiveWindow;
+            frame = frame(ch.id, OPEN, ch.receiveWindow, 0);
+            frame.flip();
+        } else {
+            frame = ch.frames.removeFirst();
+            /* Room may have opened for a writer. */
+            notifyAll();
+        }
+        if (ch.frames.isEmpty()) {
+            ch.scheduled = false;
+        } else {
+            ready.addLast(ch);
+        }
+        return frame;
+    }
+
+    private void writeFrames() {
+        try {
+            while (true) {
+                ByteBuffer frame;
+                synchronized (this) {
+                    while (!closed && failure == null && control.isEmpty() && ready.isEmpty()) {
+                        wait();
+                    }
+                    if (closed || failure != null) {
+                        return;
+                    }
+                    frame = nextFrame();
+                }
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            }
+        } catch (InterruptedException ex) {
+            fail(new InterruptedIOException());
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    private void readFrames() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LEN);
+        try {
+            while (true) {
+                header.clear();
+                readFully(header);
+                header.flip();
+                int id = header.getInt();
+                byte type = header.get();
+                int value = header.getInt();
+                ByteBuffer data = null;
+                if (type == DATA) {
+                    if (value < 1 || value > MAX_FRAME_LEN) {
+                        throw new IOException("bad frame length " + value);
+                    }
+                    data = ByteBuffer.allocate(value);
+                    readFully(data);
+                    data.flip();
+                }
+                received(id, type, value, data);
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    private void readFully(ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst) < 0) {
+                throw new EOFException("session closed");
+            }
+        }
+    }
+
+    private synchronized void received(int id, byte type, int value, ByteBuffer data) throws IOException {
+        LogicalChannel ch = channels.get(id);
+        switch (type) {
+        case OPEN:
+            if (ch != null || (id & 1) == (nextId & 1) || value < INITIAL_WINDOW) {
+                throw new IOException("bad open of channel " + id);
+            }
+            ch = new LogicalChannel(id, value, receiveWindow, false);
+            channels.put(id, ch);
+            accepted.addLast(ch);
+            if (ch.receiveWindow > INITIAL_WINDOW) {
+                grant(ch, ch.receiveWindow - INITIAL_WINDOW);
+            }
+            break;
+
+        case DATA:
+            if (ch == null || ch.inputClosed) {
+                throw new IOException("data for closed channel " + id);
+            }
+            if (value > ch.receiveCredit) {
+                throw new IOException("channel " + id + " overran its window");
+            }
+            ch.receiveCredit -= value;
+            if (ch.closed) {
+                grant(ch, value);
+            } else {
+                ch.incoming.addLast(data);
+            }
+            break;
+
+        case WINDOW:
+            /* Room may still be granted on a channel this side has forgotten. */
+            if (value < 1) {
+                throw new IOException("bad window of channel " + id);
+            }
+            if (ch != null) {
+                ch.sendCredit += value;
+            }
+            break;
+
+        case CLOSE:
+            if (ch == null || ch.inputClosed) {
+                throw new IOException("close of closed channel " + id);
+            }
+            ch.inputClosed = true;
+            forget(ch);
+            break;
+
+        default:
+            throw new IOException("unknown frame type " + type);
+        }
+        notifyAll();
+    }
+
+    private void fail(IOException ex) {
+        synchronized (this) {
+            if (closed || failure != null) {
+                return;
+            }
+            failure = ex;
+            notifyAll();
+        }
+        try {
+            channel.close();
+        } catch (IOException closeFailure) {
+            BusException.log(closeFailure);
+        }
+    }
+}
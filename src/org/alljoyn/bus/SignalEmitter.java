@@ -19,8 +19,16 @@ package org.alljoyn.bus;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.annotation.BusInterface;
+import org.alljoyn.bus.annotation.BusSignal;
 
 /**
  * A helper proxy used by BusObjects to send signals.  A SignalEmitter
@@ -39,6 +47,17 @@ public class SignalEmitter {
     private int flags;
     private Object proxy;
     private MessageContext msgContext;
+    private boolean msgContextEnabled;
+
+    /** The signals this emitter can send, indexed by interface method. */
+    private final Map<Method, Signal> signals;
+
+    /**
+     * The signals of each bus object class, indexed by interface method.
+     * Classes are weakly referenced so they may still be unloaded.
+     */
+    private static final Map<Class<?>, Map<Method, Signal>> descriptors =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, Map<Method, Signal>>());
 
     /** Controls behavior of broadcast signals ({@code null} desintation). */
     public enum GlobalBroadcast {
@@ -73,8 +92,15 @@ public class SignalEmitter {
             ? this.flags | GLOBAL_BROADCAST 
             : this.flags & ~GLOBAL_BROADCAST;
         proxy = Proxy.newProxyInstance(source.getClass().getClassLoader(),
-                                       source.getClass().getInterfaces(), new Emitter());
+                                       InterfaceDescription.getInterfaces(source.getClass()), new Emitter());
         msgContext = new MessageContext();
+        msgContextEnabled = true;
+
+        /* Each emitter caches its own native members, so it gets its own copies. */
+        signals = new HashMap<Method, Signal>();
+        for (Map.Entry<Method, Signal> entry : getDescriptors(source.getClass()).entrySet()) {
+            signals.put(entry.getKey(), new Signal(entry.getValue()));
+        }
     }
     
     /**
@@ -110,33 +136,456 @@ public class SignalEmitter {
     }
 
     /** Sends the signal. */
-    private native void signal(BusObject busObj, String destination, int sessionId, String ifaceName,
-                               String signalName, String inputSig, Object[] args, int timeToLive,
-                               int flags, MessageContext ctx) throws BusException;
+    private native void signal(BusObject busObj, String destination, int sessionId, Signal signal,
+                               Object[] args, int timeToLive, int flags, MessageContext ctx) throws BusException;
+
+    /**
+     * A signal that can be sent from a bus object, resolved from the
+     * interface method once per bus object class.
+     */
+    private static final class Signal {
+        private final String ifaceName;
+        private final String signalName;
+        private final String inputSig;
+
+        /*
+         * The native member resolved by the first emit and the backing bus
+         * object it was resolved on.  Both are read and written by the native
+         * code only.
+         */
+        private long member;
+        private int owner;
+
+        Signal(String ifaceName, String signalName, String inputSig) {
+            this.ifaceName = ifaceName;
+            this.signalName = signalName;
+            this.inputSig = inputSig;
+        }
+
+        Signal(Signal descriptor) {
+            this(descriptor.ifaceName, descriptor.signalName, descriptor.inputSig);
+        }
+    }
+
+    private static Map<Method, Signal> getDescriptors(Class<?> sourceClass) {
+        Map<Method, Signal> map = descriptors.get(sourceClass);
+        if (map != null) {
+            return map;
+        }
+
+        map = new HashMap<Method, Signal>();
+        for (Class<?> intf : InterfaceDescription.getInterfaces(sourceClass)) {
+            if (intf.getAnnotation(BusInterface.class) == null) {
+                continue;
+            }
+            for (Method method : intf.getMethods()) {
+                if (method.getAnnotation(BusSignal.class) == null || map.containsKey(method)) {
+                    continue;
+                }
+                try {
+                    map.put(method, new Signal(InterfaceDescription.getName(intf),
+                                               InterfaceDescription.getName(method),
+                                               InterfaceDescription.getInputSig(method)));
+                } catch (AnnotationBusException ex) {
+                    /* Reported when the signal is sent. */
+                }
+            }
+        }
+        descriptors.put(sourceClass, map);
+        return map;
+    }
+
+    /** Sends a batch of signals, storing the status and serial of each. */
+    private native void signalBatch(BusObject busObj, String destination, int sessionId, Signal[] signals,
+                               Object[][] args, int timeToLive, int flags, Status[] statuses,
+                               int[] serials) throws BusException;
+
+    /**
+     * Gets the signal sent by an interface method.
+     *
+     * @throws BusException if the method is not a signal of the bus object
+     */
+    Signal getSignal(Method method) throws BusException {
+        Signal signal = signals.get(method);
+        if (signal == null) {
+            /* Raise the error that kept an annotated signal out of the table. */
+            if (method.getAnnotation(BusSignal.class) != null) {
+                InterfaceDescription.getInputSig(method);
+            }
+            throw new BusException(method.getName() + " is not a signal of " + source.getClass().getName());
+        }
+        return signal;
+    }
+
+    /**
+     * Answers the methods of Object called on a signal proxy, which are not
+     * sent as signals.
+     */
+    static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("equals")) {
+            return proxy == args[0];
+        } else if (name.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else {
+            return proxy.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+    }
 
     private class Emitter implements InvocationHandler {
 
         public Object invoke(Object proxy, Method method, Object[] args) throws BusException {
-            for (Class<?> i : proxy.getClass().getInterfaces()) {
-                for (Method m : i.getMethods()) {
-                    if (method.getName().equals(m.getName())) {
-                        signal(source,
-                               destination,
-                               sessionId,
-                               InterfaceDescription.getName(i),
-                               InterfaceDescription.getName(m),
-                               InterfaceDescription.getInputSig(m),
-                               args,
-                               timeToLive,
-                               flags,
-                               msgContext);
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            signal(source, destination, sessionId, getSignal(method), args, timeToLive, flags,
+                   msgContextEnabled ? msgContext : null);
+            return null;
+        }
+    }
+
+    /**
+     * A batch of signals to be sent from this emitter all at once with
+     * {@link SignalEmitter#emitBatch(Batch)}.
+     * <p>
+     * Signals are added to the batch by calling the signal methods of the
+     * proxy returned by {@link #getInterface(Class)}, exactly as they would be
+     * sent with {@link SignalEmitter#getInterface(Class)}.  Sending the batch
+     * takes the bus object lookup, the lock and the native call once for all
+     * of the signals instead of once per signal.
+     * <p>
+     * A Batch is not safe for use by multiple threads.
+     */
+    public final class Batch {
+
+        private final Object proxy;
+        private final ArrayList<Signal> pending;
+        private final ArrayList<Object[]> pendingArgs;
+        private Status[] statuses;
+        private int[] serials;
+
+        private Batch() {
+            proxy = Proxy.newProxyInstance(source.getClass().getClassLoader(),
+                                           InterfaceDescription.getInterfaces(source.getClass()), new Recorder());
+            pending = new ArrayList<Signal>();
+            pendingArgs = new ArrayList<Object[]>();
+            statuses = new Status[0];
+            serials = new int[0];
+        }
+
+        private SignalEmitter getEmitter() {
+            return SignalEmitter.this;
+        }
+
+        private class Recorder implements InvocationHandler {
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws BusException {
+                if (method.getDeclaringClass() == Object.class) {
+                    return invokeObjectMethod(proxy, method, args);
+                }
+                add(method, args);
+                return null;
+            }
+        }
+
+        /**
+         * Adds a signal to the batch.
+         *
+         * @param method the interface method of the signal
+         * @param args the arguments of the signal
+         * @throws BusException if the method is not a signal of the bus object
+         */
+        void add(Method method, Object[] args) throws BusException {
+            pending.add(getSignal(method));
+            pendingArgs.add(args);
+        }
+
+        /**
+         * Gets a proxy to the interface whose signal methods add signals to
+         * this batch.
+         *
+         * @param intf the interface of the bus object that emits the signals
+         * @return the proxy adding signals to this batch
+         */
+        public <T> T getInterface(Class<T> intf) {
+            @SuppressWarnings(value = "unchecked")
+            T p = (T) proxy;
+            return p;
+        }
+
+        /**
+         * Gets the number of signals waiting to be sent.
+         *
+         * @return the number of signals added since the batch was last sent
+         */
+        public int size() {
+            return pending.size();
+        }
+
+        /**
+         * Gets the result of sending a signal the last time the batch was
+         * sent.
+         *
+         * @param index the position of the signal in the batch
+         * @return OK if the signal was sent
+         */
+        public Status getStatus(int index) {
+            return statuses[index];
+        }
+
+        /**
+         * Gets the serial number of a signal sent the last time the batch was
+         * sent.  The serial number of a sessionless signal may be given to
+         * {@link SignalEmitter#cancelSessionlessSignal(int)}.
+         *
+         * @param index the position of the signal in the batch
+         * @return the serial number, or 0 if the signal was not sent
+         */
+        public int getSerial(int index) {
+            return serials[index];
+        }
+    }
+
+    /**
+     * Creates an empty batch of signals to be sent from this emitter.
+     *
+     * @return the batch
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Sends the signals added to a batch, in the order they were added,
+     * using the destination, session, time-to-live and flags of this emitter.
+     * The batch is emptied so that it may be reused; the status and serial
+     * number of each signal remain available from the batch until it is sent
+     * again.  If nothing could be sent the signals are left in the batch and
+     * the status of each is FAIL.
+     * <p>
+     * The message context of this emitter is not updated by batches.
+     *
+     * @param batch a batch created by {@link #newBatch()} on this emitter
+     * @return OK if every signal was sent, otherwise the status of the first
+     *         signal that was not
+     * @throws BusException if the source bus object is not registered
+     */
+    public Status emitBatch(Batch batch) throws BusException {
+        if (batch.getEmitter() != this) {
+            throw new IllegalArgumentException("batch was not created by this emitter");
+        }
+        int count = batch.pending.size();
+        Signal[] batchSignals = batch.pending.toArray(new Signal[count]);
+        Object[][] batchArgs = batch.pendingArgs.toArray(new Object[count][]);
+
+        Status[] statuses = new Status[count];
+        int[] serials = new int[count];
+        batch.statuses = statuses;
+        batch.serials = serials;
+        try {
+            signalBatch(source, destination, sessionId, batchSignals, batchArgs, timeToLive, flags, statuses,
+                        serials);
+        } catch (BusException ex) {
+            /* Nothing was sent; the signals stay in the batch to be sent again. */
+            Arrays.fill(statuses, Status.FAIL);
+            throw ex;
+        }
+        batch.pending.clear();
+        batch.pendingArgs.clear();
+
+        for (Status status : statuses) {
+            if (status != Status.OK) {
+                return status;
+            }
+        }
+        return Status.OK;
+    }
+
+    /** Sends one signal to each of several destinations and sessions. */
+    private native void signalFanOut(BusObject busObj, String[] destinations, int[] sessionIds, Signal signal,
+                                     Object[] args, int timeToLive, int flags, Status[] statuses,
+                                     int[] serials) throws BusException;
+
+    /**
+     * A set of targets that signals are sent to all at once, each target
+     * being a destination and session as given to the constructors of
+     * SignalEmitter.
+     * <p>
+     * Calling a signal method of the proxy returned by
+     * {@link #getInterface(Class)} sends the signal to every target, in the
+     * order they were added, using the time-to-live and flags of the emitter
+     * that created the fan-out.  The arguments are marshalled once and the
+     * bus object lookup, the lock and the native call are taken once for all
+     * of the targets.  The proxy only throws if the signal cannot be sent to
+     * any target; the status of each target is available afterwards from
+     * {@link #getStatus(int)} either way.
+     * <p>
+     * A FanOut is not safe for use by multiple threads.
+     */
+    public final class FanOut {
+
+        private final Object proxy;
+        private final ArrayList<String> destinations;
+        private final ArrayList<Integer> sessionIds;
+        private String[] destinationArray;
+        private int[] sessionIdArray;
+        private Status[] statuses;
+        private int[] serials;
+
+        private FanOut() {
+            proxy = Proxy.newProxyInstance(source.getClass().getClassLoader(),
+                                           InterfaceDescription.getInterfaces(source.getClass()), new Sender());
+            destinations = new ArrayList<String>();
+            sessionIds = new ArrayList<Integer>();
+            statuses = new Status[0];
+            serials = new int[0];
+        }
+
+        private class Sender implements InvocationHandler {
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws BusException {
+                if (method.getDeclaringClass() == Object.class) {
+                    return invokeObjectMethod(proxy, method, args);
+                }
+                send(method, args);
+                return null;
+            }
+        }
+
+        /**
+         * Sends a signal to every target.
+         *
+         * @param method the interface method of the signal
+         * @param args the arguments of the signal
+         * @throws BusException if the method is not a signal of the bus
+         *                      object, the arguments cannot be marshalled,
+         *                      the source bus object is not registered or
+         *                      the signal was not sent to any target
+         */
+        void send(Method method, Object[] args) throws BusException {
+            Signal signal = getSignal(method);
+            if (destinationArray == null) {
+                destinationArray = destinations.toArray(new String[destinations.size()]);
+                sessionIdArray = new int[sessionIds.size()];
+                for (int i = 0; i < sessionIdArray.length; ++i) {
+                    sessionIdArray[i] = sessionIds.get(i);
+                }
+            }
+            Status[] sent = new Status[sessionIdArray.length];
+            int[] sentSerials = new int[sessionIdArray.length];
+            statuses = sent;
+            serials = sentSerials;
+            try {
+                signalFanOut(source, destinationArray, sessionIdArray, signal, args, timeToLive, flags,
+                             sent, sentSerials);
+            } catch (BusException ex) {
+                /* The targets are left unset if nothing was tried. */
+                for (int i = 0; i < sent.length; ++i) {
+                    if (sent[i] == null) {
+                        sent[i] = Status.FAIL;
                     }
                 }
+                throw ex;
             }
-            return null;
+        }
+
+        /**
+         * Adds a target.
+         *
+         * @param destination well-known or unique name of the destination, or
+         *                    null to broadcast to the session
+         * @param sessionId the session to send the signal over
+         */
+        public void addTarget(String destination, int sessionId) {
+            destinations.add(destination);
+            sessionIds.add(sessionId);
+            destinationArray = null;
+        }
+
+        /**
+         * Adds a session whose members all receive the signals.
+         *
+         * @param sessionId the session to broadcast the signals to
+         */
+        public void addSession(int sessionId) {
+            addTarget(null, sessionId);
+        }
+
+        /**
+         * Removes the first target with a destination and session.
+         *
+         * @param destination the destination of the target, or null
+         * @param sessionId the session of the target
+         * @return {@code true} if the target was found
+         */
+        public boolean removeTarget(String destination, int sessionId) {
+            for (int i = 0; i < sessionIds.size(); ++i) {
+                String d = destinations.get(i);
+                if (sessionIds.get(i) == sessionId && (d == null ? destination == null : d.equals(destination))) {
+                    destinations.remove(i);
+                    sessionIds.remove(i);
+                    destinationArray = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Gets the number of targets.
+         *
+         * @return the number of targets
+         */
+        public int getTargetCount() {
+            return sessionIds.size();
+        }
+
+        /**
+         * Gets a proxy to the interface whose signal methods send signals to
+         * every target.
+         *
+         * @param intf the interface of the bus object that emits the signals
+         * @return the proxy sending signals to the targets
+         */
+        public <T> T getInterface(Class<T> intf) {
+            @SuppressWarnings(value = "unchecked")
+            T p = (T) proxy;
+            return p;
+        }
+
+        /**
+         * Gets the result of sending the last signal to a target.
+         *
+         * @param index the position of the target, in the order the targets
+         *              were when the signal was sent
+         * @return OK if the signal was sent to the target
+         */
+        public Status getStatus(int index) {
+            return statuses[index];
+        }
+
+        /**
+         * Gets the serial number of the last signal sent to a target.
+         *
+         * @param index the position of the target, in the order the targets
+         *              were when the signal was sent
+         * @return the serial number, or 0 if the signal was not sent
+         */
+        public int getSerial(int index) {
+            return serials[index];
         }
     }
 
+    /**
+     * Creates a fan-out with no targets to send signals from this emitter.
+     * The destination and session of this emitter are not used by it.
+     *
+     * @return the fan-out
+     */
+    public FanOut newFanOut() {
+        return new FanOut();
+    }
+
     /**
      * Sets the time-to-live of future signals sent from this emitter.
      *
@@ -179,9 +628,28 @@ public class SignalEmitter {
      * @return  MessageContext of the last signal sent from this emitter.
      */
     public MessageContext getMessageContext() {
+        msgContext.populate();
         return msgContext;
     }
 
+    /**
+     * Sets whether the MessageContext returned by {@link #getMessageContext()}
+     * is updated by future signals sent from this emitter.  It is enabled by
+     * default.
+     * <p>
+     * Keeping the context costs a reference to the sent message, which is
+     * held until the next signal is sent; its fields are only converted to
+     * Java when the context is asked for.  An emitter sending signals at a
+     * high rate whose context is never asked for may disable it to avoid even
+     * that.
+     *
+     * @param enabled {@code true} to update the message context of this
+     *                emitter, {@code false} to leave it unchanged
+     */
+    public void setMessageContextEnabled(boolean enabled) {
+        this.msgContextEnabled = enabled;
+    }
+
     private native Status cancelSessionlessSignal(BusObject busObject, int serialNum);
 
     /**
@@ -199,6 +667,13 @@ public class SignalEmitter {
         return cancelSessionlessSignal(source, serialNum);
     }
 
+    /**
+     * Gets the source object of the signals sent from this emitter.
+     */
+    BusObject getSource() {
+        return source;
+    }
+
     /**
      * Gets a proxy to the interface that emits signals.
      *
@@ -0,0 +1,646 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue that delivers signals to signal handlers on an
+ * {@link Executor} instead of the AllJoyn thread that received them.
+ *
+ * A signal handler registered with a SignalHandlerQueue returns control to
+ * AllJoyn as soon as the signal has been unmarshalled and queued, so a slow
+ * handler does not hold up the delivery of other messages to the bus
+ * attachment.  Signals are delivered one at a time, in the order they were
+ * queued, and {@link BusAttachment#getMessageContext()} works in the handler
+ * as usual.
+ *
+ * A queue may be shared by several handlers, in which case they share its
+ * capacity and ordering, and the queue statistics cover all of them.  The
+ * delivery statistics of each handler method are also kept apart, see
+ * {@link #getHandlerStatistics()}.  Give each handler its own queue to also
+ * give it its own capacity.  Signals already queued when a handler is
+ * unregistered are still delivered.
+ *
+ * A queue made per session keeps a serial lane for each session instead.
+ * The signals of one session are delivered one at a time, in the order they
+ * were queued, while the signals of different sessions may be delivered at
+ * the same time on different executor threads.  Signals not received in a
+ * session share the lane of session id 0.  The capacity and overflow policy
+ * apply to each lane, and {@link #getSessionStatistics()} reports the queue
+ * statistics of each busy session.  Like the lanes of the {@link MethodDispatcher},
+ * a lane gives up its executor thread after each signal, so on an executor
+ * that takes tasks in order the busy sessions take turns.
+ */
+public final class SignalHandlerQueue {
+
+    /** What to do with a signal that arrives when the queue is full. */
+    public enum Overflow {
+
+        /** Block the AllJoyn thread until there is room in the queue. */
+        Block,
+
+        /** Discard the oldest queued signal to make room. */
+        DropOldest,
+
+        /** Discard the signal that arrived. */
+        DropNewest,
+
+        /**
+         * Replace the queued signal of the same handler whose first argument
+         * is equal to that of the signal that arrived, or else discard the
+         * oldest queued signal.  This keeps only the latest value of each
+         * key for state signals.  Signals are replaced whether or not the
+         * queue is full.
+         */
+        Conflate
+    }
+
+    /**
+     * Decides which signals are queued, before any are dropped for lack of
+     * room.  Used by {@link BusAttachmentPool} to discard the copies of a
+     * signal received by more than one attachment.
+     */
+    interface Filter {
+
+        /**
+         * @param handler the object receiving the signal
+         * @param method the signal handler method
+         * @param context the message context of the signal
+         * @return true to queue the signal, false to discard it
+         */
+        boolean accept(Object handler, Method method, MessageContext context);
+    }
+
+    private final Executor executor;
+    private final int capacity;
+    private final Overflow overflow;
+    private final boolean perSession;
+    private final Filter filter;
+
+    /** The lane of a queue that is not per session. */
+    private final Lane lane;
+
+    /** The lanes with signals queued or being delivered, by session id. */
+    private final Map<Integer, Lane> lanes;
+
+    /** The statistics of each session of a queue made per session. */
+    private final Map<Integer, LaneStatistics> sessionStatistics;
+
+    /** The statistics of each handler method. */
+    private final Map<Method, HandlerStatistics> handlerStatistics;
+
+    private int queueDepth;
+    private int maxQueueDepth;
+    private final AtomicLong deliveredCount;
+    private final AtomicLong dropCount;
+    private final AtomicLong totalLatencyNanos;
+    private final AtomicLong maxLatencyNanos;
+    private final AtomicLong totalHandlerNanos;
+
+    /**
+     * Constructs a SignalHandlerQueue.
+     *
+     * @param executor the executor that runs the signal handlers
+     * @param capacity the largest number of signals waiting to be delivered
+     * @param overflow what to do when a signal arrives and the queue is full
+     */
+    public SignalHandlerQueue(Executor executor, int capacity, Overflow overflow) {
+        this(executor, capacity, overflow, false);
+    }
+
+    /**
+     * Constructs a SignalHandlerQueue that may keep a serial lane for each
+     * session.
+     *
+     * @param executor the executor that runs the signal handlers
+     * @param capacity the largest number of signals waiting to be delivered,
+     *                 in each session if perSession is true
+     * @param overflow what to do when a signal arrives and the queue is full
+     * @param perSession true to deliver the signals of different sessions
+     *                   concurrently, and those of each session in order
+     */
+    public SignalHandlerQueue(Executor executor, int capacity, Overflow overflow, boolean perSession) {
+        this(executor, capacity, overflow, perSession, null);
+    }
+
+    /**
+     * Constructs a SignalHandlerQueue that only queues the signals a filter
+     * accepts.  Signals the filter discards are not counted as dropped.
+     */
+    SignalHandlerQueue(Executor executor, int capacity, Overflow overflow, boolean perSession, Filter filter) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.perSession = perSession;
+        this.filter = filter;
+        lane = perSession ? null : new Lane(0);
+        lanes = new HashMap<Integer, Lane>();
+        sessionStatistics = new HashMap<Integer, LaneStatistics>();
+        handlerStatistics = new HashMap<Method, HandlerStatistics>();
+        deliveredCount = new AtomicLong();
+        dropCount = new AtomicLong();
+        totalLatencyNanos = new AtomicLong();
+        maxLatencyNanos = new AtomicLong();
+        totalHandlerNanos = new AtomicLong();
+    }
+
+    /**
+     * Gets the number of signals waiting to be delivered.
+     *
+     * @return the current queue depth
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the largest queue depth seen since the statistics were last reset.
+     *
+     * @return the maximum queue depth
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Gets the number of signals delivered since the statistics were last
+     * reset.
+     *
+     * @return the number of signals delivered
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Gets the number of signals discarded or replaced because of the
+     * overflow policy since the statistics were last reset.
+     *
+     * @return the number of signals dropped
+     */
+    public long getDropCount() {
+        return dropCount.get();
+    }
+
+    /**
+     * Gets the average time from when a signal was queued until its handler
+     * returned.
+     *
+     * @return the average latency in nanoseconds, or 0 if nothing has been
+     *         delivered
+     */
+    public long getAverageLatency() {
+        long count = deliveredCount.get();
+        return (count == 0) ? 0 : totalLatencyNanos.get() / count;
+    }
+
+    /**
+     * Gets the longest time from when a signal was queued until its handler
+     * returned.
+     *
+     * @return the maximum latency in nanoseconds
+     */
+    public long getMaxLatency() {
+        return maxLatencyNanos.get();
+    }
+
+    /**
+     * Gets the average time spent in the signal handlers.
+     *
+     * @return the average handler time in nanoseconds, or 0 if nothing has
+     *         been delivered
+     */
+    public long getAverageHandlerTime() {
+        long count = deliveredCount.get();
+        return (count == 0) ? 0 : totalHandlerNanos.get() / count;
+    }
+
+    /**
+     * Gets the queue statistics of each session that has signals waiting or
+     * being delivered.  A session's statistics are dropped when its lane goes
+     * idle.  Only a queue made per session keeps them.
+     *
+     * @return snapshots of the statistics, by session id
+     */
+    public Map<Integer, LaneStatistics> getSessionStatistics() {
+        synchronized (sessionStatistics) {
+            return LaneStatistics.snapshot(sessionStatistics);
+        }
+    }
+
+    /**
+     * Gets the delivery statistics of each signal handler method that
+     * signals have been received for since the statistics were last reset.
+     *
+     * @return snapshots of the statistics, by handler method
+     */
+    public Map<Method, HandlerStatistics> getHandlerStatistics() {
+        synchronized (handlerStatistics) {
+            Map<Method, HandlerStatistics> copy = new HashMap<Method, HandlerStatistics>();
+            for (HandlerStatistics stats : handlerStatistics.values()) {
+                copy.put(stats.method, stats.snapshot());
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Resets the maximum queue depth, delivery, drop and latency statistics,
+     * including those of each session and handler.  Sessions with no signals
+     * waiting are forgotten.
+     */
+    public void resetStatistics() {
+        synchronized (this) {
+            maxQueueDepth = queueDepth;
+        }
+        deliveredCount.set(0);
+        dropCount.set(0);
+        totalLatencyNanos.set(0);
+        maxLatencyNanos.set(0);
+        totalHandlerNanos.set(0);
+        synchronized (sessionStatistics) {
+            LaneStatistics.reset(sessionStatistics);
+        }
+        synchronized (handlerStatistics) {
+            handlerStatistics.clear();
+        }
+    }
+
+    /**
+     * The delivery statistics of one signal handler method.  The statistics
+     * returned to the application are snapshots and do not change
+     * afterwards.
+     */
+    public static final class HandlerStatistics {
+        private final Method method;
+        private long deliveredCount;
+        private long dropCount;
+        private long totalLatencyNanos;
+        private long maxLatencyNanos;
+        private long totalHandlerNanos;
+
+        HandlerStatistics(Method method) {
+            this.method = method;
+        }
+
+        /**
+         * Gets the signal handler method.
+         *
+         * @return the handler method
+         */
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * Gets the number of signals delivered to the handler.
+         *
+         * @return the number of signals delivered
+         */
+        public synchronized long getDeliveredCount() {
+            return deliveredCount;
+        }
+
+        /**
+         * Gets the number of signals for the handler discarded or replaced
+         * because of the overflow policy.
+         *
+         * @return the number of signals dropped
+         */
+        public synchronized long getDropCount() {
+            return dropCount;
+        }
+
+        /**
+         * Gets the average time from when a signal was queued until the
+         * handler returned.
+         *
+         * @return the average latency in nanoseconds, or 0 if nothing has
+         *         been delivered
+         */
+        public synchronized long getAverageLatency() {
+            return (deliveredCount == 0) ? 0 : totalLatencyNanos / deliveredCount;
+        }
+
+        /**
+         * Gets the longest time from when a signal was queued until the
+         * handler returned.
+         *
+         * @return the maximum latency in nanoseconds
+         */
+        public synchronized long getMaxLatency() {
+            return maxLatencyNanos;
+        }
+
+        /**
+         * Gets the average time spent in the handler.
+         *
+         * @return the average handler time in nanoseconds, or 0 if nothing
+         *         has been delivered
+         */
+        public synchronized long getAverageHandlerTime() {
+            return (deliveredCount == 0) ? 0 : totalHandlerNanos / deliveredCount;
+        }
+
+        synchronized void delivered(long latencyNanos, long handlerNanos) {
+            ++deliveredCount;
+            totalLatencyNanos += latencyNanos;
+            totalHandlerNanos += handlerNanos;
+            if (latencyNanos > maxLatencyNanos) {
+                maxLatencyNanos = latencyNanos;
+            }
+        }
+
+        synchronized void dropped() {
+            ++dropCount;
+        }
+
+        private synchronized HandlerStatistics snapshot() {
+            HandlerStatistics copy = new HandlerStatistics(method);
+            copy.deliveredCount = deliveredCount;
+            copy.dropCount = dropCount;
+            copy.totalLatencyNanos = totalLatencyNanos;
+            copy.maxLatencyNanos = maxLatencyNanos;
+            copy.totalHandlerNanos = totalHandlerNanos;
+            return copy;
+        }
+    }
+
+    /* Gets the statistics of a handler method, adding them if it has none yet. */
+    private HandlerStatistics getHandlerStatistics(Method method) {
+        synchronized (handlerStatistics) {
+            HandlerStatistics stats = handlerStatistics.get(method);
+            if (stats == null) {
+                stats = new HandlerStatistics(method);
+                handlerStatistics.put(method, stats);
+            }
+            return stats;
+        }
+    }
+
+    /** A signal waiting to be delivered to a handler. */
+    private static final class Delivery {
+        private final Object handler;
+        private final Method method;
+        private Object[] args;
+        private MessageContext context;
+        private long received;
+        private LaneStatistics stats;
+        private HandlerStatistics handlerStats;
+
+        Delivery(Object handler, Method method, Object[] args, MessageContext context) {
+            this.handler = handler;
+            this.method = method;
+            this.args = args;
+            this.context = context;
+            this.received = System.nanoTime();
+        }
+
+        boolean replaces(Delivery other) {
+            if (handler != other.handler || !method.equals(other.method)) {
+                return false;
+            }
+            Object key = (args != null && args.length > 0) ? args[0] : null;
+            Object otherKey = (other.args != null && other.args.length > 0) ? other.args[0] : null;
+            return (key == null) ? otherKey == null : key.equals(otherKey);
+        }
+    }
+
+    /**
+     * Called by the native code on the AllJoyn thread that received a signal
+     * for a handler registered with this queue.
+     *
+     * @param handler the object receiving the signal
+     * @param method the signal handler method
+     * @param args the unmarshalled arguments of the signal
+     * @param context the message context of the signal
+     */
+    private void enqueue(Object handler, Method method, Object[] args, MessageContext context) {
+        if (filter != null && !filter.accept(handler, method, context)) {
+            return;
+        }
+        Delivery delivery = new Delivery(handler, method, args, context);
+        delivery.handlerStats = getHandlerStatistics(method);
+        int sessionId = (perSession && context != null) ? context.sessionId : 0;
+        Lane lane;
+        boolean schedule = false;
+        synchronized (this) {
+            lane = getLane(sessionId);
+            if (overflow == Overflow.Conflate) {
+                for (Delivery queued : lane.queue) {
+                    if (delivery.replaces(queued)) {
+                        queued.args = delivery.args;
+                        queued.context = delivery.context;
+                        queued.received = delivery.received;
+                        if (queued.stats != null) {
+                            queued.stats.dropped(false);
+                        }
+                        queued.handlerStats.dropped();
+                        dropCount.incrementAndGet();
+                        return;
+                    }
+                }
+            }
+            if (lane.queue.size() >= capacity) {
+                switch (overflow) {
+                case Block:
+                    while (lane.queue.size() >= capacity) {
+                        try {
+                            wait();
+                        } catch (InterruptedException ex) {
+                            droppedNew(sessionId);
+                            delivery.handlerStats.dropped();
+                            dropCount.incrementAndGet();
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        /* The lane is forgotten if it emptied meanwhile. */
+                        lane = getLane(sessionId);
+                    }
+                    break;
+                case DropNewest:
+                    droppedNew(sessionId);
+                    delivery.handlerStats.dropped();
+                    dropCount.incrementAndGet();
+                    return;
+                case DropOldest:
+                case Conflate:
+                    Delivery dropped = lane.queue.removeFirst();
+                    --queueDepth;
+                    if (dropped.stats != null) {
+                        dropped.stats.dropped(true);
+                    }
+                    dropped.handlerStats.dropped();
+                    dropCount.incrementAndGet();
+                    break;
+                }
+            }
+            if (perSession) {
+                synchronized (sessionStatistics) {
+                    delivery.stats = LaneStatistics.get(sessionStatistics, sessionId);
+                    delivery.stats.queued();
+                }
+            }
+            lane.queue.add(delivery);
+            if (++queueDepth > maxQueueDepth) {
+                maxQueueDepth = queueDepth;
+            }
+            if (!lane.running) {
+                lane.running = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            execute(lane);
+        }
+    }
+
+    /* Counts a signal dropped before it was queued.  Called with the queue locked. */
+    private void droppedNew(int sessionId) {
+        if (perSession) {
+            synchronized (sessionStatistics) {
+                LaneStatistics.get(sessionStatistics, sessionId).dropped(false);
+            }
+        }
+    }
+
+    /* Gets the lane of a session, making it if need be.  Called with the queue locked. */
+    private Lane getLane(int sessionId) {
+        if (!perSession) {
+            return lane;
+        }
+        Lane lane = lanes.get(sessionId);
+        if (lane == null) {
+            lane = new Lane(sessionId);
+            lanes.put(sessionId, lane);
+        }
+        return lane;
+    }
+
+    /*
+     * Hand a lane to the executor.  If the executor refuses it, drain the
+     * lane here rather than leave it stalled.  The lane is drained in a loop
+     * since rescheduling it from here would recurse once per signal.
+     */
+    private void execute(Lane lane) {
+        try {
+            executor.execute(lane);
+        } catch (RejectedExecutionException ex) {
+            BusException.log(ex);
+            while (lane.deliverNext()) {
+            }
+        }
+    }
+
+    /**
+     * The signals of one session, or of every session if the queue is not
+     * per session.  The lane delivers one signal each time the executor runs
+     * it and reschedules itself while signals remain, so that a busy lane
+     * does not hold on to an executor thread.  Idle per-session lanes are
+     * forgotten so ended sessions are not remembered.
+     */
+    private final class Lane implements Runnable {
+        private final int sessionId;
+        private final LinkedList<Delivery> queue;
+        private boolean running;
+
+        Lane(int sessionId) {
+            this.sessionId = sessionId;
+            this.queue = new LinkedList<Delivery>();
+        }
+
+        public void run() {
+            if (deliverNext()) {
+                execute(this);
+            }
+        }
+
+        /* Delivers the next signal, returning true if more remain. */
+        boolean deliverNext() {
+            Delivery delivery;
+            synchronized (SignalHandlerQueue.this) {
+                delivery = queue.poll();
+                if (delivery != null) {
+                    --queueDepth;
+                    if (delivery.stats != null) {
+                        delivery.stats.started(System.nanoTime() - delivery.received);
+                    }
+                }
+                SignalHandlerQueue.this.notifyAll();
+            }
+            boolean more;
+            try {
+                if (delivery != null) {
+                    deliver(delivery);
+                }
+            } finally {
+                synchronized (SignalHandlerQueue.this) {
+                    more = !queue.isEmpty();
+                    if (!more) {
+                        running = false;
+                        if (perSession) {
+                            lanes.remove(sessionId);
+                            synchronized (sessionStatistics) {
+                                LaneStatistics.removeIdle(sessionStatistics, sessionId);
+                            }
+                        }
+                    }
+                }
+            }
+            return more;
+        }
+    }
+
+    private void deliver(Delivery delivery) {
+        MessageContext previous = MessageContext.setCurrent(delivery.context);
+        long start = System.nanoTime();
+        try {
+            delivery.method.invoke(delivery.handler, delivery.args);
+        } catch (InvocationTargetException ex) {
+            BusException.log(ex.getCause());
+        } catch (IllegalAccessException ex) {
+            BusException.log(ex);
+        } catch (RuntimeException ex) {
+            /* Keep delivering the rest of the lane. */
+            BusException.log(ex);
+        } finally {
+            MessageContext.setCurrent(previous);
+            long end = System.nanoTime();
+            long latency = end - delivery.received;
+            delivery.handlerStats.delivered(latency, end - start);
+            deliveredCount.incrementAndGet();
+            totalHandlerNanos.addAndGet(end - start);
+            totalLatencyNanos.addAndGet(latency);
+            for (long max = maxLatencyNanos.get(); latency > max; max = maxLatencyNanos.get()) {
+                if (maxLatencyNanos.compareAndSet(max, latency)) {
+                    break;
+                }
+            }
+        }
+    }
+}
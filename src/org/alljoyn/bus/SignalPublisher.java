@@ -0,0 +1,553 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.alljoyn.bus.annotation.BusSignal;
+import org.alljoyn.bus.annotation.Position;
+
+/**
+ * A publisher of the instances of one bus signal, honouring the demand of
+ * its subscribers.
+ *
+ * SignalPublisher follows the shape of the reactive streams
+ * {@code Publisher}, {@code Subscriber} and {@code Subscription} interfaces.
+ * Each subscriber gets its own signal handler and its own buffer of
+ * received signals.  Signals are passed to {@link Subscriber#onNext} on the
+ * publisher's executor, one at a time and only as far as the subscriber has
+ * requested them.  Signals that arrive while the buffer is full are handled
+ * according to the publisher's overflow policy, see
+ * {@link SignalHandlerQueue.Overflow}.
+ * <p>
+ * The arguments of each signal are decoded into a payload of the type given
+ * to {@link BusAttachment#signals(Class, String, Class)}:
+ * <ul>
+ * <li>{@code Object[]} receives the arguments themselves.
+ * <li>A type that the single argument of a signal can be assigned to
+ * receives that argument.
+ * <li>Any other type must have a no-argument constructor and one field
+ * annotated with {@link Position} for each argument of the signal, as for
+ * AllJoyn structs.
+ * </ul>
+ *
+ * @param <T> the type of the payload
+ */
+public final class SignalPublisher<T> {
+
+    /**
+     * Receives the signals of a publisher.
+     *
+     * @param <T> the type of the payload
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called once before any other method, with the subscription used to
+         * request signals.
+         *
+         * @param subscription the new subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called for each signal requested.
+         *
+         * @param item the payload of the signal
+         */
+        void onNext(T item);
+
+        /**
+         * Called if the signal handler could not be registered or if a
+         * non-positive number of signals was requested.  No other method is
+         * called afterwards.
+         *
+         * @param throwable the error
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the publisher is closed.  No other method is called
+         * afterwards.
+         */
+        void onComplete();
+    }
+
+    /** Controls the flow of signals to a subscriber. */
+    public interface Subscription {
+
+        /**
+         * Adds to the number of signals the subscriber is ready to receive.
+         *
+         * @param n the number of additional signals, which must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of signals and unregisters the signal handler.
+         */
+        void cancel();
+    }
+
+    private static ExecutorService defaultExecutor;
+
+    private final BusAttachment bus;
+    private final Class<?> iface;
+    private final Method signal;
+    private final Executor executor;
+    private final int capacity;
+    private final SignalHandlerQueue.Overflow overflow;
+
+    /* How the payload is built from the arguments of a signal. */
+    private final Class<T> payloadType;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+
+    private final List<SignalSubscription> subscriptions;
+    private boolean closed;
+
+    /**
+     * Constructs a SignalPublisher.  Use
+     * {@link BusAttachment#signals(Class, String, Class)}.
+     */
+    SignalPublisher(BusAttachment bus, Class<?> iface, String signalName, Class<T> payloadType,
+            Executor executor, int capacity, SignalHandlerQueue.Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.bus = bus;
+        this.iface = iface;
+        this.signal = findSignal(iface, signalName);
+        this.payloadType = payloadType;
+        this.executor = (executor == null) ? getDefaultExecutor() : executor;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        subscriptions = new ArrayList<SignalSubscription>();
+
+        Class<?>[] params = signal.getParameterTypes();
+        if (payloadType == Object[].class
+                || (params.length == 1 && box(payloadType).isAssignableFrom(box(params[0])))) {
+            constructor = null;
+            fields = null;
+        } else {
+            fields = new Field[params.length];
+            for (Field field : payloadType.getDeclaredFields()) {
+                Position position = field.getAnnotation(Position.class);
+                if (position != null) {
+                    int i = position.value();
+                    if (i < 0 || i >= fields.length || fields[i] != null) {
+                        throw new IllegalArgumentException(payloadType.getName() + " does not match signal "
+                                                           + signal.getName());
+                    }
+                    field.setAccessible(true);
+                    fields[i] = field;
+                }
+            }
+            for (Field field : fields) {
+                if (field == null) {
+                    throw new IllegalArgumentException(payloadType.getName() + " does not match signal "
+                                                       + signal.getName());
+                }
+            }
+            try {
+                constructor = payloadType.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalArgumentException(payloadType.getName() + " has no default constructor");
+            }
+        }
+    }
+
+    private static Method findSignal(Class<?> iface, String signalName) {
+        for (Method m : iface.getMethods()) {
+            if (m.getAnnotation(BusSignal.class) != null
+                    && (m.getName().equals(signalName) || InterfaceDescription.getName(m).equals(signalName))) {
+                return m;
+            }
+        }
+        throw new IllegalArgumentException(iface.getName() + " has no signal " + signalName);
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == char.class) {
+            return Character.class;
+        }
+        return type;
+    }
+
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "SignalPublisher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Subscribes to the signal.  The subscriber's signal handler is
+     * registered right away, and signals are buffered until the subscriber
+     * requests them.
+     *
+     * @param subscriber the subscriber
+     */
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        SignalSubscription subscription = new SignalSubscription(subscriber);
+        Status status;
+        synchronized (this) {
+            if (closed) {
+                status = Status.BUS_NOT_CONNECTED;
+            } else {
+                status = subscription.register();
+                if (status == Status.OK) {
+                    subscriptions.add(subscription);
+                }
+            }
+        }
+        subscription.start(status);
+    }
+
+    /**
+     * Gets the number of current subscribers.
+     *
+     * @return the number of subscribers
+     */
+    public synchronized int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Unregisters the signal handlers of all subscribers and completes them
+     * once the signals they have already requested have been delivered.
+     * Buffered signals beyond those requested are dropped.
+     */
+    public void close() {
+        List<SignalSubscription> closing;
+        synchronized (this) {
+            closed = true;
+            closing = new ArrayList<SignalSubscription>(subscriptions);
+            subscriptions.clear();
+        }
+        for (SignalSubscription subscription : closing) {
+            subscription.complete();
+        }
+    }
+
+    private synchronized void remove(SignalSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /* Build the payload of a signal from its arguments. */
+    @SuppressWarnings("unchecked")
+    private T decode(Object[] args) throws Exception {
+        if (payloadType == Object[].class) {
+            return (T) args;
+        }
+        if (fields == null) {
+            return (T) args[0];
+        }
+        T payload = constructor.newInstance();
+        for (int i = 0; i < fields.length; ++i) {
+            fields[i].set(payload, args[i]);
+        }
+        return payload;
+    }
+
+    /** A pending signal. */
+    private final class Item {
+        private final Object key;
+        private T payload;
+
+        Item(Object key, T payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * The state of one subscriber: its signal handler, its buffer and its
+     * outstanding demand.  Calls to the subscriber are made one at a time
+     * from the executor.
+     */
+    private final class SignalSubscription implements Subscription, InvocationHandler, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+        private final Object handler;
+
+        private final LinkedList<Item> buffer;
+        private long demand;
+        private boolean started;
+        private boolean running;
+        private boolean cancelled;
+        private boolean completing;
+        private Throwable error;
+
+        /* Only used by the executor, which runs this one at a time. */
+        private boolean subscribed;
+
+        SignalSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+            handler = Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] { iface }, this);
+            buffer = new LinkedList<Item>();
+        }
+
+        Status register() {
+            try {
+                InterfaceDescription desc = new InterfaceDescription();
+                Status status = desc.create(bus, iface);
+                if (status != Status.OK) {
+                    return status;
+                }
+            } catch (AnnotationBusException ex) {
+                BusException.log(ex);
+                return Status.BAD_ANNOTATION;
+            }
+            return bus.registerSignalHandler(InterfaceDescription.getName(iface),
+                                             InterfaceDescription.getName(signal),
+                                             handler, signal, "");
+        }
+
+        /* Deliver onSubscribe, followed by onError if the handler was not registered. */
+        void start(Status status) {
+            synchronized (this) {
+                if (status != Status.OK) {
+                    error = new BusException("cannot register signal handler: " + status);
+                }
+                started = true;
+            }
+            schedule();
+        }
+
+        void complete() {
+            bus.unregisterSignalHandler(handler, signal);
+            synchronized (this) {
+                completing = true;
+                /* Keep only what was requested, so completion does not wait for more demand. */
+                while (buffer.size() > demand) {
+                    buffer.removeLast();
+                }
+                notifyAll();
+            }
+            schedule();
+        }
+
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    error = new IllegalArgumentException("non-positive request " + n);
+                } else {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                buffer.clear();
+                notifyAll();
+            }
+            bus.unregisterSignalHandler(handler, signal);
+            remove(this);
+        }
+
+        /* Called with the arguments of each signal received. */
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return "SignalPublisher subscriber of " + signal.getName();
+            }
+            if (args == null) {
+                args = new Object[0];
+            }
+            Item item;
+            try {
+                item = new Item((args.length > 0) ? args[0] : null, decode(args));
+            } catch (Exception ex) {
+                BusException.log(ex);
+                return null;
+            }
+            synchronized (this) {
+                if (cancelled || completing) {
+                    return null;
+                }
+                if (overflow == SignalHandlerQueue.Overflow.Conflate) {
+                    for (Item pending : buffer) {
+                        if ((item.key == null) ? pending.key == null : item.key.equals(pending.key)) {
+                            pending.payload = item.payload;
+                            return null;
+                        }
+                    }
+                }
+                if (buffer.size() >= capacity) {
+                    switch (overflow) {
+                    case Block:
+                        while (buffer.size() >= capacity && !cancelled && !completing) {
+                            wait();
+                        }
+                        if (cancelled || completing) {
+                            return null;
+                        }
+                        break;
+                    case DropNewest:
+                        return null;
+                    case DropOldest:
+                    case Conflate:
+                        buffer.removeFirst();
+                        break;
+                    }
+                }
+                buffer.add(item);
+                if (demand == 0) {
+                    return null;
+                }
+            }
+            schedule();
+            return null;
+        }
+
+        /* Run on the executor unless already running or nothing is due. */
+        private void schedule() {
+            synchronized (this) {
+                if (!started || running || !due()) {
+                    return;
+                }
+                running = true;
+            }
+            execute();
+        }
+
+        private boolean due() {
+            return !subscribed || (!cancelled && (error != null || (demand > 0 && !buffer.isEmpty())
+                                                  || (completing && buffer.isEmpty())));
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                BusException.log(ex);
+                run();
+            }
+        }
+
+        public void run() {
+            try {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                deliver();
+            } catch (RuntimeException ex) {
+                /* A subscriber that throws is treated as having cancelled. */
+                BusException.log(ex);
+                cancel();
+            } finally {
+                boolean again;
+                synchronized (this) {
+                    again = due();
+                    running = again;
+                }
+                if (again) {
+                    execute();
+                }
+            }
+        }
+
+        /* Deliver whatever is due to the subscriber. */
+        private void deliver() {
+            while (true) {
+                Item item = null;
+                Throwable failure = null;
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    } else if (error != null) {
+                        failure = error;
+                        cancelled = true;
+                        buffer.clear();
+                        notifyAll();
+                    } else if (demand > 0 && !buffer.isEmpty()) {
+                        item = buffer.removeFirst();
+                        --demand;
+                        notifyAll();
+                    } else if (completing && buffer.isEmpty()) {
+                        cancelled = true;
+                    } else {
+                        return;
+                    }
+                }
+                if (failure != null) {
+                    bus.unregisterSignalHandler(handler, signal);
+                    remove(SignalSubscription.this);
+                    subscriber.onError(failure);
+                    return;
+                } else if (item == null) {
+                    subscriber.onComplete();
+                    return;
+                }
+                subscriber.onNext(item.payload);
+            }
+        }
+    }
+}
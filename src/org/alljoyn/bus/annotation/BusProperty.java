@@ -48,4 +48,19 @@ public @interface BusProperty {
      * @see Signature
      */
     String signature() default "";
+
+    /**
+     * Whether the binding keeps the last value of the property and answers
+     * Get requests from it instead of calling the get method.  The value is
+     * read from the get method the first time it is needed and replaced
+     * whenever the property is announced with
+     * {@link org.alljoyn.bus.BusAttachment#emitChangedSignal}.  A remote Set
+     * discards it, since the set method may not store the value exactly as
+     * it was sent, so the next Get calls the get method again.  Use
+     * {@link org.alljoyn.bus.BusAttachment#invalidateCachedProperty} when the
+     * value changes without being announced.
+     *
+     * Annotating either accessor of a property makes it cached.
+     */
+    boolean cached() default false;
 }
\ No newline at end of file
@@ -73,4 +73,32 @@ public @interface BusSignalHandler {
      * paths.
      */
     String source() default "";
+
+    /**
+     * Conditions on the arguments of the signal, or unspecified to receive
+     * every instance of the signal.  The conditions use the syntax of a DBus
+     * match rule and are a comma separated list of:
+     * <ul>
+     * <li>{@code argN='value'}, which matches when string argument
+     * {@code N} is equal to {@code value}.
+     * <li>{@code argNpath='value'}, which matches when string or object
+     * path argument {@code N} is equal to {@code value}, or when one of the
+     * two ends in '/' and is a prefix of the other.
+     * </ul>
+     * For example {@code "arg0='status',arg1path='/fleet/'"}.  The
+     * conditions are checked before the signal is unmarshalled, so signals
+     * that do not match cost the handler very little.
+     */
+    String rule() default "";
+
+    /**
+     * Whether to also add {@link #rule()} to the match rules of the bus
+     * with {@link org.alljoyn.bus.BusAttachment#addMatch(String)}, so that
+     * signals that do not match are not routed to the BusAttachment at all.
+     * The match rule is removed when the handler is unregistered.  This only
+     * helps when no broader match rule for the signal has been added.  The
+     * conditions are still checked locally in case the bus does not support
+     * some of them.
+     */
+    boolean addMatch() default false;
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates how incoming method calls to a bus object are dispatched.
+ *
+ * The annotation may be placed on a bus interface or on the class
+ * implementing the BusObject.  An annotation on the interface takes
+ * precedence over an annotation on the class for the methods of that
+ * interface.  If neither is annotated the methods are called directly on the
+ * AllJoyn dispatcher thread as before.
+ *
+ * Valid value declarations are:
+ * <ol>
+ *   <li>Inline - methods are called on the AllJoyn dispatcher thread.</li>
+ *   <li>PerObject (default value) - methods are called on the bus
+ *   attachment's method dispatcher, one at a time per bus object in the
+ *   order they were received.</li>
+ *   <li>PerSession - methods are called on the bus attachment's method
+ *   dispatcher, one at a time per bus object and session in the order they
+ *   were received.  Calls arriving in different sessions may run
+ *   concurrently.</li>
+ *   <li>Parallel - methods are called on the bus attachment's method
+ *   dispatcher with no ordering guarantees.</li>
+ * </ol>
+ * @see org.alljoyn.bus.MethodDispatcher
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DispatchPolicy {
+
+    /** The ordering guarantees given to dispatched method calls. */
+    enum Ordering {
+
+        /** Call methods on the AllJoyn dispatcher thread. */
+        Inline,
+
+        /** Call methods one at a time per bus object. */
+        PerObject,
+
+        /** Call methods one at a time per bus object and session. */
+        PerSession,
+
+        /** Call methods concurrently. */
+        Parallel
+    }
+
+    Ordering value() default Ordering.PerObject;
+}
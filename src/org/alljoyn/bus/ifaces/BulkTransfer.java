@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus.ifaces;
+
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.annotation.BusInterface;
+import org.alljoyn.bus.annotation.BusMethod;
+import org.alljoyn.bus.annotation.DispatchPolicy;
+
+/**
+ * The interface used by {@link org.alljoyn.bus.BulkSender} to send data
+ * larger than a message to a {@link org.alljoyn.bus.BulkReceiver} in
+ * chunks.
+ *
+ * Chunks are method calls so that each one is acknowledged by its reply.
+ * The calls are dispatched in parallel so that several chunks may be in
+ * flight at once.
+ */
+@BusInterface(name = "org.alljoyn.bus.ifaces.BulkTransfer")
+@DispatchPolicy(DispatchPolicy.Ordering.Parallel)
+public interface BulkTransfer {
+
+    /**
+     * Starts or resumes a transfer.
+     *
+     * @param transferId the name of the transfer
+     * @param size the size of the data in bytes
+     * @param chunkSize the size of every chunk but the last
+     * @return the offset of the first chunk the receiver does not have
+     * @throws BusException if the receiver cannot take the transfer
+     */
+    @BusMethod(signature = "sxi", replySignature = "x")
+    long Begin(String transferId, long size, int chunkSize) throws BusException;
+
+    /**
+     * Sends a chunk of a transfer.  A chunk may be sent more than once.
+     *
+     * @param transferId the name of the transfer
+     * @param offset the offset of the chunk in the data
+     * @param data the chunk
+     * @throws BusException if the transfer is unknown or the chunk does not
+     *                      fit it
+     */
+    @BusMethod(signature = "sxay")
+    void Chunk(String transferId, long offset, byte[] data) throws BusException;
+
+    /**
+     * Completes a transfer once every chunk has been acknowledged.
+     *
+     * @param transferId the name of the transfer
+     * @throws BusException if the transfer is unknown or incomplete
+     */
+    @BusMethod(signature = "s")
+    void End(String transferId) throws BusException;
+}
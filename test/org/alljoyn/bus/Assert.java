@@ -82,4 +82,24 @@ public class Assert {
             assertEquals(expected[i], actual[i]);
         }
     }
+
+    /** A condition checked by {@link #waitForLambda(long, Lambda)}. */
+    public static class Lambda {
+        public boolean func() { return false; }
+    }
+
+    /**
+     * Waits until a condition holds, checking it every few milliseconds.
+     *
+     * @return true if the condition held within waitMs milliseconds
+     */
+    static boolean waitForLambda(long waitMs, Lambda expression) throws InterruptedException {
+        boolean ret = expression.func();
+        long endMs = System.currentTimeMillis() + waitMs;
+        while (!ret && (System.currentTimeMillis() <= endMs)) {
+            Thread.sleep(5);
+            ret = expression.func();
+        }
+        return ret;
+    }
 }
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BulkReceiver;
+import org.alljoyn.bus.BulkSender;
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.Status;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+
+public class BulkTransferTest extends TestCase {
+    public BulkTransferTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+    }
+
+    public void tearDown() throws Exception {
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    private static byte[] pattern(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return data;
+    }
+
+    private class Collector extends BulkReceiver.Listener {
+        public final AtomicLong progress = new AtomicLong();
+        public ByteBuffer buffer;
+        public File file;
+
+        public void progress(String transferId, long received, long size) {
+            progress.set(Math.max(progress.get(), received));
+        }
+
+        public void received(String transferId, ByteBuffer data) {
+            buffer = data;
+        }
+
+        public void received(String transferId, File file) {
+            this.file = file;
+        }
+    }
+
+    public void testBuffer() throws Exception {
+        Collector collector = new Collector();
+        BulkReceiver receiver = new BulkReceiver(collector);
+        assertEquals(Status.OK, bus.registerBusObject(receiver, "/bulk"));
+
+        final AtomicLong acknowledged = new AtomicLong();
+        BulkSender sender = new BulkSender(bus, bus.getUniqueName(), "/bulk");
+        sender.setWindow(4);
+        sender.setListener(new BulkSender.Listener() {
+                public void progress(String transferId, long ack, long size) {
+                    acknowledged.set(Math.max(acknowledged.get(), ack));
+                }
+            });
+
+        byte[] data = pattern(1000000);
+        sender.send(BusAttachment.SESSION_ID_ANY, "buffer", data);
+
+        assertNotNull(collector.buffer);
+        assertTrue(collector.buffer.isDirect());
+        assertEquals(data.length, collector.buffer.remaining());
+        byte[] received = new byte[data.length];
+        collector.buffer.get(received);
+        assertTrue(java.util.Arrays.equals(data, received));
+        assertEquals(data.length, collector.progress.get());
+        assertEquals(data.length, acknowledged.get());
+        assertEquals(-1, receiver.getReceived("buffer"));
+
+        bus.unregisterBusObject(receiver);
+    }
+
+    public void testFile() throws Exception {
+        File source = File.createTempFile("BulkTransferTest", null);
+        File directory = new File(source.getParentFile(), source.getName() + ".d");
+        assertTrue(directory.mkdir());
+        try {
+            byte[] data = pattern(300000);
+            FileOutputStream out = new FileOutputStream(source);
+            out.write(data);
+            out.close();
+
+            Collector collector = new Collector();
+            BulkReceiver receiver = new BulkReceiver(directory, collector);
+            assertEquals(Status.OK, bus.registerBusObject(receiver, "/bulk"));
+
+            BulkSender sender = new BulkSender(bus, bus.getUniqueName(), "/bulk");
+            sender.setChunkSize(10000);
+            sender.send(BusAttachment.SESSION_ID_ANY, "file.bin", source);
+
+            assertEquals(new File(directory, "file.bin"), collector.file);
+            assertEquals(data.length, collector.file.length());
+            byte[] received = new byte[data.length];
+            FileInputStream in = new FileInputStream(collector.file);
+            int n = 0;
+            while (n < received.length) {
+                n += in.read(received, n, received.length - n);
+            }
+            in.close();
+            assertTrue(java.util.Arrays.equals(data, received));
+
+            bus.unregisterBusObject(receiver);
+        } finally {
+            new File(directory, "file.bin").delete();
+            directory.delete();
+            source.delete();
+        }
+    }
+
+    public void testResume() throws Exception {
+        final AtomicInteger chunks = new AtomicInteger();
+        BulkReceiver receiver = new BulkReceiver(null) {
+                public void Chunk(String transferId, long offset, byte[] data) throws BusException {
+                    if (chunks.incrementAndGet() == 5) {
+                        throw new BusException("lost");
+                    }
+                    super.Chunk(transferId, offset, data);
+                }
+            };
+        assertEquals(Status.OK, bus.registerBusObject(receiver, "/bulk"));
+
+        BulkSender sender = new BulkSender(bus, bus.getUniqueName(), "/bulk");
+        sender.setChunkSize(1000);
+        sender.setWindow(1);
+        byte[] data = pattern(16000);
+        try {
+            sender.send(BusAttachment.SESSION_ID_ANY, "resume", data);
+            fail("expected BusException");
+        } catch (BusException ex) {
+        }
+        assertEquals(4000, receiver.getReceived("resume"));
+
+        /* Sending again picks up at the chunk that failed. */
+        sender.send(BusAttachment.SESSION_ID_ANY, "resume", data);
+        assertEquals(17, chunks.get());
+        assertEquals(-1, receiver.getReceived("resume"));
+
+        bus.unregisterBusObject(receiver);
+    }
+
+    public void testIncomplete() throws Exception {
+        BulkReceiver receiver = new BulkReceiver(null);
+        assertEquals(0, receiver.Begin("partial", 3000, 1000));
+        receiver.Chunk("partial", 0, new byte[1000]);
+        receiver.Chunk("partial", 2000, new byte[1000]);
+        assertEquals(1000, receiver.Begin("partial", 3000, 1000));
+        try {
+            receiver.End("partial");
+            fail("expected BusException");
+        } catch (BusException ex) {
+        }
+        try {
+            receiver.Chunk("partial", 500, new byte[1000]);
+            fail("expected BusException");
+        } catch (BusException ex) {
+        }
+        receiver.cancel("partial");
+        assertEquals(-1, receiver.getReceived("partial"));
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusAttachmentPool;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.annotation.BusSignalHandler;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class BusAttachmentPoolTest extends TestCase {
+    public BusAttachmentPoolTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final int SIZE = 3;
+
+    private BusAttachment bus;
+    private BusAttachmentPool pool;
+
+    public class Service implements SimpleInterface, EmitterInterface, BusObject {
+
+        public Set<String> senders = new HashSet<String>();
+        public CountDownLatch blocked;
+        public CountDownLatch entered;
+
+        private EmitterInterface emitter;
+
+        public Service() {
+            emitter = new SignalEmitter(this).getInterface(EmitterInterface.class);
+        }
+
+        public String Ping(String inStr) throws BusException {
+            synchronized (this) {
+                senders.add(bus.getMessageContext().sender);
+            }
+            CountDownLatch latch = blocked;
+            if (entered != null) {
+                entered.countDown();
+            }
+            if (latch != null) {
+                bus.enableConcurrentCallbacks();
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                }
+            }
+            return inStr;
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+    }
+
+    public class Handler {
+
+        public int received;
+        public CountDownLatch latch;
+
+        @BusSignalHandler(iface = "org.alljoyn.bus.EmitterInterface", signal = "Emit")
+        public void Emit(String string) {
+            CountDownLatch l;
+            synchronized (this) {
+                ++received;
+                l = latch;
+            }
+            if (l != null) {
+                l.countDown();
+            }
+        }
+
+        public synchronized CountDownLatch expect(int count) {
+            latch = new CountDownLatch(count);
+            return latch;
+        }
+
+        public synchronized int getReceived() {
+            return received;
+        }
+    }
+
+    private Service service;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+        service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+    }
+
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.disconnect();
+            pool.release();
+            pool = null;
+        }
+        bus.unregisterBusObject(service);
+        service = null;
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public void testRoundRobin() throws Exception {
+        pool = new BusAttachmentPool(getClass().getName(), SIZE);
+        assertEquals(Status.OK, pool.connect());
+        SimpleInterface proxy = pool.getProxy(bus.getUniqueName(), "/service", BusAttachment.SESSION_ID_ANY,
+                                              SimpleInterface.class);
+        for (int i = 0; i < SIZE; ++i) {
+            assertEquals("ping", proxy.Ping("ping"));
+        }
+
+        Set<String> expected = new HashSet<String>();
+        for (BusAttachment pooled : pool.getBusAttachments()) {
+            expected.add(pooled.getUniqueName());
+        }
+        assertEquals(expected, service.senders);
+    }
+
+    public void testLeastOutstanding() throws Exception {
+        pool = new BusAttachmentPool(getClass().getName(), BusAttachment.RemoteMessage.Ignore, 2,
+                                     BusAttachmentPool.Balancing.LeastOutstanding);
+        assertEquals(Status.OK, pool.connect());
+        final SimpleInterface proxy = pool.getProxy(bus.getUniqueName(), "/service",
+                                                    BusAttachment.SESSION_ID_ANY, SimpleInterface.class);
+
+        /* A blocked call holds one attachment, so the next calls all go to the other one. */
+        CountDownLatch blocked = new CountDownLatch(1);
+        service.blocked = blocked;
+        service.entered = new CountDownLatch(1);
+        Thread caller = new Thread() {
+            public void run() {
+                try {
+                    proxy.Ping("blocked");
+                } catch (BusException ex) {
+                }
+            }
+        };
+        caller.start();
+        assertTrue(service.entered.await(5, TimeUnit.SECONDS));
+        int busy = (pool.getOutstandingCount(0) == 1) ? 0 : 1;
+        assertEquals(1, pool.getOutstandingCount(busy));
+
+        service.blocked = null;
+        synchronized (service) {
+            service.senders.clear();
+        }
+        for (int i = 0; i < 4; ++i) {
+            assertEquals("ping", proxy.Ping("ping"));
+        }
+        assertEquals(1, service.senders.size());
+        assertTrue(service.senders.contains(pool.getBusAttachments().get(1 - busy).getUniqueName()));
+
+        service.entered = null;
+        blocked.countDown();
+        caller.join(5000);
+    }
+
+    public void testSignalsOnce() throws Exception {
+        pool = new BusAttachmentPool(getClass().getName(), SIZE);
+        assertEquals(Status.OK, pool.connect());
+        String rule = "type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'";
+        assertEquals(Status.OK, pool.addMatch(rule));
+        assertEquals(Status.OK, pool.addMatch(rule));
+
+        Handler handler = new Handler();
+        assertEquals(Status.OK, pool.registerSignalHandlers(handler));
+        assertEquals(Status.OK, pool.registerSignalHandlers(handler));
+
+        /* A second handler shows when a signal has been handled. */
+        Handler sentinel = new Handler();
+        assertEquals(Status.OK, pool.registerSignalHandlers(sentinel));
+
+        CountDownLatch handled = handler.expect(1);
+        CountDownLatch done = sentinel.expect(1);
+        service.Emit("one");
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, handler.getReceived());
+
+        /* Still registered until unregistered as often as registered */
+        pool.unregisterSignalHandlers(handler);
+        handled = handler.expect(1);
+        done = sentinel.expect(1);
+        service.Emit("two");
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, handler.getReceived());
+
+        pool.unregisterSignalHandlers(handler);
+        done = sentinel.expect(1);
+        service.Emit("three");
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, handler.getReceived());
+        pool.unregisterSignalHandlers(sentinel);
+
+        assertEquals(Status.OK, pool.removeMatch(rule));
+        assertEquals(Status.OK, pool.removeMatch(rule));
+        assertEquals(Status.FAIL, pool.removeMatch(rule));
+    }
+
+    public void testBroadcastReceivedByEveryAttachment() throws Exception {
+        pool = new BusAttachmentPool(getClass().getName(), SIZE);
+        assertEquals(Status.OK, pool.connect());
+
+        /*
+         * The rule is added to each attachment behind the pool's back, so the
+         * broadcast signal reaches all of them.  The sentinel, registered
+         * with each attachment directly, shows when it has.
+         */
+        String rule = "type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'";
+        Handler sentinel = new Handler();
+        for (BusAttachment pooled : pool.getBusAttachments()) {
+            assertEquals(Status.OK, pooled.addMatch(rule));
+            assertEquals(Status.OK, pooled.registerSignalHandlers(sentinel));
+        }
+        Handler handler = new Handler();
+        assertEquals(Status.OK, pool.registerSignalHandlers(handler));
+
+        CountDownLatch handled = handler.expect(1);
+        CountDownLatch done = sentinel.expect(SIZE);
+        service.Emit("one");
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(SIZE, sentinel.getReceived());
+        assertEquals(1, handler.getReceived());
+
+        pool.unregisterSignalHandlers(handler);
+        for (BusAttachment pooled : pool.getBusAttachments()) {
+            pooled.unregisterSignalHandlers(sentinel);
+            assertEquals(Status.OK, pooled.removeMatch(rule));
+        }
+    }
+}
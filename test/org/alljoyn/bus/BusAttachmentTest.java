@@ -17,6 +17,8 @@
 package org.alljoyn.bus;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -344,6 +346,132 @@ public class BusAttachmentTest extends TestCase {
         assertEquals(Status.OK, status);
     }
 
+    public class RuleSignalHandlers {
+        public int equal;
+        public int path;
+
+        @BusSignalHandler(iface = "org.alljoyn.bus.EmitterInterface", signal = "Emit", rule = "arg0='emit1'")
+        public void equalHandler(String string) throws BusException {
+            ++equal;
+        }
+
+        @BusSignalHandler(iface = "org.alljoyn.bus.EmitterInterface", signal = "Emit", rule = "arg0path='/fleet/'")
+        public void pathHandler(String string) throws BusException {
+            ++path;
+        }
+    }
+
+    public synchronized void testRegisterSignalHandlerRule() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        Status status = bus.connect();
+        assertEquals(Status.OK, status);
+
+        Emitter emitter = new Emitter();
+        status = bus.registerBusObject(emitter, "/emitter");
+        assertEquals(Status.OK, status);
+
+        RuleSignalHandlers handlers = new RuleSignalHandlers();
+        status = bus.registerSignalHandlers(handlers);
+        assertEquals(Status.OK, status);
+        status = bus.addMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'");
+        assertEquals(Status.OK, status);
+
+        emitter.Emit("emit1");
+        emitter.Emit("emit2");
+        emitter.Emit("/fleet/a");
+        emitter.Emit("/fleet");
+        emitter.Emit("/fleetx/");
+        emitter.Emit("/");
+        this.wait(500);
+        assertEquals(1, handlers.equal);
+        assertEquals(2, handlers.path);
+
+        bus.unregisterSignalHandlers(handlers);
+        status = bus.removeMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'");
+        assertEquals(Status.OK, status);
+    }
+
+    public synchronized void testRegisterSignalHandlerAddMatch() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        Status status = bus.connect();
+        assertEquals(Status.OK, status);
+
+        Emitter emitter = new Emitter();
+        status = bus.registerBusObject(emitter, "/emitter");
+        assertEquals(Status.OK, status);
+
+        /* No other match rule, so the signal arrives only through the handler's rule. */
+        status = bus.registerSignalHandler("org.alljoyn.bus.EmitterInterface", "Emit",
+                this, getClass().getMethod("signalHandler1", String.class),
+                "", "arg0='emit1'", true, null);
+        assertEquals(Status.OK, status);
+        handledSignals1 = 0;
+        emitter.Emit("emit1");
+        emitter.Emit("emit2");
+        this.wait(500);
+        assertEquals(1, handledSignals1);
+
+        bus.unregisterSignalHandler(this, getClass().getMethod("signalHandler1", String.class));
+        handledSignals1 = 0;
+        emitter.Emit("emit1");
+        this.wait(500);
+        assertEquals(0, handledSignals1);
+
+        status = bus.registerSignalHandler("org.alljoyn.bus.EmitterInterface", "Emit",
+                this, getClass().getMethod("signalHandler1", String.class),
+                "", "arg0=emit1", false, null);
+        assertEquals(Status.BUS_BAD_VALUE, status);
+    }
+
+    public class CountingSignalHandler {
+        @BusSignalHandler(iface = "org.alljoyn.bus.EmitterInterface", signal = "Emit")
+        public void emit(String string) throws BusException {
+            synchronized (BusAttachmentTest.this) {
+                ++handledSignals2;
+            }
+        }
+    }
+
+    public synchronized void testRegisterSignalHandlersCollection() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        Status status = bus.connect();
+        assertEquals(Status.OK, status);
+
+        Emitter emitter = new Emitter();
+        status = bus.registerBusObject(emitter, "/emitter");
+        assertEquals(Status.OK, status);
+
+        List<CountingSignalHandler> handlers = new ArrayList<CountingSignalHandler>();
+        for (int i = 0; i < 100; ++i) {
+            handlers.add(new CountingSignalHandler());
+        }
+        status = bus.registerSignalHandlers(handlers);
+        assertEquals(Status.OK, status);
+        status = bus.addMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'");
+        assertEquals(Status.OK, status);
+
+        handledSignals2 = 0;
+        emitter.Emit("emit1");
+        this.wait(500);
+        assertEquals(100, handledSignals2);
+
+        /* Unregister one handler, then the rest. */
+        bus.unregisterSignalHandlers(handlers.remove(0));
+        handledSignals2 = 0;
+        emitter.Emit("emit1");
+        this.wait(500);
+        assertEquals(99, handledSignals2);
+
+        bus.unregisterSignalHandlers(handlers);
+        handledSignals2 = 0;
+        emitter.Emit("emit1");
+        this.wait(500);
+        assertEquals(0, handledSignals2);
+
+        status = bus.removeMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'");
+        assertEquals(Status.OK, status);
+    }
+
     private void signalHandler3(String string) throws BusException {
         ++handledSignals3;
     }
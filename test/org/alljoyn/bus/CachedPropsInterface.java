@@ -0,0 +1,35 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.annotation.BusInterface;
+import org.alljoyn.bus.annotation.BusProperty;
+
+/**
+ * CachedPropsInterface has a read/write property whose value is cached by
+ * the binding.
+ */
+@BusInterface(name = "org.alljoyn.bus.CachedPropsInterface")
+public interface CachedPropsInterface {
+
+    @BusProperty(cached = true)
+    public int getLevel() throws BusException;
+
+    @BusProperty
+    public void setLevel(int level) throws BusException;
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusListener;
+import org.alljoyn.bus.Mutable;
+import org.alljoyn.bus.SessionListener;
+import org.alljoyn.bus.SessionOpts;
+import org.alljoyn.bus.SessionPortListener;
+import org.alljoyn.bus.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class CallbackExecutorTest extends TestCase {
+    public CallbackExecutorTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final short PORT = 42;
+
+    private String name;
+    private BusAttachment host;
+    private BusAttachment bus;
+    private ExecutorService executor;
+
+    public void setUp() throws Exception {
+        name = "org.alljoyn.bus.CallbackExecutorTest.advertise";
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "CallbackExecutorTest");
+                }
+            });
+
+        host = new BusAttachment(getClass().getName(), BusAttachment.RemoteMessage.Receive);
+        assertEquals(Status.OK, host.connect());
+        SessionOpts sessionOpts = new SessionOpts();
+        sessionOpts.transports = SessionOpts.TRANSPORT_ANY;
+        assertEquals(Status.OK, host.bindSessionPort(new Mutable.ShortValue(PORT), sessionOpts,
+                                                     new SessionPortListener() {
+                                                         public boolean acceptSessionJoiner(short sessionPort,
+                                                                                            String joiner,
+                                                                                            SessionOpts opts) {
+                                                             return true;
+                                                         }
+                                                     }));
+
+        bus = new BusAttachment(getClass().getName(), BusAttachment.RemoteMessage.Receive);
+        bus.setCallbackExecutor(executor);
+        assertEquals(Status.OK, bus.connect());
+    }
+
+    public void tearDown() throws Exception {
+        bus.disconnect();
+        bus.release();
+        bus = null;
+        host.disconnect();
+        host.release();
+        host = null;
+        executor.shutdown();
+        executor = null;
+    }
+
+    private void advertise() {
+        int flag = BusAttachment.ALLJOYN_REQUESTNAME_FLAG_REPLACE_EXISTING
+            | BusAttachment.ALLJOYN_REQUESTNAME_FLAG_DO_NOT_QUEUE;
+        assertEquals(Status.OK, host.requestName(name, flag));
+        assertEquals(Status.OK, host.advertiseName(name, SessionOpts.TRANSPORT_ANY));
+    }
+
+    /*
+     * joinSession() blocks until the daemon replies.  Called from a listener
+     * on an AllJoyn thread without enableConcurrentCallbacks() it would wait
+     * for a reply that thread has to deliver.
+     */
+    public void testJoinSessionFromFoundAdvertisedName() throws Exception {
+        final CountDownLatch joined = new CountDownLatch(1);
+        final Status[] status = new Status[1];
+        final String[] thread = new String[1];
+        bus.registerBusListener(new BusListener() {
+                public void foundAdvertisedName(String name, short transport, String namePrefix) {
+                    thread[0] = Thread.currentThread().getName();
+                    status[0] = bus.joinSession(name, PORT, new Mutable.IntegerValue(), new SessionOpts(),
+                                                new SessionListener());
+                    joined.countDown();
+                }
+            });
+        assertEquals(Status.OK, bus.findAdvertisedName(name));
+        advertise();
+
+        assertTrue(joined.await(10, TimeUnit.SECONDS));
+        assertEquals(Status.OK, status[0]);
+        assertEquals("CallbackExecutorTest", thread[0]);
+        assertEquals(Status.OK, bus.cancelFindAdvertisedName(name));
+    }
+
+    public void testCallbackOrder() throws Exception {
+        final List<String> callbacks = new ArrayList<String>();
+        final CountDownLatch found = new CountDownLatch(1);
+        final CountDownLatch unregistered = new CountDownLatch(1);
+        final Thread registering = Thread.currentThread();
+        BusListener listener = new BusListener() {
+                public void listenerRegistered(BusAttachment bus) {
+                    synchronized (callbacks) {
+                        callbacks.add("registered" + (Thread.currentThread() == registering ? "" : " elsewhere"));
+                    }
+                }
+
+                public void foundAdvertisedName(String name, short transport, String namePrefix) {
+                    try {
+                        /* Later callbacks must wait for this one. */
+                        Thread.sleep(500);
+                    } catch (InterruptedException ex) {
+                    }
+                    synchronized (callbacks) {
+                        callbacks.add("found");
+                    }
+                    found.countDown();
+                }
+
+                public void listenerUnregistered() {
+                    synchronized (callbacks) {
+                        callbacks.add("unregistered");
+                    }
+                    unregistered.countDown();
+                }
+            };
+        bus.registerBusListener(listener);
+        assertEquals(Status.OK, bus.findAdvertisedName(name));
+        advertise();
+
+        assertTrue(found.await(10, TimeUnit.SECONDS));
+        bus.unregisterBusListener(listener);
+        assertTrue(unregistered.await(10, TimeUnit.SECONDS));
+        assertEquals(Status.OK, bus.cancelFindAdvertisedName(name));
+
+        synchronized (callbacks) {
+            assertEquals("registered", callbacks.get(0));
+            assertEquals("found", callbacks.get(1));
+            assertEquals("unregistered", callbacks.get(callbacks.size() - 1));
+        }
+    }
+
+    /* Each registration of a listener is undone by one unregistration. */
+    public void testRegisterTwice() throws Exception {
+        final CountDownLatch unregistered = new CountDownLatch(1);
+        BusListener listener = new BusListener() {
+                public void listenerUnregistered() {
+                    unregistered.countDown();
+                }
+            };
+        bus.registerBusListener(listener);
+        bus.registerBusListener(listener);
+        bus.unregisterBusListener(listener);
+        bus.unregisterBusListener(listener);
+        assertTrue(unregistered.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.ConflatingSignalEmitter;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class ConflatingSignalEmitterTest extends TestCase {
+    public ConflatingSignalEmitterTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+
+    public class Emitter implements EmitterInterface, BusObject {
+
+        public void Emit(String string) throws BusException {
+        }
+    }
+
+    private Emitter emitter;
+    private List<String> received;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+
+        emitter = new Emitter();
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        assertEquals(Status.OK, bus.registerSignalHandler("org.alljoyn.bus.EmitterInterface", "Emit",
+                                                          this, getClass().getMethod("signalHandler",
+                                                                                     String.class)));
+        received = new ArrayList<String>();
+    }
+
+    public void tearDown() throws Exception {
+        bus.unregisterSignalHandler(this, getClass().getMethod("signalHandler", String.class));
+        bus.unregisterBusObject(emitter);
+        emitter = null;
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public synchronized void signalHandler(String string) {
+        received.add(string);
+    }
+
+    private synchronized int getReceivedCount() {
+        return received.size();
+    }
+
+    private void waitFor(final int count) throws Exception {
+        assertTrue("timed out after " + getReceivedCount() + " signals", waitForLambda(5000, new Lambda() {
+                public boolean func() { return getReceivedCount() >= count; }
+            }));
+    }
+
+    public void testLatestValueWins() throws Exception {
+        ConflatingSignalEmitter conflating =
+            new ConflatingSignalEmitter(new SignalEmitter(emitter), ConflatingSignalEmitter.NO_KEY_ARGUMENT,
+                                        0, TimeUnit.MILLISECONDS);
+        EmitterInterface intf = conflating.getInterface(EmitterInterface.class);
+        intf.Emit("one");
+        intf.Emit("two");
+        intf.Emit("three");
+        assertEquals(1, conflating.getPendingCount());
+        assertEquals(3, conflating.getUpdateCount());
+        assertEquals(2, conflating.getConflatedCount());
+
+        assertEquals(Status.OK, conflating.flush());
+        assertEquals(0, conflating.getPendingCount());
+        assertEquals(1, conflating.getSentCount());
+        waitFor(1);
+        synchronized (this) {
+            assertEquals("three", received.get(0));
+        }
+    }
+
+    public void testKeyArgument() throws Exception {
+        ConflatingSignalEmitter conflating =
+            new ConflatingSignalEmitter(new SignalEmitter(emitter), 0, 0, TimeUnit.MILLISECONDS);
+        EmitterInterface intf = conflating.getInterface(EmitterInterface.class);
+        intf.Emit("a");
+        intf.Emit("b");
+        intf.Emit("a");
+        assertEquals(2, conflating.getPendingCount());
+        assertEquals(1, conflating.getConflatedCount());
+
+        assertEquals(Status.OK, conflating.close());
+        waitFor(2);
+    }
+
+    public void testFlushInterval() throws Exception {
+        ConflatingSignalEmitter conflating =
+            new ConflatingSignalEmitter(new SignalEmitter(emitter), ConflatingSignalEmitter.NO_KEY_ARGUMENT,
+                                        10, TimeUnit.MILLISECONDS);
+        EmitterInterface intf = conflating.getInterface(EmitterInterface.class);
+        intf.Emit("interval");
+        waitFor(1);
+        assertEquals(0, conflating.getPendingCount());
+        conflating.close();
+    }
+
+    public void testFlushFailure() throws Exception {
+        ConflatingSignalEmitter conflating =
+            new ConflatingSignalEmitter(new SignalEmitter(emitter), ConflatingSignalEmitter.NO_KEY_ARGUMENT,
+                                        0, TimeUnit.MILLISECONDS);
+        EmitterInterface intf = conflating.getInterface(EmitterInterface.class);
+        intf.Emit("older");
+        bus.unregisterBusObject(emitter);
+        try {
+            conflating.flush();
+            fail("flush succeeded for an unregistered bus object");
+        } catch (BusException ex) {
+        }
+
+        /* The update is kept for the next flush, and a newer one replaces it. */
+        assertEquals(1, conflating.getPendingCount());
+        assertEquals(0, conflating.getSentCount());
+        intf.Emit("newer");
+        assertEquals(1, conflating.getPendingCount());
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        assertEquals(Status.OK, conflating.flush());
+        waitFor(1);
+        synchronized (this) {
+            assertEquals("newer", received.get(0));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.DeferredReply;
+import org.alljoyn.bus.annotation.BusInterface;
+import org.alljoyn.bus.annotation.BusMethod;
+
+@BusInterface
+public interface DeferredReplyInterface {
+
+    @BusMethod
+    public DeferredReply<String> Ping(String inStr) throws BusException;
+
+    @BusMethod
+    public DeferredReply<String> Fail(String errorName) throws BusException;
+
+    @BusMethod
+    public DeferredReply<Integer> Immediate(int value) throws BusException;
+
+    @BusMethod
+    public DeferredReply<String> Abandon(String inStr) throws BusException;
+}
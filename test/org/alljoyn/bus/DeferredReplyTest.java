@@ -0,0 +1,166 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.DeferredReply;
+import org.alljoyn.bus.ErrorReplyBusException;
+import org.alljoyn.bus.ProxyBusObject;
+import org.alljoyn.bus.Status;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+public class DeferredReplyTest extends TestCase {
+    public DeferredReplyTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+    private ExecutorService executor;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        Status status = bus.connect();
+        assertEquals(Status.OK, status);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public class Service implements DeferredReplyInterface, BusObject {
+
+        public DeferredReply<String> Ping(final String inStr) {
+            final DeferredReply<String> reply = new DeferredReply<String>();
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ex) {
+                    }
+                    reply.complete(inStr);
+                }
+            });
+            return reply;
+        }
+
+        public DeferredReply<String> Fail(final String errorName) {
+            final DeferredReply<String> reply = new DeferredReply<String>();
+            executor.execute(new Runnable() {
+                public void run() {
+                    reply.completeExceptionally(new ErrorReplyBusException(errorName, "deferred"));
+                }
+            });
+            return reply;
+        }
+
+        public DeferredReply<Integer> Immediate(int value) {
+            DeferredReply<Integer> reply = new DeferredReply<Integer>();
+            reply.complete(value);
+            return reply;
+        }
+
+        public DeferredReply<String> Abandon(String inStr) {
+            return new DeferredReply<String>();
+        }
+    }
+
+    private DeferredReplyInterface getProxy() {
+        ProxyBusObject remoteObj = bus.getProxyBusObject(bus.getUniqueName(), "/deferred",
+                                                         BusAttachment.SESSION_ID_ANY,
+                                                         new Class<?>[] { DeferredReplyInterface.class });
+        return remoteObj.getInterface(DeferredReplyInterface.class);
+    }
+
+    public void testDeferred() throws Exception {
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/deferred"));
+
+        DeferredReply<String> reply = getProxy().Ping("deferred");
+        assertTrue(reply.isDone());
+        assertEquals("deferred", reply.get());
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testCompletedBeforeReturn() throws Exception {
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/deferred"));
+
+        assertEquals(Integer.valueOf(42), getProxy().Immediate(42).get());
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testErrorReply() throws Exception {
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/deferred"));
+
+        try {
+            getProxy().Fail("org.alljoyn.bus.DeferredReplyTest.Error");
+            fail("expected error reply");
+        } catch (ErrorReplyBusException ex) {
+            assertEquals("org.alljoyn.bus.DeferredReplyTest.Error", ex.getErrorName());
+            assertEquals("deferred", ex.getErrorMessage());
+        }
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testAbandoned() throws Exception {
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/deferred"));
+
+        /* Collect the dropped DeferredReply while the call is waiting for its reply. */
+        Thread collector = new Thread() {
+                public void run() {
+                    while (!isInterrupted()) {
+                        System.gc();
+                        System.runFinalization();
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                }
+            };
+        collector.start();
+        try {
+            getProxy().Abandon("abandoned");
+            fail("expected error reply");
+        } catch (BusException ex) {
+        } finally {
+            collector.interrupt();
+            collector.join();
+        }
+
+        bus.unregisterBusObject(service);
+    }
+}
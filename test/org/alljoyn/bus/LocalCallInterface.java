@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import java.util.Map;
+
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.annotation.BusInterface;
+import org.alljoyn.bus.annotation.BusMethod;
+
+/**
+ * LocalCallInterface has methods whose behavior must be the same whether
+ * they are called through the bus or directly on a local bus object.
+ */
+@BusInterface(name = "org.alljoyn.bus.LocalCallInterface")
+public interface LocalCallInterface {
+
+    @BusMethod
+    public int[] Reverse(int[] values) throws BusException;
+
+    @BusMethod
+    public Map<String, Integer> Count(String[] words) throws BusException;
+
+    @BusMethod
+    public String Context() throws BusException;
+
+    @BusMethod
+    public void Fail(String errorName) throws BusException;
+}
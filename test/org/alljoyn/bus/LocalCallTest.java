@@ -0,0 +1,252 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.ErrorReplyBusException;
+import org.alljoyn.bus.MessageContext;
+import org.alljoyn.bus.ProxyBusObject;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.SignalHandlerQueue;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.annotation.BusSignalHandler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class LocalCallTest extends TestCase {
+    public LocalCallTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+
+    public class Service implements LocalCallInterface, BusObject {
+
+        public int[] lastValues;
+        public Map<String, Integer> lastCounts;
+        public Thread thread;
+
+        public int[] Reverse(int[] values) {
+            thread = Thread.currentThread();
+            for (int i = 0, j = values.length - 1; i < j; ++i, --j) {
+                int value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+            lastValues = values;
+            return values;
+        }
+
+        public Map<String, Integer> Count(String[] words) {
+            if (words.length == 0) {
+                return null;
+            }
+            Map<String, Integer> counts = new HashMap<String, Integer>();
+            for (String word : words) {
+                counts.put(word, counts.containsKey(word) ? counts.get(word) + 1 : 1);
+            }
+            lastCounts = counts;
+            return counts;
+        }
+
+        public String Context() {
+            MessageContext context = bus.getMessageContext();
+            return context.objectPath + " " + context.interfaceName + " " + context.memberName + " "
+                + context.sender + " " + context.destination + " '" + context.signature + "' "
+                + context.sessionId;
+        }
+
+        public void Fail(String errorName) throws BusException {
+            if (errorName.length() == 0) {
+                throw new BusException("plain");
+            } else if (errorName.equals("status")) {
+                throw new ErrorReplyBusException(Status.BUS_OBJ_ALREADY_EXISTS);
+            } else if (errorName.equals("runtime")) {
+                throw new IllegalStateException("runtime");
+            }
+            throw new ErrorReplyBusException(errorName, "failed");
+        }
+    }
+
+    private Service service;
+    private ProxyBusObject localObj;
+    private ProxyBusObject busObj;
+    private LocalCallInterface local;
+    private LocalCallInterface remote;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+        service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/local"));
+        localObj = bus.getProxyBusObject(bus.getUniqueName(), "/local", BusAttachment.SESSION_ID_ANY,
+                                         new Class<?>[] { LocalCallInterface.class });
+        local = localObj.getInterface(LocalCallInterface.class);
+        busObj = bus.getProxyBusObject(bus.getUniqueName(), "/local", BusAttachment.SESSION_ID_ANY,
+                                       new Class<?>[] { LocalCallInterface.class });
+        busObj.setLocalCalls(false);
+        remote = busObj.getInterface(LocalCallInterface.class);
+    }
+
+    public void tearDown() throws Exception {
+        bus.unregisterBusObject(service);
+        service = null;
+        localObj.release();
+        busObj.release();
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public void testDirectCall() throws Exception {
+        local.Reverse(new int[] { 1 });
+        assertSame(Thread.currentThread(), service.thread);
+        remote.Reverse(new int[] { 1 });
+        assertNotSame(Thread.currentThread(), service.thread);
+    }
+
+    public void testCopies() throws Exception {
+        int[] values = new int[] { 1, 2, 3 };
+        int[] reversed = local.Reverse(values);
+        assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, values));
+        assertTrue(Arrays.equals(new int[] { 3, 2, 1 }, reversed));
+        assertNotSame(service.lastValues, reversed);
+        assertTrue(Arrays.equals(remote.Reverse(values), reversed));
+
+        Map<String, Integer> counts = local.Count(new String[] { "a", "b", "a" });
+        assertEquals(2, (int) counts.get("a"));
+        assertEquals(1, (int) counts.get("b"));
+        assertNotSame(service.lastCounts, counts);
+        assertEquals(remote.Count(new String[] { "a", "b", "a" }), counts);
+    }
+
+    public void testMessageContext() throws Exception {
+        assertEquals(remote.Context(), local.Context());
+        assertNull(bus.getMessageContext());
+    }
+
+    public class Emitter implements EmitterInterface, BusObject {
+
+        private EmitterInterface emitter;
+
+        public Emitter() {
+            emitter = new SignalEmitter(this).getInterface(EmitterInterface.class);
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+    }
+
+    public class Handler {
+
+        public String called;
+        public String after;
+        public CountDownLatch done = new CountDownLatch(1);
+
+        @BusSignalHandler(iface = "org.alljoyn.bus.EmitterInterface", signal = "Emit")
+        public void Emit(String string) throws BusException {
+            called = local.Context();
+            after = bus.getMessageContext().memberName;
+            done.countDown();
+        }
+    }
+
+    /* A local call made by a queued signal handler sees its own context, then the signal's again. */
+    public void testMessageContextInSignalHandler() throws Exception {
+        Emitter emitter = new Emitter();
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SignalHandlerQueue queue = new SignalHandlerQueue(executor, 16, SignalHandlerQueue.Overflow.Block);
+            Handler handler = new Handler();
+            assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+            emitter.Emit("context");
+            assertTrue(handler.done.await(5, TimeUnit.SECONDS));
+            assertEquals(remote.Context(), handler.called);
+            assertEquals("Emit", handler.after);
+            bus.unregisterSignalHandlers(handler);
+        } finally {
+            executor.shutdown();
+            bus.unregisterBusObject(emitter);
+        }
+    }
+
+    private BusException fail(LocalCallInterface proxy, String errorName) {
+        try {
+            proxy.Fail(errorName);
+        } catch (BusException ex) {
+            return ex;
+        }
+        fail("expected BusException");
+        return null;
+    }
+
+    public void testErrors() throws Exception {
+        for (String errorName : new String[] { "org.alljoyn.bus.LocalCallTest.Error", "", "status", "runtime" }) {
+            BusException expected = fail(remote, errorName);
+            BusException actual = fail(local, errorName);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getMessage(), actual.getMessage());
+            if (expected instanceof ErrorReplyBusException) {
+                assertEquals(((ErrorReplyBusException) expected).getErrorName(),
+                             ((ErrorReplyBusException) actual).getErrorName());
+                assertEquals(((ErrorReplyBusException) expected).getErrorMessage(),
+                             ((ErrorReplyBusException) actual).getErrorMessage());
+            }
+        }
+    }
+
+    public void testNullReply() throws Exception {
+        String expected = null;
+        try {
+            remote.Count(new String[0]);
+            fail("expected BusException");
+        } catch (BusException ex) {
+            expected = ex.getMessage();
+        }
+        try {
+            local.Count(new String[0]);
+            fail("expected BusException");
+        } catch (BusException ex) {
+            assertEquals(expected, ex.getMessage());
+        }
+    }
+
+    public void testUnregistered() throws Exception {
+        bus.unregisterBusObject(service);
+        try {
+            local.Reverse(new int[] { 1 });
+            fail("expected BusException");
+        } catch (BusException ex) {
+        }
+        assertEquals(Status.OK, bus.registerBusObject(service, "/local"));
+    }
+}
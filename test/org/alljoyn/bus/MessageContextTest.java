@@ -0,0 +1,169 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.ProxyBusObject;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.annotation.DispatchPolicy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class MessageContextTest extends TestCase {
+    public MessageContextTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final int THREADS = 16;
+    private static final int CALLS = 500;
+
+    private BusAttachment bus;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        Status status = bus.connect();
+        assertEquals(Status.OK, status);
+    }
+
+    public void tearDown() throws Exception {
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public class Service implements SimpleInterface, BusObject {
+
+        public MessageContext populated;
+        public MessageContext lazy;
+
+        public String Ping(String inStr) {
+            populated = bus.getMessageContext();
+            lazy = bus.getMessageContext(false);
+            return inStr;
+        }
+    }
+
+    /* Handles calls concurrently, reading only the sender of each call. */
+    @DispatchPolicy(DispatchPolicy.Ordering.Parallel)
+    public class ParallelService implements SimpleInterface, BusObject {
+
+        public AtomicInteger missing = new AtomicInteger();
+        public AtomicInteger handled = new AtomicInteger();
+
+        public String Ping(String inStr) {
+            MessageContext context = bus.getMessageContext(false);
+            if (context == null || !bus.getUniqueName().equals(context.getSender())
+                || !"Ping".equals(context.getMemberName())) {
+                missing.incrementAndGet();
+            }
+            handled.incrementAndGet();
+            return inStr;
+        }
+    }
+
+    private SimpleInterface getProxy(String path) {
+        ProxyBusObject remoteObj = bus.getProxyBusObject(bus.getUniqueName(), path,
+                                                         BusAttachment.SESSION_ID_ANY,
+                                                         new Class<?>[] { SimpleInterface.class });
+        return remoteObj.getInterface(SimpleInterface.class);
+    }
+
+    public void testNoContext() throws Exception {
+        assertNull(bus.getMessageContext());
+    }
+
+    public void testLazyContext() throws Exception {
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+        assertEquals("ping", getProxy("/service").Ping("ping"));
+
+        assertEquals("/service", service.populated.objectPath);
+        assertEquals("org.alljoyn.bus.SimpleInterface", service.populated.interfaceName);
+        assertEquals("Ping", service.populated.memberName);
+        assertEquals(bus.getUniqueName(), service.populated.sender);
+        assertEquals("s", service.populated.signature);
+
+        /* Only the cheap fields are set until the getters are called. */
+        assertNull(service.lazy.objectPath);
+        assertNull(service.lazy.sender);
+        assertEquals(service.populated.sessionId, service.lazy.sessionId);
+        assertEquals(service.populated.serial, service.lazy.serial);
+        assertEquals(service.populated.isUnreliable, service.lazy.isUnreliable);
+
+        /* The getters still work once the method has returned. */
+        assertEquals("/service", service.lazy.getObjectPath());
+        assertEquals("/service", service.lazy.objectPath);
+        assertEquals("org.alljoyn.bus.SimpleInterface", service.lazy.getInterfaceName());
+        assertEquals("Ping", service.lazy.getMemberName());
+        assertEquals(service.populated.destination, service.lazy.getDestination());
+        assertEquals(bus.getUniqueName(), service.lazy.getSender());
+        assertEquals("s", service.lazy.getSignature());
+        assertEquals(service.populated.authMechanism, service.lazy.getAuthMechanism());
+
+        bus.unregisterBusObject(service);
+    }
+
+    /*
+     * Checks that every call gets its own message context when many threads
+     * handle calls and read their message context at the same time.
+     */
+    public void testConcurrentCallbacks() throws Exception {
+        ParallelService service = new ParallelService();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/parallel"));
+
+        final SimpleInterface proxy = getProxy("/parallel");
+        final AtomicInteger failed = new AtomicInteger();
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; ++i) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < CALLS; ++j) {
+                        String ping = "ping " + thread + " " + j;
+                        try {
+                            if (!ping.equals(proxy.Ping(ping))) {
+                                failed.incrementAndGet();
+                            }
+                        } catch (BusException ex) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failed.get());
+        assertEquals(0, service.missing.get());
+        assertEquals(THREADS * CALLS, service.handled.get());
+
+        bus.unregisterBusObject(service);
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.ProxyBusObject;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.annotation.DispatchPolicy;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class MethodDispatcherTest extends TestCase {
+    public MethodDispatcherTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        Status status = bus.connect();
+        assertEquals(Status.OK, status);
+    }
+
+    public void tearDown() throws Exception {
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    @DispatchPolicy(DispatchPolicy.Ordering.PerObject)
+    public class Service implements SimpleInterface, BusObject {
+
+        public Thread thread;
+        public MessageContext context;
+
+        public String Ping(String inStr) {
+            thread = Thread.currentThread();
+            context = bus.getMessageContext();
+            return inStr;
+        }
+    }
+
+    @DispatchPolicy(DispatchPolicy.Ordering.PerSession)
+    public class PerSessionService implements SimpleInterface, BusObject {
+
+        public CountDownLatch entered = new CountDownLatch(1);
+        public CountDownLatch blocked;
+
+        public String Ping(String inStr) throws BusException {
+            entered.countDown();
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                    throw new BusException("interrupted");
+                }
+            }
+            return inStr;
+        }
+    }
+
+    /* Implements the bus interface through its superclass. */
+    public class SubclassService extends Service {
+    }
+
+    public class InlineService implements SimpleInterface, BusObject {
+
+        public String Ping(String inStr) {
+            return inStr;
+        }
+    }
+
+    private SimpleInterface getProxy(String path) {
+        ProxyBusObject remoteObj = bus.getProxyBusObject(bus.getUniqueName(), path,
+                                                         BusAttachment.SESSION_ID_ANY,
+                                                         new Class<?>[] { SimpleInterface.class });
+        return remoteObj.getInterface(SimpleInterface.class);
+    }
+
+    public void testDispatched() throws Exception {
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+
+        MethodDispatcher dispatcher = bus.getMethodDispatcher();
+        dispatcher.resetStatistics();
+
+        assertEquals("dispatched", getProxy("/service").Ping("dispatched"));
+        assertNotNull(service.thread);
+        assertNotSame(Thread.currentThread(), service.thread);
+        assertEquals("/service", service.context.objectPath);
+        assertEquals("Ping", service.context.memberName);
+        assertEquals(1, dispatcher.getDispatchCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testSubclass() throws Exception {
+        SubclassService service = new SubclassService();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+
+        MethodDispatcher dispatcher = bus.getMethodDispatcher();
+        dispatcher.resetStatistics();
+
+        assertEquals("subclass", getProxy("/service").Ping("subclass"));
+        assertNotSame(Thread.currentThread(), service.thread);
+        assertEquals(1, dispatcher.getDispatchCount());
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        bus.getMethodDispatcher().setExecutor(executor);
+
+        Service service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+        for (int i = 0; i < 10; ++i) {
+            assertEquals("ping" + i, getProxy("/service").Ping("ping" + i));
+        }
+        assertTrue(bus.getMethodDispatcher().getMaxQueueDepth() >= 1);
+
+        bus.unregisterBusObject(service);
+        executor.shutdown();
+    }
+
+    public void testSessionStatistics() throws Exception {
+        final PerSessionService service = new PerSessionService();
+        service.blocked = new CountDownLatch(1);
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+
+        final MethodDispatcher dispatcher = bus.getMethodDispatcher();
+        dispatcher.resetStatistics();
+
+        /* The session is reported while its call is running. */
+        final String[] reply = new String[1];
+        Thread caller = new Thread() {
+                public void run() {
+                    try {
+                        reply[0] = getProxy("/service").Ping("held");
+                    } catch (BusException ex) {
+                    }
+                }
+            };
+        caller.start();
+        assertTrue(service.entered.await(5, TimeUnit.SECONDS));
+        Map<Integer, LaneStatistics> sessions = dispatcher.getSessionStatistics();
+        assertEquals(1, sessions.size());
+        LaneStatistics stats = sessions.get(0);
+        assertEquals(0, stats.getSessionId());
+        assertEquals(1, stats.getCount());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(1, stats.getMaxQueueDepth());
+        assertTrue(stats.getMaxWaitTime() >= stats.getAverageWaitTime());
+
+        /* Idle sessions are forgotten. */
+        service.blocked.countDown();
+        caller.join(5000);
+        assertEquals("held", reply[0]);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("ping" + i, getProxy("/service").Ping("ping" + i));
+        }
+        /* The reply may arrive before the lane has gone idle. */
+        assertTrue(waitForLambda(5000, new Lambda() {
+                public boolean func() { return dispatcher.getSessionStatistics().isEmpty(); }
+            }));
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testInline() throws Exception {
+        InlineService service = new InlineService();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+
+        MethodDispatcher dispatcher = bus.getMethodDispatcher();
+        dispatcher.resetStatistics();
+
+        assertEquals("inline", getProxy("/service").Ping("inline"));
+        assertEquals(0, dispatcher.getDispatchCount());
+
+        bus.unregisterBusObject(service);
+    }
+}
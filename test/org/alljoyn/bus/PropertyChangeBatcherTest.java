@@ -0,0 +1,200 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.PropertyChangeBatcher;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.Variant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class PropertyChangeBatcherTest extends TestCase {
+    public PropertyChangeBatcherTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final String IFACE = "org.alljoyn.bus.ChangedPropsInterface";
+
+    public class Service implements ChangedPropsInterface, BusObject {
+        public int getLevel() { return 0; }
+        public String getName() { return ""; }
+        public String getStatus() { return ""; }
+    }
+
+    private BusAttachment bus;
+    private Service service;
+    private List<Map<String, Variant>> changed;
+    private List<String[]> invalidated;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+        service = new Service();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+        changed = new ArrayList<Map<String, Variant>>();
+        invalidated = new ArrayList<String[]>();
+        assertEquals(Status.OK, bus.registerSignalHandler("org.freedesktop.DBus.Properties", "PropertiesChanged", this,
+                                                          getClass().getMethod("propertiesChanged", String.class,
+                                                                               Map.class, String[].class)));
+    }
+
+    public void tearDown() throws Exception {
+        bus.unregisterSignalHandler(this, getClass().getMethod("propertiesChanged", String.class, Map.class,
+                                                               String[].class));
+        bus.unregisterBusObject(service);
+        service = null;
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public synchronized void propertiesChanged(String iface, Map<String, Variant> props, String[] names) {
+        if (IFACE.equals(iface)) {
+            changed.add(props);
+            invalidated.add(names);
+        }
+    }
+
+    private synchronized int getChangedCount() {
+        return changed.size();
+    }
+
+    private void waitFor(final int count) throws InterruptedException {
+        assertTrue("timed out after " + getChangedCount() + " signals", waitForLambda(5000, new Lambda() {
+                public boolean func() { return getChangedCount() >= count; }
+            }));
+    }
+
+    public void testFlush() throws Exception {
+        PropertyChangeBatcher batcher = new PropertyChangeBatcher(bus, service, IFACE, 0, 0, TimeUnit.MILLISECONDS);
+        batcher.propertyChanged("Level", 1);
+        batcher.propertyChanged("Name", "one");
+        batcher.propertyChanged("Level", 2);
+        batcher.propertyChanged("Status", "busy");
+        assertEquals(3, batcher.getPendingCount());
+        batcher.flush();
+        waitFor(1);
+
+        synchronized (this) {
+            Map<String, Variant> props = changed.get(0);
+            assertEquals(2, props.size());
+            assertEquals(2, (int) props.get("Level").getObject(Integer.class));
+            assertEquals("one", props.get("Name").getObject(String.class));
+            assertEquals(Arrays.asList("Status"), Arrays.asList(invalidated.get(0)));
+        }
+        assertEquals(4, batcher.getChangeCount());
+        assertEquals(1, batcher.getConflatedCount());
+        assertEquals(1, batcher.getSignalCount());
+    }
+
+    public void testUnchanged() throws Exception {
+        PropertyChangeBatcher batcher = new PropertyChangeBatcher(bus, service, IFACE, 0, 0, TimeUnit.MILLISECONDS);
+        batcher.propertyChanged("Level", 1);
+        batcher.propertyChanged("Name", "one");
+        batcher.flush();
+        batcher.propertyChanged("Level", 1);
+        batcher.flush();
+        batcher.propertyChanged("Level", 1);
+        batcher.propertyChanged("Name", "two");
+        batcher.flush();
+        waitFor(2);
+        Thread.sleep(500);
+
+        synchronized (this) {
+            assertEquals(2, changed.size());
+            Map<String, Variant> props = changed.get(1);
+            assertEquals(1, props.size());
+            assertEquals("two", props.get("Name").getObject(String.class));
+        }
+        assertEquals(2, batcher.getUnchangedCount());
+        assertEquals(2, batcher.getSignalCount());
+    }
+
+    public void testWindow() throws Exception {
+        PropertyChangeBatcher batcher = new PropertyChangeBatcher(bus, service, IFACE, 0, 100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 8; ++i) {
+            batcher.propertyChanged("Level", i);
+            batcher.propertyChanged("Name", "name" + i);
+        }
+        waitFor(1);
+
+        synchronized (this) {
+            Map<String, Variant> props = changed.get(0);
+            assertEquals(7, (int) props.get("Level").getObject(Integer.class));
+            assertEquals("name7", props.get("Name").getObject(String.class));
+        }
+        assertEquals(0, batcher.getPendingCount());
+        batcher.close();
+    }
+
+    public void testUnknownProperty() throws Exception {
+        PropertyChangeBatcher batcher = new PropertyChangeBatcher(bus, service, IFACE, 0, 0, TimeUnit.MILLISECONDS);
+        batcher.propertyChanged("NoSuchProperty", 1);
+        batcher.propertyChanged("Level", 1);
+        try {
+            batcher.flush();
+            fail("expected BusException");
+        } catch (BusException ex) {
+        }
+
+        /* The bad property does not hold up the others, and is dropped. */
+        waitFor(1);
+        synchronized (this) {
+            assertEquals(1, (int) changed.get(0).get("Level").getObject(Integer.class));
+        }
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    public void testUnregistered() throws Exception {
+        PropertyChangeBatcher batcher = new PropertyChangeBatcher(bus, service, IFACE, 0, 0, TimeUnit.MILLISECONDS);
+        batcher.propertyChanged("Level", 1);
+        batcher.propertyChanged("Name", "one");
+        bus.unregisterBusObject(service);
+        try {
+            batcher.flush();
+            fail("expected BusException");
+        } catch (BusException ex) {
+        }
+
+        /* Nothing could be sent, so the changes are kept, and newer ones win. */
+        assertEquals(2, batcher.getPendingCount());
+        batcher.propertyChanged("Level", 2);
+        assertEquals(2, batcher.getPendingCount());
+        assertEquals(Status.OK, bus.registerBusObject(service, "/service"));
+        batcher.flush();
+        waitFor(1);
+        synchronized (this) {
+            Map<String, Variant> props = changed.get(0);
+            assertEquals(2, (int) props.get("Level").getObject(Integer.class));
+            assertEquals("one", props.get("Name").getObject(String.class));
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.alljoyn.bus;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import junit.framework.TestCase;
@@ -52,6 +53,43 @@ public class PropsTest extends TestCase {
         }
     }
 
+    public class CachedService implements CachedPropsInterface, BusObject {
+
+        public int level = 1;
+
+        public int gets;
+
+        public synchronized int getLevel() { ++gets; return level; }
+
+        public synchronized void setLevel(int level) { this.level = level; }
+    }
+
+    public class SnapshotService implements PropsInterface, PropertySnapshotListener, BusObject {
+
+        public int gets;
+
+        public int snapshots;
+
+        public synchronized String getStringProp() { ++gets; return "Getter"; }
+
+        public void setStringProp(String stringProperty) {}
+
+        public synchronized int getIntProp() { ++gets; return 7; }
+
+        public void setIntProp(int intProperty) {}
+
+        public String Ping(String str) throws BusException {
+            return str;
+        }
+
+        public synchronized Map<String, Object> getPropertySnapshot(String ifaceName) {
+            ++snapshots;
+            Map<String, Object> snapshot = new HashMap<String, Object>();
+            snapshot.put("StringProp", "Snapshot");
+            return snapshot;
+        }
+    }
+
     BusAttachment bus;
     BusAttachment clientBus;
 
@@ -135,6 +173,64 @@ public class PropsTest extends TestCase {
         assertEquals(6, (int)map.get("IntProp").getObject(Integer.class));
     }
     
+    public void testCachedProperty() throws Exception {
+        CachedService service = new CachedService();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/testCachedProperties"));
+        ProxyBusObject remoteObj = bus.getProxyBusObject(bus.getUniqueName(),
+                                                         "/testCachedProperties",  BusAttachment.SESSION_ID_ANY,
+                                                         new Class<?>[] { CachedPropsInterface.class });
+        CachedPropsInterface proxy = remoteObj.getInterface(CachedPropsInterface.class);
+
+        /* The getter is only called for the first Get */
+        assertEquals(1, proxy.getLevel());
+        assertEquals(1, proxy.getLevel());
+        assertEquals(1, (int)remoteObj.getAllProperties(CachedPropsInterface.class).get("Level")
+                     .getObject(Integer.class));
+        assertEquals(1, service.gets);
+
+        /* An unannounced change is not seen until the value is invalidated */
+        service.level = 2;
+        assertEquals(1, proxy.getLevel());
+        assertEquals(Status.OK, bus.invalidateCachedProperty(service, "org.alljoyn.bus.CachedPropsInterface", "Level"));
+        assertEquals(2, proxy.getLevel());
+        assertEquals(2, service.gets);
+
+        /* An announced change replaces the cached value */
+        service.level = 3;
+        bus.emitChangedSignal(service, "org.alljoyn.bus.CachedPropsInterface", "Level", 3, 0);
+        assertEquals(3, proxy.getLevel());
+        assertEquals(2, service.gets);
+
+        /* A remote Set discards the cached value */
+        proxy.setLevel(4);
+        assertEquals(4, proxy.getLevel());
+        assertEquals(3, service.gets);
+
+        bus.unregisterBusObject(service);
+    }
+
+    public void testPropertySnapshot() throws Exception {
+        SnapshotService service = new SnapshotService();
+        assertEquals(Status.OK, bus.registerBusObject(service, "/testPropertySnapshot"));
+        ProxyBusObject remoteObj = bus.getProxyBusObject(bus.getUniqueName(),
+                                                         "/testPropertySnapshot",  BusAttachment.SESSION_ID_ANY,
+                                                         new Class<?>[] { PropsInterface.class });
+
+        /* GetAll takes what it can from the snapshot and calls the getters for the rest */
+        Map<String, Variant> map = remoteObj.getAllProperties(PropsInterface.class);
+        assertEquals("Snapshot", map.get("StringProp").getObject(String.class));
+        assertEquals(7, (int)map.get("IntProp").getObject(Integer.class));
+        assertEquals(1, service.snapshots);
+        assertEquals(1, service.gets);
+
+        /* Get still uses the getter */
+        assertEquals("Getter", remoteObj.getProperty(PropsInterface.class, "StringProp").getObject(String.class));
+        assertEquals(1, service.snapshots);
+        assertEquals(2, service.gets);
+
+        bus.unregisterBusObject(service);
+    }
+
     /* ALLJOYN-2043 */
     public void testGetAllThenMethodCall() throws Exception {
         /* Get a remote object */
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.Mutable;
+import org.alljoyn.bus.RawSessionChannel;
+import org.alljoyn.bus.SessionListener;
+import org.alljoyn.bus.SessionOpts;
+import org.alljoyn.bus.SessionPortListener;
+import org.alljoyn.bus.Status;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Exercises RawSessionChannel over a raw session between two attachments
+ * connected to the same daemon.
+ */
+public class RawSessionChannelTest extends TestCase {
+    public RawSessionChannelTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final short PORT = 43;
+
+    private BusAttachment host;
+    private BusAttachment joiner;
+    private RawSessionChannel hostChannel;
+    private RawSessionChannel joinerChannel;
+
+    public void setUp() throws Exception {
+        SessionOpts sessionOpts = new SessionOpts(SessionOpts.TRAFFIC_RAW_RELIABLE, false,
+                                                  SessionOpts.PROXIMITY_ANY, SessionOpts.TRANSPORT_ANY);
+        final CountDownLatch joined = new CountDownLatch(1);
+        final int[] hostSessionId = new int[1];
+
+        host = new BusAttachment(getClass().getName(), BusAttachment.RemoteMessage.Receive);
+        assertEquals(Status.OK, host.connect());
+        assertEquals(Status.OK, host.bindSessionPort(new Mutable.ShortValue(PORT), sessionOpts,
+                                                     new SessionPortListener() {
+                                                         public boolean acceptSessionJoiner(short sessionPort,
+                                                                                            String joiner,
+                                                                                            SessionOpts opts) {
+                                                             return true;
+                                                         }
+
+                                                         public void sessionJoined(short sessionPort, int id,
+                                                                                   String joiner) {
+                                                             hostSessionId[0] = id;
+                                                             joined.countDown();
+                                                         }
+                                                     }));
+
+        joiner = new BusAttachment(getClass().getName(), BusAttachment.RemoteMessage.Receive);
+        assertEquals(Status.OK, joiner.connect());
+        Mutable.IntegerValue sessionId = new Mutable.IntegerValue();
+        assertEquals(Status.OK, joiner.joinSession(host.getUniqueName(), PORT, sessionId, sessionOpts,
+                                                   new SessionListener()));
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+
+        hostChannel = RawSessionChannel.open(host, hostSessionId[0]);
+        joinerChannel = RawSessionChannel.open(joiner, sessionId.value);
+    }
+
+    public void tearDown() throws Exception {
+        hostChannel.close();
+        joinerChannel.close();
+        joiner.disconnect();
+        joiner.release();
+        joiner = null;
+        host.disconnect();
+        host.release();
+        host = null;
+    }
+
+    private static ByteBuffer bytes(String string) {
+        return ByteBuffer.wrap(string.getBytes());
+    }
+
+    /* Read until the buffer is full. */
+    private static void readFully(RawSessionChannel channel, ByteBuffer dst) throws Exception {
+        while (dst.hasRemaining()) {
+            assertTrue("end of stream", channel.read(dst) >= 0);
+        }
+    }
+
+    public void testReadWrite() throws Exception {
+        ByteBuffer src = bytes("hello, raw session");
+        while (src.hasRemaining()) {
+            joinerChannel.write(src);
+        }
+
+        ByteBuffer dst = ByteBuffer.allocateDirect(src.capacity());
+        readFully(hostChannel, dst);
+        dst.flip();
+        byte[] received = new byte[dst.remaining()];
+        dst.get(received);
+        assertEquals("hello, raw session", new String(received));
+    }
+
+    public void testScatterGather() throws Exception {
+        ByteBuffer[] srcs = new ByteBuffer[] {
+            ByteBuffer.allocateDirect(4), ByteBuffer.allocateDirect(6)
+        };
+        srcs[0].put("head".getBytes()).flip();
+        srcs[1].put("body!!".getBytes()).flip();
+        long written = 0;
+        while (written < 10) {
+            written += joinerChannel.write(srcs);
+        }
+        assertFalse(srcs[0].hasRemaining());
+        assertFalse(srcs[1].hasRemaining());
+
+        /* A mix of direct and heap buffers goes through a temporary buffer. */
+        ByteBuffer[] dsts = new ByteBuffer[] { ByteBuffer.allocate(4), ByteBuffer.allocateDirect(6) };
+        long read = 0;
+        while (read < 10) {
+            long n = hostChannel.read(dsts);
+            assertTrue("end of stream", n >= 0);
+            read += n;
+        }
+        assertEquals("head", new String(dsts[0].array()));
+        dsts[1].flip();
+        byte[] body = new byte[6];
+        dsts[1].get(body);
+        assertEquals("body!!", new String(body));
+    }
+
+    public void testNonBlocking() throws Exception {
+        hostChannel.configureBlocking(false);
+        assertFalse(hostChannel.isBlocking());
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        assertEquals(0, hostChannel.read(dst));
+        assertEquals(0, hostChannel.await(SelectionKey.OP_READ, 0));
+        assertEquals(SelectionKey.OP_WRITE, hostChannel.await(SelectionKey.OP_WRITE, 1000));
+
+        joinerChannel.write(bytes("ping"));
+        assertEquals(SelectionKey.OP_READ, hostChannel.await(SelectionKey.OP_READ, 5000));
+        dst.limit(4);
+        readFully(hostChannel, dst);
+        assertEquals("ping", new String(dst.array(), 0, 4));
+    }
+
+    public void testTransferFrom() throws Exception {
+        File file = File.createTempFile("RawSessionChannelTest", null);
+        try {
+            byte[] contents = new byte[100000];
+            for (int i = 0; i < contents.length; ++i) {
+                contents[i] = (byte) i;
+            }
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(contents);
+            out.close();
+
+            final FileInputStream in = new FileInputStream(file);
+            final Exception[] failure = new Exception[1];
+            Thread sender = new Thread() {
+                    public void run() {
+                        try {
+                            long position = 10;
+                            while (position < 100000) {
+                                position += joinerChannel.transferFrom(in, position, 100000 - position);
+                            }
+                        } catch (Exception ex) {
+                            failure[0] = ex;
+                        }
+                    }
+                };
+            sender.start();
+
+            ByteBuffer dst = ByteBuffer.allocateDirect(100000 - 10);
+            readFully(hostChannel, dst);
+            sender.join();
+            in.close();
+            assertNull(failure[0]);
+            dst.flip();
+            for (int i = 10; i < contents.length; ++i) {
+                assertEquals(contents[i], dst.get());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testClosed() throws Exception {
+        joinerChannel.close();
+        assertFalse(joinerChannel.isOpen());
+        try {
+            joinerChannel.write(bytes("closed"));
+            fail("expected ClosedChannelException");
+        } catch (ClosedChannelException ex) {
+        }
+
+        /* The host sees the end of the stream. */
+        assertEquals(-1, hostChannel.read(ByteBuffer.allocate(1)));
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.Mutable;
+import org.alljoyn.bus.SessionListener;
+import org.alljoyn.bus.SessionMultiplexer;
+import org.alljoyn.bus.SessionOpts;
+import org.alljoyn.bus.SessionPortListener;
+import org.alljoyn.bus.Status;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Exercises SessionMultiplexer over a raw session between two attachments
+ * connected to the same daemon.
+ */
+public class SessionMultiplexerTest extends TestCase {
+    public SessionMultiplexerTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final short PORT = 44;
+
+    private BusAttachment host;
+    private BusAttachment joiner;
+    private SessionMultiplexer hostMux;
+    private SessionMultiplexer joinerMux;
+
+    public void setUp() throws Exception {
+        SessionOpts sessionOpts = new SessionOpts(SessionOpts.TRAFFIC_RAW_RELIABLE, false,
+                                                  SessionOpts.PROXIMITY_ANY, SessionOpts.TRANSPORT_ANY);
+        final CountDownLatch joined = new CountDownLatch(1);
+        final int[] hostSessionId = new int[1];
+
+        host = new BusAttachment(getClass().getName(), BusAttachment.RemoteMessage.Receive);
+        assertEquals(Status.OK, host.connect());
+        assertEquals(Status.OK, host.bindSessionPort(new Mutable.ShortValue(PORT), sessionOpts,
+                                                     new SessionPortListener() {
+                                                         public boolean acceptSessionJoiner(short sessionPort,
+                                                                                            String joiner,
+                                                                                            SessionOpts opts) {
+                                                             return true;
+                                                         }
+
+                                                         public void sessionJoined(short sessionPort, int id,
+                                                                                   String joiner) {
+                                                             hostSessionId[0] = id;
+                                                             joined.countDown();
+                                                         }
+                                                     }));
+
+        joiner = new BusAttachment(getClass().getName(), BusAttachment.RemoteMessage.Receive);
+        assertEquals(Status.OK, joiner.connect());
+        Mutable.IntegerValue sessionId = new Mutable.IntegerValue();
+        assertEquals(Status.OK, joiner.joinSession(host.getUniqueName(), PORT, sessionId, sessionOpts,
+                                                   new SessionListener()));
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+
+        hostMux = SessionMultiplexer.open(host, hostSessionId[0], false);
+        joinerMux = SessionMultiplexer.open(joiner, sessionId.value, true);
+    }
+
+    public void tearDown() throws Exception {
+        hostMux.close();
+        joinerMux.close();
+        joiner.disconnect();
+        joiner.release();
+        joiner = null;
+        host.disconnect();
+        host.release();
+        host = null;
+    }
+
+    /* Read until the buffer is full. */
+    private static void readFully(SessionMultiplexer.LogicalChannel channel, ByteBuffer dst) throws Exception {
+        while (dst.hasRemaining()) {
+            assertTrue("end of stream", channel.read(dst) >= 0);
+        }
+    }
+
+    /* Writes a buffer on its own thread. */
+    private static class Writer extends Thread {
+        private final SessionMultiplexer.LogicalChannel channel;
+        private final ByteBuffer src;
+        public Exception failure;
+
+        public Writer(SessionMultiplexer.LogicalChannel channel, ByteBuffer src) {
+            this.channel = channel;
+            this.src = src;
+            start();
+        }
+
+        public void run() {
+            try {
+                channel.write(src);
+            } catch (Exception ex) {
+                failure = ex;
+            }
+        }
+    }
+
+    public void testOpenAccept() throws Exception {
+        SessionMultiplexer.LogicalChannel opened = joinerMux.openChannel();
+        opened.write(ByteBuffer.wrap("ping".getBytes()));
+
+        SessionMultiplexer.LogicalChannel accepted = hostMux.accept();
+        assertEquals(opened.getId(), accepted.getId());
+        ByteBuffer dst = ByteBuffer.allocate(4);
+        readFully(accepted, dst);
+        assertEquals("ping", new String(dst.array()));
+
+        accepted.write(ByteBuffer.wrap("pong".getBytes()));
+        accepted.shutdownOutput();
+        dst.clear();
+        readFully(opened, dst);
+        assertEquals("pong", new String(dst.array()));
+        assertEquals(-1, opened.read(ByteBuffer.allocate(1)));
+
+        /* Both sides may open channels, with different ids. */
+        SessionMultiplexer.LogicalChannel reverse = hostMux.openChannel();
+        reverse.write(ByteBuffer.wrap("back".getBytes()));
+        SessionMultiplexer.LogicalChannel reverseAccepted = joinerMux.accept();
+        assertEquals(reverse.getId(), reverseAccepted.getId());
+        assertTrue(reverse.getId() != opened.getId());
+        dst.clear();
+        readFully(reverseAccepted, dst);
+        assertEquals("back", new String(dst.array()));
+    }
+
+    public void testFlowControl() throws Exception {
+        SessionMultiplexer.LogicalChannel stalled = joinerMux.openChannel();
+        SessionMultiplexer.LogicalChannel flowing = joinerMux.openChannel();
+
+        /* Nobody reads the stalled channel, so its writer runs out of room. */
+        int size = 4 * SessionMultiplexer.INITIAL_WINDOW;
+        Writer writer = new Writer(stalled, ByteBuffer.allocate(size));
+        writer.join(500);
+        assertTrue(writer.isAlive());
+
+        /* The other channel is not held up. */
+        flowing.write(ByteBuffer.wrap("through".getBytes()));
+        SessionMultiplexer.LogicalChannel stalledAccepted = hostMux.accept();
+        SessionMultiplexer.LogicalChannel flowingAccepted = hostMux.accept();
+        ByteBuffer dst = ByteBuffer.allocate(7);
+        readFully(flowingAccepted, dst);
+        assertEquals("through", new String(dst.array()));
+
+        /* Reading the stalled channel grants room to finish. */
+        readFully(stalledAccepted, ByteBuffer.allocate(size));
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        assertNull(writer.failure);
+    }
+
+    public void testReceiveWindow() throws Exception {
+        int size = 4 * SessionMultiplexer.INITIAL_WINDOW;
+        hostMux.setReceiveWindow(size);
+        SessionMultiplexer.LogicalChannel opened = joinerMux.openChannel();
+        opened.write(ByteBuffer.wrap(new byte[1]));
+        SessionMultiplexer.LogicalChannel accepted = hostMux.accept();
+
+        /* The larger window takes the whole buffer before anything is read. */
+        Writer writer = new Writer(opened, ByteBuffer.allocate(size - 1));
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        assertNull(writer.failure);
+        readFully(accepted, ByteBuffer.allocate(size));
+    }
+
+    public void testClose() throws Exception {
+        SessionMultiplexer.LogicalChannel opened = joinerMux.openChannel();
+        opened.write(ByteBuffer.wrap("x".getBytes()));
+        SessionMultiplexer.LogicalChannel accepted = hostMux.accept();
+        accepted.close();
+        assertFalse(accepted.isOpen());
+        assertEquals(-1, opened.read(ByteBuffer.allocate(1)));
+
+        /* Data sent to a closed channel is discarded without stalling the writer. */
+        Writer writer = new Writer(opened, ByteBuffer.allocate(4 * SessionMultiplexer.INITIAL_WINDOW));
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        assertNull(writer.failure);
+        opened.close();
+
+        /* Closing the multiplexer fails the channels of the other side. */
+        SessionMultiplexer.LogicalChannel orphan = joinerMux.openChannel();
+        orphan.write(ByteBuffer.wrap("y".getBytes()));
+        hostMux.accept();
+        hostMux.close();
+        try {
+            orphan.read(ByteBuffer.allocate(1));
+            fail("expected IOException");
+        } catch (java.io.IOException ex) {
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package org.alljoyn.bus;
 
+import static org.alljoyn.bus.Assert.*;
+
 import org.alljoyn.bus.BusAttachment;
 import org.alljoyn.bus.BusException;
 import org.alljoyn.bus.BusObject;
@@ -179,6 +181,160 @@ public class SignalEmitterTest extends TestCase {
         assertEquals(Status.BUS_NO_SUCH_MESSAGE, status);
     }
 
+    public void testEmitBatch() throws Exception {
+        SignalEmitter batchEmitter = new SignalEmitter(emitter);
+        batchEmitter.setSessionlessFlag(true);
+        SignalEmitter.Batch batch = batchEmitter.newBatch();
+        EmitterInterface intf = batch.getInterface(EmitterInterface.class);
+        intf.Emit("batch1");
+        intf.Emit("batch2");
+        intf.Emit("batch3");
+        assertEquals(3, batch.size());
+
+        assertEquals(Status.OK, batchEmitter.emitBatch(batch));
+        assertEquals(0, batch.size());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(Status.OK, batch.getStatus(i));
+            assertTrue(batch.getSerial(i) != 0);
+        }
+        assertTrue(batch.getSerial(0) != batch.getSerial(1));
+        assertTrue(batch.getSerial(1) != batch.getSerial(2));
+
+        /* The serial numbers of sessionless signals may be used to cancel them. */
+        assertEquals(Status.OK, batchEmitter.cancelSessionlessSignal(batch.getSerial(2)));
+    }
+
+    public void testEmitBatchUnregistered() throws Exception {
+        SignalEmitter batchEmitter = new SignalEmitter(emitter);
+        SignalEmitter.Batch batch = batchEmitter.newBatch();
+        batch.getInterface(EmitterInterface.class).Emit("unregistered");
+        bus.unregisterBusObject(emitter);
+        try {
+            batchEmitter.emitBatch(batch);
+            fail("emitBatch succeeded for an unregistered bus object");
+        } catch (BusException ex) {
+        }
+        assertEquals(Status.FAIL, batch.getStatus(0));
+        assertEquals(1, batch.size());
+
+        /* The signal that was not sent is still in the batch. */
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        assertEquals(Status.OK, batchEmitter.emitBatch(batch));
+        assertEquals(0, batch.size());
+    }
+
+    public void testFanOut() throws Exception {
+        SignalEmitter.FanOut fanOut = new SignalEmitter(emitter).newFanOut();
+        fanOut.addSession(BusAttachment.SESSION_ID_ANY);
+        fanOut.addTarget(bus.getUniqueName(), BusAttachment.SESSION_ID_ANY);
+        fanOut.addTarget("org.alljoyn.bus.NoSuchName", BusAttachment.SESSION_ID_ANY);
+        assertEquals(3, fanOut.getTargetCount());
+        assertTrue(fanOut.removeTarget("org.alljoyn.bus.NoSuchName", BusAttachment.SESSION_ID_ANY));
+        assertFalse(fanOut.removeTarget("org.alljoyn.bus.NoSuchName", BusAttachment.SESSION_ID_ANY));
+        assertEquals(2, fanOut.getTargetCount());
+
+        signalsHandled = 0;
+        fanOut.getInterface(EmitterInterface.class).Emit("fanout");
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(Status.OK, fanOut.getStatus(i));
+            assertTrue(fanOut.getSerial(i) != 0);
+        }
+        assertTrue(fanOut.getSerial(0) != fanOut.getSerial(1));
+
+        Thread.sleep(500);
+        assertEquals(2, signalsHandled);
+    }
+
+    public void testFanOutUnregistered() throws Exception {
+        SignalEmitter.FanOut fanOut = new SignalEmitter(emitter).newFanOut();
+        fanOut.addSession(BusAttachment.SESSION_ID_ANY);
+        bus.unregisterBusObject(emitter);
+        try {
+            fanOut.getInterface(EmitterInterface.class).Emit("unregistered");
+            fail("fan-out succeeded for an unregistered bus object");
+        } catch (BusException ex) {
+        }
+        assertEquals(Status.FAIL, fanOut.getStatus(0));
+        assertNotNull(fanOut.getInterface(EmitterInterface.class).toString());
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+    }
+
+    public class OverloadEmitter implements EmitterOverloadInterface, BusObject {
+
+        private EmitterOverloadInterface emitter;
+
+        public OverloadEmitter() {
+            emitter = new SignalEmitter(this).getInterface(EmitterOverloadInterface.class);
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+
+        public void Emit(int number) throws BusException {
+            emitter.Emit(number);
+        }
+    }
+
+    private int stringSignals;
+    private int intSignals;
+
+    public synchronized void stringSignalHandler(String string) {
+        ++stringSignals;
+    }
+
+    public synchronized void intSignalHandler(int number) {
+        ++intSignals;
+    }
+
+    private synchronized int getStringSignals() {
+        return stringSignals;
+    }
+
+    private synchronized int getIntSignals() {
+        return intSignals;
+    }
+
+    public void testOverloadedSignals() throws Exception {
+        OverloadEmitter overload = new OverloadEmitter();
+        assertEquals(Status.OK, bus.registerBusObject(overload, "/overload"));
+        assertEquals(Status.OK, bus.registerSignalHandler("org.alljoyn.bus.EmitterOverloadInterface", "EmitString",
+                                                          this, getClass().getMethod("stringSignalHandler",
+                                                                                     String.class)));
+        assertEquals(Status.OK, bus.registerSignalHandler("org.alljoyn.bus.EmitterOverloadInterface", "EmitInt",
+                                                          this, getClass().getMethod("intSignalHandler",
+                                                                                     int.class)));
+
+        /* Each call sends only the signal of the overload that was called. */
+        overload.Emit("string");
+        overload.Emit(1);
+        overload.Emit(2);
+        waitForLambda(5000, new Lambda() {
+                public boolean func() { return getStringSignals() >= 1 && getIntSignals() >= 2; }
+            });
+        Thread.sleep(100);
+        synchronized (this) {
+            assertEquals(1, stringSignals);
+            assertEquals(2, intSignals);
+        }
+
+        bus.unregisterSignalHandler(this, getClass().getMethod("stringSignalHandler", String.class));
+        bus.unregisterSignalHandler(this, getClass().getMethod("intSignalHandler", int.class));
+        bus.unregisterBusObject(overload);
+    }
+
+    public void testObjectMethods() throws Exception {
+        /* The interfaces of a superclass are signal interfaces too. */
+        OverloadEmitter subclass = new OverloadEmitter() {};
+        EmitterOverloadInterface proxy = new SignalEmitter(subclass).getInterface(EmitterOverloadInterface.class);
+
+        /* The methods of Object are answered by the proxy, not sent. */
+        assertNotNull(proxy.toString());
+        assertEquals(proxy.hashCode(), proxy.hashCode());
+        assertTrue(proxy.equals(proxy));
+        assertFalse(proxy.equals(subclass));
+    }
+
     public void testGlobalBroadcast() throws Exception {
         // TODO fix this text
 //        /* Set up another daemon to receive the global broadcast signal. */
@@ -0,0 +1,315 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.SignalHandlerQueue;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.annotation.BusSignalHandler;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class SignalHandlerQueueTest extends TestCase {
+    public SignalHandlerQueueTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+    private ExecutorService executor;
+
+    public class Emitter implements EmitterInterface, BusObject {
+
+        private EmitterInterface emitter;
+
+        public Emitter() {
+            emitter = new SignalEmitter(this).getInterface(EmitterInterface.class);
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+    }
+
+    public class Handler {
+
+        public List<String> received = new ArrayList<String>();
+        public Thread thread;
+        public String sender;
+        public CountDownLatch blocked;
+        public CountDownLatch entered = new CountDownLatch(1);
+
+        @BusSignalHandler(iface = "org.alljoyn.bus.EmitterInterface", signal = "Emit")
+        public void Emit(String string) throws InterruptedException {
+            entered.countDown();
+            if (blocked != null) {
+                blocked.await();
+            }
+            synchronized (this) {
+                thread = Thread.currentThread();
+                MessageContext context = bus.getMessageContext();
+                sender = (context == null) ? null : context.sender;
+                received.add(string);
+            }
+        }
+
+        public synchronized int getReceived() {
+            return received.size();
+        }
+
+        public void waitFor(final int count) throws InterruptedException {
+            assertTrue("timed out after " + getReceived() + " signals", waitForLambda(5000, new Lambda() {
+                    public boolean func() { return getReceived() >= count; }
+                }));
+        }
+    }
+
+    private Emitter emitter;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+        emitter = new Emitter();
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    public void tearDown() throws Exception {
+        bus.unregisterBusObject(emitter);
+        emitter = null;
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public void testQueuedDelivery() throws Exception {
+        SignalHandlerQueue queue = new SignalHandlerQueue(executor, 16, SignalHandlerQueue.Overflow.Block);
+        Handler handler = new Handler();
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        emitter.Emit("one");
+        emitter.Emit("two");
+        emitter.Emit("three");
+        handler.waitFor(3);
+
+        synchronized (handler) {
+            assertEquals("one", handler.received.get(0));
+            assertEquals("two", handler.received.get(1));
+            assertEquals("three", handler.received.get(2));
+            assertNotSame(Thread.currentThread(), handler.thread);
+            assertEquals(bus.getUniqueName(), handler.sender);
+        }
+        assertEquals(3, queue.getDeliveredCount());
+        assertEquals(0, queue.getDropCount());
+        assertTrue(queue.getMaxLatency() >= queue.getAverageLatency());
+
+        /* The statistics of each handler method are kept apart. */
+        Map<Method, SignalHandlerQueue.HandlerStatistics> handlers = queue.getHandlerStatistics();
+        assertEquals(1, handlers.size());
+        SignalHandlerQueue.HandlerStatistics stats = handlers.get(Handler.class.getMethod("Emit", String.class));
+        assertEquals(3, stats.getDeliveredCount());
+        assertEquals(0, stats.getDropCount());
+        assertTrue(stats.getMaxLatency() >= stats.getAverageLatency());
+
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    public void testRejectedExecution() throws Exception {
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        SignalHandlerQueue queue = new SignalHandlerQueue(stopped, 1000, SignalHandlerQueue.Overflow.Block);
+        Handler handler = new Handler();
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        /* Signals are delivered on the AllJoyn thread when the executor refuses them. */
+        for (int i = 0; i < 500; ++i) {
+            emitter.Emit("signal" + i);
+        }
+        handler.waitFor(500);
+        assertEquals(500, queue.getDeliveredCount());
+
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    public void testDropNewest() throws Exception {
+        SignalHandlerQueue queue = new SignalHandlerQueue(executor, 2, SignalHandlerQueue.Overflow.DropNewest);
+        Handler handler = new Handler();
+        handler.blocked = new CountDownLatch(1);
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        /* The first signal holds the executor while the rest are queued. */
+        emitter.Emit("held");
+        assertTrue(handler.entered.await(5, TimeUnit.SECONDS));
+        emitter.Emit("one");
+        emitter.Emit("two");
+        emitter.Emit("three");
+        waitForDepth(queue, 2, 1);
+        handler.blocked.countDown();
+        handler.waitFor(3);
+
+        synchronized (handler) {
+            assertEquals(3, handler.received.size());
+            assertEquals("one", handler.received.get(1));
+            assertEquals("two", handler.received.get(2));
+        }
+        assertEquals(2, queue.getMaxQueueDepth());
+        assertEquals(1, queue.getDropCount());
+        Method method = Handler.class.getMethod("Emit", String.class);
+        assertEquals(1, queue.getHandlerStatistics().get(method).getDropCount());
+
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    public void testDropOldest() throws Exception {
+        SignalHandlerQueue queue = new SignalHandlerQueue(executor, 2, SignalHandlerQueue.Overflow.DropOldest);
+        Handler handler = new Handler();
+        handler.blocked = new CountDownLatch(1);
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        emitter.Emit("held");
+        assertTrue(handler.entered.await(5, TimeUnit.SECONDS));
+        emitter.Emit("one");
+        emitter.Emit("two");
+        emitter.Emit("three");
+        waitForDepth(queue, 2, 1);
+        handler.blocked.countDown();
+        handler.waitFor(3);
+
+        synchronized (handler) {
+            assertEquals(3, handler.received.size());
+            assertEquals("two", handler.received.get(1));
+            assertEquals("three", handler.received.get(2));
+        }
+        assertEquals(1, queue.getDropCount());
+
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    public void testConflate() throws Exception {
+        SignalHandlerQueue queue = new SignalHandlerQueue(executor, 16, SignalHandlerQueue.Overflow.Conflate);
+        Handler handler = new Handler();
+        handler.blocked = new CountDownLatch(1);
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        emitter.Emit("held");
+        assertTrue(handler.entered.await(5, TimeUnit.SECONDS));
+        emitter.Emit("a");
+        emitter.Emit("b");
+        emitter.Emit("a");
+        emitter.Emit("a");
+        waitForDepth(queue, 2, 2);
+        handler.blocked.countDown();
+        handler.waitFor(3);
+
+        synchronized (handler) {
+            assertEquals(3, handler.received.size());
+            assertEquals("a", handler.received.get(1));
+            assertEquals("b", handler.received.get(2));
+        }
+        assertEquals(2, queue.getDropCount());
+
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    public void testPerSession() throws Exception {
+        SignalHandlerQueue queue = new SignalHandlerQueue(executor, 2, SignalHandlerQueue.Overflow.DropOldest, true);
+        Handler handler = new Handler();
+        handler.blocked = new CountDownLatch(1);
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        /* Signals sent outside a session share the lane of session 0. */
+        emitter.Emit("held");
+        assertTrue(handler.entered.await(5, TimeUnit.SECONDS));
+        emitter.Emit("one");
+        emitter.Emit("two");
+        emitter.Emit("three");
+        waitForDepth(queue, 2, 1);
+
+        /* The session is reported while it has signals waiting. */
+        Map<Integer, LaneStatistics> sessions = queue.getSessionStatistics();
+        assertEquals(1, sessions.size());
+        LaneStatistics stats = sessions.get(0);
+        assertEquals(1, stats.getCount());
+        assertEquals(2, stats.getQueueDepth());
+        assertEquals(2, stats.getMaxQueueDepth());
+        assertEquals(1, stats.getDropCount());
+
+        handler.blocked.countDown();
+        handler.waitFor(3);
+        synchronized (handler) {
+            assertEquals("two", handler.received.get(1));
+            assertEquals("three", handler.received.get(2));
+        }
+
+        /* Idle sessions are forgotten. */
+        waitForIdle(queue);
+        assertTrue(queue.getSessionStatistics().isEmpty());
+
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    public void testPerSessionDropNewest() throws Exception {
+        SignalHandlerQueue queue = new SignalHandlerQueue(executor, 1, SignalHandlerQueue.Overflow.DropNewest, true);
+        Handler handler = new Handler();
+        handler.blocked = new CountDownLatch(1);
+        assertEquals(Status.OK, bus.registerSignalHandlers(handler, queue));
+
+        emitter.Emit("held");
+        assertTrue(handler.entered.await(5, TimeUnit.SECONDS));
+        emitter.Emit("one");
+        emitter.Emit("two");
+        waitForDepth(queue, 1, 1);
+        assertEquals(1, queue.getSessionStatistics().get(0).getDropCount());
+
+        handler.blocked.countDown();
+        handler.waitFor(2);
+        bus.unregisterSignalHandlers(handler);
+    }
+
+    /* The last handler may return before its lane has gone idle. */
+    private void waitForIdle(final SignalHandlerQueue queue) throws InterruptedException {
+        waitForLambda(5000, new Lambda() {
+                public boolean func() { return queue.getSessionStatistics().isEmpty(); }
+            });
+    }
+
+    /* Signals are delivered asynchronously, so wait for them to be queued. */
+    private void waitForDepth(final SignalHandlerQueue queue, final int depth, final int drops)
+        throws InterruptedException {
+        assertTrue("timed out at depth " + queue.getQueueDepth(), waitForLambda(5000, new Lambda() {
+                public boolean func() { return queue.getQueueDepth() >= depth && queue.getDropCount() >= drops; }
+            }));
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.SignalHandlerQueue;
+import org.alljoyn.bus.SignalPublisher;
+import org.alljoyn.bus.Status;
+import org.alljoyn.bus.annotation.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class SignalPublisherTest extends TestCase {
+    public SignalPublisherTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private BusAttachment bus;
+
+    public class Emitter implements EmitterInterface, BusObject {
+
+        private EmitterInterface emitter;
+
+        public Emitter() {
+            emitter = new SignalEmitter(this).getInterface(EmitterInterface.class);
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+    }
+
+    public static class Payload {
+        @Position(0) public String string;
+    }
+
+    public static class Subscriber<T> implements SignalPublisher.Subscriber<T> {
+
+        public SignalPublisher.Subscription subscription;
+        public List<T> items = new ArrayList<T>();
+        public Throwable error;
+        public boolean complete;
+
+        public synchronized void onSubscribe(SignalPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        public synchronized void onNext(T item) {
+            items.add(item);
+        }
+
+        public synchronized void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        public synchronized void onComplete() {
+            complete = true;
+        }
+
+        public synchronized int getItemCount() {
+            return items.size();
+        }
+
+        public void waitFor(final int count) throws InterruptedException {
+            assertTrue("timed out after " + getItemCount() + " items", waitForLambda(5000, new Lambda() {
+                    public boolean func() { return getItemCount() >= count; }
+                }));
+        }
+
+        public void waitForComplete() throws InterruptedException {
+            assertTrue("timed out", waitForLambda(5000, new Lambda() {
+                    public boolean func() { synchronized (Subscriber.this) { return complete; } }
+                }));
+        }
+
+        public void waitForError() throws InterruptedException {
+            assertTrue("timed out", waitForLambda(5000, new Lambda() {
+                    public boolean func() { synchronized (Subscriber.this) { return error != null; } }
+                }));
+        }
+
+        public void waitForSubscription() throws InterruptedException {
+            assertTrue("timed out", waitForLambda(5000, new Lambda() {
+                    public boolean func() { synchronized (Subscriber.this) { return subscription != null; } }
+                }));
+        }
+    }
+
+    private Emitter emitter;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+        emitter = new Emitter();
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        assertEquals(Status.OK, bus.addMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'"));
+    }
+
+    public void tearDown() throws Exception {
+        bus.removeMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface',member='Emit'");
+        bus.unregisterBusObject(emitter);
+        emitter = null;
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public void testDemand() throws Exception {
+        SignalPublisher<String> publisher = bus.signals(EmitterInterface.class, "Emit", String.class);
+        Subscriber<String> subscriber = new Subscriber<String>();
+        publisher.subscribe(subscriber);
+        subscriber.waitForSubscription();
+        assertEquals(1, publisher.getSubscriberCount());
+
+        emitter.Emit("one");
+        emitter.Emit("two");
+        emitter.Emit("three");
+        subscriber.subscription.request(2);
+        subscriber.waitFor(2);
+        Thread.sleep(500);
+        synchronized (subscriber) {
+            assertEquals(2, subscriber.items.size());
+            assertEquals("one", subscriber.items.get(0));
+            assertEquals("two", subscriber.items.get(1));
+        }
+
+        subscriber.subscription.request(1);
+        subscriber.waitFor(3);
+        assertEquals("three", subscriber.items.get(2));
+
+        publisher.close();
+        subscriber.waitForComplete();
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    public void testCloseWithoutDemand() throws Exception {
+        SignalPublisher<String> publisher = bus.signals(EmitterInterface.class, "Emit", String.class);
+        Subscriber<String> idle = new Subscriber<String>();
+        publisher.subscribe(idle);
+        Subscriber<String> partial = new Subscriber<String>();
+        publisher.subscribe(partial);
+        idle.waitForSubscription();
+        partial.waitForSubscription();
+
+        emitter.Emit("one");
+        emitter.Emit("two");
+        Thread.sleep(500);
+        partial.subscription.request(1);
+        partial.waitFor(1);
+
+        /* Signals that were never requested do not hold up completion. */
+        publisher.close();
+        idle.waitForComplete();
+        partial.waitForComplete();
+        assertEquals(0, idle.items.size());
+        assertEquals(1, partial.items.size());
+        assertEquals("one", partial.items.get(0));
+    }
+
+    public void testOverflow() throws Exception {
+        SignalPublisher<String> publisher = bus.signals(EmitterInterface.class, "Emit", String.class, null, 2,
+                                                        SignalHandlerQueue.Overflow.DropNewest);
+        Subscriber<String> subscriber = new Subscriber<String>();
+        publisher.subscribe(subscriber);
+        subscriber.waitForSubscription();
+
+        emitter.Emit("one");
+        emitter.Emit("two");
+        emitter.Emit("three");
+        Thread.sleep(500);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.waitFor(2);
+        emitter.Emit("four");
+        subscriber.waitFor(3);
+        synchronized (subscriber) {
+            assertEquals("one", subscriber.items.get(0));
+            assertEquals("two", subscriber.items.get(1));
+            assertEquals("four", subscriber.items.get(2));
+        }
+
+        subscriber.subscription.cancel();
+        assertEquals(0, publisher.getSubscriberCount());
+        emitter.Emit("five");
+        Thread.sleep(500);
+        assertEquals(3, subscriber.items.size());
+    }
+
+    public void testPayloadTypes() throws Exception {
+        Subscriber<Object[]> arrays = new Subscriber<Object[]>();
+        bus.signals(EmitterInterface.class, "Emit", Object[].class).subscribe(arrays);
+        Subscriber<Payload> structs = new Subscriber<Payload>();
+        bus.signals(EmitterInterface.class, "Emit", Payload.class).subscribe(structs);
+        arrays.waitForSubscription();
+        structs.waitForSubscription();
+        arrays.subscription.request(1);
+        structs.subscription.request(1);
+
+        emitter.Emit("one");
+        arrays.waitFor(1);
+        structs.waitFor(1);
+        assertEquals(1, arrays.items.get(0).length);
+        assertEquals("one", arrays.items.get(0)[0]);
+        assertEquals("one", structs.items.get(0).string);
+
+        arrays.subscription.cancel();
+        structs.subscription.cancel();
+    }
+
+    public void testBadRequest() throws Exception {
+        Subscriber<String> subscriber = new Subscriber<String>();
+        bus.signals(EmitterInterface.class, "Emit", String.class).subscribe(subscriber);
+        subscriber.waitForSubscription();
+        subscriber.subscription.request(0);
+        subscriber.waitForError();
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    public void testUnknownSignal() throws Exception {
+        try {
+            bus.signals(EmitterInterface.class, "NoSuchSignal", String.class);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+        }
+        try {
+            bus.signals(EmitterInterface.class, "Emit", Integer.class);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
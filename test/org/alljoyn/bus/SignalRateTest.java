@@ -0,0 +1,138 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.Status;
+
+import java.util.HashSet;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ * Delivers many signals to a Java signal handler.  Every delivered signal
+ * crosses from an AllJoyn dispatcher thread into the JVM, so the rate is
+ * dominated by the cost of getting a JNIEnv on that thread.
+ */
+public class SignalRateTest extends TestCase {
+    public SignalRateTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final int SIGNALS = 10000;
+
+    private BusAttachment bus;
+
+    public class Emitter implements EmitterInterface, BusObject {
+
+        private SignalEmitter signalEmitter;
+        private EmitterInterface emitter;
+
+        public Emitter() {
+            signalEmitter = new SignalEmitter(this);
+            emitter = signalEmitter.getInterface(EmitterInterface.class);
+        }
+
+        public void setMessageContextEnabled(boolean enabled) {
+            signalEmitter.setMessageContextEnabled(enabled);
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+    }
+
+    private Emitter emitter;
+    private int received;
+    private Set<Thread> threads;
+
+    public void setUp() throws Exception {
+        bus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, bus.connect());
+
+        emitter = new Emitter();
+        assertEquals(Status.OK, bus.registerBusObject(emitter, "/emitter"));
+        assertEquals(Status.OK, bus.registerSignalHandler("org.alljoyn.bus.EmitterInterface", "Emit",
+                                                          this, getClass().getMethod("signalHandler",
+                                                                                     String.class)));
+        received = 0;
+        threads = new HashSet<Thread>();
+    }
+
+    public void tearDown() throws Exception {
+        bus.unregisterSignalHandler(this, getClass().getMethod("signalHandler", String.class));
+        bus.unregisterBusObject(emitter);
+        emitter = null;
+        bus.disconnect();
+        bus.release();
+        bus = null;
+    }
+
+    public synchronized void signalHandler(String string) {
+        threads.add(Thread.currentThread());
+        ++received;
+    }
+
+    private synchronized int getReceived() {
+        return received;
+    }
+
+    private void emit() throws Exception {
+        for (int i = 0; i < SIGNALS; ++i) {
+            emitter.Emit("rate");
+        }
+    }
+
+    private void awaitSignals(final int count) throws Exception {
+        assertTrue("timed out after " + getReceived() + " signals", waitForLambda(60000, new Lambda() {
+                public boolean func() { return getReceived() >= count; }
+            }));
+    }
+
+    /*
+     * Sends signals with and without keeping the message context of the
+     * emitter up to date; both must be delivered.
+     */
+    public void testEmit() throws Exception {
+        emitter.setMessageContextEnabled(true);
+        emit();
+        emitter.setMessageContextEnabled(false);
+        emit();
+        awaitSignals(2 * SIGNALS);
+    }
+
+    /*
+     * Native threads stay attached to the JVM, so the signals are delivered
+     * by a few long-lived Java threads rather than a new one per signal.
+     */
+    public void testSignalRate() throws Exception {
+        emit();
+        awaitSignals(SIGNALS);
+        synchronized (this) {
+            assertTrue(threads.size() + " delivering threads", threads.size() < SIGNALS / 100);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2013, Qualcomm Innovation Center, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.alljoyn.bus;
+
+import static org.alljoyn.bus.Assert.*;
+
+import org.alljoyn.bus.BusAttachment;
+import org.alljoyn.bus.BusException;
+import org.alljoyn.bus.BusObject;
+import org.alljoyn.bus.SignalEmitter;
+import org.alljoyn.bus.Status;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import junit.framework.TestCase;
+
+/**
+ * Sends signals from many threads at once, each thread from its own bus
+ * object, either on a shared bus attachment or on an attachment of its own,
+ * and checks that every signal reaches the handler for its bus object in the
+ * order it was sent.
+ */
+public class SignalScalingTest extends TestCase {
+    public SignalScalingTest(String name) {
+        super(name);
+    }
+
+    static {
+        System.loadLibrary("alljoyn_java");
+    }
+
+    private static final int SIGNALS = 500;
+    private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+    public class Emitter implements EmitterInterface, BusObject {
+
+        private EmitterInterface emitter;
+
+        public Emitter() {
+            emitter = new SignalEmitter(this).getInterface(EmitterInterface.class);
+        }
+
+        public void Emit(String string) throws BusException {
+            emitter.Emit(string);
+        }
+    }
+
+    /* Receives the signals of one emitter, sent as "<emitter> <sequence number>". */
+    public class Receiver {
+
+        private final String prefix;
+        private int received;
+        private String error;
+
+        public Receiver(int index) {
+            prefix = index + " ";
+        }
+
+        public synchronized void Emit(String string) {
+            String expected = prefix + received;
+            if (error == null && !expected.equals(string)) {
+                error = "expected \"" + expected + "\", received \"" + string + "\"";
+            }
+            ++received;
+        }
+
+        public synchronized int getReceived() {
+            return received;
+        }
+
+        public synchronized String getError() {
+            return error;
+        }
+    }
+
+    private BusAttachment[] buses;
+    private Emitter[] emitters;
+    private BusAttachment receiverBus;
+    private Receiver[] receivers;
+
+    public void tearDown() throws Exception {
+        release();
+    }
+
+    private void setUp(int threads, boolean sharedBus) throws Exception {
+        receiverBus = new BusAttachment(getClass().getName());
+        assertEquals(Status.OK, receiverBus.connect());
+        assertEquals(Status.OK, receiverBus.addMatch("type='signal',interface='org.alljoyn.bus.EmitterInterface'"));
+        buses = new BusAttachment[sharedBus ? 1 : threads];
+        for (int i = 0; i < buses.length; ++i) {
+            buses[i] = new BusAttachment(getClass().getName());
+            assertEquals(Status.OK, buses[i].connect());
+        }
+        emitters = new Emitter[threads];
+        receivers = new Receiver[threads];
+        for (int i = 0; i < threads; ++i) {
+            emitters[i] = new Emitter();
+            assertEquals(Status.OK, buses[sharedBus ? 0 : i].registerBusObject(emitters[i], "/emitter" + i));
+            receivers[i] = new Receiver(i);
+            assertEquals(Status.OK, receiverBus.registerSignalHandler("org.alljoyn.bus.EmitterInterface", "Emit",
+                                                                      receivers[i],
+                                                                      Receiver.class.getMethod("Emit",
+                                                                                               String.class),
+                                                                      "/emitter" + i));
+        }
+    }
+
+    private void release() throws Exception {
+        if (receivers != null) {
+            for (Receiver receiver : receivers) {
+                receiverBus.unregisterSignalHandler(receiver, Receiver.class.getMethod("Emit", String.class));
+            }
+            receivers = null;
+        }
+        if (receiverBus != null) {
+            receiverBus.disconnect();
+            receiverBus.release();
+            receiverBus = null;
+        }
+        if (emitters != null) {
+            for (int i = 0; i < emitters.length; ++i) {
+                buses[(buses.length == 1) ? 0 : i].unregisterBusObject(emitters[i]);
+            }
+            emitters = null;
+        }
+        if (buses != null) {
+            for (BusAttachment bus : buses) {
+                bus.disconnect();
+                bus.release();
+            }
+            buses = null;
+        }
+    }
+
+    /* Sends SIGNALS signals from each emitter, each on its own thread. */
+    private void emit() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(emitters.length);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        for (int e = 0; e < emitters.length; ++e) {
+            final Emitter emitter = emitters[e];
+            final String prefix = e + " ";
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < SIGNALS; ++i) {
+                            emitter.Emit(prefix + i);
+                        }
+                    } catch (Exception ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void send(boolean sharedBus) throws Exception {
+        for (int threads : THREADS) {
+            setUp(threads, sharedBus);
+            emit();
+            for (final Receiver receiver : receivers) {
+                assertTrue(threads + " threads: timed out after " + receiver.getReceived() + " signals",
+                           waitForLambda(30000, new Lambda() {
+                                   public boolean func() { return receiver.getReceived() >= SIGNALS; }
+                               }));
+                assertNull(receiver.getError());
+                assertEquals(SIGNALS, receiver.getReceived());
+            }
+            release();
+        }
+    }
+
+    public void testScalingObjects() throws Exception {
+        send(true);
+    }
+
+    public void testScalingAttachments() throws Exception {
+        send(false);
+    }
+}